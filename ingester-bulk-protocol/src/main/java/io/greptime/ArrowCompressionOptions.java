@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * The options of the compression of the record batches of a bulk write stream, they apply when
+ * the stream is compressed ({@link ArrowCompressionType#Zstd}).
+ *
+ * <p>The buffers of a batch are compressed one by one on the sending thread by default. With an
+ * {@link Builder#executor(Executor) executor}, the large buffers are compressed in parallel on it.
+ *
+ * <p>The policy is per column: a column can be left uncompressed, for example a dense timestamp
+ * column, or compressed with its own level, for example a large string or JSON column. The
+ * validity buffers and the small buffers can be left uncompressed as well. An uncompressed buffer
+ * is sent as is in the compressed batch, as allowed by the Arrow IPC format.
+ */
+public class ArrowCompressionOptions {
+
+    /**
+     * The level of a column that is left uncompressed.
+     */
+    public static final int UNCOMPRESSED = Integer.MIN_VALUE;
+
+    /**
+     * The default ZSTD compression level.
+     */
+    public static final int DEFAULT_LEVEL = 3;
+
+    /**
+     * The default min size of a buffer compressed on the executor, a smaller buffer is compressed
+     * on the sending thread.
+     */
+    public static final long DEFAULT_PARALLEL_MIN_BYTES = 64 * 1024;
+
+    private int level = DEFAULT_LEVEL;
+    private Map<String, Integer> columnLevels = new HashMap<>();
+    private boolean compressValidity = true;
+    private long minCompressBytes = 0;
+    private Executor executor;
+    private long parallelMinBytes = DEFAULT_PARALLEL_MIN_BYTES;
+
+    private ArrowCompressionOptions() {}
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public Map<String, Integer> getColumnLevels() {
+        return Collections.unmodifiableMap(columnLevels);
+    }
+
+    /**
+     * Gets the level of the column.
+     *
+     * @param column the column name
+     * @return the level, {@link #UNCOMPRESSED} if the column is left uncompressed
+     */
+    public int getLevel(String column) {
+        Integer level = columnLevels.get(column);
+        return level != null ? level : this.level;
+    }
+
+    public boolean isCompressValidity() {
+        return compressValidity;
+    }
+
+    public long getMinCompressBytes() {
+        return minCompressBytes;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public long getParallelMinBytes() {
+        return parallelMinBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ArrowCompressionOptions{" + "level="
+                + level + ", columnLevels="
+                + columnLevels + ", compressValidity="
+                + compressValidity + ", minCompressBytes="
+                + minCompressBytes + ", executor="
+                + executor + ", parallelMinBytes="
+                + parallelMinBytes + '}';
+    }
+
+    public static class Builder {
+        private final ArrowCompressionOptions options = new ArrowCompressionOptions();
+
+        /**
+         * Set the ZSTD level of the columns without their own level.
+         *
+         * @param level the compression level
+         * @return this builder
+         */
+        public Builder level(int level) {
+            options.level = level;
+            return this;
+        }
+
+        /**
+         * Set the ZSTD level of a column.
+         *
+         * @param column the column name
+         * @param level the compression level, {@link #UNCOMPRESSED} to leave the column uncompressed
+         * @return this builder
+         */
+        public Builder columnLevel(String column, int level) {
+            options.columnLevels.put(column, level);
+            return this;
+        }
+
+        /**
+         * Leave the columns uncompressed.
+         *
+         * @param columns the column names
+         * @return this builder
+         */
+        public Builder uncompressed(String... columns) {
+            for (String column : columns) {
+                options.columnLevels.put(column, UNCOMPRESSED);
+            }
+            return this;
+        }
+
+        /**
+         * Set whether the validity buffers are compressed, they are often small or dense.
+         *
+         * @param compressValidity false to leave the validity buffers uncompressed
+         * @return this builder
+         */
+        public Builder compressValidity(boolean compressValidity) {
+            options.compressValidity = compressValidity;
+            return this;
+        }
+
+        /**
+         * Set the min size of a compressed buffer, a smaller buffer is left uncompressed.
+         *
+         * @param minCompressBytes the min size in bytes
+         * @return this builder
+         */
+        public Builder minCompressBytes(long minCompressBytes) {
+            options.minCompressBytes = minCompressBytes;
+            return this;
+        }
+
+        /**
+         * Set the worker pool the buffers are compressed on, null to compress them on the
+         * sending thread.
+         *
+         * @param executor the worker pool
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            options.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set the min size of a buffer compressed on the worker pool, compressing a smaller
+         * buffer costs less than handing it off.
+         *
+         * @param parallelMinBytes the min size in bytes
+         * @return this builder
+         */
+        public Builder parallelMinBytes(long parallelMinBytes) {
+            options.parallelMinBytes = parallelMinBytes;
+            return this;
+        }
+
+        public ArrowCompressionOptions build() {
+            return options;
+        }
+    }
+}
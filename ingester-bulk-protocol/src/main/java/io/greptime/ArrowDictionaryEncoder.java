@@ -0,0 +1,253 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.common.util.Ensures;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.util.ByteFunctionHelpers;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+
+/**
+ * Builds the Arrow dictionary of a dictionary-encoded string column of a bulk write stream.
+ *
+ * <p>The values are added to the dictionary as they are first written, the rows hold their
+ * indexes. Before each record batch, the entries added since the last batch are sent as a
+ * delta dictionary batch, see {@link #takeBatch(BufferAllocator)}.
+ *
+ * <p>When the dictionary grows over its max size, it is cleared after the batch that used it,
+ * and the dictionary of the next batch is sent as a replacement holding only the values of that
+ * batch. A high-cardinality column thus costs about the same as a plain one, without growing
+ * the dictionary without bound.
+ *
+ * <p>An encoder is written by the producer thread of the stream only, it is not thread-safe.
+ */
+public class ArrowDictionaryEncoder implements AutoCloseable {
+
+    /**
+     * The default max number of entries of a dictionary.
+     */
+    public static final int DEFAULT_MAX_SIZE = 65536;
+
+    private static final int INITIAL_SLOTS = 64;
+
+    private final DictionaryEncoding encoding;
+    private final VarCharVector values;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    // The same indexes by the hash of the UTF-8 bytes of the entries, with linear probing, -1 for
+    // an empty slot, so the values read from Arrow buffers are encoded without a String per row
+    private int[] slots = newSlots(INITIAL_SLOTS);
+    private int maxSize = DEFAULT_MAX_SIZE;
+    // The number of entries that have been taken by `takeBatch()`
+    private int taken;
+    // Whether the next batch replaces the dictionary instead of being a delta
+    private boolean replace;
+
+    public ArrowDictionaryEncoder(Field field, BufferAllocator allocator) {
+        this.encoding = Ensures.ensureNonNull(field.getDictionary(), "Not a dictionary-encoded field: %s", field);
+        this.values = new VarCharVector(field.getName(), allocator);
+        this.values.allocateNew();
+        this.values.setValueCount(0);
+    }
+
+    public long getId() {
+        return this.encoding.getId();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        Ensures.ensure(maxSize > 0, "`maxSize` must be positive: %d", maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the number of entries of the dictionary
+     */
+    public int size() {
+        return this.indexes.size();
+    }
+
+    /**
+     * Returns the index of the value in the dictionary, the value is added if it is new.
+     *
+     * @param value the value
+     * @return the index of the value
+     */
+    public int encode(String value) {
+        Integer index = this.indexes.get(value);
+        if (index != null) {
+            return index;
+        }
+        return add(value, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the index of the UTF-8 value in the dictionary, the value is added if it is new.
+     * Only a new value is decoded to a String.
+     *
+     * @param buf the buffer of the value
+     * @param start the offset of the value in the buffer
+     * @param length the length of the value in bytes
+     * @return the index of the value
+     */
+    public int encode(ArrowBuf buf, long start, int length) {
+        long end = start + length;
+        ArrowBuf data = this.values.getDataBuffer();
+        int mask = this.slots.length - 1;
+        for (int slot = ByteFunctionHelpers.hash(buf, start, end) & mask; ; slot = (slot + 1) & mask) {
+            int index = this.slots[slot];
+            if (index < 0) {
+                break;
+            }
+            long entryStart = this.values.getStartOffset(index);
+            if (ByteFunctionHelpers.equal(buf, start, end, data, entryStart, this.values.getStartOffset(index + 1))
+                    == 1) {
+                return index;
+            }
+        }
+        byte[] bytes = new byte[length];
+        buf.getBytes(start, bytes);
+        return add(new String(bytes, StandardCharsets.UTF_8), bytes);
+    }
+
+    private int add(String value, byte[] bytes) {
+        int i = this.indexes.size();
+        this.values.setSafe(i, bytes);
+        this.values.setValueCount(i + 1);
+        this.indexes.put(value, i);
+        if ((i + 1) * 2 > this.slots.length) {
+            this.slots = newSlots(this.slots.length * 2);
+            for (int j = 0; j < i; j++) {
+                addSlot(j);
+            }
+        }
+        addSlot(i);
+        return i;
+    }
+
+    private void addSlot(int index) {
+        int mask = this.slots.length - 1;
+        int slot = ByteFunctionHelpers.hash(
+                        this.values.getDataBuffer(),
+                        this.values.getStartOffset(index),
+                        this.values.getStartOffset(index + 1))
+                & mask;
+        while (this.slots[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.slots[slot] = index;
+    }
+
+    private static int[] newSlots(int size) {
+        int[] slots = new int[size];
+        Arrays.fill(slots, -1);
+        return slots;
+    }
+
+    /**
+     * The dictionary sent in the schema messages when the stream starts, it's empty.
+     */
+    Dictionary initialDictionary() {
+        return new Dictionary(this.values, this.encoding);
+    }
+
+    /**
+     * Takes the entries added since the last call, they must be sent before the record batch
+     * that uses them. The dictionary is cleared afterwards if it has grown over its max size.
+     *
+     * @param allocator the allocator of the returned root
+     * @return the new entries in a root that the caller must close, or null if there are none
+     */
+    public Batch takeBatch(BufferAllocator allocator) {
+        int size = this.indexes.size();
+        if (size == this.taken) {
+            return null;
+        }
+
+        VarCharVector entries = new VarCharVector(this.values.getField(), allocator);
+        int count = size - this.taken;
+        entries.allocateNew(this.values.getStartOffset(size) - this.values.getStartOffset(this.taken), count);
+        for (int i = 0; i < count; i++) {
+            entries.copyFromSafe(this.taken + i, i, this.values);
+        }
+        entries.setValueCount(count);
+        Batch batch = new Batch(getId(), !this.replace, VectorSchemaRoot.of(entries));
+
+        this.taken = size;
+        this.replace = false;
+        if (size > this.maxSize) {
+            this.indexes.clear();
+            this.slots = newSlots(INITIAL_SLOTS);
+            this.values.reset();
+            this.values.setValueCount(0);
+            this.taken = 0;
+            this.replace = true;
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() {
+        this.values.close();
+    }
+
+    /**
+     * The entries of a dictionary batch.
+     */
+    public static final class Batch implements AutoCloseable {
+        private final long id;
+        private final boolean delta;
+        private final VectorSchemaRoot entries;
+
+        Batch(long id, boolean delta, VectorSchemaRoot entries) {
+            this.id = id;
+            this.delta = delta;
+            this.entries = entries;
+        }
+
+        public long getId() {
+            return this.id;
+        }
+
+        /**
+         * @return true if the entries are appended to the dictionary, false if they replace it
+         */
+        public boolean isDelta() {
+            return this.delta;
+        }
+
+        public VectorSchemaRoot getEntries() {
+            return this.entries;
+        }
+
+        @Override
+        public void close() {
+            this.entries.close();
+        }
+    }
+}
@@ -19,9 +19,13 @@ package io.greptime;
 import com.codahale.metrics.Counter;
 import io.greptime.common.Endpoint;
 import io.greptime.common.Keys;
+import io.greptime.common.MemoryGovernor;
 import io.greptime.common.util.Ensures;
 import io.greptime.common.util.MetricsUtil;
+import io.greptime.rpc.RpcOptions;
+import io.greptime.rpc.SharedChannelPool;
 import io.greptime.rpc.TlsOptions;
+import io.grpc.ManagedChannel;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.apache.arrow.flight.BulkFlightClient;
 import org.apache.arrow.flight.BulkFlightClient.ClientStreamListener;
@@ -52,6 +56,10 @@ public class BulkWriteManager implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(BulkWriteManager.class);
 
+    // Not the channels of the `GrpcClient`: the zero-copy Flight messages are unshaded Netty buffers,
+    // which the shaded Netty transport can not write
+    private static final SharedChannelPool FLIGHT_CHANNEL_POOL = new SharedChannelPool(BulkFlightClient::newChannel);
+
     // Lazy initialization of the root allocator
     private static class RootAllocatorHolder {
 
@@ -75,7 +83,13 @@ public class BulkWriteManager implements AutoCloseable {
         }
     }
 
-    private static BufferAllocator getRootAllocator() {
+    /**
+     * Returns the root allocator of all the bulk writers. The Arrow buffers of a root allocated
+     * from a child of it can be moved into a bulk stream without copying.
+     *
+     * @return the root allocator
+     */
+    public static BufferAllocator getRootAllocator() {
         return RootAllocatorHolder.ROOT_ALLOCATOR;
     }
 
@@ -105,16 +119,33 @@ public class BulkWriteManager implements AutoCloseable {
             long allocatorMaxAllocation,
             ArrowCompressionType compressionType,
             TlsOptions tlsOptions) {
+        return create(endpoint, allocatorInitReservation, allocatorMaxAllocation, compressionType, tlsOptions, null);
+    }
+
+    /**
+     * Creates a bulk write manager whose Arrow allocations are accounted in the memory budget of
+     * the client.
+     *
+     * @param endpoint the endpoint of the server
+     * @param allocatorInitReservation the initial space reservation (obtained from this allocator)
+     * @param allocatorMaxAllocation the maximum amount of space the new child allocator can allocate
+     * @param compressionType the compression type to use for arrow messages
+     * @param tlsOptions the TLS options for the Flight client
+     * @param memoryGovernor the memory budget of the client, null for none
+     * @return a BulkWriteManager instance
+     */
+    public static BulkWriteManager create(
+            Endpoint endpoint,
+            long allocatorInitReservation,
+            long allocatorMaxAllocation,
+            ArrowCompressionType compressionType,
+            TlsOptions tlsOptions,
+            MemoryGovernor memoryGovernor) {
         Location location = Location.forGrpcInsecure(endpoint.getAddr(), endpoint.getPort());
 
         String allocatorName = String.format("BufferAllocator(%s)", location);
         BufferAllocator allocator =
-                getRootAllocator().newChildAllocator(allocatorName, allocatorInitReservation, allocatorMaxAllocation);
-        Ensures.ensureNonNull(
-                allocator,
-                "Failed to create child buffer allocator, initReservation: %s, maxAllocation: %s",
-                allocatorInitReservation,
-                allocatorMaxAllocation);
+                newChildAllocator(allocatorName, allocatorInitReservation, allocatorMaxAllocation, memoryGovernor);
 
         BulkFlightClient flightClient = BulkFlightClient.builder()
                 .location(location)
@@ -129,6 +160,80 @@ public class BulkWriteManager implements AutoCloseable {
         return client;
     }
 
+    /**
+     * Creates a new BulkWriteManager whose Flight client draws its channel from a pool of
+     * channels on the unshaded Netty transport, so it shares the connection to the endpoint with
+     * the other bulk writers of the same rpc options.
+     *
+     * @param endpoint the endpoint of the server
+     * @param allocatorInitReservation the initial space reservation (obtained from this allocator)
+     * @param allocatorMaxAllocation the maximum amount of space the new child allocator can allocate
+     * @param compressionType the compression type to use for arrow messages
+     * @param rpcOptions the rpc options of the shared channel
+     * @return a BulkWriteManager instance
+     */
+    public static BulkWriteManager create(
+            Endpoint endpoint,
+            long allocatorInitReservation,
+            long allocatorMaxAllocation,
+            ArrowCompressionType compressionType,
+            RpcOptions rpcOptions) {
+        return create(endpoint, allocatorInitReservation, allocatorMaxAllocation, compressionType, rpcOptions, null);
+    }
+
+    /**
+     * Creates a new BulkWriteManager on a shared channel, whose Arrow allocations are accounted in
+     * the memory budget of the client.
+     *
+     * @param endpoint the endpoint of the server
+     * @param allocatorInitReservation the initial space reservation (obtained from this allocator)
+     * @param allocatorMaxAllocation the maximum amount of space the new child allocator can allocate
+     * @param compressionType the compression type to use for arrow messages
+     * @param rpcOptions the rpc options of the shared channel
+     * @param memoryGovernor the memory budget of the client, null for none
+     * @return a BulkWriteManager instance
+     */
+    public static BulkWriteManager create(
+            Endpoint endpoint,
+            long allocatorInitReservation,
+            long allocatorMaxAllocation,
+            ArrowCompressionType compressionType,
+            RpcOptions rpcOptions,
+            MemoryGovernor memoryGovernor) {
+        String allocatorName = String.format("BufferAllocator(%s)", endpoint);
+        BufferAllocator allocator =
+                newChildAllocator(allocatorName, allocatorInitReservation, allocatorMaxAllocation, memoryGovernor);
+
+        ManagedChannel channel = FLIGHT_CHANNEL_POOL.acquire(endpoint, rpcOptions);
+        BulkFlightClient flightClient = BulkFlightClient.builder()
+                .allocator(allocator)
+                .channel(channel)
+                .compressionType(compressionType)
+                .build();
+        BulkWriteManager client = new BulkWriteManager(endpoint, flightClient, allocator);
+
+        LOG.info("BulkWriteManager created on a shared channel: {}", client);
+
+        return client;
+    }
+
+    private static BufferAllocator newChildAllocator(
+            String name, long initReservation, long maxAllocation, MemoryGovernor memoryGovernor) {
+        BufferAllocator rootAllocator = getRootAllocator();
+        BufferAllocator allocator = memoryGovernor == null
+                ? rootAllocator.newChildAllocator(name, initReservation, maxAllocation)
+                : rootAllocator.newChildAllocator(
+                        name,
+                        new GovernedAllocationListener(memoryGovernor, rootAllocator.getListener()),
+                        initReservation,
+                        maxAllocation);
+        return Ensures.ensureNonNull(
+                allocator,
+                "Failed to create child buffer allocator, initReservation: %s, maxAllocation: %s",
+                initReservation,
+                maxAllocation);
+    }
+
     /**
      * Creates a bulk write stream for efficiently writing data to the server.
      *
@@ -141,8 +246,31 @@ public class BulkWriteManager implements AutoCloseable {
      */
     public BulkWriteService intoBulkWriteStream(
             String table, Schema schema, long timeoutMs, int maxRequestsInFlight, CallOption... options) {
+        return intoBulkWriteStream(table, schema, timeoutMs, maxRequestsInFlight, 1, options);
+    }
+
+    /**
+     * Creates a bulk write stream with a ring of roots, so the next root can be filled while
+     * the previous one is being sent.
+     *
+     * @param table the name of the target table
+     * @param schema the Arrow schema defining the structure of the data to be written
+     * @param timeoutMs the timeout in milliseconds for the write operation
+     * @param maxRequestsInFlight the max in-flight requests in the stream
+     * @param rootRingSize the number of roots of the stream
+     * @param options optional RPC-layer hints to configure the underlying Flight client call
+     * @return a BulkStreamWriter instance that manages the data transfer process
+     */
+    public BulkWriteService intoBulkWriteStream(
+            String table,
+            Schema schema,
+            long timeoutMs,
+            int maxRequestsInFlight,
+            int rootRingSize,
+            CallOption... options) {
         FlightDescriptor descriptor = FlightDescriptor.path(table);
-        return new BulkWriteService(this, this.allocator, schema, descriptor, timeoutMs, maxRequestsInFlight, options);
+        return new BulkWriteService(
+                this, this.allocator, schema, descriptor, timeoutMs, maxRequestsInFlight, rootRingSize, options);
     }
 
     VectorSchemaRoot createSchemaRoot(Schema schema) {
@@ -204,4 +332,56 @@ public class BulkWriteManager implements AutoCloseable {
             LOG.info("onChildRemoved: {} {}", parentAllocator, childAllocator);
         }
     }
+
+    /**
+     * Accounts the allocations of a child allocator in the memory budget of the client.
+     *
+     * <p>An allocation is never blocked here, it may run on a gRPC thread that the release of the
+     * budget depends on. The producers wait for the budget before they fill a table instead.
+     *
+     * <p>A child allocator has a single listener, all the events are also passed to the listener
+     * of the root allocator, which would be inherited otherwise.
+     */
+    static class GovernedAllocationListener implements AllocationListener {
+
+        private final MemoryGovernor memoryGovernor;
+        private final AllocationListener delegate;
+
+        GovernedAllocationListener(MemoryGovernor memoryGovernor, AllocationListener delegate) {
+            this.memoryGovernor = memoryGovernor;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onPreAllocation(long size) {
+            this.delegate.onPreAllocation(size);
+        }
+
+        @Override
+        public void onAllocation(long size) {
+            this.memoryGovernor.forceReserve(size);
+            this.delegate.onAllocation(size);
+        }
+
+        @Override
+        public void onRelease(long size) {
+            this.memoryGovernor.release(size);
+            this.delegate.onRelease(size);
+        }
+
+        @Override
+        public boolean onFailedAllocation(long size, AllocationOutcome outcome) {
+            return this.delegate.onFailedAllocation(size, outcome);
+        }
+
+        @Override
+        public void onChildAdded(BufferAllocator parentAllocator, BufferAllocator childAllocator) {
+            this.delegate.onChildAdded(parentAllocator, childAllocator);
+        }
+
+        @Override
+        public void onChildRemoved(BufferAllocator parentAllocator, BufferAllocator childAllocator) {
+            this.delegate.onChildRemoved(parentAllocator, childAllocator);
+        }
+    }
 }
@@ -16,12 +16,26 @@
 
 package io.greptime;
 
+import com.codahale.metrics.Timer;
 import com.google.protobuf.ByteString;
 import io.greptime.common.TimeoutCompletableFuture;
+import io.greptime.common.util.Ensures;
+import io.greptime.common.util.ExecutorServiceHelper;
+import io.greptime.common.util.MetricsUtil;
+import io.greptime.common.util.NamedThreadFactory;
+import io.greptime.common.util.ThreadPoolUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.arrow.flight.BulkFlightClient.ClientStreamListener;
@@ -34,7 +48,10 @@ import org.apache.arrow.memory.ArrowBuf;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.util.AutoCloseables;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.dictionary.DictionaryProvider.MapDictionaryProvider;
 import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +65,10 @@ import org.slf4j.LoggerFactory;
  *
  * This service handles the serialization and transfer of Arrow-formatted data in an optimized manner,
  * providing a streamlined interface for bulk write operations.
+ *
+ * With a ring of more than one root, the roots are sent by a dedicated sender thread, so the
+ * producer fills the next root (see {@link #nextRoot()}) while the previous one is being unloaded,
+ * compressed and sent.
  */
 public class BulkWriteService implements AutoCloseable {
 
@@ -58,6 +79,14 @@ public class BulkWriteService implements AutoCloseable {
     private final BulkWriteManager manager;
     private final BufferAllocator allocator;
     private final VectorSchemaRoot root;
+    // All the roots of the ring, the first one is `root`
+    private final List<VectorSchemaRoot> roots;
+    // The roots that are ready to be filled, null if there is only one root
+    private final BlockingQueue<VectorSchemaRoot> freeRoots;
+    // Sends the roots in order, null if there is only one root
+    private final ExecutorService sender;
+    // Indexed by field, null for the fields that are not dictionary-encoded
+    private final ArrowDictionaryEncoder[] dictionaryEncoders;
     private final ClientStreamListener listener;
     private final AsyncPutListener metadataListener;
     private final long timeoutMs;
@@ -81,9 +110,61 @@ public class BulkWriteService implements AutoCloseable {
             long timeoutMs,
             int maxRequestsInFlight,
             CallOption... options) {
+        this(manager, allocator, schema, descriptor, timeoutMs, maxRequestsInFlight, 1, options);
+    }
+
+    /**
+     * Constructs a new BulkWriteService.
+     *
+     * @param manager The BulkWriteManager that manages this service
+     * @param allocator The BufferAllocator for memory management
+     * @param schema The Arrow schema defining the data structure
+     * @param descriptor The FlightDescriptor identifying the data stream
+     * @param timeoutMs The timeout in milliseconds for operations
+     * @param maxRequestsInFlight the max in-flight requests in the stream
+     * @param rootRingSize the number of roots, more than one root sends the roots asynchronously
+     * @param options Additional call options for the Flight client
+     */
+    public BulkWriteService(
+            BulkWriteManager manager,
+            BufferAllocator allocator,
+            Schema schema,
+            FlightDescriptor descriptor,
+            long timeoutMs,
+            int maxRequestsInFlight,
+            int rootRingSize,
+            CallOption... options) {
+        Ensures.ensure(rootRingSize > 0, "`rootRingSize` must be positive: %d", rootRingSize);
         this.manager = manager;
         this.allocator = allocator;
-        this.root = manager.createSchemaRoot(schema);
+        this.roots = new ArrayList<>(rootRingSize);
+        for (int i = 0; i < rootRingSize; i++) {
+            this.roots.add(manager.createSchemaRoot(schema));
+        }
+        this.root = this.roots.get(0);
+        if (rootRingSize > 1) {
+            this.freeRoots = new ArrayBlockingQueue<>(rootRingSize, false, this.roots);
+            String name = "bulk_write_sender";
+            this.sender = ThreadPoolUtil.newBuilder()
+                    .poolName(name)
+                    .enableMetric(false)
+                    .coreThreads(1)
+                    .maximumThreads(1)
+                    .keepAliveSeconds(60L)
+                    .workQueue(new LinkedBlockingQueue<>())
+                    .threadFactory(new NamedThreadFactory(name, true))
+                    .build();
+        } else {
+            this.freeRoots = null;
+            this.sender = null;
+        }
+        List<Field> fields = schema.getFields();
+        this.dictionaryEncoders = new ArrowDictionaryEncoder[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).getDictionary() != null) {
+                this.dictionaryEncoders[i] = new ArrowDictionaryEncoder(fields.get(i), allocator);
+            }
+        }
         this.metadataListener = new AsyncPutListener();
         this.listener = manager.startPut(descriptor, this.metadataListener, maxRequestsInFlight, options);
         this.timeoutMs = timeoutMs;
@@ -94,7 +175,7 @@ public class BulkWriteService implements AutoCloseable {
      */
     public void start() {
         LOG.debug("Starting bulk write stream with default IPC options");
-        this.listener.start(this.root, this.manager.newDefaultDictionaryProvider());
+        this.listener.start(this.root, newDictionaryProvider());
     }
 
     /**
@@ -104,7 +185,28 @@ public class BulkWriteService implements AutoCloseable {
      */
     public void start(IpcOption ipcOption) {
         LOG.debug("Starting bulk write stream with custom IPC options: {}", ipcOption);
-        this.listener.start(this.root, this.manager.newDefaultDictionaryProvider(), ipcOption);
+        this.listener.start(this.root, newDictionaryProvider(), ipcOption);
+    }
+
+    private DictionaryProvider newDictionaryProvider() {
+        DictionaryProvider provider = this.manager.newDefaultDictionaryProvider();
+        for (ArrowDictionaryEncoder encoder : this.dictionaryEncoders) {
+            if (encoder != null) {
+                // The dictionaries are empty when the stream starts, the entries are sent as deltas
+                ((MapDictionaryProvider) provider).put(encoder.initialDictionary());
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * Returns the dictionary encoders of the dictionary-encoded fields, the rows of such a field
+     * hold the indexes returned by {@link ArrowDictionaryEncoder#encode(String)}.
+     *
+     * @return the encoders indexed by field, null for the fields that are not dictionary-encoded
+     */
+    public ArrowDictionaryEncoder[] getDictionaryEncoders() {
+        return this.dictionaryEncoders;
     }
 
     /**
@@ -116,6 +218,43 @@ public class BulkWriteService implements AutoCloseable {
         return this.root;
     }
 
+    /**
+     * Takes the next root to fill. With a single root, it is always the same root. With a ring,
+     * this blocks until a root has been sent and cleared, the root must then be passed to
+     * {@link #putNext(VectorSchemaRoot)}.
+     *
+     * @return an empty root
+     * @throws InterruptedException if interrupted while waiting for a free root
+     */
+    public VectorSchemaRoot nextRoot() throws InterruptedException {
+        if (this.freeRoots == null) {
+            return this.root;
+        }
+        Timer.Context timerCtx =
+                MetricsUtil.timer("bulk_write_service.wait_free_root").time();
+        try {
+            return this.freeRoots.take();
+        } finally {
+            timerCtx.stop();
+        }
+    }
+
+    /**
+     * Gives back a root taken by {@link #nextRoot()} that is not passed to
+     * {@link #putNext(VectorSchemaRoot)}, it is cleared and becomes available to {@link #nextRoot()}
+     * again. With a single root, nothing is done.
+     *
+     * @param root the root taken by {@link #nextRoot()}
+     */
+    public void releaseRoot(VectorSchemaRoot root) {
+        if (this.freeRoots == null) {
+            return;
+        }
+        Ensures.ensure(this.roots.contains(root), "Not a root of this stream");
+        root.clear();
+        this.freeRoots.offer(root);
+    }
+
     /**
      * Enables zero-copy write mode for improved performance.
      * This avoids unnecessary memory copies when sending data.
@@ -125,6 +264,17 @@ public class BulkWriteService implements AutoCloseable {
         this.listener.setUseZeroCopy(true);
     }
 
+    /**
+     * Sets the compression options of the record batches, the buffers are compressed per column
+     * policy and in parallel on the executor of the options. It applies when the stream is compressed.
+     *
+     * @param compressionOptions the compression options
+     */
+    public void useCompressionOptions(ArrowCompressionOptions compressionOptions) {
+        LOG.info("Using compression options: {}", compressionOptions);
+        this.listener.setCompressionOptions(compressionOptions);
+    }
+
     /**
      * Checks if the stream is ready to send the next message.
      *
@@ -134,6 +284,16 @@ public class BulkWriteService implements AutoCloseable {
         return this.listener.isReady();
     }
 
+    /**
+     * Returns a future that is completed when the stream is ready to send the next message,
+     * it is completed by the {@code onReady} notification of the stream instead of polling.
+     *
+     * @return a future completed when the stream is ready, failed if the stream is terminated
+     */
+    public CompletableFuture<Void> whenStreamReady() {
+        return this.listener.whenReady();
+    }
+
     /**
      * Sends the current contents of the associated VectorSchemaRoot to the server.
      * This method will:
@@ -145,8 +305,68 @@ public class BulkWriteService implements AutoCloseable {
      * @return A PutStage object containing the future and the number of in-flight requests
      */
     public PutStage putNext() {
+        return putNext(this.root);
+    }
+
+    /**
+     * Sends the contents of the given root to the server, the root is cleared after it is sent.
+     * With a ring of roots, the root is handed off to the sender thread and this returns at once,
+     * the root becomes available to {@link #nextRoot()} again after it is sent.
+     *
+     * @param root the root taken by {@link #nextRoot()}
+     * @return A PutStage object containing the future and the number of in-flight requests
+     */
+    public PutStage putNext(VectorSchemaRoot root) {
+        // Taken by the producer, the encoders are written while the root is being sent
+        return putNext(root, takeDictionaryBatches());
+    }
+
+    /**
+     * Like {@link #putNext(VectorSchemaRoot)}, with the dictionary batches taken by the producer
+     * when it finished the root, see {@link #takeDictionaryBatches()}. The batches are closed once
+     * they are sent.
+     *
+     * @param root the root taken by {@link #nextRoot()}
+     * @param dictionaryBatches the new dictionary entries of the root
+     * @return A PutStage object containing the future and the number of in-flight requests
+     */
+    public PutStage putNext(VectorSchemaRoot root, List<ArrowDictionaryEncoder.Batch> dictionaryBatches) {
+        if (this.sender == null) {
+            if (root != this.root) {
+                closeDictionaryBatches(dictionaryBatches);
+                throw new IllegalArgumentException("Not the root of this stream");
+            }
+            return putNext0(root, dictionaryBatches);
+        }
+
+        long id = nextId();
+        IdentifiableCompletableFuture future = new IdentifiableCompletableFuture(id, this.timeoutMs);
+        this.metadataListener.attach(id, future);
+        Runnable send = () -> {
+            try {
+                send(id, future, root, dictionaryBatches);
+            } catch (Throwable t) {
+                LOG.error("Failed to send data [id={}]", id, t);
+                future.completeExceptionally(t);
+            } finally {
+                root.clear();
+                this.freeRoots.offer(root);
+            }
+        };
+        try {
+            this.sender.execute(send);
+        } catch (RejectedExecutionException e) {
+            closeDictionaryBatches(dictionaryBatches);
+            root.clear();
+            this.freeRoots.offer(root);
+            future.completeExceptionally(e);
+        }
+        return new PutStage(future, this.metadataListener.numInFlight());
+    }
+
+    private PutStage putNext0(VectorSchemaRoot root, List<ArrowDictionaryEncoder.Batch> dictionaryBatches) {
         long id = nextId();
-        long totalRowCount = this.root.getRowCount();
+        long totalRowCount = root.getRowCount();
 
         LOG.debug("Starting putNext operation [id={}], total row count: {}", id, totalRowCount);
 
@@ -154,15 +374,8 @@ public class BulkWriteService implements AutoCloseable {
         IdentifiableCompletableFuture future = new IdentifiableCompletableFuture(id, this.timeoutMs);
         this.metadataListener.attach(id, future);
 
-        // Prepare metadata buffer
-        byte[] metadata = new Metadata.RequestMetadata(id).toJsonBytesUtf8();
         try {
-            ArrowBuf metadataBuf = this.allocator.buffer(metadata.length);
-            metadataBuf.writeBytes(metadata);
-
-            // Send data to the server
-            LOG.debug("Sending data to server [id={}]", id);
-            this.listener.putNext(metadataBuf);
+            send(id, future, root, dictionaryBatches);
 
             int inFlightCount = this.metadataListener.numInFlight();
             LOG.debug("Data sent successfully [id={}], in-flight requests: {}", id, inFlightCount);
@@ -170,18 +383,108 @@ public class BulkWriteService implements AutoCloseable {
             return new PutStage(future, inFlightCount);
         } finally {
             // Clear the root to prepare for next batch
-            this.root.clear();
+            root.clear();
             LOG.debug("Cleared root for next batch [id={}], previous row count: {}", id, totalRowCount);
         }
     }
 
+    /**
+     * Takes the dictionary entries added since the last root, they belong to the root the producer
+     * just finished. It must be called on the producer thread, before the next root is encoded.
+     *
+     * @return the dictionary batches, the caller must pass them to
+     *     {@link #putNext(VectorSchemaRoot, List)} or close them
+     */
+    public List<ArrowDictionaryEncoder.Batch> takeDictionaryBatches() {
+        List<ArrowDictionaryEncoder.Batch> batches = null;
+        for (ArrowDictionaryEncoder encoder : this.dictionaryEncoders) {
+            if (encoder == null) {
+                continue;
+            }
+            ArrowDictionaryEncoder.Batch batch = encoder.takeBatch(this.allocator);
+            if (batch != null) {
+                if (batches == null) {
+                    batches = new ArrayList<>();
+                }
+                batches.add(batch);
+            }
+        }
+        return batches == null ? Collections.emptyList() : batches;
+    }
+
+    private static void closeDictionaryBatches(List<ArrowDictionaryEncoder.Batch> batches) {
+        batches.forEach(ArrowDictionaryEncoder.Batch::close);
+    }
+
+    private void send(
+            long id,
+            IdentifiableCompletableFuture future,
+            VectorSchemaRoot root,
+            List<ArrowDictionaryEncoder.Batch> dictionaryBatches) {
+        // The deadline counts from the send, not from the time the root waited in the ring
+        future.scheduleTimeout();
+
+        // The new dictionary entries go before the record batch that uses them
+        try {
+            for (ArrowDictionaryEncoder.Batch batch : dictionaryBatches) {
+                this.listener.putDictionary(batch.getId(), batch.getEntries(), batch.isDelta());
+            }
+        } finally {
+            closeDictionaryBatches(dictionaryBatches);
+        }
+
+        // Prepare metadata buffer, the ownership goes to the stream
+        ArrowBuf metadataBuf = MetadataCodec.encodeRequest(this.allocator, id);
+
+        // Send data to the server
+        LOG.debug("Sending data to server [id={}]", id);
+        this.listener.putNext(root, metadataBuf);
+    }
+
     /**
      * Completes the bulk write operation, indicating that transmission is finished.
      * This signals to the server that no more data will be sent.
      */
     public void completed() {
         LOG.info("Completing bulk write operation, signaling end of transmission");
-        this.listener.completed();
+        if (this.sender == null) {
+            this.listener.completed();
+            return;
+        }
+        // After all the pending roots are sent
+        try {
+            this.sender.submit(this.listener::completed).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while completing the bulk write stream", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to complete the bulk write stream", e.getCause());
+        }
+    }
+
+    /**
+     * Completes the bulk write operation without blocking, the end of transmission is signaled
+     * after all the pending roots are sent.
+     *
+     * @return a future completed when the server finishes processing the stream, it is failed
+     *     with the errors that may have occurred during the upload
+     */
+    public CompletableFuture<Void> completedAsync() {
+        LOG.info("Completing bulk write operation asynchronously, signaling end of transmission");
+        CompletableFuture<Void> signaled;
+        try {
+            if (this.sender == null) {
+                this.listener.completed();
+                signaled = CompletableFuture.completedFuture(null);
+            } else {
+                // After all the pending roots are sent
+                signaled = CompletableFuture.runAsync(this.listener::completed, this.sender);
+            }
+        } catch (Throwable t) {
+            signaled = new CompletableFuture<>();
+            signaled.completeExceptionally(t);
+        }
+        return signaled.thenCompose(v -> this.metadataListener.whenCompleted());
     }
 
     /**
@@ -197,7 +500,17 @@ public class BulkWriteService implements AutoCloseable {
     @Override
     public void close() throws Exception {
         LOG.info("Closing BulkWriteService resources");
-        AutoCloseables.close(this.root, this.manager);
+        if (this.sender != null) {
+            ExecutorServiceHelper.shutdownAndAwaitTermination(this.sender);
+        }
+        List<AutoCloseable> closeables = new ArrayList<>(this.roots);
+        for (ArrowDictionaryEncoder encoder : this.dictionaryEncoders) {
+            if (encoder != null) {
+                closeables.add(encoder);
+            }
+        }
+        closeables.add(this.manager);
+        AutoCloseables.close(closeables);
     }
 
     private long nextId() {
@@ -281,6 +594,7 @@ public class BulkWriteService implements AutoCloseable {
     static class AsyncPutListener implements PutListener {
         private final ConcurrentMap<Long, IdentifiableCompletableFuture> futuresInFlight;
         private final CompletableFuture<Void> completed;
+        private final MetadataCodec.Response response = new MetadataCodec.Response();
 
         /**
          * Creates a new AsyncPutListener.
@@ -301,7 +615,8 @@ public class BulkWriteService implements AutoCloseable {
         }
 
         /**
-         * Attaches a future to this listener for tracking.
+         * Attaches a future to this listener for tracking, the timeout of the future is
+         * scheduled by the caller when the request is actually sent.
          *
          * @param id The unique identifier for the request
          * @param future The future to track
@@ -323,7 +638,6 @@ public class BulkWriteService implements AutoCloseable {
                     LOG.debug("Put operation succeeded [id={}], affected rows: {}", id, r);
                 }
             });
-            future.scheduleTimeout();
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Attached future [id={}], current in-flight count: {}", id, this.futuresInFlight.size());
@@ -346,11 +660,18 @@ public class BulkWriteService implements AutoCloseable {
                 LOG.warn("Received PutResult with null metadata");
                 return;
             }
-            String metadataString = ByteString.copyFrom(metadata.nioBuffer()).toStringUtf8();
-            Metadata.ResponseMetadata responseMetadata = Metadata.ResponseMetadata.fromJson(metadataString);
-
-            long requestId = responseMetadata.getRequestId();
-            int affectedRows = responseMetadata.getAffectedRows();
+            long requestId;
+            int affectedRows;
+            // Responses of a stream are delivered one at a time, so the decoded response can be reused
+            if (MetadataCodec.decodeResponse(metadata, this.response)) {
+                requestId = this.response.requestId;
+                affectedRows = this.response.affectedRows;
+            } else {
+                String metadataString = ByteString.copyFrom(metadata.nioBuffer()).toStringUtf8();
+                Metadata.ResponseMetadata responseMetadata = Metadata.ResponseMetadata.fromJson(metadataString);
+                requestId = responseMetadata.getRequestId();
+                affectedRows = responseMetadata.getAffectedRows();
+            }
 
             LOG.debug("Received response [id={}], affected rows: {}", requestId, affectedRows);
 
@@ -374,6 +695,15 @@ public class BulkWriteService implements AutoCloseable {
             this.completed.complete(null);
         }
 
+        /**
+         * Returns the future completed when the server finishes processing the stream.
+         *
+         * @return the future, failed with the error of the stream if any
+         */
+        public CompletableFuture<Void> whenCompleted() {
+            return this.completed;
+        }
+
         @Override
         public boolean isCancelled() {
             return this.completed.isCancelled();
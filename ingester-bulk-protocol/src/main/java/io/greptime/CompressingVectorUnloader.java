@@ -0,0 +1,224 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BufferLayout;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.TypeLayout;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionCodec;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.ipc.message.ArrowFieldNode;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+
+/**
+ * Unloads a {@link VectorSchemaRoot} into a compressed {@link ArrowRecordBatch} like
+ * {@link org.apache.arrow.vector.VectorUnloader}, with the {@link ArrowCompressionOptions}:
+ * the codec is chosen per column, some buffers are left uncompressed, and the large buffers are
+ * compressed in parallel on the executor of the options.
+ *
+ * <p>Not thread-safe, a root is unloaded by one thread at a time.
+ */
+public class CompressingVectorUnloader {
+
+    private final VectorSchemaRoot root;
+    private final CompressionCodec bodyCodec;
+    private final ArrowCompressionOptions options;
+    // Indexed by top-level field, null for the columns left uncompressed
+    private final CompressionCodec[] columnCodecs;
+
+    /**
+     * @param root the root to unload
+     * @param factory the factory of the codecs of the levels
+     * @param codecType the codec of the batch body, it must compress
+     * @param options the compression options
+     */
+    public CompressingVectorUnloader(
+            VectorSchemaRoot root,
+            CompressionCodec.Factory factory,
+            CompressionUtil.CodecType codecType,
+            ArrowCompressionOptions options) {
+        this.root = root;
+        this.options = options;
+        this.bodyCodec = factory.createCodec(codecType, options.getLevel());
+        Map<Integer, CompressionCodec> codecs = new HashMap<>();
+        codecs.put(options.getLevel(), this.bodyCodec);
+        List<FieldVector> vectors = root.getFieldVectors();
+        this.columnCodecs = new CompressionCodec[vectors.size()];
+        for (int i = 0; i < vectors.size(); i++) {
+            int level = options.getLevel(vectors.get(i).getName());
+            if (level != ArrowCompressionOptions.UNCOMPRESSED) {
+                this.columnCodecs[i] = codecs.computeIfAbsent(level, l -> factory.createCodec(codecType, l));
+            }
+        }
+    }
+
+    /**
+     * Unloads the root, the buffers of the batch are owned by the batch.
+     *
+     * @return the record batch
+     */
+    public ArrowRecordBatch getRecordBatch() {
+        List<ArrowFieldNode> nodes = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        List<FieldVector> vectors = this.root.getFieldVectors();
+        for (int i = 0; i < vectors.size(); i++) {
+            appendNodes(vectors.get(i), this.columnCodecs[i], nodes, tasks);
+        }
+
+        ArrowBuf[] buffers = new ArrowBuf[tasks.size()];
+        CompletableFuture<?>[] futures = new CompletableFuture[tasks.size()];
+        Executor executor = this.options.getExecutor();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            int index = i;
+            Runnable run = () -> buffers[index] = task.run();
+            if (executor != null && task.input.readableBytes() >= this.options.getParallelMinBytes()) {
+                try {
+                    futures[i] = CompletableFuture.runAsync(run, executor);
+                    continue;
+                } catch (RejectedExecutionException e) {
+                    // Compresses it on this thread
+                }
+            }
+            futures[i] = runNow(run);
+        }
+
+        // Waits for all the tasks, so nothing is left running if one fails
+        Throwable error = null;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (Throwable t) {
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                if (error == null) {
+                    error = cause;
+                } else {
+                    error.addSuppressed(cause);
+                }
+            }
+        }
+        if (error != null) {
+            for (ArrowBuf buffer : buffers) {
+                if (buffer != null) {
+                    buffer.close();
+                }
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            throw new IllegalStateException("Failed to compress the record batch", error);
+        }
+
+        // The buffers are already retained
+        return new ArrowRecordBatch(
+                this.root.getRowCount(),
+                nodes,
+                Arrays.asList(buffers),
+                CompressionUtil.createBodyCompression(this.bodyCodec),
+                /* alignBuffers */ true,
+                /* retainBuffers */ false);
+    }
+
+    private void appendNodes(
+            FieldVector vector, CompressionCodec codec, List<ArrowFieldNode> nodes, List<Task> tasks) {
+        // We include the null count to be compatible with Flight/C++
+        nodes.add(new ArrowFieldNode(vector.getValueCount(), vector.getNullCount()));
+        List<ArrowBuf> fieldBuffers = vector.getFieldBuffers();
+        List<BufferLayout> layouts =
+                TypeLayout.getTypeLayout(vector.getField().getType()).getBufferLayouts();
+        if (fieldBuffers.size() != layouts.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Wrong number of buffers for field %s in vector %s. found: %s",
+                    vector.getField(), vector.getClass().getSimpleName(), fieldBuffers));
+        }
+        for (int i = 0; i < fieldBuffers.size(); i++) {
+            ArrowBuf buf = fieldBuffers.get(i);
+            CompressionCodec bufferCodec = codec;
+            if (!this.options.isCompressValidity() && layouts.get(i).getType() == BufferLayout.BufferType.VALIDITY) {
+                bufferCodec = null;
+            }
+            if (buf.readableBytes() < this.options.getMinCompressBytes()) {
+                bufferCodec = null;
+            }
+            // The codec releases its input, the vector keeps its own reference
+            buf.getReferenceManager().retain();
+            tasks.add(new Task(vector.getAllocator(), buf, bufferCodec, this.bodyCodec));
+        }
+        for (FieldVector child : vector.getChildrenFromFields()) {
+            appendNodes(child, codec, nodes, tasks);
+        }
+    }
+
+    private static CompletableFuture<Void> runNow(Runnable runnable) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            runnable.run();
+            future.complete(null);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
+    /**
+     * Compresses one buffer, or packs it uncompressed, and releases the input.
+     */
+    private static final class Task {
+        final BufferAllocator allocator;
+        final ArrowBuf input;
+        final CompressionCodec codec;
+        final CompressionCodec bodyCodec;
+
+        Task(BufferAllocator allocator, ArrowBuf input, CompressionCodec codec, CompressionCodec bodyCodec) {
+            this.allocator = allocator;
+            this.input = input;
+            this.codec = codec;
+            this.bodyCodec = bodyCodec;
+        }
+
+        ArrowBuf run() {
+            long length = this.input.writerIndex();
+            if (this.codec == null && length > 0) {
+                try {
+                    long prefix = CompressionUtil.SIZE_OF_UNCOMPRESSED_LENGTH;
+                    ArrowBuf packed = this.allocator.buffer(prefix + length);
+                    packed.setLong(0, CompressionUtil.NO_COMPRESSION_LENGTH);
+                    packed.setBytes(prefix, this.input, 0, length);
+                    packed.writerIndex(prefix + length);
+                    return packed;
+                } finally {
+                    this.input.close();
+                }
+            }
+            // An empty buffer is packed the same way by any codec
+            CompressionCodec codec = this.codec != null ? this.codec : this.bodyCodec;
+            return codec.compress(this.allocator, this.input);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+
+/**
+ * Encodes the request metadata and decodes the response metadata of the bulk write stream
+ * straight from/to Arrow buffers, without Gson reflection nor intermediate strings.
+ *
+ * <p>The request metadata is always {@code {"request_id":N}}. The response metadata is a flat
+ * JSON object, {@code request_id} and {@code affected_rows} are read from it and the other
+ * members are skipped. A response this decoder does not understand (nested values, escaped
+ * keys) is reported as such, the caller falls back to {@link Metadata.ResponseMetadata#fromJson}.
+ */
+final class MetadataCodec {
+
+    private static final byte[] REQUEST_PREFIX = {
+        '{', '"', 'r', 'e', 'q', 'u', 'e', 's', 't', '_', 'i', 'd', '"', ':'
+    };
+    private static final byte[] REQUEST_ID = {'r', 'e', 'q', 'u', 'e', 's', 't', '_', 'i', 'd'};
+    private static final byte[] AFFECTED_ROWS = {'a', 'f', 'f', 'e', 'c', 't', 'e', 'd', '_', 'r', 'o', 'w', 's'};
+
+    /**
+     * Writes the request metadata of the given request id into a new buffer of its exact size.
+     * The buffer is owned by the stream once sent, so it is not reused, but it is filled in place.
+     *
+     * @param allocator the allocator of the buffer
+     * @param requestId the request id
+     * @return the buffer, its readable bytes are the metadata
+     */
+    static ArrowBuf encodeRequest(BufferAllocator allocator, long requestId) {
+        int digits = digits(requestId);
+        int length = REQUEST_PREFIX.length + digits + 1;
+        ArrowBuf buf = allocator.buffer(length);
+        buf.setBytes(0, REQUEST_PREFIX);
+        int end = REQUEST_PREFIX.length + digits;
+        long v = requestId;
+        if (v < 0) {
+            buf.setByte(REQUEST_PREFIX.length, '-');
+        }
+        // Writes the digits backwards, a negative value is handled digit by digit to cover Long.MIN_VALUE
+        int i = end;
+        do {
+            buf.setByte(--i, (int) ('0' + Math.abs(v % 10)));
+            v /= 10;
+        } while (v != 0);
+        buf.setByte(end, '}');
+        buf.readerIndex(0);
+        buf.writerIndex(length);
+        return buf;
+    }
+
+    private static int digits(long v) {
+        int n = v < 0 ? 2 : 1;
+        while ((v /= 10) != 0) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * A decoded response, reused across the responses of a stream.
+     */
+    static final class Response {
+        private final Scanner scanner = new Scanner();
+
+        long requestId;
+        int affectedRows;
+    }
+
+    /**
+     * Decodes the readable bytes of the response metadata.
+     *
+     * @param buf the response metadata
+     * @param into the response to fill, the missing members are set to 0
+     * @return false if the metadata could not be decoded
+     */
+    static boolean decodeResponse(ArrowBuf buf, Response into) {
+        into.requestId = 0;
+        into.affectedRows = 0;
+        Scanner s = into.scanner.reset(buf);
+        if (s.skipWhitespace() != '{') {
+            return false;
+        }
+        s.pos++;
+        if (s.skipWhitespace() == '}') {
+            return true;
+        }
+        while (true) {
+            if (s.skipWhitespace() != '"') {
+                return false;
+            }
+            long keyStart = ++s.pos;
+            long keyEnd = s.findQuote();
+            if (keyEnd < 0) {
+                return false;
+            }
+            s.pos = keyEnd + 1;
+            if (s.skipWhitespace() != ':') {
+                return false;
+            }
+            s.pos++;
+            int c = s.skipWhitespace();
+            if (c < 0) {
+                return false;
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                if (!s.scanNumber()) {
+                    return false;
+                }
+                if (s.matches(keyStart, keyEnd, REQUEST_ID)) {
+                    into.requestId = s.number;
+                } else if (s.matches(keyStart, keyEnd, AFFECTED_ROWS)) {
+                    into.affectedRows = (int) s.number;
+                }
+            } else if (!s.skipValue()) {
+                return false;
+            }
+            c = s.skipWhitespace();
+            s.pos++;
+            if (c == '}') {
+                return true;
+            }
+            if (c != ',') {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes of the buffer without copying them.
+     */
+    private static final class Scanner {
+        ArrowBuf buf;
+        long end;
+        long pos;
+        long number;
+
+        Scanner reset(ArrowBuf buf) {
+            this.buf = buf;
+            this.pos = buf.readerIndex();
+            this.end = buf.writerIndex();
+            return this;
+        }
+
+        /**
+         * @return the next non-whitespace byte, -1 at the end
+         */
+        int skipWhitespace() {
+            while (this.pos < this.end) {
+                byte b = this.buf.getByte(this.pos);
+                if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                    return b;
+                }
+                this.pos++;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the position of the closing quote of a key, -1 if not found or the key is escaped
+         */
+        long findQuote() {
+            for (long i = this.pos; i < this.end; i++) {
+                byte b = this.buf.getByte(i);
+                if (b == '"') {
+                    return i;
+                }
+                if (b == '\\') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        boolean matches(long start, long end, byte[] key) {
+            if (end - start != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (this.buf.getByte(start + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Scans an integer, a fraction or an exponent is not expected.
+         */
+        boolean scanNumber() {
+            boolean negative = false;
+            if (this.buf.getByte(this.pos) == '-') {
+                negative = true;
+                this.pos++;
+            }
+            long v = 0;
+            int digits = 0;
+            while (this.pos < this.end) {
+                byte b = this.buf.getByte(this.pos);
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                v = v * 10 + (b - '0');
+                digits++;
+                this.pos++;
+            }
+            if (digits == 0 || digits > 18) {
+                return false;
+            }
+            if (this.pos < this.end) {
+                byte b = this.buf.getByte(this.pos);
+                if (b == '.' || b == 'e' || b == 'E') {
+                    return false;
+                }
+            }
+            this.number = negative ? -v : v;
+            return true;
+        }
+
+        /**
+         * Skips a string or a literal value, nested values are not supported.
+         */
+        boolean skipValue() {
+            byte b = this.buf.getByte(this.pos);
+            if (b == '"') {
+                for (this.pos++; this.pos < this.end; this.pos++) {
+                    byte c = this.buf.getByte(this.pos);
+                    if (c == '\\') {
+                        this.pos++;
+                    } else if (c == '"') {
+                        this.pos++;
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (b == 't' || b == 'f' || b == 'n') {
+                while (this.pos < this.end) {
+                    byte c = this.buf.getByte(this.pos);
+                    if (c < 'a' || c > 'z') {
+                        break;
+                    }
+                    this.pos++;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -17,8 +17,12 @@
 package org.apache.arrow.flight;
 
 import com.codahale.metrics.Timer;
+import io.greptime.ArrowCompressionOptions;
 import io.greptime.ArrowCompressionType;
+import io.greptime.CompressingVectorUnloader;
+import io.greptime.common.Endpoint;
 import io.greptime.common.util.MetricsUtil;
+import io.greptime.rpc.RpcOptions;
 import io.greptime.rpc.TlsOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
@@ -32,13 +36,22 @@ import io.grpc.netty.NettyChannelBuilder;
 import io.grpc.stub.ClientCallStreamObserver;
 import io.grpc.stub.ClientCalls;
 import io.grpc.stub.ClientResponseObserver;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BooleanSupplier;
 import javax.net.ssl.SSLException;
 import org.apache.arrow.compression.CommonsCompressionFactory;
@@ -48,6 +61,7 @@ import org.apache.arrow.flight.grpc.StatusUtils;
 import org.apache.arrow.flight.impl.Flight;
 import org.apache.arrow.flight.impl.FlightServiceGrpc;
 import org.apache.arrow.flight.impl.FlightServiceGrpc.FlightServiceStub;
+import org.apache.arrow.memory.ArrowBuf;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.util.Preconditions;
 import org.apache.arrow.vector.VectorSchemaRoot;
@@ -55,6 +69,7 @@ import org.apache.arrow.vector.VectorUnloader;
 import org.apache.arrow.vector.compression.CompressionCodec;
 import org.apache.arrow.vector.dictionary.DictionaryProvider;
 import org.apache.arrow.vector.dictionary.DictionaryProvider.MapDictionaryProvider;
+import org.apache.arrow.vector.ipc.message.ArrowDictionaryBatch;
 import org.apache.arrow.vector.ipc.message.IpcOption;
 
 /**
@@ -197,28 +212,70 @@ public class BulkFlightClient implements AutoCloseable {
     private static class OnStreamReadyHandler implements Runnable {
         private final int maxRequestsInFlight;
         private final Semaphore semaphore;
+        // Completed by the next `onReady` of the stream
+        private final Queue<CompletableFuture<Void>> readyWaiters = new ConcurrentLinkedQueue<>();
+        // The error the waiters are completed with once the stream is terminated
+        private volatile Throwable terminated;
 
         OnStreamReadyHandler(int maxRequestsInFlight) {
             this.maxRequestsInFlight = maxRequestsInFlight;
-            this.semaphore = new Semaphore(maxRequestsInFlight);
+            // No permit before the first `onReady`: until the call is started on a transport, gRPC holds
+            // the messages and serializes them later, after their buffers are released
+            this.semaphore = new Semaphore(0);
         }
 
         @Override
         public void run() {
             this.semaphore.release(this.maxRequestsInFlight);
+            completeWaiters();
         }
 
         /**
-         * Awaits for the stream to be ready for writing. Since the {@link #run()} method is not guaranteed
-         * to be called in all circumstances, a timeout is always used to prevent indefinite blocking.
+         * Tries to take one of the permits released by the last {@link #run()}, they allow some
+         * in-flight requests to be sent even if the stream is not ready.
          *
-         * @param timeout The timeout to wait for the stream to be ready.
-         * @param unit The unit of the timeout.
-         * @return True if the stream is ready, false if the timeout is reached.
-         * @throws InterruptedException If the current thread is interrupted while waiting.
+         * @return true if a permit is taken
          */
-        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
-            return this.semaphore.tryAcquire(timeout, unit);
+        public boolean tryAcquire() {
+            return this.semaphore.tryAcquire();
+        }
+
+        /**
+         * Returns a future completed by the next {@link #run()}, or failed once the stream is terminated.
+         *
+         * @param isReady checks whether the stream became ready before the future is registered
+         * @return the future
+         */
+        public CompletableFuture<Void> whenReady(BooleanSupplier isReady) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            this.readyWaiters.add(future);
+            // The stream may have become ready, or terminated, before the future is registered
+            if (this.terminated != null || isReady.getAsBoolean()) {
+                completeWaiters();
+            }
+            return future;
+        }
+
+        /**
+         * Fails the pending and the future waiters, the stream will never be ready again.
+         *
+         * @param cause the cause
+         */
+        public void terminate(Throwable cause) {
+            this.terminated = cause;
+            completeWaiters();
+        }
+
+        private void completeWaiters() {
+            CompletableFuture<Void> waiter;
+            while ((waiter = this.readyWaiters.poll()) != null) {
+                Throwable cause = this.terminated;
+                if (cause != null) {
+                    waiter.completeExceptionally(cause);
+                } else {
+                    waiter.complete(null);
+                }
+            }
         }
     }
 
@@ -249,12 +306,21 @@ public class BulkFlightClient implements AutoCloseable {
 
         @Override
         public void onError(Throwable t) {
-            this.listener.onError(StatusUtils.fromThrowable(t));
+            FlightRuntimeException error = StatusUtils.fromThrowable(t);
+            try {
+                this.listener.onError(error);
+            } finally {
+                this.onStreamReadyHandler.terminate(error);
+            }
         }
 
         @Override
         public void onCompleted() {
-            this.listener.onCompleted();
+            try {
+                this.listener.onCompleted();
+            } finally {
+                this.onStreamReadyHandler.terminate(new IllegalStateException("The stream has been completed"));
+            }
         }
 
         @Override
@@ -267,12 +333,22 @@ public class BulkFlightClient implements AutoCloseable {
      * The implementation of a {@link ClientStreamListener} for writing data to a Flight server.
      */
     static class PutObserver extends OutboundStreamListenerImpl implements ClientStreamListener {
+        // Only guards against a missed `onReady`, the waiting is woken up by `onReady`
+        private static final long READY_WAIT_TIMEOUT_MS = 100;
+
         private final FlightDescriptor descriptor;
         private final BooleanSupplier isCancelled;
         private final BooleanSupplier isCompletedExceptionally;
         private final Runnable getResult;
         private final OnStreamReadyHandler onStreamReadyHandler;
         private final ArrowCompressionType compressionType;
+        // The unloaders of the roots sent by `putNext(VectorSchemaRoot, ArrowBuf)`, the roots are
+        // only sent by one thread at a time
+        private final Map<VectorSchemaRoot, VectorUnloader> unloaders = new IdentityHashMap<>();
+        private CompressionCodec codec;
+        // Null to compress the batches with the `VectorUnloader`s
+        private volatile ArrowCompressionOptions compressionOptions;
+        private final Map<VectorSchemaRoot, CompressingVectorUnloader> compressingUnloaders = new IdentityHashMap<>();
 
         /**
          * Create a new client stream listener.
@@ -335,8 +411,69 @@ public class BulkFlightClient implements AutoCloseable {
                 default:
                     break;
             }
+            this.codec = codec;
+            super.unloader = newUnloader(root);
+            this.unloaders.put(root, super.unloader);
+        }
+
+        @Override
+        public void setCompressionOptions(ArrowCompressionOptions compressionOptions) {
+            this.compressionOptions = compressionOptions;
+        }
+
+        @Override
+        public void putNext(VectorSchemaRoot root, ArrowBuf metadata) {
+            ArrowCompressionOptions compressionOptions = this.compressionOptions;
+            if (this.codec != null && compressionOptions != null) {
+                CompressingVectorUnloader unloader = this.compressingUnloaders.computeIfAbsent(
+                        root,
+                        r -> new CompressingVectorUnloader(
+                                r, CommonsCompressionFactory.INSTANCE, this.codec.getCodecType(), compressionOptions));
+                putNext(unloader, metadata);
+                return;
+            }
+            VectorUnloader unloader = this.unloaders.get(root);
+            if (unloader == null) {
+                unloader = newUnloader(root);
+                this.unloaders.put(root, unloader);
+            }
+            super.unloader = unloader;
+            putNext(metadata);
+        }
+
+        @Override
+        public void putDictionary(long id, VectorSchemaRoot entries, boolean isDelta) {
+            waitUntilStreamReady();
+            VectorUnloader unloader = newUnloader(entries);
+            try (ArrowDictionaryBatch batch = new ArrowDictionaryBatch(id, unloader.getRecordBatch(), isDelta)) {
+                // The message retains the buffers it sends
+                super.responseObserver.onNext(new ArrowMessage(batch, super.option));
+            }
+        }
+
+        private void putNext(CompressingVectorUnloader unloader, ArrowBuf metadata) {
+            waitUntilStreamReady();
+            // Like `OutboundStreamListenerImpl#putNext(ArrowBuf)`, closing the message is a no-op once
+            // it is written to gRPC, otherwise it frees the buffers
+            try (ArrowMessage message =
+                    new ArrowMessage(unloader.getRecordBatch(), metadata, super.tryZeroCopy, super.option)) {
+                super.responseObserver.onNext(message);
+            } catch (Exception e) {
+                throw StatusUtils.fromThrowable(e);
+            }
+        }
+
+        private VectorUnloader newUnloader(VectorSchemaRoot root) {
             // We include the null count and align buffers to be compatible with Flight/C++
-            super.unloader = new VectorUnloader(root, /* includeNullCount */ true, codec, /* alignBuffers */ true);
+            return new VectorUnloader(root, /* includeNullCount */ true, this.codec, /* alignBuffers */ true);
+        }
+
+        @Override
+        public CompletableFuture<Void> whenReady() {
+            if (super.responseObserver.isReady()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return this.onStreamReadyHandler.whenReady(super.responseObserver::isReady);
         }
 
         @Override
@@ -352,13 +489,19 @@ public class BulkFlightClient implements AutoCloseable {
                         getResult();
                     }
 
-                    // If the stream is not ready, wait for a short time to avoid busy waiting
-                    // This helps reduce CPU usage while still being responsive
+                    if (this.onStreamReadyHandler.tryAcquire()) {
+                        // Allow some in-flight requests to be sent
+                        break;
+                    }
+
                     try {
-                        if (this.onStreamReadyHandler.await(10, TimeUnit.MILLISECONDS)) {
-                            // Allow some in-flight requests to be sent
-                            break;
-                        }
+                        whenReady().get(READY_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException ignored) {
+                        // Checks the stream again
+                    } catch (ExecutionException e) {
+                        // Will throw the error of the call if any
+                        getResult();
+                        throw new IllegalStateException("The stream is terminated", e.getCause());
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                         throw new RuntimeException("Interrupted while waiting for stream to be ready", e);
@@ -380,6 +523,40 @@ public class BulkFlightClient implements AutoCloseable {
      */
     public interface ClientStreamListener extends OutboundStreamListener {
 
+        /**
+         * Sends the data of another root with the same schema as the one the stream is started with,
+         * this allows to fill one root while another is being sent.
+         *
+         * @param root the root to send
+         * @param metadata the application metadata, the ownership is transferred to the stream
+         */
+        void putNext(VectorSchemaRoot root, ArrowBuf metadata);
+
+        /**
+         * Sends a dictionary batch, it must precede the record batches that use its entries.
+         *
+         * @param id the dictionary id
+         * @param entries the dictionary entries in a single-vector root, the caller keeps the ownership
+         * @param isDelta true to append the entries to the dictionary, false to replace it
+         */
+        void putDictionary(long id, VectorSchemaRoot entries, boolean isDelta);
+
+        /**
+         * Sets the compression options of the record batches, they apply when the stream is
+         * compressed. It must be set before the first batch is sent.
+         *
+         * @param compressionOptions the compression options, null for the default compression
+         */
+        void setCompressionOptions(ArrowCompressionOptions compressionOptions);
+
+        /**
+         * Returns a future that is completed when the stream is ready to send, driven by the
+         * {@code onReady} notification of the gRPC stream. It fails once the stream is terminated.
+         *
+         * @return a future completed when the stream is ready
+         */
+        CompletableFuture<Void> whenReady();
+
         /**
          * Wait for the stream to finish on the server side. You must call this to be notified of any errors that may have
          * happened during the upload.
@@ -465,6 +642,7 @@ public class BulkFlightClient implements AutoCloseable {
         private List<FlightClientMiddleware.Factory> middleware = new ArrayList<>();
         private ArrowCompressionType compressionType = ArrowCompressionType.None;
         private TlsOptions tlsOptions;
+        private ManagedChannel channel;
 
         private Builder() {}
 
@@ -505,10 +683,23 @@ public class BulkFlightClient implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Use an existing channel instead of creating one, the client shuts it down when closed.
+         * The location and TLS options are ignored.
+         */
+        public Builder channel(ManagedChannel channel) {
+            this.channel = Preconditions.checkNotNull(channel);
+            return this;
+        }
+
         /**
          * Create the client from this builder.
          */
         public BulkFlightClient build() {
+            if (this.channel != null) {
+                return new BulkFlightClient(this.allocator, this.channel, this.middleware, this.compressionType);
+            }
+
             NettyChannelBuilder builder;
 
             switch (this.location.getUri().getScheme()) {
@@ -524,27 +715,7 @@ public class BulkFlightClient implements AutoCloseable {
             }
 
             if (this.tlsOptions != null) {
-                builder.useTransportSecurity();
-                try {
-                    SslContextBuilder sslContextBuilder = GrpcSslContexts.forClient();
-                    Optional<File> clientCertChain = this.tlsOptions.getClientCertChain();
-                    Optional<File> privateKey = this.tlsOptions.getPrivateKey();
-                    Optional<String> privateKeyPassword = this.tlsOptions.getPrivateKeyPassword();
-
-                    if (clientCertChain.isPresent() && privateKey.isPresent()) {
-                        if (privateKeyPassword.isPresent()) {
-                            sslContextBuilder.keyManager(
-                                    clientCertChain.get(), privateKey.get(), privateKeyPassword.get());
-                        } else {
-                            sslContextBuilder.keyManager(clientCertChain.get(), privateKey.get());
-                        }
-                    }
-
-                    this.tlsOptions.getRootCerts().ifPresent(sslContextBuilder::trustManager);
-                    builder.sslContext(sslContextBuilder.build());
-                } catch (SSLException e) {
-                    throw new RuntimeException("Failed to configure SslContext", e);
-                }
+                builder.useTransportSecurity().sslContext(newSslContext(this.tlsOptions));
             } else {
                 builder.usePlaintext();
             }
@@ -554,6 +725,58 @@ public class BulkFlightClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Creates a channel on the unshaded Netty transport with the transport options of the rpc
+     * options. The zero-copy writes of the Flight messages only work on this transport.
+     *
+     * @param endpoint the server endpoint
+     * @param opts the rpc options
+     * @return a new channel, without interceptors and executor
+     */
+    public static ManagedChannel newChannel(Endpoint endpoint, RpcOptions opts) {
+        NettyChannelBuilder builder = NettyChannelBuilder.forAddress(endpoint.getAddr(), endpoint.getPort());
+
+        TlsOptions tlsOptions = opts.getTlsOptions();
+        if (tlsOptions != null) {
+            builder.useTransportSecurity().sslContext(newSslContext(tlsOptions));
+        } else {
+            builder.usePlaintext();
+        }
+
+        return builder.maxTraceEvents(MAX_CHANNEL_TRACE_EVENTS)
+                .maxInboundMessageSize(opts.getMaxInboundMessageSize())
+                .flowControlWindow(opts.getFlowControlWindow())
+                .idleTimeout(opts.getIdleTimeoutSeconds(), TimeUnit.SECONDS)
+                .keepAliveTime(opts.getKeepAliveTimeSeconds(), TimeUnit.SECONDS)
+                .keepAliveTimeout(opts.getKeepAliveTimeoutSeconds(), TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(opts.isKeepAliveWithoutCalls())
+                .withOption(ChannelOption.SO_REUSEADDR, true)
+                .withOption(ChannelOption.TCP_NODELAY, true)
+                .build();
+    }
+
+    private static SslContext newSslContext(TlsOptions tlsOptions) {
+        try {
+            SslContextBuilder sslContextBuilder = GrpcSslContexts.forClient();
+            Optional<File> clientCertChain = tlsOptions.getClientCertChain();
+            Optional<File> privateKey = tlsOptions.getPrivateKey();
+            Optional<String> privateKeyPassword = tlsOptions.getPrivateKeyPassword();
+
+            if (clientCertChain.isPresent() && privateKey.isPresent()) {
+                if (privateKeyPassword.isPresent()) {
+                    sslContextBuilder.keyManager(clientCertChain.get(), privateKey.get(), privateKeyPassword.get());
+                } else {
+                    sslContextBuilder.keyManager(clientCertChain.get(), privateKey.get());
+                }
+            }
+
+            tlsOptions.getRootCerts().ifPresent(sslContextBuilder::trustManager);
+            return sslContextBuilder.build();
+        } catch (SSLException e) {
+            throw new RuntimeException("Failed to configure SslContext", e);
+        }
+    }
+
     /**
      * Helper method to create a call from the asyncStub, method descriptor, and list of calling options.
      */
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.common.Endpoint;
+import io.greptime.common.MemoryGovernor;
+import io.greptime.rpc.RpcOptions;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.flight.NoOpFlightProducer;
+import org.apache.arrow.flight.PutResult;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class BulkWriteManagerTest {
+
+    private static final Schema SCHEMA =
+            new Schema(Collections.singletonList(Field.nullable("v", new ArrowType.Int(64, true))));
+    private static final Pattern REQUEST_ID = Pattern.compile("\"request_id\":(\\d+)");
+
+    private BufferAllocator serverAllocator;
+    private FlightServer server;
+
+    @Before
+    public void before() throws Exception {
+        this.serverAllocator = new RootAllocator(Long.MAX_VALUE);
+        this.server = FlightServer.builder(
+                        this.serverAllocator, Location.forGrpcInsecure("127.0.0.1", 0), new AckProducer())
+                .build()
+                .start();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.server.close();
+        this.serverAllocator.close();
+    }
+
+    @Test
+    public void testGovernedAllocatorKeepsRootListener() {
+        MemoryGovernor memoryGovernor = new MemoryGovernor(Long.MAX_VALUE);
+        BufferAllocator rootAllocator = BulkWriteManager.getRootAllocator();
+        long before = BulkWriteManager.FlightAllocationListener.ALLOCATION_BYTES.getCount();
+        try (BufferAllocator allocator = rootAllocator.newChildAllocator(
+                        "governed",
+                        new BulkWriteManager.GovernedAllocationListener(memoryGovernor, rootAllocator.getListener()),
+                        0,
+                        Long.MAX_VALUE);
+                ArrowBuf buf = allocator.buffer(1024)) {
+            long allocated = buf.getReferenceManager().getAccountedSize();
+            Assert.assertEquals(allocated, memoryGovernor.used());
+            Assert.assertEquals(
+                    before + allocated, BulkWriteManager.FlightAllocationListener.ALLOCATION_BYTES.getCount());
+        }
+        Assert.assertEquals(0, memoryGovernor.used());
+        Assert.assertEquals(before, BulkWriteManager.FlightAllocationListener.ALLOCATION_BYTES.getCount());
+    }
+
+    @Test
+    public void testZeroCopyWriteOnSharedChannel() throws Exception {
+        Endpoint endpoint = Endpoint.of("127.0.0.1", this.server.getPort());
+        BulkWriteManager manager = BulkWriteManager.create(
+                endpoint, 0, Long.MAX_VALUE, ArrowCompressionType.None, RpcOptions.newDefault());
+        try (BulkWriteService service = manager.intoBulkWriteStream("t", SCHEMA, 10_000, 8)) {
+            service.start();
+            service.tryUseZeroCopyWrite();
+
+            for (int batch = 1; batch <= 3; batch++) {
+                VectorSchemaRoot root = service.getRoot();
+                BigIntVector vector = (BigIntVector) root.getVector(0);
+                int rows = batch * 1000;
+                vector.allocateNew(rows);
+                for (int i = 0; i < rows; i++) {
+                    vector.set(i, i);
+                }
+                root.setRowCount(rows);
+
+                int affectedRows = service.putNext().future().get(10, TimeUnit.SECONDS);
+                Assert.assertEquals(rows, affectedRows);
+            }
+
+            service.completed();
+            service.waitServerCompleted();
+        }
+    }
+
+    /**
+     * Acks each record batch with its row count.
+     */
+    private final class AckProducer extends NoOpFlightProducer {
+
+        @Override
+        public Runnable acceptPut(CallContext context, FlightStream stream, StreamListener<PutResult> ackStream) {
+            return () -> {
+                while (stream.next()) {
+                    ArrowBuf metadata = stream.getLatestMetadata();
+                    byte[] bytes = new byte[(int) metadata.readableBytes()];
+                    metadata.getBytes(metadata.readerIndex(), bytes);
+                    Matcher m = REQUEST_ID.matcher(new String(bytes, StandardCharsets.UTF_8));
+                    Assert.assertTrue(m.find());
+                    byte[] response = String.format(
+                                    "{\"request_id\":%s,\"affected_rows\":%d}",
+                                    m.group(1), stream.getRoot().getRowCount())
+                            .getBytes(StandardCharsets.UTF_8);
+                    try (ArrowBuf buf = serverAllocator.buffer(response.length)) {
+                        buf.writeBytes(response);
+                        ackStream.onNext(PutResult.metadata(buf));
+                    }
+                }
+                ackStream.onCompleted();
+            };
+        }
+    }
+}
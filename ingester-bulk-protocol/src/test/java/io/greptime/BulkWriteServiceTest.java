@@ -0,0 +1,270 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.arrow.flight.BulkFlightClient.ClientStreamListener;
+import org.apache.arrow.flight.BulkFlightClient.PutListener;
+import org.apache.arrow.flight.CallOption;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+/**
+ *
+ */
+public class BulkWriteServiceTest {
+
+    private static final Schema SCHEMA =
+            new Schema(Collections.singletonList(Field.nullable("v", new ArrowType.Int(32, true))));
+
+    private BufferAllocator allocator;
+    private ExecutorService executor;
+    private BulkWriteManager manager;
+    private ClientStreamListener listener;
+    private PutListener putListener;
+    // The row count and the thread of each sent root
+    private List<Integer> sentRows;
+    private List<String> sentThreads;
+    private CountDownLatch sendGate;
+
+    @Before
+    public void before() {
+        this.allocator = new RootAllocator(Long.MAX_VALUE);
+        this.executor = Executors.newCachedThreadPool();
+        this.sentRows = new CopyOnWriteArrayList<>();
+        this.sentThreads = new CopyOnWriteArrayList<>();
+        this.sendGate = new CountDownLatch(0);
+        this.listener = Mockito.mock(ClientStreamListener.class);
+        Mockito.doAnswer(invocation -> {
+                    VectorSchemaRoot root = (VectorSchemaRoot) invocation.getArguments()[0];
+                    // The ownership of the metadata goes to the stream
+                    ((ArrowBuf) invocation.getArguments()[1]).close();
+                    this.sentRows.add(root.getRowCount());
+                    this.sentThreads.add(Thread.currentThread().getName());
+                    this.sendGate.await();
+                    return null;
+                })
+                .when(this.listener)
+                .putNext(Mockito.any(VectorSchemaRoot.class), Mockito.any(ArrowBuf.class));
+
+        this.manager = Mockito.mock(BulkWriteManager.class);
+        Mockito.when(this.manager.createSchemaRoot(Mockito.any(Schema.class)))
+                .thenAnswer(invocation -> VectorSchemaRoot.create(SCHEMA, this.allocator));
+        Mockito.when(this.manager.startPut(
+                        Mockito.any(FlightDescriptor.class),
+                        Mockito.any(PutListener.class),
+                        Mockito.anyLong(),
+                        Mockito.<CallOption>anyVararg()))
+                .thenAnswer(invocation -> {
+                    this.putListener = (PutListener) invocation.getArguments()[1];
+                    return this.listener;
+                });
+    }
+
+    @After
+    public void after() {
+        this.executor.shutdownNow();
+        this.allocator.close();
+    }
+
+    private BulkWriteService newService(int rootRingSize, long timeoutMs) {
+        return new BulkWriteService(
+                this.manager, this.allocator, SCHEMA, FlightDescriptor.path("t"), timeoutMs, 8, rootRingSize);
+    }
+
+    private static VectorSchemaRoot fill(VectorSchemaRoot root, int rows) {
+        root.allocateNew();
+        root.setRowCount(rows);
+        return root;
+    }
+
+    @Test
+    public void testRingRecyclesRoots() throws Exception {
+        try (BulkWriteService service = newService(2, 60_000)) {
+            this.sendGate = new CountDownLatch(1);
+            VectorSchemaRoot r1 = service.nextRoot();
+            VectorSchemaRoot r2 = service.nextRoot();
+            Assert.assertNotSame(r1, r2);
+
+            service.putNext(fill(r1, 1));
+            service.putNext(fill(r2, 2));
+
+            // Both roots are held by the sender
+            Future<VectorSchemaRoot> next = this.executor.submit(service::nextRoot);
+            try {
+                next.get(200, TimeUnit.MILLISECONDS);
+                Assert.fail("no free root");
+            } catch (TimeoutException ignored) {
+                // expected
+            }
+
+            this.sendGate.countDown();
+            VectorSchemaRoot recycled = next.get(5, TimeUnit.SECONDS);
+            Assert.assertSame(r1, recycled);
+            // Cleared after it is sent
+            Assert.assertEquals(0, recycled.getRowCount());
+            Assert.assertSame(r2, service.nextRoot());
+        }
+    }
+
+    @Test
+    public void testSendInOrderOnSender() throws Exception {
+        try (BulkWriteService service = newService(3, 60_000)) {
+            for (int i = 1; i <= 10; i++) {
+                service.putNext(fill(service.nextRoot(), i));
+            }
+
+            // Returns after the pending roots are sent
+            service.completed();
+            Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), this.sentRows);
+            for (String thread : this.sentThreads) {
+                Assert.assertTrue(thread, thread.contains("bulk_write_sender"));
+            }
+        }
+    }
+
+    @Test
+    public void testCompletedAfterPendingRoots() throws Exception {
+        try (BulkWriteService service = newService(2, 60_000)) {
+            this.sendGate = new CountDownLatch(1);
+            service.putNext(fill(service.nextRoot(), 1));
+            service.putNext(fill(service.nextRoot(), 2));
+
+            Future<?> completed = this.executor.submit(service::completed);
+            Thread.sleep(200);
+            Assert.assertFalse(completed.isDone());
+            Mockito.verify(this.listener, Mockito.never()).completed();
+
+            this.sendGate.countDown();
+            completed.get(5, TimeUnit.SECONDS);
+
+            InOrder inOrder = Mockito.inOrder(this.listener);
+            inOrder.verify(this.listener, Mockito.times(2))
+                    .putNext(Mockito.any(VectorSchemaRoot.class), Mockito.any(ArrowBuf.class));
+            inOrder.verify(this.listener).completed();
+            Assert.assertEquals(Arrays.asList(1, 2), this.sentRows);
+        }
+    }
+
+    @Test
+    public void testCompletedAsyncAfterPendingRoots() throws Exception {
+        try (BulkWriteService service = newService(2, 60_000)) {
+            this.sendGate = new CountDownLatch(1);
+            service.putNext(fill(service.nextRoot(), 1));
+
+            CompletableFuture<Void> completed = service.completedAsync();
+            Thread.sleep(200);
+            Mockito.verify(this.listener, Mockito.never()).completed();
+
+            this.sendGate.countDown();
+            Mockito.verify(this.listener, Mockito.timeout(5000)).completed();
+            // Done when the server completes the stream
+            Assert.assertFalse(completed.isDone());
+            this.putListener.onCompleted();
+            completed.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testRejectedReturnsRoot() throws Exception {
+        BulkWriteService service = newService(2, 60_000);
+        VectorSchemaRoot root = fill(service.nextRoot(), 3);
+        // Shuts the sender down
+        service.close();
+
+        BulkWriteService.PutStage stage = service.putNext(root);
+        try {
+            stage.future().get(5, TimeUnit.SECONDS);
+            Assert.fail("the sender is shut down");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        Mockito.verify(this.listener, Mockito.never())
+                .putNext(Mockito.any(VectorSchemaRoot.class), Mockito.any(ArrowBuf.class));
+        // Back to the ring, cleared
+        Assert.assertEquals(0, root.getRowCount());
+        Future<VectorSchemaRoot> next = this.executor.submit(service::nextRoot);
+        Assert.assertNotNull(next.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReleaseRootReturnsToRing() throws Exception {
+        try (BulkWriteService service = newService(2, 60_000)) {
+            VectorSchemaRoot r1 = fill(service.nextRoot(), 3);
+            VectorSchemaRoot r2 = service.nextRoot();
+            service.releaseRoot(r1);
+
+            // Not sent, back to the ring, cleared
+            Future<VectorSchemaRoot> next = this.executor.submit(service::nextRoot);
+            Assert.assertSame(r1, next.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, r1.getRowCount());
+            Mockito.verify(this.listener, Mockito.never())
+                    .putNext(Mockito.any(VectorSchemaRoot.class), Mockito.any(ArrowBuf.class));
+            service.releaseRoot(r2);
+        }
+    }
+
+    @Test
+    public void testTimeoutStartsOnSend() throws Exception {
+        try (BulkWriteService service = newService(2, 300)) {
+            this.sendGate = new CountDownLatch(1);
+            BulkWriteService.PutStage first = service.putNext(fill(service.nextRoot(), 1));
+            BulkWriteService.PutStage second = service.putNext(fill(service.nextRoot(), 2));
+
+            // The first is sent and times out while the second waits in the ring
+            Thread.sleep(600);
+            Assert.assertTrue(first.future().isCompletedExceptionally());
+            Assert.assertFalse(second.future().isDone());
+
+            this.sendGate.countDown();
+            Mockito.verify(this.listener, Mockito.timeout(5000).times(2))
+                    .putNext(Mockito.any(VectorSchemaRoot.class), Mockito.any(ArrowBuf.class));
+            // The deadline of the second counts from its send
+            Assert.assertFalse(second.future().isDone());
+            try {
+                second.future().get(5, TimeUnit.SECONDS);
+                Assert.fail("no response");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class CompressingVectorUnloaderTest {
+
+    private static final int ROWS = 10000;
+
+    private BufferAllocator allocator;
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        this.allocator = new RootAllocator(Long.MAX_VALUE);
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() {
+        this.executor.shutdownNow();
+        this.allocator.close();
+    }
+
+    @Test
+    public void testColumnPolicyAndParallelCompression() {
+        ArrowCompressionOptions options = ArrowCompressionOptions.newBuilder()
+                .uncompressed("ts")
+                .columnLevel("msg", 9)
+                .compressValidity(false)
+                .executor(this.executor)
+                .parallelMinBytes(1024)
+                .build();
+
+        try (VectorSchemaRoot root = newRoot();
+                VectorSchemaRoot loaded = newRoot()) {
+            fill(root);
+            CompressingVectorUnloader unloader = new CompressingVectorUnloader(
+                    root, CommonsCompressionFactory.INSTANCE, CompressionUtil.CodecType.ZSTD, options);
+
+            for (int i = 0; i < 3; i++) {
+                try (ArrowRecordBatch batch = unloader.getRecordBatch()) {
+                    // ts: validity, data; msg: validity, offsets, data
+                    Assert.assertEquals(5, batch.getBuffers().size());
+                    assertUncompressed(batch.getBuffers().get(0));
+                    assertUncompressed(batch.getBuffers().get(1));
+                    assertUncompressed(batch.getBuffers().get(2));
+                    assertCompressed(batch.getBuffers().get(4));
+
+                    new VectorLoader(loaded, CommonsCompressionFactory.INSTANCE).load(batch);
+                    Assert.assertEquals(ROWS, loaded.getRowCount());
+                    for (int row = 0; row < ROWS; row += 997) {
+                        Assert.assertEquals(
+                                ((BigIntVector) root.getVector("ts")).get(row),
+                                ((BigIntVector) loaded.getVector("ts")).get(row));
+                        Assert.assertArrayEquals(
+                                ((VarCharVector) root.getVector("msg")).get(row),
+                                ((VarCharVector) loaded.getVector("msg")).get(row));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertUncompressed(ArrowBuf buf) {
+        Assert.assertEquals(CompressionUtil.NO_COMPRESSION_LENGTH, buf.getLong(0));
+    }
+
+    private static void assertCompressed(ArrowBuf buf) {
+        long uncompressedLength = buf.getLong(0);
+        Assert.assertTrue(uncompressedLength > 0);
+        Assert.assertTrue(buf.writerIndex() - CompressionUtil.SIZE_OF_UNCOMPRESSED_LENGTH < uncompressedLength);
+    }
+
+    private VectorSchemaRoot newRoot() {
+        return new VectorSchemaRoot(Arrays.asList(
+                new BigIntVector("ts", this.allocator), new VarCharVector("msg", this.allocator)));
+    }
+
+    private static void fill(VectorSchemaRoot root) {
+        BigIntVector ts = (BigIntVector) root.getVector("ts");
+        VarCharVector msg = (VarCharVector) root.getVector("msg");
+        ts.allocateNew(ROWS);
+        msg.allocateNew(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ts.set(i, 1700000000000L + i);
+            msg.setSafe(i, ("GET /api/v1/items/" + (i % 50) + " 200").getBytes(StandardCharsets.UTF_8));
+        }
+        root.setRowCount(ROWS);
+    }
+}
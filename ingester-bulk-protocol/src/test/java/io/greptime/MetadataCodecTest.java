@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import java.nio.charset.StandardCharsets;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class MetadataCodecTest {
+
+    private BufferAllocator allocator;
+
+    @Before
+    public void before() {
+        this.allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @After
+    public void after() {
+        this.allocator.close();
+    }
+
+    @Test
+    public void testEncodeRequest() {
+        for (long id : new long[] {0, 7, 10, 1234567890123L, -42, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            try (ArrowBuf buf = MetadataCodec.encodeRequest(this.allocator, id)) {
+                byte[] bytes = new byte[(int) buf.readableBytes()];
+                buf.getBytes(buf.readerIndex(), bytes);
+                Assert.assertArrayEquals(new Metadata.RequestMetadata(id).toJsonBytesUtf8(), bytes);
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeResponse() {
+        MetadataCodec.Response response = new MetadataCodec.Response();
+        Assert.assertTrue(decode("{\"request_id\":12,\"affected_rows\":1024}", response));
+        Assert.assertEquals(12, response.requestId);
+        Assert.assertEquals(1024, response.affectedRows);
+
+        Assert.assertTrue(decode(" { \"affected_rows\" : 3 , \"msg\" : \"o\\\"k\", \"x\": null, \"request_id\": 9 } ", response));
+        Assert.assertEquals(9, response.requestId);
+        Assert.assertEquals(3, response.affectedRows);
+
+        Assert.assertTrue(decode("{}", response));
+        Assert.assertEquals(0, response.requestId);
+        Assert.assertEquals(0, response.affectedRows);
+    }
+
+    @Test
+    public void testDecodeResponseUnsupported() {
+        MetadataCodec.Response response = new MetadataCodec.Response();
+        Assert.assertFalse(decode("{\"request_id\":1,\"extra\":{\"a\":1}}", response));
+        Assert.assertFalse(decode("{\"request_id\":1.5}", response));
+        Assert.assertFalse(decode("{\"request_id\":1", response));
+        Assert.assertFalse(decode("[]", response));
+        Assert.assertFalse(decode("", response));
+    }
+
+    private boolean decode(String json, MetadataCodec.Response response) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        try (ArrowBuf buf = this.allocator.buffer(Math.max(bytes.length, 1))) {
+            buf.writeBytes(bytes);
+            return MetadataCodec.decodeResponse(buf, response);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.common;
+
+import com.codahale.metrics.Counter;
+import io.greptime.common.util.Ensures;
+import io.greptime.common.util.MetricsUtil;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A memory budget shared by all the writers of a client: the buffered row tables, the in-flight
+ * requests and the Arrow allocators of the bulk writers reserve against it.
+ *
+ * <p>The producers get backpressure before the budget is exceeded, either by blocking
+ * ({@link #reserve(long, long, TimeUnit)}, {@link #awaitAvailable(long, TimeUnit)}) or
+ * asynchronously ({@link #reserveAsync(long)}, {@link #whenAvailable()}). The waiters are served
+ * in order. The memory that can not wait, such as an Arrow allocation in progress, is accounted
+ * by {@link #forceReserve(long)} and may exceed the budget, the producers then wait until it is
+ * released.
+ *
+ * <p>Like the in-flight limiters, a reservation larger than the whole budget is granted when
+ * nothing is reserved, so it can not wait forever.
+ */
+public class MemoryGovernor {
+
+    private static final Counter USED_BYTES = MetricsUtil.counter("memory_governor_used_bytes");
+
+    private final long limit;
+    // Guarded by `this`
+    private long used;
+    // Guarded by `this`, in arrival order
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    /**
+     * @param limit the budget in bytes
+     */
+    public MemoryGovernor(long limit) {
+        Ensures.ensure(limit > 0, "`limit` must be positive: %d", limit);
+        this.limit = limit;
+    }
+
+    /**
+     * @return the budget in bytes
+     */
+    public long limit() {
+        return this.limit;
+    }
+
+    /**
+     * @return the reserved bytes
+     */
+    public synchronized long used() {
+        return this.used;
+    }
+
+    /**
+     * Reserves the bytes if they fit in the budget now and nobody is waiting.
+     *
+     * @param bytes the bytes to reserve
+     * @return true if reserved
+     */
+    public boolean tryReserve(long bytes) {
+        Ensures.ensure(bytes >= 0, "`bytes` must not be negative: %d", bytes);
+        synchronized (this) {
+            if (!this.waiters.isEmpty() || !fits(bytes)) {
+                return false;
+            }
+            this.used += bytes;
+        }
+        USED_BYTES.inc(bytes);
+        return true;
+    }
+
+    /**
+     * Reserves the bytes once they fit in the budget, without blocking.
+     *
+     * @param bytes the bytes to reserve
+     * @return a future completed when the bytes are reserved
+     */
+    public CompletableFuture<Void> reserveAsync(long bytes) {
+        Ensures.ensure(bytes >= 0, "`bytes` must not be negative: %d", bytes);
+        return enqueue(new Waiter(bytes, true));
+    }
+
+    /**
+     * Reserves the bytes once they fit in the budget or gives up when the timeout elapses,
+     * without blocking.
+     *
+     * @param bytes the bytes to reserve
+     * @param timeout the max time to wait
+     * @param unit the unit of the timeout
+     * @param scheduler the scheduler of the timeout
+     * @return a future completed with true if reserved, false if the timeout elapsed
+     */
+    public CompletableFuture<Boolean> reserveAsync(
+            long bytes, long timeout, TimeUnit unit, ScheduledExecutorService scheduler) {
+        Ensures.ensure(bytes >= 0, "`bytes` must not be negative: %d", bytes);
+        if (tryReserve(bytes)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        Waiter waiter = new Waiter(bytes, true);
+        CompletableFuture<Boolean> reserved = enqueue(waiter).thenApply(v -> true);
+        if (reserved.isDone()) {
+            return reserved;
+        }
+        ScheduledFuture<?> timer = scheduler.schedule(
+                () -> {
+                    // Reserved if served concurrently
+                    if (cancel(waiter)) {
+                        reserved.complete(false);
+                    }
+                },
+                timeout,
+                unit);
+        reserved.whenComplete((r, t) -> timer.cancel(false));
+        return reserved;
+    }
+
+    /**
+     * Reserves the bytes, blocking until they fit in the budget or the timeout elapses.
+     *
+     * @param bytes the bytes to reserve
+     * @param timeout the max time to wait
+     * @param unit the unit of the timeout
+     * @return true if reserved, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean reserve(long bytes, long timeout, TimeUnit unit) throws InterruptedException {
+        Ensures.ensure(bytes >= 0, "`bytes` must not be negative: %d", bytes);
+        if (tryReserve(bytes)) {
+            return true;
+        }
+        return await(new Waiter(bytes, true), timeout, unit);
+    }
+
+    /**
+     * Accounts the bytes that are already allocated, even if they exceed the budget.
+     *
+     * @param bytes the bytes to account
+     */
+    public void forceReserve(long bytes) {
+        synchronized (this) {
+            this.used += bytes;
+        }
+        USED_BYTES.inc(bytes);
+    }
+
+    /**
+     * Releases the bytes, and serves the waiters that fit.
+     *
+     * @param bytes the bytes to release
+     */
+    public void release(long bytes) {
+        List<Waiter> ready;
+        synchronized (this) {
+            this.used -= bytes;
+            ready = pollReady();
+        }
+        USED_BYTES.dec(bytes);
+        complete(ready);
+    }
+
+    /**
+     * Returns a future completed when the reserved bytes are under the budget, nothing is reserved.
+     *
+     * @return the future
+     */
+    public CompletableFuture<Void> whenAvailable() {
+        return enqueue(new Waiter(0, false));
+    }
+
+    /**
+     * Blocks until the reserved bytes are under the budget or the timeout elapses, nothing is reserved.
+     *
+     * @param timeout the max time to wait
+     * @param unit the unit of the timeout
+     * @return true if under the budget, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitAvailable(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            if (this.waiters.isEmpty() && this.used < this.limit) {
+                return true;
+            }
+        }
+        return await(new Waiter(0, false), timeout, unit);
+    }
+
+    private CompletableFuture<Void> enqueue(Waiter waiter) {
+        List<Waiter> ready;
+        synchronized (this) {
+            this.waiters.addLast(waiter);
+            ready = pollReady();
+        }
+        complete(ready);
+        return waiter.future;
+    }
+
+    private boolean await(Waiter waiter, long timeout, TimeUnit unit) throws InterruptedException {
+        CompletableFuture<Void> future = enqueue(waiter);
+        try {
+            future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            // Reserved if served concurrently
+            return !cancel(waiter);
+        } catch (InterruptedException e) {
+            if (!cancel(waiter) && waiter.reserve) {
+                // Served concurrently, give it back
+                release(waiter.bytes);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Removes the waiter from the queue.
+     *
+     * @return false if the waiter was served concurrently
+     */
+    private boolean cancel(Waiter waiter) {
+        List<Waiter> ready;
+        synchronized (this) {
+            if (!this.waiters.remove(waiter)) {
+                return false;
+            }
+            // The next waiters may fit now
+            ready = pollReady();
+        }
+        complete(ready);
+        return true;
+    }
+
+    // Must hold `this`
+    private List<Waiter> pollReady() {
+        List<Waiter> ready = null;
+        Waiter head;
+        while ((head = this.waiters.peekFirst()) != null) {
+            if (head.reserve ? !fits(head.bytes) : this.used >= this.limit) {
+                break;
+            }
+            this.waiters.pollFirst();
+            if (head.reserve) {
+                this.used += head.bytes;
+            }
+            if (ready == null) {
+                ready = new ArrayList<>();
+            }
+            ready.add(head);
+        }
+        return ready;
+    }
+
+    // Must hold `this`
+    private boolean fits(long bytes) {
+        return this.used + bytes <= this.limit || this.used <= 0;
+    }
+
+    // Completes the futures out of the lock, their callbacks may reserve or release
+    private static void complete(List<Waiter> ready) {
+        if (ready == null) {
+            return;
+        }
+        for (Waiter waiter : ready) {
+            if (waiter.reserve) {
+                USED_BYTES.inc(waiter.bytes);
+            }
+            waiter.future.complete(null);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MemoryGovernor{" + "limit=" + limit + ", used=" + used + ", waiters=" + waiters.size() + '}';
+    }
+
+    private static final class Waiter {
+        final long bytes;
+        // False if the waiter only waits for the budget to be available
+        final boolean reserve;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long bytes, boolean reserve) {
+            this.bytes = bytes;
+            this.reserve = reserve;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class MemoryGovernorTest {
+
+    @Test
+    public void testReserveAndRelease() {
+        MemoryGovernor governor = new MemoryGovernor(100);
+        Assert.assertTrue(governor.tryReserve(60));
+        Assert.assertFalse(governor.tryReserve(50));
+        Assert.assertTrue(governor.tryReserve(40));
+        Assert.assertEquals(100, governor.used());
+        governor.release(100);
+        Assert.assertEquals(0, governor.used());
+    }
+
+    @Test
+    public void testOversizedReservedWhenEmpty() {
+        MemoryGovernor governor = new MemoryGovernor(100);
+        Assert.assertTrue(governor.tryReserve(200));
+        Assert.assertFalse(governor.tryReserve(1));
+        governor.release(200);
+        Assert.assertTrue(governor.tryReserve(1));
+    }
+
+    @Test
+    public void testWaitersServedInOrder() {
+        MemoryGovernor governor = new MemoryGovernor(100);
+        Assert.assertTrue(governor.tryReserve(100));
+        CompletableFuture<Void> first = governor.reserveAsync(80);
+        CompletableFuture<Void> second = governor.reserveAsync(10);
+        // Nobody jumps the queue
+        Assert.assertFalse(governor.tryReserve(10));
+
+        governor.release(50);
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+
+        governor.release(50);
+        Assert.assertTrue(first.isDone());
+        Assert.assertTrue(second.isDone());
+        Assert.assertEquals(90, governor.used());
+    }
+
+    @Test
+    public void testForceReserveBlocksProducers() throws InterruptedException {
+        MemoryGovernor governor = new MemoryGovernor(100);
+        governor.forceReserve(150);
+        Assert.assertEquals(150, governor.used());
+        Assert.assertFalse(governor.awaitAvailable(10, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<Void> available = governor.whenAvailable();
+        governor.release(60);
+        Assert.assertTrue(available.isDone());
+        Assert.assertTrue(governor.awaitAvailable(10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(90, governor.used());
+    }
+
+    @Test
+    public void testReserveTimeout() throws InterruptedException {
+        MemoryGovernor governor = new MemoryGovernor(100);
+        Assert.assertTrue(governor.tryReserve(100));
+        Assert.assertFalse(governor.reserve(10, 10, TimeUnit.MILLISECONDS));
+        // The timed out waiter left the queue
+        governor.release(100);
+        Assert.assertEquals(0, governor.used());
+        Assert.assertTrue(governor.reserve(10, 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(10, governor.used());
+    }
+
+    @Test
+    public void testReserveAsyncTimeout() throws Exception {
+        MemoryGovernor governor = new MemoryGovernor(100);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Assert.assertTrue(governor.reserveAsync(100, 10, TimeUnit.MILLISECONDS, scheduler).get());
+            CompletableFuture<Boolean> timedOut = governor.reserveAsync(10, 10, TimeUnit.MILLISECONDS, scheduler);
+            Assert.assertFalse(timedOut.get(5, TimeUnit.SECONDS));
+
+            // The timed out waiter left the queue
+            CompletableFuture<Boolean> reserved = governor.reserveAsync(10, 5, TimeUnit.SECONDS, scheduler);
+            Assert.assertFalse(reserved.isDone());
+            governor.release(100);
+            Assert.assertTrue(reserved.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(10, governor.used());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -50,18 +50,12 @@ import io.grpc.CompressorRegistry;
 import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
 import io.grpc.MethodDescriptor;
-import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
-import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
-import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
-import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext;
-import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
 import io.grpc.protobuf.ProtoUtils;
 import io.grpc.stub.ClientCalls;
 import io.grpc.stub.StreamObserver;
-import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -73,7 +67,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import javax.net.ssl.SSLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -177,7 +170,7 @@ public class GrpcClient implements RpcClient {
         checkArgs(endpoint, request, ctx, observer);
         ContextToHeadersInterceptor.setCurrentCtx(ctx);
 
-        MethodDescriptor<Message, Message> method = getCallMethod(request, MethodDescriptor.MethodType.UNARY);
+        MethodDescriptor<Object, Message> method = getCallMethod(request, MethodDescriptor.MethodType.UNARY);
         long timeout = calcTimeout(timeoutMs);
         CallOptions callOpts = defaultCallOptions(ctx)
                 .withDeadlineAfter(timeout, TimeUnit.MILLISECONDS)
@@ -198,7 +191,7 @@ public class GrpcClient implements RpcClient {
 
         String target = target(ch, address);
 
-        ClientCalls.asyncUnaryCall(ch.newCall(method, callOpts), (Message) request, new StreamObserver<Message>() {
+        ClientCalls.asyncUnaryCall(ch.newCall(method, callOpts), request, new StreamObserver<Message>() {
 
             @SuppressWarnings("unchecked")
             @Override
@@ -238,8 +231,7 @@ public class GrpcClient implements RpcClient {
         checkArgs(endpoint, request, ctx, observer);
         ContextToHeadersInterceptor.setCurrentCtx(ctx);
 
-        MethodDescriptor<Message, Message> method =
-                getCallMethod(request, MethodDescriptor.MethodType.SERVER_STREAMING);
+        MethodDescriptor<Object, Message> method = getCallMethod(request, MethodDescriptor.MethodType.SERVER_STREAMING);
         CallOptions callOpts = defaultCallOptions(ctx).withExecutor(getObserverExecutor(observer));
 
         String methodName = method.getFullMethodName();
@@ -257,26 +249,25 @@ public class GrpcClient implements RpcClient {
 
         String target = target(ch, address);
 
-        ClientCalls.asyncServerStreamingCall(
-                ch.newCall(method, callOpts), (Message) request, new StreamObserver<Message>() {
+        ClientCalls.asyncServerStreamingCall(ch.newCall(method, callOpts), request, new StreamObserver<Message>() {
 
-                    @SuppressWarnings("unchecked")
-                    @Override
-                    public void onNext(Message value) {
-                        observer.onNext((Resp) value);
-                    }
+            @SuppressWarnings("unchecked")
+            @Override
+            public void onNext(Message value) {
+                observer.onNext((Resp) value);
+            }
 
-                    @Override
-                    public void onError(Throwable err) {
-                        attachErrMsg(err, SERVER_STREAMING_CALL, methodName, target, startCall, -1, ctx);
-                        observer.onError(err);
-                    }
+            @Override
+            public void onError(Throwable err) {
+                attachErrMsg(err, SERVER_STREAMING_CALL, methodName, target, startCall, -1, ctx);
+                observer.onError(err);
+            }
 
-                    @Override
-                    public void onCompleted() {
-                        observer.onCompleted();
-                    }
-                });
+            @Override
+            public void onCompleted() {
+                observer.onCompleted();
+            }
+        });
     }
 
     @Override
@@ -285,7 +276,7 @@ public class GrpcClient implements RpcClient {
         checkArgs(endpoint, defaultReqIns, ctx, respObserver);
         ContextToHeadersInterceptor.setCurrentCtx(ctx);
 
-        MethodDescriptor<Message, Message> method =
+        MethodDescriptor<Object, Message> method =
                 getCallMethod(defaultReqIns, MethodDescriptor.MethodType.CLIENT_STREAMING);
         CallOptions callOpts = defaultCallOptions(ctx).withExecutor(getObserverExecutor(respObserver));
 
@@ -306,7 +297,7 @@ public class GrpcClient implements RpcClient {
 
         String target = target(ch, address);
 
-        StreamObserver<Message> gRpcObs =
+        StreamObserver<Object> gRpcObs =
                 ClientCalls.asyncClientStreamingCall(ch.newCall(method, callOpts), new StreamObserver<Message>() {
 
                     @SuppressWarnings("unchecked")
@@ -331,7 +322,7 @@ public class GrpcClient implements RpcClient {
 
             @Override
             public void onNext(Req value) {
-                gRpcObs.onNext((Message) value);
+                gRpcObs.onNext(value);
             }
 
             @Override
@@ -489,6 +480,10 @@ public class GrpcClient implements RpcClient {
                 target(removedCh, endpoint),
                 c);
 
+        // Shutting down only releases the handles of this client, the next acquire must not get
+        // the broken channel back from the shared pool
+        SharedChannelPool.getInstance().evict(endpoint, this.opts);
+
         if (removedCh != ch) {
             // Now that it's removed, close it
             ManagedChannelHelper.shutdownAndAwaitTermination(removedCh, 100);
@@ -509,18 +504,33 @@ public class GrpcClient implements RpcClient {
         this.transientFailures.remove(endpoint);
     }
 
-    private MethodDescriptor<Message, Message> getCallMethod(Object request, MethodDescriptor.MethodType methodType) {
-        Ensures.ensure(request instanceof Message, "gRPC impl only support protobuf");
-        Class<? extends Message> reqCls = ((Message) request).getClass();
+    @SuppressWarnings("unchecked")
+    private MethodDescriptor<Object, Message> getCallMethod(Object request, MethodDescriptor.MethodType methodType) {
+        Class<? extends Message> reqCls;
+        MethodDescriptor.Marshaller<?> reqMarshaller;
+        if (request instanceof WireEncodable) {
+            Class<?> messageCls = ((WireEncodable) request).messageClass();
+            Ensures.ensure(Message.class.isAssignableFrom(messageCls), "gRPC impl only support protobuf");
+            reqCls = (Class<? extends Message>) messageCls;
+            reqMarshaller = WireEncodableMarshaller.INSTANCE;
+        } else {
+            Ensures.ensure(request instanceof Message, "gRPC impl only support protobuf");
+            reqCls = ((Message) request).getClass();
+            reqMarshaller = null;
+        }
         Message defaultReqIns = this.marshallerRegistry.getDefaultRequestInstance(reqCls);
         Message defaultRespIns = this.marshallerRegistry.getDefaultResponseInstance(reqCls);
         Ensures.ensureNonNull(defaultReqIns, "null default request instance: " + reqCls.getName());
         Ensures.ensureNonNull(defaultRespIns, "null default response instance: " + reqCls.getName());
 
-        return MethodDescriptor.<Message, Message>newBuilder()
+        if (reqMarshaller == null) {
+            reqMarshaller = ProtoUtils.marshaller(defaultReqIns);
+        }
+
+        return MethodDescriptor.<Object, Message>newBuilder()
                 .setType(methodType)
                 .setFullMethodName(this.marshallerRegistry.getMethodName(reqCls, methodType))
-                .setRequestMarshaller(ProtoUtils.marshaller(defaultReqIns))
+                .setRequestMarshaller((MethodDescriptor.Marshaller<Object>) reqMarshaller)
                 .setResponseMarshaller(ProtoUtils.marshaller(defaultRespIns))
                 .build();
     }
@@ -537,56 +547,11 @@ public class GrpcClient implements RpcClient {
         return null;
     }
 
-    private SslContext newSslContext(TlsOptions tlsOptions) {
-        try {
-            SslContextBuilder builder = GrpcSslContexts.forClient();
-
-            Optional<File> clientCertChain = tlsOptions.getClientCertChain();
-            Optional<File> privateKey = tlsOptions.getPrivateKey();
-            Optional<String> privateKeyPassword = tlsOptions.getPrivateKeyPassword();
-
-            if (clientCertChain.isPresent() && privateKey.isPresent()) {
-                if (privateKeyPassword.isPresent()) {
-                    builder.keyManager(clientCertChain.get(), privateKey.get(), privateKeyPassword.get());
-                } else {
-                    builder.keyManager(clientCertChain.get(), privateKey.get());
-                }
-            }
-
-            tlsOptions.getRootCerts().ifPresent(builder::trustManager);
-
-            return builder.build();
-        } catch (SSLException e) {
-            throw new RuntimeException("Failed to configure SslContext", e);
-        }
-    }
-
     private IdChannel newChannel(Endpoint endpoint) {
-        NettyChannelBuilder innerChannelBuilder =
-                NettyChannelBuilder.forAddress(endpoint.getAddr(), endpoint.getPort());
-
-        TlsOptions tlsOptions = this.opts.getTlsOptions();
-        if (tlsOptions != null) {
-            innerChannelBuilder.useTransportSecurity().sslContext(newSslContext(tlsOptions));
-        } else {
-            innerChannelBuilder.usePlaintext();
-        }
-
-        ManagedChannel innerChannel = innerChannelBuilder
-                .executor(this.asyncPool)
-                .intercept(this.interceptors)
-                .maxInboundMessageSize(this.opts.getMaxInboundMessageSize())
-                .flowControlWindow(this.opts.getFlowControlWindow())
-                .idleTimeout(this.opts.getIdleTimeoutSeconds(), TimeUnit.SECONDS)
-                .keepAliveTime(this.opts.getKeepAliveTimeSeconds(), TimeUnit.SECONDS)
-                .keepAliveTimeout(this.opts.getKeepAliveTimeoutSeconds(), TimeUnit.SECONDS)
-                .keepAliveWithoutCalls(this.opts.isKeepAliveWithoutCalls())
-                .compressorRegistry(this.compressorRegistry)
-                .withOption(ChannelOption.SO_REUSEADDR, true)
-                .withOption(ChannelOption.TCP_NODELAY, true)
-                .build();
+        // The calls set their executors in the call options
+        ManagedChannel innerChannel = SharedChannelPool.getInstance().acquire(endpoint, this.opts);
 
-        IdChannel idChannel = new IdChannel(innerChannel);
+        IdChannel idChannel = new IdChannel(innerChannel, new ArrayList<>(this.interceptors));
 
         if (LOG.isInfoEnabled()) {
             LOG.info("Creating new channel to: {}.", target(idChannel, endpoint));
@@ -17,10 +17,14 @@
 package io.greptime.rpc;
 
 import io.grpc.CallOptions;
+import io.grpc.Channel;
 import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
 import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
 import io.grpc.MethodDescriptor;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -33,6 +37,8 @@ public class IdChannel extends ManagedChannel {
 
     private final long channelId;
     private final ManagedChannel channel;
+    // The channel the calls are started on
+    private final Channel callChannel;
 
     private static long getNextId() {
         return ID_ALLOC.incrementAndGet();
@@ -41,6 +47,17 @@ public class IdChannel extends ManagedChannel {
     public IdChannel(ManagedChannel channel) {
         this.channelId = getNextId();
         this.channel = channel;
+        this.callChannel = channel;
+    }
+
+    /**
+     * Creates a channel that runs the calls through the given interceptors, in the reverse
+     * order of the list, the same as {@code ManagedChannelBuilder#intercept}.
+     */
+    public IdChannel(ManagedChannel channel, List<ClientInterceptor> interceptors) {
+        this.channelId = getNextId();
+        this.channel = channel;
+        this.callChannel = ClientInterceptors.intercept(channel, interceptors);
     }
 
     public long getChannelId() {
@@ -75,7 +92,7 @@ public class IdChannel extends ManagedChannel {
     @Override
     public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
             MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
-        return this.channel.newCall(methodDescriptor, callOptions);
+        return this.callChannel.newCall(methodDescriptor, callOptions);
     }
 
     @Override
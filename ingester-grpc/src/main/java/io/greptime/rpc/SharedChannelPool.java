@@ -0,0 +1,368 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.rpc;
+
+import io.greptime.common.Endpoint;
+import io.greptime.common.util.Ensures;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.CompressorRegistry;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.net.ssl.SSLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A per-endpoint, reference-counted pool of gRPC channels.
+ *
+ * <p>Each {@link #acquire(Endpoint, RpcOptions)} returns a handle of the channel. Shutting the
+ * handle down releases it, the underlying channel is shut down when its last handle is released.
+ * The channels carry no interceptors and no executor, callers apply their own interceptors on
+ * top of the handle and set the executor in the call options.
+ *
+ * <p>The channels of {@link #getInstance()} use the shared event loop group of the (shaded) Netty
+ * transport, and are shared by the {@link GrpcClient}s of the process. A transport that can not
+ * run on it, e.g. the Arrow Flight clients which write unshaded Netty buffers, keeps its channels
+ * in a separate pool with its own {@link ChannelFactory}.
+ */
+public final class SharedChannelPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedChannelPool.class);
+
+    private static final SharedChannelPool INSTANCE = new SharedChannelPool(SharedChannelPool::newChannel);
+
+    static {
+        CompressorRegistry.getDefaultInstance().register(new ZstdCodec());
+    }
+
+    private final ChannelFactory channelFactory;
+    private final Map<ChannelKey, RefChannel> channels = new HashMap<>();
+
+    /**
+     * Creates a pool whose channels are created by the given factory.
+     *
+     * @param channelFactory creates a channel to the endpoint with the transport options
+     */
+    public SharedChannelPool(ChannelFactory channelFactory) {
+        this.channelFactory = Ensures.ensureNonNull(channelFactory, "null `channelFactory`");
+    }
+
+    /**
+     * @return the pool of the channels on the shaded Netty transport
+     */
+    public static SharedChannelPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires a handle of the channel to the endpoint, a new channel is created if there is no
+     * open channel with the same options.
+     *
+     * @param endpoint the server endpoint
+     * @param opts the rpc options, only the transport options are used
+     * @return a handle of the shared channel, shut it down to release it
+     */
+    public ManagedChannel acquire(Endpoint endpoint, RpcOptions opts) {
+        Ensures.ensureNonNull(endpoint, "null `endpoint`");
+        Ensures.ensureNonNull(opts, "null `opts`");
+        ChannelKey key = new ChannelKey(endpoint, opts);
+        synchronized (this.channels) {
+            RefChannel ch = this.channels.get(key);
+            if (ch == null || ch.channel.isShutdown()) {
+                ch = new RefChannel(key, this.channelFactory.newChannel(endpoint, opts));
+                this.channels.put(key, ch);
+                LOG.info("Creating new shared channel to: {}.", endpoint);
+            }
+            ch.refs++;
+            return new SharedChannel(ch);
+        }
+    }
+
+    /**
+     * Drops the channel to the endpoint from the pool, the next {@link #acquire(Endpoint, RpcOptions)}
+     * creates a new channel. The dropped channel stays open for the handles already acquired and
+     * is shut down when the last of them is released.
+     *
+     * @param endpoint the server endpoint
+     * @param opts the rpc options, only the transport options are used
+     * @return true if a channel was dropped
+     */
+    public boolean evict(Endpoint endpoint, RpcOptions opts) {
+        Ensures.ensureNonNull(endpoint, "null `endpoint`");
+        Ensures.ensureNonNull(opts, "null `opts`");
+        RefChannel ch;
+        synchronized (this.channels) {
+            ch = this.channels.remove(new ChannelKey(endpoint, opts));
+        }
+        if (ch == null) {
+            return false;
+        }
+        LOG.info("Evicting shared channel to: {}.", endpoint);
+        return true;
+    }
+
+    /**
+     * @return the number of open channels in the pool
+     */
+    public int size() {
+        synchronized (this.channels) {
+            return this.channels.size();
+        }
+    }
+
+    private ManagedChannel release(RefChannel ch) {
+        synchronized (this.channels) {
+            if (--ch.refs > 0) {
+                return null;
+            }
+            this.channels.remove(ch.key, ch);
+        }
+        LOG.info("Closing shared channel to: {}.", ch.key.endpoint);
+        return ch.channel;
+    }
+
+    /**
+     * Creates the channels of a pool.
+     */
+    @FunctionalInterface
+    public interface ChannelFactory {
+
+        /**
+         * Creates a channel to the endpoint, without interceptors and executor.
+         *
+         * @param endpoint the server endpoint
+         * @param opts the rpc options, only the transport options are used
+         * @return a new channel
+         */
+        ManagedChannel newChannel(Endpoint endpoint, RpcOptions opts);
+    }
+
+    private static ManagedChannel newChannel(Endpoint endpoint, RpcOptions opts) {
+        NettyChannelBuilder builder = NettyChannelBuilder.forAddress(endpoint.getAddr(), endpoint.getPort());
+
+        TlsOptions tlsOptions = opts.getTlsOptions();
+        if (tlsOptions != null) {
+            builder.useTransportSecurity().sslContext(newSslContext(tlsOptions));
+        } else {
+            builder.usePlaintext();
+        }
+
+        return builder.maxInboundMessageSize(opts.getMaxInboundMessageSize())
+                .flowControlWindow(opts.getFlowControlWindow())
+                .idleTimeout(opts.getIdleTimeoutSeconds(), TimeUnit.SECONDS)
+                .keepAliveTime(opts.getKeepAliveTimeSeconds(), TimeUnit.SECONDS)
+                .keepAliveTimeout(opts.getKeepAliveTimeoutSeconds(), TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(opts.isKeepAliveWithoutCalls())
+                .compressorRegistry(CompressorRegistry.getDefaultInstance())
+                .withOption(ChannelOption.SO_REUSEADDR, true)
+                .withOption(ChannelOption.TCP_NODELAY, true)
+                .build();
+    }
+
+    private static SslContext newSslContext(TlsOptions tlsOptions) {
+        try {
+            SslContextBuilder builder = GrpcSslContexts.forClient();
+
+            Optional<File> clientCertChain = tlsOptions.getClientCertChain();
+            Optional<File> privateKey = tlsOptions.getPrivateKey();
+            Optional<String> privateKeyPassword = tlsOptions.getPrivateKeyPassword();
+
+            if (clientCertChain.isPresent() && privateKey.isPresent()) {
+                if (privateKeyPassword.isPresent()) {
+                    builder.keyManager(clientCertChain.get(), privateKey.get(), privateKeyPassword.get());
+                } else {
+                    builder.keyManager(clientCertChain.get(), privateKey.get());
+                }
+            }
+
+            tlsOptions.getRootCerts().ifPresent(builder::trustManager);
+
+            return builder.build();
+        } catch (SSLException e) {
+            throw new RuntimeException("Failed to configure SslContext", e);
+        }
+    }
+
+    /**
+     * The channels are shared only by the callers with the same transport options.
+     */
+    static final class ChannelKey {
+        final Endpoint endpoint;
+        final int maxInboundMessageSize;
+        final int flowControlWindow;
+        final long idleTimeoutSeconds;
+        final long keepAliveTimeSeconds;
+        final long keepAliveTimeoutSeconds;
+        final boolean keepAliveWithoutCalls;
+        final TlsOptions tlsOptions;
+
+        ChannelKey(Endpoint endpoint, RpcOptions opts) {
+            this.endpoint = endpoint;
+            this.maxInboundMessageSize = opts.getMaxInboundMessageSize();
+            this.flowControlWindow = opts.getFlowControlWindow();
+            this.idleTimeoutSeconds = opts.getIdleTimeoutSeconds();
+            this.keepAliveTimeSeconds = opts.getKeepAliveTimeSeconds();
+            this.keepAliveTimeoutSeconds = opts.getKeepAliveTimeoutSeconds();
+            this.keepAliveWithoutCalls = opts.isKeepAliveWithoutCalls();
+            this.tlsOptions = opts.getTlsOptions();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ChannelKey that = (ChannelKey) o;
+            return maxInboundMessageSize == that.maxInboundMessageSize
+                    && flowControlWindow == that.flowControlWindow
+                    && idleTimeoutSeconds == that.idleTimeoutSeconds
+                    && keepAliveTimeSeconds == that.keepAliveTimeSeconds
+                    && keepAliveTimeoutSeconds == that.keepAliveTimeoutSeconds
+                    && keepAliveWithoutCalls == that.keepAliveWithoutCalls
+                    && Objects.equals(endpoint, that.endpoint)
+                    && Objects.equals(tlsOptions, that.tlsOptions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, maxInboundMessageSize, flowControlWindow, tlsOptions);
+        }
+    }
+
+    private static final class RefChannel {
+        final ChannelKey key;
+        final ManagedChannel channel;
+        // Guarded by the pool
+        int refs;
+
+        RefChannel(ChannelKey key, ManagedChannel channel) {
+            this.key = key;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * A handle of a shared channel. Shutting it down releases the handle, the calls started
+     * through it are not affected unless it was the last handle of the channel.
+     */
+    private final class SharedChannel extends ManagedChannel {
+
+        private final RefChannel ref;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        // The underlying channel if this handle shut it down, null otherwise
+        private volatile ManagedChannel closing;
+
+        SharedChannel(RefChannel ref) {
+            this.ref = ref;
+        }
+
+        @Override
+        public ManagedChannel shutdown() {
+            if (this.released.compareAndSet(false, true)) {
+                ManagedChannel ch = release(this.ref);
+                if (ch != null) {
+                    this.closing = ch;
+                    ch.shutdown();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            shutdown();
+            ManagedChannel ch = this.closing;
+            if (ch != null) {
+                ch.shutdownNow();
+            }
+            return this;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.released.get();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            if (!this.released.get()) {
+                return false;
+            }
+            ManagedChannel ch = this.closing;
+            return ch == null || ch.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            ManagedChannel ch = this.closing;
+            return ch == null ? this.released.get() : ch.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+                MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+            return this.ref.channel.newCall(methodDescriptor, callOptions);
+        }
+
+        @Override
+        public String authority() {
+            return this.ref.channel.authority();
+        }
+
+        @Override
+        public ConnectivityState getState(boolean requestConnection) {
+            return this.released.get() ? ConnectivityState.SHUTDOWN : this.ref.channel.getState(requestConnection);
+        }
+
+        @Override
+        public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+            this.ref.channel.notifyWhenStateChanged(source, callback);
+        }
+
+        @Override
+        public void resetConnectBackoff() {
+            this.ref.channel.resetConnectBackoff();
+        }
+
+        @Override
+        public void enterIdle() {
+            // A no-op, idling the underlying channel would drop the connection of the other handles
+        }
+
+        @Override
+        public String toString() {
+            return "SharedChannel{" + "channel=" + this.ref.channel + ", released=" + this.released + '}';
+        }
+    }
+}
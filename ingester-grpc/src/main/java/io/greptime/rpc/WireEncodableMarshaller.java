@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.rpc;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A request marshaller for {@link WireEncodable}, the returned stream is {@link Drainable}
+ * so gRPC lets the request write itself straight into the transport buffers.
+ */
+public final class WireEncodableMarshaller implements MethodDescriptor.Marshaller<Object> {
+
+    public static final WireEncodableMarshaller INSTANCE = new WireEncodableMarshaller();
+
+    @Override
+    public InputStream stream(Object value) {
+        return new EncodedStream((WireEncodable) value);
+    }
+
+    @Override
+    public Object parse(InputStream stream) {
+        throw new UnsupportedOperationException("Unsupported to parse a `WireEncodable` request");
+    }
+
+    static final class EncodedStream extends InputStream implements Drainable, KnownLength {
+
+        private WireEncodable request;
+        private final int size;
+        // Only created if gRPC reads the stream instead of draining it
+        private ByteArrayInputStream partial;
+
+        EncodedStream(WireEncodable request) {
+            this.request = request;
+            this.size = request.serializedSize();
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int written;
+            if (this.request != null) {
+                this.request.writeTo(target);
+                written = this.size;
+                this.request = null;
+            } else if (this.partial != null) {
+                // `ByteArrayInputStream` always reads all the available bytes
+                byte[] remaining = new byte[this.partial.available()];
+                this.partial.read(remaining, 0, remaining.length);
+                target.write(remaining);
+                written = remaining.length;
+                this.partial = null;
+            } else {
+                written = 0;
+            }
+            return written;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteArrayInputStream in = toPartial();
+            return in == null ? -1 : in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ByteArrayInputStream in = toPartial();
+            if (in == null) {
+                return -1;
+            }
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            if (this.request != null) {
+                return this.size;
+            }
+            if (this.partial != null) {
+                return this.partial.available();
+            }
+            return 0;
+        }
+
+        private ByteArrayInputStream toPartial() throws IOException {
+            if (this.request != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(this.size);
+                this.request.writeTo(out);
+                this.partial = new ByteArrayInputStream(out.toByteArray());
+                this.request = null;
+            }
+            return this.partial;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package io.greptime.rpc.interceptors;
 import com.codahale.metrics.Counter;
 import com.google.protobuf.MessageLite;
 import io.greptime.common.util.MetricsUtil;
+import io.greptime.rpc.WireEncodable;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
@@ -71,8 +72,13 @@ public class MetricInterceptor implements ClientInterceptor {
 
             @Override
             public void sendMessage(ReqT msg) {
+                int size = -1;
                 if (msg instanceof MessageLite) {
-                    int size = ((MessageLite) msg).getSerializedSize();
+                    size = ((MessageLite) msg).getSerializedSize();
+                } else if (msg instanceof WireEncodable) {
+                    size = ((WireEncodable) msg).serializedSize();
+                }
+                if (size >= 0) {
                     MetricsUtil.histogram(REQ_TYPE, SERIALIZED_BYTES, methodName)
                             .update(size);
                     REQ_BYTES.inc(size);
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.rpc;
+
+import io.greptime.common.Endpoint;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SharedChannelPoolTest {
+
+    @Test
+    public void testSharedChannelIsReferenceCounted() throws InterruptedException {
+        SharedChannelPool pool = SharedChannelPool.getInstance();
+        Endpoint endpoint = Endpoint.of("127.0.0.1", 40001);
+        int size = pool.size();
+
+        ManagedChannel ch1 = pool.acquire(endpoint, RpcOptions.newDefault());
+        ManagedChannel ch2 = pool.acquire(endpoint, RpcOptions.newDefault());
+        Assert.assertEquals(size + 1, pool.size());
+
+        // Releasing one handle keeps the channel open for the other
+        ch1.shutdown();
+        Assert.assertTrue(ch1.isShutdown());
+        Assert.assertTrue(ch1.awaitTermination(1, TimeUnit.SECONDS));
+        Assert.assertEquals(ConnectivityState.SHUTDOWN, ch1.getState(false));
+        Assert.assertFalse(ch2.isShutdown());
+        Assert.assertNotEquals(ConnectivityState.SHUTDOWN, ch2.getState(false));
+        Assert.assertEquals(size + 1, pool.size());
+
+        // Shutting down a handle twice releases it only once
+        ch1.shutdown();
+        Assert.assertEquals(size + 1, pool.size());
+
+        ch2.shutdown();
+        Assert.assertTrue(ch2.awaitTermination(1, TimeUnit.SECONDS));
+        Assert.assertEquals(size, pool.size());
+    }
+
+    @Test
+    public void testDifferentOptionsDoNotShareChannel() {
+        SharedChannelPool pool = SharedChannelPool.getInstance();
+        Endpoint endpoint = Endpoint.of("127.0.0.1", 40002);
+        int size = pool.size();
+
+        RpcOptions other = RpcOptions.newDefault();
+        other.setMaxInboundMessageSize(1024);
+        ManagedChannel ch1 = pool.acquire(endpoint, RpcOptions.newDefault());
+        ManagedChannel ch2 = pool.acquire(endpoint, other);
+        Assert.assertEquals(size + 2, pool.size());
+
+        ch1.shutdownNow();
+        ch2.shutdownNow();
+        Assert.assertEquals(size, pool.size());
+    }
+
+    @Test
+    public void testCustomFactoryAndEnterIdle() {
+        RecordingChannel underlying = new RecordingChannel();
+        SharedChannelPool pool = new SharedChannelPool((endpoint, opts) -> underlying);
+        Endpoint endpoint = Endpoint.of("127.0.0.1", 40003);
+
+        ManagedChannel ch1 = pool.acquire(endpoint, RpcOptions.newDefault());
+        ManagedChannel ch2 = pool.acquire(endpoint, RpcOptions.newDefault());
+        Assert.assertEquals(1, pool.size());
+
+        // A handle can not idle the connection of the others
+        ch1.enterIdle();
+        Assert.assertEquals(0, underlying.idles);
+
+        ch1.shutdown();
+        Assert.assertFalse(underlying.isShutdown());
+        ch2.shutdown();
+        Assert.assertTrue(underlying.isShutdown());
+        Assert.assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testEvictedChannelClosesWithLastHandle() {
+        RecordingChannel first = new RecordingChannel();
+        RecordingChannel second = new RecordingChannel();
+        RecordingChannel[] next = {first, second};
+        int[] created = {0};
+        SharedChannelPool pool = new SharedChannelPool((endpoint, opts) -> next[created[0]++]);
+        Endpoint endpoint = Endpoint.of("127.0.0.1", 40004);
+
+        ManagedChannel ch1 = pool.acquire(endpoint, RpcOptions.newDefault());
+        ManagedChannel ch2 = pool.acquire(endpoint, RpcOptions.newDefault());
+        Assert.assertTrue(pool.evict(endpoint, RpcOptions.newDefault()));
+        Assert.assertFalse(pool.evict(endpoint, RpcOptions.newDefault()));
+        Assert.assertEquals(0, pool.size());
+
+        // The next acquire creates a new channel
+        ManagedChannel ch3 = pool.acquire(endpoint, RpcOptions.newDefault());
+        Assert.assertEquals(2, created[0]);
+        Assert.assertEquals(1, pool.size());
+
+        // The evicted channel is shut down with its last handle, the new one is kept
+        ch1.shutdown();
+        Assert.assertFalse(first.isShutdown());
+        ch2.shutdown();
+        Assert.assertTrue(first.isShutdown());
+        Assert.assertFalse(second.isShutdown());
+        Assert.assertEquals(1, pool.size());
+
+        ch3.shutdown();
+        Assert.assertTrue(second.isShutdown());
+        Assert.assertEquals(0, pool.size());
+    }
+
+    private static final class RecordingChannel extends ManagedChannel {
+        private volatile boolean shutdown;
+        private volatile int idles;
+
+        @Override
+        public ManagedChannel shutdown() {
+            this.shutdown = true;
+            return this;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return this.shutdown;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            return shutdown();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return this.shutdown;
+        }
+
+        @Override
+        public void enterIdle() {
+            this.idles++;
+        }
+
+        @Override
+        public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+                MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String authority() {
+            return "recording";
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.rpc;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WireEncodableMarshallerTest {
+
+    private static final byte[] DATA = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+    private static WireEncodable newRequest() {
+        return new WireEncodable() {
+
+            @Override
+            public Class<?> messageClass() {
+                return String.class;
+            }
+
+            @Override
+            public int serializedSize() {
+                return DATA.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(DATA);
+            }
+        };
+    }
+
+    @Test
+    public void testDrainTo() throws IOException {
+        InputStream stream = WireEncodableMarshaller.INSTANCE.stream(newRequest());
+        Assert.assertTrue(stream instanceof Drainable);
+        Assert.assertTrue(stream instanceof KnownLength);
+        Assert.assertEquals(DATA.length, stream.available());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(DATA.length, ((Drainable) stream).drainTo(out));
+        Assert.assertArrayEquals(DATA, out.toByteArray());
+        Assert.assertEquals(0, stream.available());
+        Assert.assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void testReadThenDrain() throws IOException {
+        InputStream stream = WireEncodableMarshaller.INSTANCE.stream(newRequest());
+        Assert.assertEquals(DATA[0], stream.read());
+        Assert.assertEquals(DATA.length - 1, stream.available());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(DATA[0]);
+        Assert.assertEquals(DATA.length - 1, ((Drainable) stream).drainTo(out));
+        Assert.assertArrayEquals(DATA, out.toByteArray());
+        Assert.assertEquals(0, stream.available());
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import com.codahale.metrics.Histogram;
+import io.greptime.common.util.Ensures;
+import io.greptime.common.util.MetricsUtil;
+
+/**
+ * Steers the number of rows per bulk write batch toward a latency or a throughput objective, from
+ * the put latency, the bytes per batch and the in-flight depth observed on a stream.
+ *
+ * <p>With a {@link Objective#LATENCY latency objective}, the target grows while the smoothed put
+ * latency is under the objective and shrinks in proportion when it is over. With a
+ * {@link Objective#THROUGHPUT throughput objective}, the target climbs in the direction that
+ * increases the smoothed rows per second of the stream, and turns back when that stops improving.
+ * The target always stays within {@code [minRows, maxRows]}, and a batch is kept under
+ * {@code maxBatchBytes} according to the observed bytes per row.
+ *
+ * <p>The observations come from the completions of the puts, so this class is thread-safe.
+ */
+public class AdaptiveBatchSizer {
+
+    private static final Histogram TARGET_ROWS = MetricsUtil.histogram("bulk_write_target_batch_rows");
+
+    // The weight of a new observation in the moving averages
+    private static final double ALPHA = 0.3;
+    // The max factor of one adjustment with a latency objective
+    private static final double MAX_LATENCY_STEP = 2.0;
+    // The factor of one step with a throughput objective
+    private static final double THROUGHPUT_STEP = 1.25;
+    // A throughput change under this ratio is noise
+    private static final double THROUGHPUT_TOLERANCE = 0.02;
+    // The observations between two steps with a throughput objective
+    private static final int THROUGHPUT_WINDOW = 4;
+
+    private final Options options;
+
+    private volatile int targetRows;
+    private double latencyMsAvg = -1;
+    private double bytesPerRowAvg = -1;
+    private double throughputAvg = -1;
+    private double lastThroughput = -1;
+    private boolean growing = true;
+    private int observations;
+
+    public AdaptiveBatchSizer(Options options) {
+        Ensures.ensureNonNull(options, "null `options`");
+        Ensures.ensure(options.minRows > 0, "`minRows` must be positive: %d", options.minRows);
+        Ensures.ensure(
+                options.maxRows >= options.minRows,
+                "`maxRows` must not be less than `minRows`: %d < %d",
+                options.maxRows,
+                options.minRows);
+        Ensures.ensure(
+                options.objective != Objective.LATENCY || options.targetLatencyMs > 0,
+                "`targetLatencyMs` must be positive: %d",
+                options.targetLatencyMs);
+        this.options = options;
+        this.targetRows = clamp(options.initialRows);
+    }
+
+    /**
+     * Returns the number of rows the next batch should have.
+     *
+     * @return the target rows per batch
+     */
+    public int targetRows() {
+        return this.targetRows;
+    }
+
+    /**
+     * Records a completed put and adjusts the target.
+     *
+     * @param rows the rows of the batch
+     * @param bytes the bytes of the batch
+     * @param latencyMs the time from sending the batch to its response
+     * @param inFlight the in-flight requests of the stream when the batch was sent
+     */
+    public synchronized void observe(int rows, long bytes, long latencyMs, int inFlight) {
+        if (rows <= 0) {
+            return;
+        }
+        double latency = Math.max(latencyMs, 1);
+        this.latencyMsAvg = average(this.latencyMsAvg, latency);
+        this.bytesPerRowAvg = average(this.bytesPerRowAvg, (double) bytes / rows);
+
+        double target = this.targetRows;
+        if (this.options.objective == Objective.LATENCY) {
+            // The square root damps the steps, the latency is not linear in the batch size
+            double factor = Math.sqrt(this.options.targetLatencyMs / this.latencyMsAvg);
+            target *= Math.max(1 / MAX_LATENCY_STEP, Math.min(MAX_LATENCY_STEP, factor));
+        } else {
+            // The requests in flight are served concurrently
+            double throughput = rows * Math.max(1, inFlight) * 1000.0 / latency;
+            this.throughputAvg = average(this.throughputAvg, throughput);
+            if (++this.observations < THROUGHPUT_WINDOW) {
+                return;
+            }
+            this.observations = 0;
+            if (this.lastThroughput > 0
+                    && this.throughputAvg < this.lastThroughput * (1 + THROUGHPUT_TOLERANCE)) {
+                this.growing = !this.growing;
+            }
+            this.lastThroughput = this.throughputAvg;
+            target = this.growing ? target * THROUGHPUT_STEP : target / THROUGHPUT_STEP;
+        }
+
+        int next = clamp((long) target);
+        if (next != this.targetRows) {
+            this.targetRows = next;
+            TARGET_ROWS.update(next);
+        }
+    }
+
+    private int clamp(long rows) {
+        long max = this.options.maxRows;
+        if (this.options.maxBatchBytes > 0 && this.bytesPerRowAvg > 0) {
+            max = Math.min(max, (long) (this.options.maxBatchBytes / this.bytesPerRowAvg));
+        }
+        return (int) Math.max(this.options.minRows, Math.min(max, rows));
+    }
+
+    private static double average(double avg, double value) {
+        return avg < 0 ? value : avg + ALPHA * (value - avg);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveBatchSizer{" + "options=" + options + ", targetRows=" + targetRows + '}';
+    }
+
+    /**
+     * The objective of the batch size.
+     */
+    public enum Objective {
+        /**
+         * Keeps the put latency around {@link Options#getTargetLatencyMs()}.
+         */
+        LATENCY,
+        /**
+         * Maximizes the rows per second of the stream.
+         */
+        THROUGHPUT
+    }
+
+    public static class Options {
+        private Objective objective = Objective.THROUGHPUT;
+        private long targetLatencyMs = 1000;
+        private int initialRows = 16 * 1024;
+        private int minRows = 1024;
+        private int maxRows = 1024 * 1024;
+        private long maxBatchBytes = 64 * 1024 * 1024;
+
+        private Options() {}
+
+        public static Builder newBuilder() {
+            return new Builder();
+        }
+
+        public Objective getObjective() {
+            return objective;
+        }
+
+        public long getTargetLatencyMs() {
+            return targetLatencyMs;
+        }
+
+        public int getInitialRows() {
+            return initialRows;
+        }
+
+        public int getMinRows() {
+            return minRows;
+        }
+
+        public int getMaxRows() {
+            return maxRows;
+        }
+
+        public long getMaxBatchBytes() {
+            return maxBatchBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Options{" + "objective="
+                    + objective + ", targetLatencyMs="
+                    + targetLatencyMs + ", initialRows="
+                    + initialRows + ", minRows="
+                    + minRows + ", maxRows="
+                    + maxRows + ", maxBatchBytes="
+                    + maxBatchBytes + '}';
+        }
+
+        public static class Builder {
+            private final Options options = new Options();
+
+            /**
+             * Steers the batch size toward the given put latency.
+             *
+             * @param targetLatencyMs the target latency in milliseconds from sending a batch to its response
+             * @return this builder
+             */
+            public Builder latencyObjective(long targetLatencyMs) {
+                options.objective = Objective.LATENCY;
+                options.targetLatencyMs = targetLatencyMs;
+                return this;
+            }
+
+            /**
+             * Steers the batch size toward the max rows per second, this is the default.
+             *
+             * @return this builder
+             */
+            public Builder throughputObjective() {
+                options.objective = Objective.THROUGHPUT;
+                return this;
+            }
+
+            /**
+             * Set the rows of the first batch.
+             *
+             * @param initialRows the initial rows per batch
+             * @return this builder
+             */
+            public Builder initialRows(int initialRows) {
+                options.initialRows = initialRows;
+                return this;
+            }
+
+            /**
+             * Set the bounds of the rows per batch.
+             *
+             * @param minRows the min rows per batch
+             * @param maxRows the max rows per batch
+             * @return this builder
+             */
+            public Builder rowsRange(int minRows, int maxRows) {
+                options.minRows = minRows;
+                options.maxRows = maxRows;
+                return this;
+            }
+
+            /**
+             * Set the max bytes of a batch, the rows are bounded by the observed bytes per row,
+             * 0 for no limit.
+             *
+             * @param maxBatchBytes the max bytes per batch
+             * @return this builder
+             */
+            public Builder maxBatchBytes(long maxBatchBytes) {
+                options.maxBatchBytes = maxBatchBytes;
+                return this;
+            }
+
+            public Options build() {
+                return options;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.common.util.Ensures;
+import io.greptime.models.Table;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adds rows to a {@link BulkStreamWriter} and writes a batch each time it reaches the
+ * {@link BulkStreamWriter#targetBatchRows() target rows} of the stream, so the batch size
+ * follows the adaptive batch sizing instead of being chosen by hand.
+ *
+ * <p>Not thread-safe, a single producer adds the rows.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * BulkWrite.Config config = BulkWrite.Config.newBuilder()
+ *         .adaptiveBatchSizing(AdaptiveBatchSizer.Options.newBuilder().latencyObjective(500).build())
+ *         .build();
+ * try (AdaptiveBulkWriter writer = new AdaptiveBulkWriter(greptimeDB.bulkStreamWriter(schema, config))) {
+ *     for (Object[] row : rows) {
+ *         writer.addRow(row);
+ *     }
+ *     writer.completed();
+ * }
+ * }</pre>
+ */
+public class AdaptiveBulkWriter implements AutoCloseable {
+
+    /**
+     * The rows per batch if the adaptive batch sizing of the stream is disabled.
+     */
+    public static final int DEFAULT_BATCH_ROWS = 64 * 1024;
+
+    private final BulkStreamWriter writer;
+    private final int fallbackBatchRows;
+
+    private Table.TableBufferRoot table;
+    // The target of the current batch, taken when the batch starts
+    private int batchRows;
+
+    public AdaptiveBulkWriter(BulkStreamWriter writer) {
+        this(writer, DEFAULT_BATCH_ROWS);
+    }
+
+    /**
+     * @param writer the writer of the stream
+     * @param fallbackBatchRows the rows per batch if the adaptive batch sizing is disabled
+     */
+    public AdaptiveBulkWriter(BulkStreamWriter writer, int fallbackBatchRows) {
+        this.writer = Ensures.ensureNonNull(writer, "null `writer`");
+        Ensures.ensure(fallbackBatchRows > 0, "`fallbackBatchRows` must be positive: %d", fallbackBatchRows);
+        this.fallbackBatchRows = fallbackBatchRows;
+    }
+
+    /**
+     * Adds a row, the values must match the order of the schema. The batch is written when it
+     * reaches its target rows.
+     *
+     * @param values the values of the row
+     * @return the future of the batch written by this row, null if the batch is not full yet
+     * @throws Exception if the batch can not be written
+     */
+    public CompletableFuture<Integer> addRow(Object... values) throws Exception {
+        if (this.table == null) {
+            int target = this.writer.targetBatchRows();
+            this.batchRows = target > 0 ? target : this.fallbackBatchRows;
+            this.table = this.writer.tableBufferRoot(this.batchRows);
+        }
+        this.table.addRow(values);
+        if (this.table.rowCount() >= this.batchRows) {
+            return flush();
+        }
+        return null;
+    }
+
+    /**
+     * Writes the rows added since the last batch.
+     *
+     * @return the future of the batch, a completed future of 0 if there is no row
+     * @throws Exception if the batch can not be written
+     */
+    public CompletableFuture<Integer> flush() throws Exception {
+        Table.TableBufferRoot table = this.table;
+        if (table == null || table.rowCount() == 0) {
+            return Util.completedCf(0);
+        }
+        this.table = null;
+        return this.writer.writeNext();
+    }
+
+    /**
+     * Writes the remaining rows and completes the stream.
+     *
+     * @throws Exception if an error occurs
+     */
+    public void completed() throws Exception {
+        flush();
+        this.writer.completed();
+    }
+
+    /**
+     * Gets the writer of the stream.
+     *
+     * @return the writer
+     */
+    public BulkStreamWriter writer() {
+        return this.writer;
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.writer.close();
+    }
+}
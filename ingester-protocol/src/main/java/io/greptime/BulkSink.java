@@ -0,0 +1,472 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.common.util.Cpus;
+import io.greptime.common.util.Ensures;
+import io.greptime.common.util.ExecutorServiceHelper;
+import io.greptime.common.util.NamedThreadFactory;
+import io.greptime.common.util.ObjectPool;
+import io.greptime.common.util.SharedScheduledPool;
+import io.greptime.common.util.SharedThreadPool;
+import io.greptime.common.util.ThreadPoolUtil;
+import io.greptime.models.Table;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Takes rows from any thread and writes them to a {@link BulkStreamWriter} in batches. A batch is
+ * sealed and written once it reaches the max rows, the max bytes or the linger time since its
+ * first row, whichever comes first, so a low-rate table is still flushed promptly while a
+ * high-rate table gets full batches.
+ *
+ * <p>The batches are written with {@link BulkStreamWriter#writeNextAsync()}. When the stream is
+ * busy or all its in-flight request slots are taken, the producer that starts the next batch
+ * waits for {@link BulkStreamWriter#whenReady()}, and the other producers wait behind it. A batch
+ * sealed by its linger time is written on a send pool, not on the linger thread shared by the sinks.
+ *
+ * <p>A failed batch fails the sink, the next call throws its error.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * BulkSink.Options options = BulkSink.Options.newBuilder().maxRows(65536).lingerMs(100).build();
+ * try (BulkSink sink = new BulkSink(greptimeDB.bulkStreamWriter(schema), options)) {
+ *     // From any thread
+ *     sink.add(host, ts, cpu);
+ *     sink.add(row -> row.setString(0, host).setTimestamp(1, ts).setDouble(2, cpu));
+ *     ...
+ *     sink.completed();
+ * }
+ * }</pre>
+ */
+public class BulkSink implements AutoCloseable {
+
+    private static final SharedScheduledPool LINGER_POOL = Util.getSharedScheduledPool("bulk_sink_linger", 1);
+    // Writes the batches sealed by the linger tasks, the linger thread is shared by all the sinks
+    private static final SharedThreadPool SEND_POOL =
+            new SharedThreadPool(new ObjectPool.Resource<ExecutorService>() {
+
+                @Override
+                public ExecutorService create() {
+                    String name = "bulk_sink_send";
+                    return ThreadPoolUtil.newBuilder()
+                            .poolName(name)
+                            .enableMetric(true)
+                            .coreThreads(Cpus.cpus())
+                            .maximumThreads(Cpus.cpus())
+                            .keepAliveSeconds(60L)
+                            .workQueue(new LinkedBlockingQueue<>())
+                            .threadFactory(new NamedThreadFactory(name, true))
+                            .build();
+                }
+
+                @Override
+                public void close(ExecutorService instance) {
+                    ExecutorServiceHelper.shutdownAndAwaitTermination(instance);
+                }
+            });
+
+    // The bytes of a table are summed over its columns, so they are checked every few rows only
+    private static final int BYTES_CHECK_INTERVAL = 64;
+
+    private final BulkStreamWriter writer;
+    private final Options options;
+    private final ScheduledExecutorService lingerScheduler;
+    private final ExecutorService sendExecutor;
+    private final ReentrantLock lock = new ReentrantLock();
+    // The first error of a batch
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // Guarded by `lock`
+    private Table.TableBufferRoot table;
+    // Guarded by `lock`, the max rows of the current batch, taken when the batch starts
+    private int batchRows;
+    // Guarded by `lock`, identifies the batch a linger task was scheduled for
+    private long batchId;
+    // Guarded by `lock`
+    private ScheduledFuture<?> lingerTask;
+    // Guarded by `lock`, completed once the batch sealed by the last linger task is passed to the writer
+    private CompletableFuture<Void> lingerSend = Util.completedCf(null);
+    // Guarded by `lock`
+    private boolean completed;
+    // Guarded by `lock`
+    private boolean closed;
+
+    public BulkSink(BulkStreamWriter writer) {
+        this(writer, Options.newBuilder().build());
+    }
+
+    /**
+     * @param writer the writer of the stream, it is owned and closed by the sink
+     * @param options the thresholds of the batches
+     */
+    public BulkSink(BulkStreamWriter writer, Options options) {
+        this.writer = Ensures.ensureNonNull(writer, "null `writer`");
+        this.options = Ensures.ensureNonNull(options, "null `options`");
+        Ensures.ensure(options.maxRows > 0, "`maxRows` must be positive: %d", options.maxRows);
+        Ensures.ensure(options.maxBytes >= 0, "`maxBytes` must not be negative: %d", options.maxBytes);
+        Ensures.ensure(options.lingerMs > 0, "`lingerMs` must be positive: %d", options.lingerMs);
+        this.lingerScheduler = LINGER_POOL.getObject();
+        this.sendExecutor = SEND_POOL.getObject();
+    }
+
+    /**
+     * Adds a row, the values must match the order of the schema.
+     *
+     * @param values the values of the row
+     * @throws Exception if the sink failed, or the batch can not be written
+     */
+    public void add(Object... values) throws Exception {
+        this.lock.lock();
+        try {
+            Table.TableBufferRoot table = currentTable();
+            table.addRow(values);
+            afterRow(table);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a row with the typed setters of a {@link Table.RowWriter}, the row is ended by the sink.
+     *
+     * @param row sets the values of the row
+     * @throws Exception if the sink failed, or the batch can not be written
+     */
+    public void add(Consumer<Table.RowWriter> row) throws Exception {
+        this.lock.lock();
+        try {
+            Table.TableBufferRoot table = currentTable();
+            Table.RowWriter rowWriter = table.row();
+            try {
+                row.accept(rowWriter);
+            } catch (Throwable t) {
+                // Starting a row discards the unfinished one, it is not sealed with the batch
+                table.row();
+                throw t;
+            }
+            rowWriter.endRow();
+            afterRow(table);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the rows added since the last batch, without waiting for the thresholds.
+     *
+     * @return the future of the batch, a completed future of 0 if there is no row
+     * @throws Exception if the sink failed
+     */
+    public CompletableFuture<Integer> flush() throws Exception {
+        this.lock.lock();
+        try {
+            checkFailure();
+            return seal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the remaining rows and completes the stream, waiting for the server to finish
+     * processing the data. No row can be added after.
+     *
+     * @throws Exception if an error occurs
+     */
+    public void completed() throws Exception {
+        try {
+            completedAsync().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Writes the remaining rows and completes the stream without blocking the caller. No row can
+     * be added after. The sink must still be closed.
+     *
+     * @return a future completed when the server finishes processing the data, failed with any
+     *     error of the batches or of the stream
+     */
+    public CompletableFuture<Void> completedAsync() {
+        CompletableFuture<Void> future;
+        this.lock.lock();
+        try {
+            checkFailure();
+            seal();
+            this.completed = true;
+            future = this.lingerSend.thenCompose(v -> this.writer.completedAsync());
+        } catch (Throwable t) {
+            return Util.errorCf(t);
+        } finally {
+            this.lock.unlock();
+        }
+        return future.thenRun(this::checkFailure);
+    }
+
+    /**
+     * @return true if a batch failed, the sink can not be used anymore
+     */
+    public boolean isFailed() {
+        return this.failure.get() != null;
+    }
+
+    /**
+     * Gets the writer of the stream.
+     *
+     * @return the writer
+     */
+    public BulkStreamWriter writer() {
+        return this.writer;
+    }
+
+    /**
+     * Closes the stream, the rows not written yet are discarded, call {@link #completed()} first.
+     */
+    @Override
+    public void close() throws Exception {
+        CompletableFuture<Void> lingerSend;
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.completed = true;
+            cancelLinger();
+            lingerSend = this.lingerSend;
+        } finally {
+            this.lock.unlock();
+        }
+        LINGER_POOL.returnObject(this.lingerScheduler);
+        // The writer is not closed under a batch being passed to it
+        lingerSend.join();
+        SEND_POOL.returnObject(this.sendExecutor);
+        this.writer.close();
+    }
+
+    // Must hold `lock`
+    private Table.TableBufferRoot currentTable() throws Exception {
+        checkFailure();
+        Ensures.ensure(!this.completed, "The sink is completed");
+        if (this.table == null) {
+            // The previous batch may still be queued, or the stream busy: the producers wait here
+            try {
+                this.lingerSend.get();
+                this.writer.whenReady().get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+            int target = this.writer.targetBatchRows();
+            this.batchRows = target > 0 ? Math.min(target, this.options.maxRows) : this.options.maxRows;
+            this.table = this.writer.tableBufferRoot(this.batchRows);
+            this.batchId++;
+        }
+        return this.table;
+    }
+
+    // Must hold `lock`
+    private void afterRow(Table.TableBufferRoot table) {
+        int rows = table.rowCount();
+        if (rows == 1) {
+            long id = this.batchId;
+            this.lingerTask = this.lingerScheduler.schedule(
+                    () -> lingerFlush(id), this.options.lingerMs, TimeUnit.MILLISECONDS);
+        }
+        if (rows >= this.batchRows
+                || (this.options.maxBytes > 0
+                        && rows % BYTES_CHECK_INTERVAL == 0
+                        && table.bytesUsed() >= this.options.maxBytes)) {
+            seal();
+        }
+    }
+
+    private void lingerFlush(long id) {
+        // Do not hold up the linger thread behind a producer waiting for the stream, the
+        // producer checks in again once the lock is released
+        if (!this.lock.tryLock()) {
+            reschedule(id);
+            return;
+        }
+        try {
+            if (this.batchId == id && this.failure.get() == null && detach()) {
+                // Only the batch is sealed on the shared linger thread, it is written on the send pool
+                CompletableFuture<Void> lingerSend = new CompletableFuture<>();
+                this.lingerSend = lingerSend;
+                Runnable task = () -> {
+                    try {
+                        send();
+                    } catch (Throwable t) {
+                        this.failure.compareAndSet(null, t);
+                    } finally {
+                        lingerSend.complete(null);
+                    }
+                };
+                try {
+                    this.sendExecutor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    task.run();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void reschedule(long id) {
+        try {
+            this.lingerScheduler.schedule(() -> lingerFlush(id), this.options.lingerMs, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+            // The scheduler is shut down, the sink is closed
+        }
+    }
+
+    // Must hold `lock`
+    private CompletableFuture<Integer> seal() {
+        if (!detach()) {
+            return Util.completedCf(0);
+        }
+        return send();
+    }
+
+    // Must hold `lock`, the writer gets no other table until the detached one is sent
+    private boolean detach() {
+        Table.TableBufferRoot table = this.table;
+        if (table == null || table.rowCount() == 0) {
+            return false;
+        }
+        this.table = null;
+        cancelLinger();
+        return true;
+    }
+
+    private CompletableFuture<Integer> send() {
+        CompletableFuture<Integer> future = this.writer.writeNextAsync();
+        future.whenComplete((r, t) -> {
+            if (t != null) {
+                this.failure.compareAndSet(null, t);
+            }
+        });
+        return future;
+    }
+
+    // Must hold `lock`
+    private void cancelLinger() {
+        if (this.lingerTask != null) {
+            this.lingerTask.cancel(false);
+            this.lingerTask = null;
+        }
+    }
+
+    private void checkFailure() {
+        Throwable t = this.failure.get();
+        if (t != null) {
+            throw new IllegalStateException("The bulk sink failed on a previous batch", t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BulkSink{" + "writer=" + writer + ", options=" + options + '}';
+    }
+
+    /**
+     * The thresholds of the batches of a {@link BulkSink}.
+     */
+    public static class Options {
+        private int maxRows = AdaptiveBulkWriter.DEFAULT_BATCH_ROWS;
+        private long maxBytes = 0;
+        private long lingerMs = 200;
+
+        private Options() {}
+
+        public static Builder newBuilder() {
+            return new Builder();
+        }
+
+        public int getMaxRows() {
+            return maxRows;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public long getLingerMs() {
+            return lingerMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Options{" + "maxRows=" + maxRows + ", maxBytes=" + maxBytes + ", lingerMs=" + lingerMs + '}';
+        }
+
+        public static class Builder {
+            private final Options options = new Options();
+
+            /**
+             * Set the max rows of a batch. With the adaptive batch sizing of the stream, the
+             * batches follow its target rows up to this max.
+             *
+             * @param maxRows the max rows per batch
+             * @return this builder
+             */
+            public Builder maxRows(int maxRows) {
+                options.maxRows = maxRows;
+                return this;
+            }
+
+            /**
+             * Set the max bytes of a batch, 0 for no limit.
+             *
+             * @param maxBytes the max bytes per batch
+             * @return this builder
+             */
+            public Builder maxBytes(long maxBytes) {
+                options.maxBytes = maxBytes;
+                return this;
+            }
+
+            /**
+             * Set the max time a batch waits for more rows after its first row.
+             *
+             * @param lingerMs the linger time in milliseconds
+             * @return this builder
+             */
+            public Builder lingerMs(long lingerMs) {
+                options.lingerMs = lingerMs;
+                return this;
+            }
+
+            public Options build() {
+                return options;
+            }
+        }
+    }
+}
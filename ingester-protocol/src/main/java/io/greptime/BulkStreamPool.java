@@ -0,0 +1,574 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.common.util.Clock;
+import io.greptime.common.util.Cpus;
+import io.greptime.common.util.Ensures;
+import io.greptime.common.util.ExecutorServiceHelper;
+import io.greptime.common.util.NamedThreadFactory;
+import io.greptime.common.util.ObjectPool;
+import io.greptime.common.util.SharedScheduledPool;
+import io.greptime.common.util.SharedThreadPool;
+import io.greptime.common.util.ThreadPoolUtil;
+import io.greptime.errors.LimitedException;
+import io.greptime.models.Table;
+import io.greptime.models.TableSchema;
+import io.greptime.v1.RowData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of bulk streams, one per table and schema, shared by all the callers. A stream is opened
+ * on the first row of its table and written through a {@link BulkSink}, so the callers of the
+ * same table are multiplexed onto it and its batches are flushed by the thresholds of the sink.
+ *
+ * <p>The open streams are capped: opening one more evicts the least recently used idle stream,
+ * and waits for one to become idle if they are all in use. A stream unused for the idle timeout
+ * is evicted too. An evicted stream writes its remaining rows and completes before it is closed,
+ * so no row is lost. A stream whose batch failed is closed and opened again on the next row.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * BulkStreamPool.Options options = BulkStreamPool.Options.newBuilder()
+ *         .maxOpenStreams(128)
+ *         .idleTimeoutMs(60000)
+ *         .build();
+ * try (BulkStreamPool pool = greptimeDB.bulkStreamPool(options)) {
+ *     // From any thread, to any table
+ *     pool.add(schema, host, ts, cpu);
+ *     ...
+ * }
+ * }</pre>
+ */
+public class BulkStreamPool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkStreamPool.class);
+
+    private static final SharedScheduledPool EVICTION_POOL =
+            Util.getSharedScheduledPool("bulk_stream_pool_eviction", 1);
+
+    // Closing a stream blocks until the server finishes processing it, so the streams are closed
+    // out of the eviction thread, which only runs the timers
+    private static final SharedThreadPool CLOSE_POOL =
+            new SharedThreadPool(new ObjectPool.Resource<ExecutorService>() {
+
+                @Override
+                public ExecutorService create() {
+                    String name = "bulk_stream_pool_close";
+                    return ThreadPoolUtil.newBuilder()
+                            .poolName(name)
+                            .enableMetric(true)
+                            .coreThreads(Cpus.cpus())
+                            .maximumThreads(Cpus.cpus())
+                            .keepAliveSeconds(60L)
+                            .workQueue(new LinkedBlockingQueue<>())
+                            .threadFactory(new NamedThreadFactory(name, true))
+                            .build();
+                }
+
+                @Override
+                public void close(ExecutorService instance) {
+                    ExecutorServiceHelper.shutdownAndAwaitTermination(instance);
+                }
+            });
+
+    private final Function<TableSchema, BulkStreamWriter> opener;
+    private final Options options;
+    private final Consumer<BulkStreamPool> onClose;
+    private final ScheduledExecutorService evictionScheduler;
+    private final ExecutorService closeExecutor;
+    private final ScheduledFuture<?> idleSweepTask;
+    // Guarded by `this`, in access order, the least recently used first
+    private final LinkedHashMap<StreamKey, Entry> streams = new LinkedHashMap<>(16, 0.75f, true);
+    // The streams being completed and closed
+    private final Set<CompletableFuture<Void>> retiring = ConcurrentHashMap.newKeySet();
+    // Guarded by `this`
+    private boolean closed;
+
+    /**
+     * @param opener opens the stream of a table
+     * @param options the options of the pool
+     * @param onClose called once the pool is closed
+     */
+    BulkStreamPool(
+            Function<TableSchema, BulkStreamWriter> opener, Options options, Consumer<BulkStreamPool> onClose) {
+        this.opener = Ensures.ensureNonNull(opener, "null `opener`");
+        this.options = Ensures.ensureNonNull(options, "null `options`");
+        this.onClose = onClose;
+        Ensures.ensure(options.maxOpenStreams > 0, "`maxOpenStreams` must be positive: %d", options.maxOpenStreams);
+        Ensures.ensure(options.idleTimeoutMs > 0, "`idleTimeoutMs` must be positive: %d", options.idleTimeoutMs);
+        this.evictionScheduler = EVICTION_POOL.getObject();
+        this.closeExecutor = CLOSE_POOL.getObject();
+        long sweepPeriodMs = Math.max(1, options.idleTimeoutMs / 2);
+        this.idleSweepTask = this.evictionScheduler.scheduleWithFixedDelay(
+                this::evictIdle, sweepPeriodMs, sweepPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a row to the stream of the table, the values must match the order of the schema.
+     *
+     * @param schema the schema of the table
+     * @param values the values of the row
+     * @throws Exception if the stream can not be opened, or the row can not be written
+     */
+    public void add(TableSchema schema, Object... values) throws Exception {
+        Entry entry = lease(schema);
+        try {
+            entry.sink().add(values);
+        } catch (Exception e) {
+            onFailure(entry);
+            throw e;
+        } finally {
+            unlease(entry);
+        }
+    }
+
+    /**
+     * Adds a row to the stream of the table with the typed setters of a {@link Table.RowWriter}.
+     *
+     * @param schema the schema of the table
+     * @param row sets the values of the row
+     * @throws Exception if the stream can not be opened, or the row can not be written
+     */
+    public void add(TableSchema schema, Consumer<Table.RowWriter> row) throws Exception {
+        Entry entry = lease(schema);
+        try {
+            entry.sink().add(row);
+        } catch (Exception e) {
+            onFailure(entry);
+            throw e;
+        } finally {
+            unlease(entry);
+        }
+    }
+
+    /**
+     * Writes the rows added to all the open streams, without waiting for the thresholds.
+     *
+     * @return a future completed when the batches are written
+     */
+    public CompletableFuture<Void> flush() {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(this.streams.values());
+        }
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (!entry.opened.isDone() || entry.opened.isCompletedExceptionally()) {
+                continue;
+            }
+            try {
+                futures.add(entry.opened.join().flush());
+            } catch (Exception e) {
+                futures.add(Util.errorCf(e));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * @return the number of open streams, including the ones being opened
+     */
+    public synchronized int openStreams() {
+        return this.streams.size();
+    }
+
+    /**
+     * Completes all the streams and closes them, waiting for the server to finish processing the
+     * data.
+     */
+    @Override
+    public void close() throws Exception {
+        List<Entry> entries;
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            entries = new ArrayList<>(this.streams.values());
+            this.streams.clear();
+            notifyAll();
+        }
+        this.idleSweepTask.cancel(false);
+
+        for (Entry entry : entries) {
+            retire(entry, true);
+        }
+        // Including the streams evicted before
+        List<CompletableFuture<Void>> futures = new ArrayList<>(this.retiring);
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } finally {
+            EVICTION_POOL.returnObject(this.evictionScheduler);
+            CLOSE_POOL.returnObject(this.closeExecutor);
+            if (this.onClose != null) {
+                this.onClose.accept(this);
+            }
+        }
+    }
+
+    private Entry lease(TableSchema schema) throws InterruptedException {
+        StreamKey key = new StreamKey(schema);
+        Entry entry;
+        Entry evicted = null;
+        boolean opening = false;
+        synchronized (this) {
+            long deadline = Clock.defaultClock().getTick() + this.options.blockTimeoutMs;
+            while (true) {
+                Ensures.ensure(!this.closed, "The bulk stream pool is closed");
+                entry = this.streams.get(key);
+                if (entry != null) {
+                    break;
+                }
+                if (this.streams.size() < this.options.maxOpenStreams) {
+                    entry = new Entry(key);
+                    this.streams.put(key, entry);
+                    opening = true;
+                    break;
+                }
+                evicted = pollLeastRecentlyUsedIdle();
+                if (evicted != null) {
+                    continue;
+                }
+                long remaining = deadline - Clock.defaultClock().getTick();
+                if (remaining <= 0) {
+                    throw new LimitedException(String.format(
+                            "Bulk stream pool limited, maxOpenStreams=%d, all the streams are in use.",
+                            this.options.maxOpenStreams));
+                }
+                wait(remaining);
+            }
+            entry.leases++;
+        }
+
+        if (evicted != null) {
+            LOG.debug("Evicting the least recently used bulk stream: {}.", evicted.key);
+            retire(evicted, true);
+        }
+        if (opening) {
+            open(entry, schema);
+        }
+        return entry;
+    }
+
+    private void open(Entry entry, TableSchema schema) {
+        try {
+            BulkStreamWriter writer = this.opener.apply(schema);
+            entry.opened.complete(new BulkSink(writer, this.options.sinkOptions));
+            LOG.info("Bulk stream opened in the pool: {}.", entry.key);
+        } catch (Throwable t) {
+            entry.opened.completeExceptionally(t);
+            synchronized (this) {
+                this.streams.remove(entry.key, entry);
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void unlease(Entry entry) {
+        entry.leases--;
+        entry.lastUsedTick = Clock.defaultClock().getTick();
+        if (entry.leases == 0) {
+            notifyAll();
+        }
+    }
+
+    // Must hold `this`
+    private Entry pollLeastRecentlyUsedIdle() {
+        Iterator<Entry> it = this.streams.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.leases == 0 && entry.opened.isDone()) {
+                it.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void evictIdle() {
+        List<Entry> idle = new ArrayList<>();
+        synchronized (this) {
+            long now = Clock.defaultClock().getTick();
+            Iterator<Entry> it = this.streams.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.leases == 0
+                        && entry.opened.isDone()
+                        && now - entry.lastUsedTick >= this.options.idleTimeoutMs) {
+                    it.remove();
+                    idle.add(entry);
+                }
+            }
+            if (!idle.isEmpty()) {
+                notifyAll();
+            }
+        }
+        for (Entry entry : idle) {
+            LOG.debug("Evicting the idle bulk stream: {}.", entry.key);
+            retire(entry, true);
+        }
+    }
+
+    private void onFailure(Entry entry) {
+        BulkSink sink = entry.opened.getNow(null);
+        if (sink == null || !sink.isFailed()) {
+            return;
+        }
+        boolean removed;
+        synchronized (this) {
+            removed = this.streams.remove(entry.key, entry);
+            notifyAll();
+        }
+        if (removed) {
+            LOG.warn("Closing the failed bulk stream: {}.", entry.key);
+            retire(entry, false);
+        }
+    }
+
+    /**
+     * Completes the stream if asked, then closes it, out of the lock of the pool. The stream is
+     * closed on the close executor, not on the thread completing the stream nor the eviction thread.
+     */
+    private CompletableFuture<Void> retire(Entry entry, boolean complete) {
+        CompletableFuture<Void> future = entry.opened
+                .thenCompose(sink -> complete ? sink.completedAsync() : Util.completedCf(null))
+                .whenCompleteAsync(
+                        (r, t) -> {
+                            if (t != null) {
+                                LOG.warn("Failed to complete the bulk stream: {}.", entry.key, t);
+                            }
+                            BulkSink sink = entry.opened.getNow(null);
+                            if (sink == null) {
+                                return;
+                            }
+                            try {
+                                sink.close();
+                            } catch (Exception e) {
+                                LOG.error("Failed to close the bulk stream: {}.", entry.key, e);
+                            }
+                        },
+                        this.closeExecutor);
+        this.retiring.add(future);
+        future.whenComplete((r, t) -> this.retiring.remove(future));
+        return future;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BulkStreamPool{" + "options=" + options + ", openStreams=" + streams.size() + ", closed=" + closed
+                + '}';
+    }
+
+    private static final class Entry {
+        final StreamKey key;
+        // Completed by the caller that opens the stream, the other callers of the table wait for it
+        final CompletableFuture<BulkSink> opened = new CompletableFuture<>();
+        // Guarded by the pool
+        int leases;
+        // Guarded by the pool
+        long lastUsedTick = Clock.defaultClock().getTick();
+
+        Entry(StreamKey key) {
+            this.key = key;
+        }
+
+        BulkSink sink() throws Exception {
+            try {
+                return this.opened.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+    }
+
+    /**
+     * Two schemas of the same table and columns share a stream.
+     */
+    private static final class StreamKey {
+        final String tableName;
+        final List<RowData.ColumnSchema> columnSchemas;
+        // A dictionary-encoded column has another Arrow type, 0 if not encoded
+        final int[] dictionaryMaxSizes;
+
+        StreamKey(TableSchema schema) {
+            this.tableName = schema.getTableName();
+            this.columnSchemas = schema.getColumnSchemas();
+            this.dictionaryMaxSizes = new int[schema.getColumnCount()];
+            for (int i = 0; i < this.dictionaryMaxSizes.length; i++) {
+                if (schema.isDictionaryEncoded(i)) {
+                    this.dictionaryMaxSizes[i] = schema.getDictionaryMaxSize(i);
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            StreamKey that = (StreamKey) o;
+            return tableName.equals(that.tableName)
+                    && columnSchemas.equals(that.columnSchemas)
+                    && Arrays.equals(dictionaryMaxSizes, that.dictionaryMaxSizes);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * tableName.hashCode() + columnSchemas.hashCode();
+            return 31 * result + Arrays.hashCode(dictionaryMaxSizes);
+        }
+
+        @Override
+        public String toString() {
+            return tableName;
+        }
+    }
+
+    /**
+     * The options of a {@link BulkStreamPool}.
+     */
+    public static class Options {
+        private int maxOpenStreams = 64;
+        private long idleTimeoutMs = 5 * 60 * 1000;
+        private long blockTimeoutMs = 3000;
+        private BulkWrite.Config config = BulkWrite.Config.newBuilder().build();
+        private BulkSink.Options sinkOptions = BulkSink.Options.newBuilder().build();
+
+        private Options() {}
+
+        public static Builder newBuilder() {
+            return new Builder();
+        }
+
+        public int getMaxOpenStreams() {
+            return maxOpenStreams;
+        }
+
+        public long getIdleTimeoutMs() {
+            return idleTimeoutMs;
+        }
+
+        public long getBlockTimeoutMs() {
+            return blockTimeoutMs;
+        }
+
+        public BulkWrite.Config getConfig() {
+            return config;
+        }
+
+        public BulkSink.Options getSinkOptions() {
+            return sinkOptions;
+        }
+
+        @Override
+        public String toString() {
+            return "Options{" + "maxOpenStreams="
+                    + maxOpenStreams + ", idleTimeoutMs="
+                    + idleTimeoutMs + ", blockTimeoutMs="
+                    + blockTimeoutMs + ", sinkOptions="
+                    + sinkOptions + '}';
+        }
+
+        public static class Builder {
+            private final Options options = new Options();
+
+            /**
+             * Set the max number of open streams, each holds a connection and its Arrow buffers.
+             *
+             * @param maxOpenStreams the max open streams
+             * @return this builder
+             */
+            public Builder maxOpenStreams(int maxOpenStreams) {
+                options.maxOpenStreams = maxOpenStreams;
+                return this;
+            }
+
+            /**
+             * Set the time after which an unused stream is completed and closed.
+             *
+             * @param idleTimeoutMs the idle timeout in milliseconds
+             * @return this builder
+             */
+            public Builder idleTimeoutMs(long idleTimeoutMs) {
+                options.idleTimeoutMs = idleTimeoutMs;
+                return this;
+            }
+
+            /**
+             * Set the max time a caller waits for a stream when all the open streams are in use.
+             *
+             * @param blockTimeoutMs the max time to wait in milliseconds
+             * @return this builder
+             */
+            public Builder blockTimeoutMs(long blockTimeoutMs) {
+                options.blockTimeoutMs = blockTimeoutMs;
+                return this;
+            }
+
+            /**
+             * Set the config of the streams.
+             *
+             * @param config the config of each stream
+             * @return this builder
+             */
+            public Builder config(BulkWrite.Config config) {
+                options.config = config;
+                return this;
+            }
+
+            /**
+             * Set the batch thresholds of the streams.
+             *
+             * @param sinkOptions the options of the sink of each stream
+             * @return this builder
+             */
+            public Builder sinkOptions(BulkSink.Options sinkOptions) {
+                options.sinkOptions = sinkOptions;
+                return this;
+            }
+
+            public Options build() {
+                return options;
+            }
+        }
+    }
+}
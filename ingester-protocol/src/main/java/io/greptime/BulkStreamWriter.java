@@ -18,6 +18,7 @@ package io.greptime;
 
 import io.greptime.models.Table;
 import java.util.concurrent.CompletableFuture;
+import org.apache.arrow.vector.VectorSchemaRoot;
 
 /**
  * {@code BulkStreamWriter} is a specialized interface for efficiently writing data to the server in bulk operations.
@@ -34,6 +35,10 @@ import java.util.concurrent.CompletableFuture;
  * errors are properly reported. Additionally, you should call the {@code close()} method to ensure all
  * related resources are properly released, though this happens automatically when using try-with-resources.
  *
+ * <p>Where threads must not be blocked, such as in an event loop, use {@code whenReady()},
+ * {@code writeNextAsync()} and {@code completedAsync()} instead, they are driven by the
+ * readiness notifications of the stream rather than by waiting.
+ *
  * <p>Example usage:
  * <pre>{@code
  * try (BulkStreamWriter bulkStreamWriter = greptimeDB.bulkStreamWriter(schema)) { // auto close in try-with-resources
@@ -67,12 +72,31 @@ public interface BulkStreamWriter extends AutoCloseable {
      * The {@code TableBufferRoot} provides direct access to the underlying memory
      * where table data is stored for efficient bulk operations.
      *
+     * <p>After {@code writeNext()}, the table of the written batch is {@link Table#reset() reset}
+     * and returned again if the same {@code columnBufferSize} is requested, so the steady state
+     * does not allocate a new table per batch.
+     *
+     * <p>With a {@link BulkWrite.Config.Builder#rootRingSize(int) ring of roots}, each call after
+     * {@code writeNext()} returns the table of a free root, so it can be filled while the previous
+     * batch is still being sent. It blocks only if all the roots are still being sent.
+     *
      * @param columnBufferSize the buffer size for each column
      *
      * @return a table buffer root
      */
     Table.TableBufferRoot tableBufferRoot(int columnBufferSize);
 
+    /**
+     * Returns the number of rows the next batch should have, as steered by the
+     * {@link BulkWrite.Config.Builder#adaptiveBatchSizing adaptive batch sizing} of the stream
+     * from the observed put latency. {@link AdaptiveBulkWriter} flushes the batches at this size.
+     *
+     * @return the target rows per batch, -1 if the adaptive batch sizing is disabled
+     */
+    default int targetBatchRows() {
+        return -1;
+    }
+
     /**
      * Writes current table data to the stream.
      *
@@ -81,6 +105,28 @@ public interface BulkStreamWriter extends AutoCloseable {
      */
     CompletableFuture<Integer> writeNext() throws Exception;
 
+    /**
+     * Writes a batch held by the caller in its own {@code VectorSchemaRoot}. The columns of the
+     * root must match the table schema, in order, by name and type, with the dictionary-encoded
+     * columns holding their plain values.
+     *
+     * <p>The buffers of the vectors are moved into the stream with Arrow {@code TransferPair}s, so
+     * the values are not copied, and the vectors of the caller are left empty: the stream owns the
+     * buffers from this call, and releases them once the batch is sent. For the move, the root
+     * must be allocated from a child of {@link BulkWriteManager#getRootAllocator()}, the values are
+     * copied otherwise. The dictionary-encoded columns are encoded into the dictionary of the
+     * stream.
+     *
+     * <p>No table buffer from {@code tableBufferRoot()} may be in progress.
+     *
+     * @param root the batch, its vectors are emptied
+     * @return a future that completes with the number of rows affected
+     * @throws Exception if an error occurs
+     */
+    default CompletableFuture<Integer> writeNext(VectorSchemaRoot root) throws Exception {
+        return Util.errorCf(new UnsupportedOperationException("writeNext(VectorSchemaRoot)"));
+    }
+
     /**
      * Completes the bulk write operation by signaling the end of transmission
      * and waits for the server to finish processing the data. This method
@@ -93,11 +139,59 @@ public interface BulkStreamWriter extends AutoCloseable {
 
     /**
      * If the stream is not ready, calling {@code writeNext()} will block until the stream
-     * becomes ready for writing, potentially using a busy-wait mechanism.
+     * becomes ready for writing.
      *
      * @return true if the stream is ready to write data, false otherwise
      */
     default boolean isStreamReady() {
         return true;
     }
+
+    /**
+     * Returns a future that is completed when the writer can take the next table without blocking:
+     * the tables queued by {@code writeNextAsync()} are handed off to the stream, the stream is
+     * ready and an in-flight request slot is free. It is driven by the notifications of the
+     * stream and the responses of the server, no thread is blocked nor polling while waiting.
+     *
+     * <p>Before asking for the next {@code tableBufferRoot()} after {@code writeNextAsync()}, wait
+     * for this future, as the table of the previous batch may still be queued.
+     *
+     * @return a future completed when the writer is ready, failed if the stream is terminated
+     */
+    default CompletableFuture<Void> whenReady() {
+        return Util.completedCf(null);
+    }
+
+    /**
+     * Writes current table data to the stream without blocking the caller. If the stream is not
+     * ready, or all the in-flight request slots are taken, the table is queued and sent once
+     * they are available, in the order of the calls.
+     *
+     * <p>Do not mix it with {@code writeNext()} on the same writer.
+     *
+     * @return a future that completes with the number of rows affected
+     */
+    default CompletableFuture<Integer> writeNextAsync() {
+        try {
+            return writeNext();
+        } catch (Exception e) {
+            return Util.errorCf(e);
+        }
+    }
+
+    /**
+     * Completes the bulk write operation without blocking the caller, the end of transmission
+     * is signaled after all the queued tables are sent. The writer must still be closed.
+     *
+     * @return a future completed when the server finishes processing the data, failed with
+     *     any error that may have occurred during the operation
+     */
+    default CompletableFuture<Void> completedAsync() {
+        try {
+            completed();
+            return Util.completedCf(null);
+        } catch (Exception e) {
+            return Util.errorCf(e);
+        }
+    }
 }
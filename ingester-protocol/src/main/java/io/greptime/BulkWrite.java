@@ -47,11 +47,22 @@ public interface BulkWrite {
      */
     int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 8;
 
+    /**
+     * The default number of {@code VectorSchemaRoot}s of a stream.
+     *
+     * With a single root, {@code writeNext()} sends the root before it returns. With more roots, the
+     * filled root is sent by a background thread while the next one is being filled, at the cost of
+     * the memory of the extra roots.
+     */
+    int DEFAULT_ROOT_RING_SIZE = 1;
+
     static class Config {
         private long allocatorInitReservation = DEFAULT_ALLOCATOR_INIT_RESERVATION;
         private long allocatorMaxAllocation = DEFAULT_ALLOCATOR_MAX_ALLOCATION;
         private long timeoutMsPerMessage = DEFAULT_TIMEOUT_MS_PER_MESSAGE;
         private int maxRequestsInFlight = DEFAULT_MAX_REQUESTS_IN_FLIGHT;
+        private int rootRingSize = DEFAULT_ROOT_RING_SIZE;
+        private AdaptiveBatchSizer.Options adaptiveBatchSizing;
 
         private Config() {}
 
@@ -75,6 +86,14 @@ public interface BulkWrite {
             return maxRequestsInFlight;
         }
 
+        public int getRootRingSize() {
+            return rootRingSize;
+        }
+
+        public AdaptiveBatchSizer.Options getAdaptiveBatchSizing() {
+            return adaptiveBatchSizing;
+        }
+
         public static class Builder {
             private final Config config = new Config();
 
@@ -125,6 +144,32 @@ public interface BulkWrite {
                 return this;
             }
 
+            /**
+             * Set the number of {@code VectorSchemaRoot}s of the stream.
+             *
+             * With more than one root, {@code writeNext()} hands the filled root off to a sender thread
+             * and returns at once, so the next batch is built while the previous one is encoded and sent.
+             *
+             * @param rootRingSize the number of roots
+             * @return this builder
+             */
+            public Builder rootRingSize(int rootRingSize) {
+                config.rootRingSize = rootRingSize;
+                return this;
+            }
+
+            /**
+             * Enables the adaptive batch sizing of the stream, the rows per batch are steered by the
+             * observed put latency, see {@link BulkStreamWriter#targetBatchRows()} and {@link AdaptiveBulkWriter}.
+             *
+             * @param adaptiveBatchSizing the options of the sizing, null to disable it
+             * @return this builder
+             */
+            public Builder adaptiveBatchSizing(AdaptiveBatchSizer.Options adaptiveBatchSizing) {
+                config.adaptiveBatchSizing = adaptiveBatchSizing;
+                return this;
+            }
+
             public Config build() {
                 return config;
             }
@@ -139,6 +184,17 @@ public interface BulkWrite {
         return bulkStreamWriter(schema, config, Context.newDefault());
     }
 
+    /**
+     * Creates a bulk stream writer for efficiently writing data to the server.
+     *
+     * <p>Implementations that support {@link Config#getAdaptiveBatchSizing() adaptive batch sizing}
+     * override this method, the default ignores it.
+     *
+     * @param schema the schema of the table
+     * @param config the config of the stream
+     * @param ctx invoke context
+     * @return a bulk stream writer instance
+     */
     default BulkStreamWriter bulkStreamWriter(TableSchema schema, Config config, Context ctx) {
         return bulkStreamWriter(
                 schema,
@@ -146,6 +202,7 @@ public interface BulkWrite {
                 config.getAllocatorMaxAllocation(),
                 config.getTimeoutMsPerMessage(),
                 config.getMaxRequestsInFlight(),
+                config.getRootRingSize(),
                 ctx);
     }
 
@@ -167,4 +224,83 @@ public interface BulkWrite {
             long timeoutMsPerMessage,
             int maxRequestsInFlight,
             Context ctx);
+
+    /**
+     * Creates a bulk stream writer for efficiently writing data to the server.
+     *
+     * <p>Implementations that support a {@link Config#getRootRingSize() ring of roots} override
+     * this method, the default ignores {@code rootRingSize} and uses a single root.
+     *
+     * @param schema the schema of the table
+     * @param allocatorInitReservation the initial space reservation (obtained from this allocator)
+     * @param allocatorMaxAllocation the maximum amount of space the new child allocator can allocate
+     * @param timeoutMsPerMessage the timeout in milliseconds for each message
+     * @param maxRequestsInFlight the max in-flight requests in the stream
+     * @param rootRingSize the number of {@code VectorSchemaRoot}s of the stream
+     * @param ctx invoke context
+     * @return a bulk stream writer instance
+     */
+    default BulkStreamWriter bulkStreamWriter(
+            TableSchema schema,
+            long allocatorInitReservation,
+            long allocatorMaxAllocation,
+            long timeoutMsPerMessage,
+            int maxRequestsInFlight,
+            int rootRingSize,
+            Context ctx) {
+        return bulkStreamWriter(
+                schema,
+                allocatorInitReservation,
+                allocatorMaxAllocation,
+                timeoutMsPerMessage,
+                maxRequestsInFlight,
+                ctx);
+    }
+
+    default BulkStreamWriter parallelBulkStreamWriter(TableSchema schema, int parallelism) {
+        return parallelBulkStreamWriter(schema, parallelism, Config.newBuilder().build());
+    }
+
+    default BulkStreamWriter parallelBulkStreamWriter(TableSchema schema, int parallelism, Config config) {
+        return parallelBulkStreamWriter(schema, parallelism, config, Context.newDefault());
+    }
+
+    /**
+     * Creates a bulk stream writer that fans out over {@code parallelism} streams of the same table.
+     * The streams are spread over the endpoints of the router, each stream is configured by
+     * {@code config}, so the in-flight requests and memory are per stream.
+     *
+     * <p>Each {@code tableBufferRoot()} is taken from the stream with the fewest in-flight requests,
+     * and the following {@code writeNext()} sends it on that stream. {@code completed()} completes
+     * all the streams.
+     *
+     * <p>Implementations that support parallel streams override this method, the default throws
+     * {@link UnsupportedOperationException}.
+     *
+     * @param schema the schema of the table
+     * @param parallelism the number of streams
+     * @param config the config of each stream
+     * @param ctx invoke context
+     * @return a bulk stream writer instance
+     */
+    default BulkStreamWriter parallelBulkStreamWriter(TableSchema schema, int parallelism, Config config, Context ctx) {
+        throw new UnsupportedOperationException("Parallel bulk streams are not supported by " + getClass().getName());
+    }
+
+    default BulkStreamPool bulkStreamPool(BulkStreamPool.Options options) {
+        return bulkStreamPool(options, Context.newDefault());
+    }
+
+    /**
+     * Creates a pool of bulk streams, one per table and schema, opened on the first row of the
+     * table and shared by all the callers. The open streams are capped, and the idle ones are
+     * completed and closed, see {@link BulkStreamPool}.
+     *
+     * @param options the options of the pool and of its streams
+     * @param ctx invoke context of the streams
+     * @return a bulk stream pool instance
+     */
+    default BulkStreamPool bulkStreamPool(BulkStreamPool.Options options, Context ctx) {
+        return new BulkStreamPool(schema -> bulkStreamWriter(schema, options.getConfig(), ctx), options, null);
+    }
 }
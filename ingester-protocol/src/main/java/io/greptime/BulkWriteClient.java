@@ -22,11 +22,17 @@ import io.greptime.common.Display;
 import io.greptime.common.Endpoint;
 import io.greptime.common.Keys;
 import io.greptime.common.Lifecycle;
+import io.greptime.common.MemoryGovernor;
 import io.greptime.common.util.Clock;
+import io.greptime.common.util.Cpus;
 import io.greptime.common.util.Ensures;
+import io.greptime.common.util.ExecutorServiceHelper;
 import io.greptime.common.util.MetricExecutor;
 import io.greptime.common.util.MetricsUtil;
+import io.greptime.common.util.NamedThreadFactory;
 import io.greptime.common.util.SerializingExecutor;
+import io.greptime.common.util.ThreadPoolUtil;
+import io.greptime.errors.LimitedException;
 import io.greptime.limit.AbstractLimiter;
 import io.greptime.limit.LimitedPolicy;
 import io.greptime.models.ArrowHelper;
@@ -35,14 +41,35 @@ import io.greptime.models.Table;
 import io.greptime.models.TableSchema;
 import io.greptime.options.BulkWriteOptions;
 import io.greptime.rpc.Context;
+import io.greptime.rpc.RpcOptions;
 import io.greptime.rpc.TlsOptions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import org.apache.arrow.flight.FlightCallHeaders;
 import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.ReferenceManager;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.message.ArrowFieldNode;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +85,10 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
     private BulkWriteOptions opts;
     private RouterClient routerClient;
     private Executor asyncPool;
+    // Hands the tables queued by `writeNextAsync()` off to the streams, off the gRPC callback executor
+    private ExecutorService sendPool;
+    // The stream pools not closed yet, they are closed with the client
+    private final Set<BulkStreamPool> streamPools = ConcurrentHashMap.newKeySet();
 
     @Override
     public boolean init(BulkWriteOptions opts) {
@@ -66,12 +97,57 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
         Executor pool = this.opts.getAsyncPool();
         this.asyncPool = pool != null ? pool : new SerializingExecutor("bulk_write_client");
         this.asyncPool = new MetricExecutor(this.asyncPool, "async_bulk_write_pool");
+        String sendPoolName = "bulk_write_async_send";
+        this.sendPool = ThreadPoolUtil.newBuilder()
+                .poolName(sendPoolName)
+                .enableMetric(true)
+                .coreThreads(Cpus.cpus())
+                .maximumThreads(Cpus.cpus())
+                .keepAliveSeconds(60L)
+                .workQueue(new LinkedBlockingQueue<>())
+                .threadFactory(new NamedThreadFactory(sendPoolName, true))
+                .build();
         return true;
     }
 
     @Override
     public void shutdownGracefully() {
-        // NO-OP
+        for (BulkStreamPool pool : this.streamPools) {
+            try {
+                pool.close();
+            } catch (Exception e) {
+                LOG.error("Failed to close the bulk stream pool: {}.", pool, e);
+            }
+        }
+        if (this.sendPool != null) {
+            ExecutorServiceHelper.shutdownAndAwaitTermination(this.sendPool);
+        }
+    }
+
+    @Override
+    public BulkStreamPool bulkStreamPool(BulkStreamPool.Options options, Context ctx) {
+        BulkStreamPool pool = new BulkStreamPool(
+                schema -> bulkStreamWriter(schema, options.getConfig(), ctx), options, this.streamPools::remove);
+        this.streamPools.add(pool);
+        return pool;
+    }
+
+    @Override
+    public BulkStreamWriter bulkStreamWriter(
+            TableSchema schema,
+            long allocatorInitReservation,
+            long allocatorMaxAllocation,
+            long timeoutMsPerMessage,
+            int maxRequestsInFlight,
+            Context ctx) {
+        return bulkStreamWriter(
+                schema,
+                allocatorInitReservation,
+                allocatorMaxAllocation,
+                timeoutMsPerMessage,
+                maxRequestsInFlight,
+                DEFAULT_ROOT_RING_SIZE,
+                ctx);
     }
 
     @Override
@@ -81,6 +157,7 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
             long allocatorMaxAllocation,
             long timeoutMsPerMessage,
             int maxRequestsInFlight,
+            int rootRingSize,
             Context ctx) {
         return this.routerClient
                 .route()
@@ -91,10 +168,66 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
                         allocatorMaxAllocation,
                         timeoutMsPerMessage,
                         maxRequestsInFlight,
+                        rootRingSize,
+                        null,
+                        ctx))
+                .join();
+    }
+
+    @Override
+    public BulkStreamWriter bulkStreamWriter(TableSchema schema, Config config, Context ctx) {
+        return this.routerClient
+                .route()
+                .thenApply(endpoint -> bulkStreamWriteTo(
+                        endpoint,
+                        schema,
+                        config.getAllocatorInitReservation(),
+                        config.getAllocatorMaxAllocation(),
+                        config.getTimeoutMsPerMessage(),
+                        config.getMaxRequestsInFlight(),
+                        config.getRootRingSize(),
+                        config.getAdaptiveBatchSizing(),
                         ctx))
                 .join();
     }
 
+    @Override
+    public BulkStreamWriter parallelBulkStreamWriter(
+            TableSchema schema, int parallelism, Config config, Context ctx) {
+        Ensures.ensure(parallelism > 0, "`parallelism` must be positive: %d", parallelism);
+        return this.routerClient
+                .route(parallelism)
+                .thenApply(endpoints -> {
+                    List<BulkStreamWriter> writers = new ArrayList<>(endpoints.size());
+                    try {
+                        for (Endpoint endpoint : endpoints) {
+                            writers.add(bulkStreamWriteTo(
+                                    endpoint,
+                                    schema,
+                                    config.getAllocatorInitReservation(),
+                                    config.getAllocatorMaxAllocation(),
+                                    config.getTimeoutMsPerMessage(),
+                                    config.getMaxRequestsInFlight(),
+                                    config.getRootRingSize(),
+                                    config.getAdaptiveBatchSizing(),
+                                    ctx));
+                        }
+                    } catch (Throwable t) {
+                        for (BulkStreamWriter writer : writers) {
+                            try {
+                                writer.close();
+                            } catch (Exception e) {
+                                t.addSuppressed(e);
+                            }
+                        }
+                        throw t;
+                    }
+                    LOG.info("Parallel bulk stream writer opened {} streams to: {}", writers.size(), endpoints);
+                    return (BulkStreamWriter) new ParallelBulkStreamWriter(writers);
+                })
+                .join();
+    }
+
     /**
      * Creates a BulkStreamWriter for the specified endpoint and schema.
      *
@@ -104,6 +237,8 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
      * @param allocatorMaxAllocation maximum memory allocation for Arrow allocator
      * @param timeoutMsPerMessage timeout in milliseconds for each message
      * @param maxRequestsInFlight maximum number of concurrent requests
+     * @param rootRingSize the number of Arrow roots of the stream
+     * @param batchSizing the options of the adaptive batch sizing, null if disabled
      * @param ctx context containing additional parameters like compression
      * @return a BulkStreamWriter instance
      */
@@ -114,6 +249,8 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
             long allocatorMaxAllocation,
             long timeoutMsPerMessage,
             int maxRequestsInFlight,
+            int rootRingSize,
+            AdaptiveBatchSizer.Options batchSizing,
             Context ctx) {
         // Creates the bulk write manager
         TlsOptions tlsOptions = this.opts.getTlsOptions();
@@ -121,8 +258,25 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
         Schema arrowSchema = ArrowHelper.createSchema(schema);
         ArrowCompressionType compressionType = ArrowHelper.getArrowCompressionType(ctx);
 
-        BulkWriteManager manager = BulkWriteManager.create(
-                endpoint, allocatorInitReservation, allocatorMaxAllocation, compressionType, tlsOptions);
+        // Shares a channel among the bulk streams of the same rpc options, instead of a connection per stream
+        RpcOptions rpcOptions = this.opts.getRpcOptions();
+        // The Arrow allocations are accounted in the memory budget of the client, if any
+        MemoryGovernor memoryGovernor = this.opts.getMemoryGovernor();
+        BulkWriteManager manager = rpcOptions != null
+                ? BulkWriteManager.create(
+                        endpoint,
+                        allocatorInitReservation,
+                        allocatorMaxAllocation,
+                        compressionType,
+                        rpcOptions,
+                        memoryGovernor)
+                : BulkWriteManager.create(
+                        endpoint,
+                        allocatorInitReservation,
+                        allocatorMaxAllocation,
+                        compressionType,
+                        tlsOptions,
+                        memoryGovernor);
 
         // Creates the bulk write service
         String database = this.opts.getDatabase();
@@ -138,12 +292,29 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
         AsyncExecCallOption execOption = new AsyncExecCallOption(this.asyncPool);
 
         BulkWriteService writer = manager.intoBulkWriteStream(
-                table, arrowSchema, timeoutMsPerMessage, maxRequestsInFlight, headerOption, execOption);
+                table, arrowSchema, timeoutMsPerMessage, maxRequestsInFlight, rootRingSize, headerOption, execOption);
+        ArrowDictionaryEncoder[] dictionaryEncoders = writer.getDictionaryEncoders();
+        for (int i = 0; i < dictionaryEncoders.length; i++) {
+            if (dictionaryEncoders[i] != null) {
+                dictionaryEncoders[i].setMaxSize(schema.getDictionaryMaxSize(i));
+            }
+        }
         writer.start();
         if (this.opts.isUseZeroCopyWrite()) {
             writer.tryUseZeroCopyWrite();
         }
-        return new DefaultBulkStreamWriter(writer, schema, maxRequestsInFlight);
+        if (this.opts.getCompressionOptions() != null) {
+            writer.useCompressionOptions(this.opts.getCompressionOptions());
+        }
+        AdaptiveBatchSizer batchSizer = batchSizing != null ? new AdaptiveBatchSizer(batchSizing) : null;
+        return new DefaultBulkStreamWriter(
+                writer,
+                schema,
+                maxRequestsInFlight,
+                batchSizer,
+                memoryGovernor,
+                this.opts.getMemoryBlockTimeoutMs(),
+                this.sendPool);
     }
 
     @Override
@@ -198,21 +369,118 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
         private final BulkWriteService writer;
         private final TableSchema tableSchema;
         private final AtomicReference<Table.TableBufferRoot> current = new AtomicReference<>();
+        // The root of `current`, taken from the ring of the writer
+        private VectorSchemaRoot currentRoot;
+        // One table per root of the ring, a table is reset and handed out again by `tableBufferRoot()`
+        // once its root has been sent
+        private final Map<VectorSchemaRoot, Table.TableBufferRoot> tables = new IdentityHashMap<>();
+        private final Map<VectorSchemaRoot, Integer> tableColumnBufferSizes = new IdentityHashMap<>();
+        // The roots queued by `writeNextAsync()` and not yet handed off to the writer
+        private final Set<VectorSchemaRoot> pendingRoots =
+                Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        // The requests holding a permit of the limiter, the oldest is waited for a free permit
+        private final Queue<CompletableFuture<Integer>> inFlightFutures = new ConcurrentLinkedQueue<>();
+        // Completed when the last table queued by `writeNextAsync()` is handed off to the writer
+        private volatile CompletableFuture<Void> asyncTail = Util.completedCf(null);
+        // Null if the adaptive batch sizing is disabled
+        private final AdaptiveBatchSizer batchSizer;
+        // Null if the client has no memory budget
+        private final MemoryGovernor memoryGovernor;
+        private final long memoryBlockTimeoutMs;
+        // Runs the hand-offs of `writeNextAsync()`, which must not run on the executor that completes
+        // the stream readiness and the responses
+        private final Executor sendExecutor;
+        // Whether the copy of a root from another allocator has been warned about
+        private boolean copyWarned;
 
         public DefaultBulkStreamWriter(BulkWriteService writer, TableSchema tableSchema, int maxRequestsInFlight) {
+            this(writer, tableSchema, maxRequestsInFlight, null);
+        }
+
+        public DefaultBulkStreamWriter(
+                BulkWriteService writer,
+                TableSchema tableSchema,
+                int maxRequestsInFlight,
+                AdaptiveBatchSizer batchSizer) {
+            this(writer, tableSchema, maxRequestsInFlight, batchSizer, null, 0, null);
+        }
+
+        public DefaultBulkStreamWriter(
+                BulkWriteService writer,
+                TableSchema tableSchema,
+                int maxRequestsInFlight,
+                AdaptiveBatchSizer batchSizer,
+                MemoryGovernor memoryGovernor,
+                long memoryBlockTimeoutMs,
+                Executor sendExecutor) {
             this.writer = writer;
             this.tableSchema = tableSchema;
             this.pipelineWriteLimiter = new BulkWriteLimiter(maxRequestsInFlight);
+            this.batchSizer = batchSizer;
+            this.memoryGovernor = memoryGovernor;
+            this.memoryBlockTimeoutMs = memoryBlockTimeoutMs;
+            // Without an executor, the hand-off runs on the thread that completes the wait
+            this.sendExecutor = sendExecutor != null ? sendExecutor : Runnable::run;
+        }
+
+        @Override
+        public int targetBatchRows() {
+            return this.batchSizer != null ? this.batchSizer.targetRows() : -1;
         }
 
         @Override
         public Table.TableBufferRoot tableBufferRoot(int columnBufferSize) {
-            Table.TableBufferRoot table =
-                    Table.tableBufferRoot(this.tableSchema, this.writer.getRoot(), columnBufferSize);
+            VectorSchemaRoot root = this.currentRoot;
+            if (root == null) {
+                // A new table is only filled under the memory budget of the client
+                awaitMemoryAvailable();
+                try {
+                    // Blocks only if all the roots of the ring are still being sent
+                    root = this.writer.nextRoot();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a free table buffer", e);
+                }
+                if (this.pendingRoots.contains(root)) {
+                    this.writer.releaseRoot(root);
+                    throw new IllegalStateException(
+                            "The table buffer is still queued - wait for `whenReady()` before asking for the next one");
+                }
+                this.currentRoot = root;
+            }
+
+            Table.TableBufferRoot table = this.tables.get(root);
+            Integer size = this.tableColumnBufferSizes.get(root);
+            if (table != null && size != null && size == columnBufferSize && table != this.current.get()) {
+                table.reset();
+            } else {
+                table = Table.tableBufferRoot(
+                        this.tableSchema, root, columnBufferSize, this.writer.getDictionaryEncoders());
+                this.tables.put(root, table);
+                this.tableColumnBufferSizes.put(root, columnBufferSize);
+            }
             this.current.set(table);
             return table;
         }
 
+        private void awaitMemoryAvailable() {
+            if (this.memoryGovernor == null) {
+                return;
+            }
+            boolean available;
+            try {
+                available = this.memoryGovernor.awaitAvailable(this.memoryBlockTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the memory budget", e);
+            }
+            if (!available) {
+                throw new LimitedException(String.format(
+                        "Bulk write limited by client memory, limitBytes=%d, usedBytes=%d.",
+                        this.memoryGovernor.limit(), this.memoryGovernor.used()));
+            }
+        }
+
         @Override
         public CompletableFuture<Integer> writeNext() throws Exception {
             Table.TableBufferRoot table = this.current.getAndSet(null);
@@ -220,6 +488,8 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
                 return Util.errorCf(
                         new IllegalStateException("No table buffer available - call `tableBufferRoot()` first"));
             }
+            VectorSchemaRoot root = this.currentRoot;
+            this.currentRoot = null;
             // make sure the table is completed
             table.complete();
 
@@ -233,35 +503,268 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
             // Check if the stream is ready
             if (!isStreamReady()) {
                 LOG.debug(
-                        "Stream busy with pending requests. Check `isStreamReady()` before calling `writeNext()` to avoid busy-waiting.");
-            }
-
-            return this.pipelineWriteLimiter.acquireAndDo(null, () -> {
-                Clock clock = Clock.defaultClock();
-
-                long startPut = clock.getTick();
-                BulkWriteService.PutStage stage = this.writer.putNext();
-                InnerMetricHelper.prepareTime().update(clock.duration(startPut), TimeUnit.MILLISECONDS);
-
-                long startCall = clock.getTick();
-                int inFlight = stage.numInFlight();
-                CompletableFuture<Integer> future = stage.future();
-                future.whenComplete((r, t) -> {
-                    long duration = clock.duration(startCall);
-                    InnerMetricHelper.putTime().update(duration, TimeUnit.MILLISECONDS);
-                    if (Util.isBulkWriteLogging()) {
-                        LOG.info(
-                                "Bulk write completed - table={}, rows={}, bytes={}, duration={}ms, in-flight={} requests",
-                                tableName,
-                                rows,
-                                bytes,
-                                duration,
-                                inFlight);
+                        "Stream busy with pending requests. Check `isStreamReady()` before calling `writeNext()` to avoid blocking.");
+            }
+
+            CompletableFuture<Integer> future =
+                    this.pipelineWriteLimiter.acquireAndDo(null, () -> put(root, tableName, rows, bytes, null));
+            trackInFlight(future);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<Integer> writeNext(VectorSchemaRoot source) throws Exception {
+            Ensures.ensureNonNull(source, "null `source`");
+            if (this.current.get() != null) {
+                return Util.errorCf(new IllegalStateException(
+                        "A table buffer is in progress - call `writeNext()` before writing a root"));
+            }
+            ArrowHelper.checkSchema(this.tableSchema, source.getSchema());
+
+            awaitMemoryAvailable();
+            // Blocks only if all the roots of the ring are still being sent
+            VectorSchemaRoot root = this.writer.nextRoot();
+            if (this.pendingRoots.contains(root)) {
+                this.writer.releaseRoot(root);
+                throw new IllegalStateException(
+                        "The table buffer is still queued - wait for `whenReady()` before writing a root");
+            }
+
+            String tableName = this.tableSchema.getTableName();
+            int rows = source.getRowCount();
+            long movedBytes;
+            try {
+                movedBytes = moveInto(source, root);
+            } catch (Throwable t) {
+                root.clear();
+                // Not sent, back to the ring
+                this.writer.releaseRoot(root);
+                throw t;
+            }
+            if (this.memoryGovernor != null) {
+                // The moved buffers are released by the allocator of the stream, like its own
+                this.memoryGovernor.forceReserve(movedBytes);
+            }
+            long bytes = bufferSize(root);
+
+            InnerMetricHelper.putRows().update(rows);
+            InnerMetricHelper.putBytes().update(bytes);
+
+            // The root is cleared once it is sent, which releases the moved buffers
+            CompletableFuture<Integer> future =
+                    this.pipelineWriteLimiter.acquireAndDo(null, () -> put(root, tableName, rows, bytes, null));
+            trackInFlight(future);
+            return future;
+        }
+
+        /**
+         * Moves the vectors of the source into the root of the stream, the dictionary-encoded
+         * columns are encoded into the dictionaries of the stream.
+         *
+         * @return the bytes moved from the allocator of the source to the allocator of the stream
+         */
+        private long moveInto(VectorSchemaRoot source, VectorSchemaRoot root) {
+            int rows = source.getRowCount();
+            long movedBytes = 0;
+            ArrowDictionaryEncoder[] dictionaryEncoders = this.writer.getDictionaryEncoders();
+            List<FieldVector> from = source.getFieldVectors();
+            List<FieldVector> to = root.getFieldVectors();
+            for (int i = 0; i < to.size(); i++) {
+                if (dictionaryEncoders[i] != null) {
+                    encodeInto((VarCharVector) from.get(i), (IntVector) to.get(i), dictionaryEncoders[i], rows);
+                } else if (from.get(i).getAllocator().getRoot() == to.get(i).getAllocator().getRoot()) {
+                    movedBytes += accountedBytes(from.get(i));
+                    from.get(i).makeTransferPair(to.get(i)).transfer();
+                } else {
+                    // Arrow moves buffers only between the allocators of the same root
+                    if (!this.copyWarned) {
+                        this.copyWarned = true;
+                        LOG.warn(
+                                "The root is not allocated from `BulkWriteManager.getRootAllocator()`, its vectors are "
+                                        + "copied instead of moved - table={}.",
+                                this.tableSchema.getTableName());
                     }
-                });
+                    copyInto(from.get(i), to.get(i), rows);
+                }
+            }
+            root.setRowCount(rows);
+            source.setRowCount(0);
+            return movedBytes;
+        }
+
+        private static long bufferSize(VectorSchemaRoot root) {
+            long bytes = 0;
+            for (FieldVector vector : root.getFieldVectors()) {
+                bytes += vector.getBufferSize();
+            }
+            return bytes;
+        }
+
+        // The buffers of a vector may be slices of one allocation, it is counted once
+        private static long accountedBytes(FieldVector vector) {
+            Set<ReferenceManager> ledgers = Collections.newSetFromMap(new IdentityHashMap<>());
+            long bytes = 0;
+            for (ArrowBuf buf : vector.getFieldBuffers()) {
+                if (ledgers.add(buf.getReferenceManager())) {
+                    bytes += buf.getReferenceManager().getAccountedSize();
+                }
+            }
+            return bytes;
+        }
+
+        private static void encodeInto(VarCharVector from, IntVector to, ArrowDictionaryEncoder encoder, int rows) {
+            to.allocateNew(rows);
+            // Encoded from the UTF-8 bytes, only the new values of the dictionary are decoded
+            ArrowBuf data = from.getDataBuffer();
+            for (int i = 0; i < rows; i++) {
+                if (from.isNull(i)) {
+                    to.setNull(i);
+                } else {
+                    to.set(i, encoder.encode(data, from.getStartOffset(i), from.getValueLength(i)));
+                }
+            }
+            to.setValueCount(rows);
+            from.clear();
+        }
+
+        // The buffers are copied whole into the allocator of the stream, not value by value
+        private static void copyInto(FieldVector from, FieldVector to, int rows) {
+            if (!from.getChildrenFromFields().isEmpty()) {
+                to.setInitialCapacity(rows);
+                to.allocateNew();
+                for (int i = 0; i < rows; i++) {
+                    to.copyFromSafe(i, i, from);
+                }
+                to.setValueCount(rows);
+                from.clear();
+                return;
+            }
+            List<ArrowBuf> copies = new ArrayList<>();
+            try {
+                for (ArrowBuf buf : from.getFieldBuffers()) {
+                    long length = buf.writerIndex();
+                    ArrowBuf copy = to.getAllocator().buffer(length);
+                    copies.add(copy);
+                    copy.setBytes(0, buf, 0, length);
+                    copy.writerIndex(length);
+                }
+                // The vector takes its own references of the copies
+                to.loadFieldBuffers(new ArrowFieldNode(rows, from.getNullCount()), copies);
+            } finally {
+                copies.forEach(ArrowBuf::close);
+            }
+            from.clear();
+        }
+
+        @Override
+        public CompletableFuture<Integer> writeNextAsync() {
+            Table.TableBufferRoot table = this.current.getAndSet(null);
+            if (table == null) {
+                return Util.errorCf(
+                        new IllegalStateException("No table buffer available - call `tableBufferRoot()` first"));
+            }
+            VectorSchemaRoot root = this.currentRoot;
+            this.currentRoot = null;
+            // make sure the table is completed
+            table.complete();
+            // Taken here, the dictionary encoder is not shared with the send executor
+            List<ArrowDictionaryEncoder.Batch> dictionaryBatches = this.writer.takeDictionaryBatches();
+
+            String tableName = table.tableName();
+            int rows = table.rowCount();
+            long bytes = table.bytesUsed();
+
+            InnerMetricHelper.putRows().update(rows);
+            InnerMetricHelper.putBytes().update(bytes);
+
+            // Queued after the previous tables, the root is not handed out again until it is sent
+            this.pendingRoots.add(root);
+            CompletableFuture<CompletableFuture<Integer>> handedOff = this.asyncTail
+                    .thenCompose(v -> this.writer.whenStreamReady())
+                    .thenComposeAsync(
+                            v -> putWhenPermitted(root, tableName, rows, bytes, dictionaryBatches), this.sendExecutor);
+            handedOff.whenComplete((r, t) -> {
+                this.pendingRoots.remove(root);
+                if (t != null) {
+                    dictionaryBatches.forEach(ArrowDictionaryEncoder.Batch::close);
+                }
+            });
+            this.asyncTail = handedOff.handle((r, t) -> null);
+            return handedOff.thenCompose(future -> future);
+        }
+
+        private CompletableFuture<CompletableFuture<Integer>> putWhenPermitted(
+                VectorSchemaRoot root,
+                String tableName,
+                int rows,
+                long bytes,
+                List<ArrowDictionaryEncoder.Batch> dictionaryBatches) {
+            CompletableFuture<Integer> future = this.pipelineWriteLimiter.tryAcquireAndDo(
+                    null, () -> put(root, tableName, rows, bytes, dictionaryBatches));
+            if (future != null) {
+                trackInFlight(future);
+                return Util.completedCf(future);
+            }
+            // The stream may have become busy while waiting for the permit
+            return whenPermitAvailable()
+                    .thenCompose(v -> this.writer.whenStreamReady())
+                    .thenComposeAsync(
+                            v -> putWhenPermitted(root, tableName, rows, bytes, dictionaryBatches), this.sendExecutor);
+        }
+
+        private CompletableFuture<Void> whenPermitAvailable() {
+            if (this.pipelineWriteLimiter.availablePermits() > 0) {
+                return Util.completedCf(null);
+            }
+            // The permit of a request is released before its tracked future completes
+            CompletableFuture<Integer> oldest = this.inFlightFutures.peek();
+            if (oldest == null) {
+                return Util.completedCf(null);
+            }
+            return oldest.handle((r, t) -> null);
+        }
 
-                return future;
+        private void trackInFlight(CompletableFuture<Integer> future) {
+            this.inFlightFutures.add(future);
+            future.whenComplete((r, t) -> this.inFlightFutures.remove(future));
+        }
+
+        private CompletableFuture<Integer> put(
+                VectorSchemaRoot root,
+                String tableName,
+                int rows,
+                long bytes,
+                List<ArrowDictionaryEncoder.Batch> dictionaryBatches) {
+            Clock clock = Clock.defaultClock();
+
+            long startPut = clock.getTick();
+            // With a ring of roots, this only hands the root off to the sender thread
+            BulkWriteService.PutStage stage = dictionaryBatches == null
+                    ? this.writer.putNext(root)
+                    : this.writer.putNext(root, dictionaryBatches);
+            InnerMetricHelper.prepareTime().update(clock.duration(startPut), TimeUnit.MILLISECONDS);
+
+            long startCall = clock.getTick();
+            int inFlight = stage.numInFlight();
+            CompletableFuture<Integer> future = stage.future();
+            future.whenComplete((r, t) -> {
+                long duration = clock.duration(startCall);
+                InnerMetricHelper.putTime().update(duration, TimeUnit.MILLISECONDS);
+                if (t == null && this.batchSizer != null) {
+                    this.batchSizer.observe(rows, bytes, duration, inFlight);
+                }
+                if (Util.isBulkWriteLogging()) {
+                    LOG.info(
+                            "Bulk write completed - table={}, rows={}, bytes={}, duration={}ms, in-flight={} requests",
+                            tableName,
+                            rows,
+                            bytes,
+                            duration,
+                            inFlight);
+                }
             });
+
+            return future;
         }
 
         @Override
@@ -271,20 +774,237 @@ public class BulkWriteClient implements BulkWrite, Health, Lifecycle<BulkWriteOp
             this.writer.close();
         }
 
+        @Override
+        public CompletableFuture<Void> completedAsync() {
+            return this.asyncTail.thenCompose(v -> this.writer.completedAsync());
+        }
+
         @Override
         public boolean isStreamReady() {
             return this.writer.isStreamReady();
         }
 
+        @Override
+        public CompletableFuture<Void> whenReady() {
+            CompletableFuture<Void> ready = this.asyncTail
+                    .thenCompose(v -> this.writer.whenStreamReady())
+                    .thenCompose(v -> whenPermitAvailable());
+            if (this.memoryGovernor == null) {
+                return ready;
+            }
+            return ready.thenCompose(v -> this.memoryGovernor.whenAvailable());
+        }
+
         @Override
         public void close() throws Exception {
             this.writer.close();
         }
     }
 
+    /**
+     * A BulkStreamWriter that fans out over several streams of the same table.
+     *
+     * <p>Each {@code tableBufferRoot()} picks the stream with the fewest in-flight requests, ties are
+     * broken round-robin, and the following {@code writeNext()} sends the table on that stream.
+     */
+    static class ParallelBulkStreamWriter implements BulkStreamWriter {
+
+        private final List<BulkStreamWriter> writers;
+        private final AtomicInteger[] inFlights;
+        private int next;
+        // The index of the stream that owns the current table, -1 if none
+        private int current = -1;
+
+        ParallelBulkStreamWriter(List<BulkStreamWriter> writers) {
+            Ensures.ensure(!writers.isEmpty(), "Empty writers");
+            this.writers = writers;
+            this.inFlights = new AtomicInteger[writers.size()];
+            for (int i = 0; i < this.inFlights.length; i++) {
+                this.inFlights[i] = new AtomicInteger();
+            }
+        }
+
+        @Override
+        public Table.TableBufferRoot tableBufferRoot(int columnBufferSize) {
+            if (this.current < 0) {
+                this.current = select();
+            }
+            return this.writers.get(this.current).tableBufferRoot(columnBufferSize);
+        }
+
+        /**
+         * @return the target of the stream of the current table, or of the next selected stream
+         */
+        @Override
+        public int targetBatchRows() {
+            if (this.current < 0) {
+                this.current = select();
+            }
+            return this.writers.get(this.current).targetBatchRows();
+        }
+
+        private int select() {
+            int n = this.writers.size();
+            int start = this.next;
+            this.next = (start + 1) % n;
+            int selected = start;
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                int index = (start + i) % n;
+                int inFlight = this.inFlights[index].get();
+                if (inFlight < min) {
+                    min = inFlight;
+                    selected = index;
+                }
+            }
+            return selected;
+        }
+
+        @Override
+        public CompletableFuture<Integer> writeNext() throws Exception {
+            return writeNext(false);
+        }
+
+        @Override
+        public CompletableFuture<Integer> writeNextAsync() {
+            try {
+                return writeNext(true);
+            } catch (Exception e) {
+                return Util.errorCf(e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<Integer> writeNext(VectorSchemaRoot root) throws Exception {
+            if (this.current >= 0) {
+                return Util.errorCf(new IllegalStateException(
+                        "A table buffer is in progress - call `writeNext()` before writing a root"));
+            }
+            int index = select();
+            AtomicInteger inFlight = this.inFlights[index];
+            inFlight.incrementAndGet();
+            CompletableFuture<Integer> future;
+            try {
+                future = this.writers.get(index).writeNext(root);
+            } catch (Throwable t) {
+                inFlight.decrementAndGet();
+                throw t;
+            }
+            future.whenComplete((r, t) -> inFlight.decrementAndGet());
+            return future;
+        }
+
+        private CompletableFuture<Integer> writeNext(boolean async) throws Exception {
+            int index = this.current;
+            if (index < 0) {
+                return Util.errorCf(
+                        new IllegalStateException("No table buffer available - call `tableBufferRoot()` first"));
+            }
+            this.current = -1;
+
+            AtomicInteger inFlight = this.inFlights[index];
+            inFlight.incrementAndGet();
+            CompletableFuture<Integer> future;
+            try {
+                BulkStreamWriter writer = this.writers.get(index);
+                future = async ? writer.writeNextAsync() : writer.writeNext();
+            } catch (Throwable t) {
+                inFlight.decrementAndGet();
+                throw t;
+            }
+            future.whenComplete((r, t) -> inFlight.decrementAndGet());
+            return future;
+        }
+
+        @Override
+        public void completed() throws Exception {
+            Exception error = null;
+            for (BulkStreamWriter writer : this.writers) {
+                try {
+                    writer.completed();
+                } catch (Exception e) {
+                    if (error == null) {
+                        error = e;
+                    } else {
+                        error.addSuppressed(e);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        @Override
+        public CompletableFuture<Void> completedAsync() {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(this.writers.size());
+            for (BulkStreamWriter writer : this.writers) {
+                futures.add(writer.completedAsync());
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .handle((r, t) -> {
+                        Throwable error = null;
+                        for (CompletableFuture<Void> future : futures) {
+                            try {
+                                future.join();
+                            } catch (RuntimeException e) {
+                                Throwable cause = e instanceof CompletionException && e.getCause() != null
+                                        ? e.getCause()
+                                        : e;
+                                if (error == null) {
+                                    error = cause;
+                                } else {
+                                    error.addSuppressed(cause);
+                                }
+                            }
+                        }
+                        if (error != null) {
+                            throw new CompletionException(error);
+                        }
+                        return null;
+                    });
+        }
+
+        /**
+         * Selects the stream of the next table if there is no current table, the following
+         * {@code tableBufferRoot()} takes its table from that stream.
+         *
+         * @return a future completed when the stream of the next table is ready
+         */
+        @Override
+        public CompletableFuture<Void> whenReady() {
+            if (this.current < 0) {
+                this.current = select();
+            }
+            return this.writers.get(this.current).whenReady();
+        }
+
+        /**
+         * @return true if any of the streams is ready to write data
+         */
+        @Override
+        public boolean isStreamReady() {
+            if (this.current >= 0) {
+                return this.writers.get(this.current).isStreamReady();
+            }
+            for (BulkStreamWriter writer : this.writers) {
+                if (writer.isStreamReady()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws Exception {
+            AutoCloseables.close(this.writers);
+        }
+    }
+
     /**
      * Limiter that controls the number of concurrent bulk write operations.
-     * Uses a blocking policy to ensure the maximum number of in-flight requests is not exceeded.
+     * Uses a blocking policy to ensure the maximum number of in-flight requests is not exceeded,
+     * {@code writeNextAsync()} only tries to acquire and waits for a response otherwise.
      */
     static class BulkWriteLimiter extends AbstractLimiter<Void, Integer> {
 
@@ -19,6 +19,7 @@ package io.greptime;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.greptime.common.SPI;
 import io.greptime.common.util.Ensures;
 import io.greptime.errors.PojoException;
@@ -40,18 +41,18 @@ import java.util.Map;
 @SPI(priority = 9)
 public class CachedPojoObjectMapper implements PojoObjectMapper {
 
-    private final LoadingCache<Class<?>, Map<String, Field>> classFieldCache;
+    private final LoadingCache<Class<?>, MetricClass> metricClassCache;
 
     public CachedPojoObjectMapper() {
         this(1024);
     }
 
     public CachedPojoObjectMapper(int maxCachedPOJOs) {
-        this.classFieldCache = CacheBuilder.newBuilder()
+        this.metricClassCache = CacheBuilder.newBuilder()
                 .maximumSize(maxCachedPOJOs)
-                .build(new CacheLoader<Class<?>, Map<String, Field>>() {
+                .build(new CacheLoader<Class<?>, MetricClass>() {
                     @Override
-                    public Map<String, Field> load(@SuppressWarnings("null") Class<?> key) {
+                    public MetricClass load(@SuppressWarnings("null") Class<?> key) {
                         return createMetricClass(key);
                     }
                 });
@@ -66,40 +67,19 @@ public class CachedPojoObjectMapper implements PojoObjectMapper {
 
         Class<?> metricType = first.getClass();
 
-        Map<String, Field> fieldMap = this.classFieldCache.getUnchecked(metricType);
+        MetricClass metricClass = getMetricClass(metricType);
+        Field[] fields = metricClass.fields;
 
-        String metricName = getMetricName(metricType);
-
-        TableSchema.Builder schemaBuilder = TableSchema.newBuilder(metricName);
-        for (Map.Entry<String, Field> entry : fieldMap.entrySet()) {
-            String name = entry.getKey();
-            Field field = entry.getValue();
-            Column column = field.getAnnotation(Column.class);
-            DataType dataType = column.dataType();
-            SemanticType semanticType = SemanticType.Field;
-            if (column.tag()) {
-                semanticType = SemanticType.Tag;
-            } else if (column.timestamp()) {
-                semanticType = SemanticType.Timestamp;
-            }
-            schemaBuilder.addColumn(name, semanticType, dataType);
-        }
-
-        Table table = Table.from(schemaBuilder.build());
+        Table table = Table.from(metricClass.tableSchema);
         for (M pojo : pojoObjects) {
             Class<?> type = pojo.getClass();
             if (!type.equals(metricType)) {
                 throw new PojoException("All POJOs must be of the same type");
             }
 
-            Object[] values = new Object[fieldMap.size()];
-            int j = 0;
-            for (Map.Entry<String, Field> entry : fieldMap.entrySet()) {
-                Field field = entry.getValue();
-                Object value = getObject(pojo, field);
-                values[j] = value;
-
-                j++;
+            Object[] values = new Object[fields.length];
+            for (int j = 0; j < fields.length; j++) {
+                values[j] = getObject(pojo, fields[j]);
             }
             table.addRow(values);
         }
@@ -107,6 +87,17 @@ public class CachedPojoObjectMapper implements PojoObjectMapper {
         return table;
     }
 
+    private MetricClass getMetricClass(Class<?> metricType) {
+        try {
+            return this.metricClassCache.getUnchecked(metricType);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private String getMetricName(Class<?> metricType) {
         // From @Metric annotation
         Metric metricAnnotation = metricType.getAnnotation(Metric.class);
@@ -122,7 +113,6 @@ public class CachedPojoObjectMapper implements PojoObjectMapper {
     private <M> Object getObject(M metric, Field field) {
         Object value;
         try {
-            field.setAccessible(true);
             value = field.get(metric);
         } catch (IllegalAccessException e) {
             throw new PojoException(e);
@@ -130,7 +120,7 @@ public class CachedPojoObjectMapper implements PojoObjectMapper {
         return value;
     }
 
-    private Map<String, Field> createMetricClass(Class<?> metricType) {
+    private MetricClass createMetricClass(Class<?> metricType) {
         Map<String, Field> fieldMap = new HashMap<>();
         Class<?> currentType = metricType;
         while (currentType != null) {
@@ -143,6 +133,40 @@ public class CachedPojoObjectMapper implements PojoObjectMapper {
             }
             currentType = currentType.getSuperclass();
         }
-        return fieldMap;
+
+        String metricName = getMetricName(metricType);
+
+        TableSchema.Builder schemaBuilder = TableSchema.newBuilder(metricName);
+        Field[] fields = new Field[fieldMap.size()];
+        int i = 0;
+        for (Map.Entry<String, Field> entry : fieldMap.entrySet()) {
+            String name = entry.getKey();
+            Field field = entry.getValue();
+            Column column = field.getAnnotation(Column.class);
+            DataType dataType = column.dataType();
+            SemanticType semanticType = SemanticType.Field;
+            if (column.tag()) {
+                semanticType = SemanticType.Tag;
+            } else if (column.timestamp()) {
+                semanticType = SemanticType.Timestamp;
+            }
+            schemaBuilder.addColumn(name, semanticType, dataType);
+            field.setAccessible(true);
+            fields[i++] = field;
+        }
+        return new MetricClass(schemaBuilder.build(), fields);
+    }
+
+    /**
+     * The compiled table schema of a metric class, the fields are in the same order as the columns.
+     */
+    private static final class MetricClass {
+        private final TableSchema tableSchema;
+        private final Field[] fields;
+
+        MetricClass(TableSchema tableSchema, Field[] fields) {
+            this.tableSchema = tableSchema;
+            this.fields = fields;
+        }
     }
 }
@@ -203,6 +203,25 @@ public class GreptimeDB implements Write, WriteObject, BulkWrite, Health, Lifecy
             long timeoutMsPerMessage,
             int maxRequestsInFlight,
             Context ctx) {
+        return bulkStreamWriter(
+                schema,
+                allocatorInitReservation,
+                allocatorMaxAllocation,
+                timeoutMsPerMessage,
+                maxRequestsInFlight,
+                BulkWrite.DEFAULT_ROOT_RING_SIZE,
+                ctx);
+    }
+
+    @Override
+    public BulkStreamWriter bulkStreamWriter(
+            TableSchema schema,
+            long allocatorInitReservation,
+            long allocatorMaxAllocation,
+            long timeoutMsPerMessage,
+            int maxRequestsInFlight,
+            int rootRingSize,
+            Context ctx) {
         ensureInitialized();
         return this.bulkWriteClient.bulkStreamWriter(
                 schema,
@@ -210,9 +229,29 @@ public class GreptimeDB implements Write, WriteObject, BulkWrite, Health, Lifecy
                 allocatorMaxAllocation,
                 timeoutMsPerMessage,
                 maxRequestsInFlight,
+                rootRingSize,
                 attachCtx(ctx));
     }
 
+    @Override
+    public BulkStreamWriter bulkStreamWriter(TableSchema schema, BulkWrite.Config config, Context ctx) {
+        ensureInitialized();
+        return this.bulkWriteClient.bulkStreamWriter(schema, config, attachCtx(ctx));
+    }
+
+    @Override
+    public BulkStreamWriter parallelBulkStreamWriter(
+            TableSchema schema, int parallelism, BulkWrite.Config config, Context ctx) {
+        ensureInitialized();
+        return this.bulkWriteClient.parallelBulkStreamWriter(schema, parallelism, config, attachCtx(ctx));
+    }
+
+    @Override
+    public BulkStreamPool bulkStreamPool(BulkStreamPool.Options options, Context ctx) {
+        ensureInitialized();
+        return this.bulkWriteClient.bulkStreamPool(options, attachCtx(ctx));
+    }
+
     @Override
     public CompletableFuture<Map<Endpoint, Boolean>> checkHealth() {
         ensureInitialized();
@@ -16,8 +16,10 @@
 
 package io.greptime;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * RPC router for GreptimeDB.
@@ -32,6 +34,23 @@ public interface Router<R, E> {
      */
     CompletableFuture<E> routeFor(R request);
 
+    /**
+     * For a given request return {@code count} routing decisions, spread over the endpoints
+     * as evenly as possible. By default, each decision is made by {@link #routeFor(Object)}.
+     *
+     * @param request route request
+     * @param count the number of endpoints to return
+     * @return the endpoints for the calls, an endpoint may appear more than once
+     */
+    default CompletableFuture<List<E>> routeFor(R request, int count) {
+        List<CompletableFuture<E>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(routeFor(request));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ok -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
     /**
      * Refresh the routing table. By health checker or service discovery.
      *
@@ -134,6 +134,16 @@ public class RouterClient implements Lifecycle<RouterOptions>, Health, Display {
         return this.router.routeFor(null);
     }
 
+    /**
+     * Gets {@code count} endpoints, spread over the active endpoints as evenly as possible.
+     *
+     * @param count the number of endpoints
+     * @return the endpoints, an endpoint is repeated if there are fewer endpoints than {@code count}
+     */
+    public CompletableFuture<List<Endpoint>> route(int count) {
+        return this.router.routeFor(null, count);
+    }
+
     /**
      * @see #invoke(Endpoint, Object, Context, long)
      *
@@ -309,6 +319,32 @@ public class RouterClient implements Lifecycle<RouterOptions>, Health, Display {
             return Util.errorCf(new IllegalStateException("empty `endpoints`"));
         }
 
+        @Override
+        public CompletableFuture<List<Endpoint>> routeFor(Void request, int count) {
+            Endpoints endpoints = this.endpointsRef.get();
+
+            if (endpoints == null) {
+                return Util.errorCf(new IllegalStateException("null `endpoints`"));
+            }
+
+            List<Endpoint> candidates =
+                    !endpoints.activities.isEmpty() ? endpoints.activities : endpoints.inactivities;
+            if (candidates.isEmpty()) {
+                return Util.errorCf(new IllegalStateException("empty `endpoints`"));
+            }
+            if (candidates == endpoints.inactivities) {
+                LOG.warn("No active endpoint, return inactive ones: {}", candidates);
+            }
+
+            // Round-robin from a random start, so each endpoint gets at most one more stream than another
+            int start = ThreadLocalRandom.current().nextInt(0, candidates.size());
+            List<Endpoint> routes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                routes.add(candidates.get((start + i) % candidates.size()));
+            }
+            return Util.completedCf(routes);
+        }
+
         @Override
         public void onRefresh(List<Endpoint> activities, List<Endpoint> inactivities) {
             LOG.info("Router cache refreshed, activities: {}, inactivities: {}", activities, inactivities);
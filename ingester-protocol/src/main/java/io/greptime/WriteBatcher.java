@@ -0,0 +1,332 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.models.Err;
+import io.greptime.models.Result;
+import io.greptime.models.Table;
+import io.greptime.models.WriteOk;
+import io.greptime.rpc.Compression;
+import io.greptime.rpc.Context;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accumulates the tables of many small writes into one batch per {@link WriteOp}, and sends
+ * the batch as a single request once it reaches the max points, the max bytes or the linger
+ * time, whichever comes first. The tables with the same name are kept together in a batch.
+ * Only the writes with equal contexts (entries and compression) share a batch, so the hints
+ * and headers of each write are sent as given.
+ * <p>
+ * Each write still gets its own future, which completes when the batch it belongs to is
+ * acknowledged: with its own row count on success, or with the error of the batch.
+ */
+final class WriteBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBatcher.class);
+
+    /**
+     * Sends a sealed batch.
+     */
+    interface Flusher {
+        CompletableFuture<Result<WriteOk, Err>> flush(Collection<Table> tables, WriteOp writeOp, Context ctx);
+    }
+
+    private final int maxPoints;
+    private final long maxBytes;
+    private final long lingerMs;
+    private final ScheduledExecutorService scheduler;
+    // The linger timer only detaches the batch, the send runs here
+    private final Executor flushExecutor;
+    private final Flusher flusher;
+    // Indexed by `WriteOp.ordinal()`
+    private final Accumulator[] accumulators;
+    private volatile boolean stopped = false;
+
+    WriteBatcher(
+            int maxPoints,
+            long maxBytes,
+            long lingerMs,
+            ScheduledExecutorService scheduler,
+            Executor flushExecutor,
+            Flusher flusher) {
+        this.maxPoints = maxPoints;
+        this.maxBytes = maxBytes;
+        this.lingerMs = lingerMs;
+        this.scheduler = scheduler;
+        this.flushExecutor = flushExecutor;
+        this.flusher = flusher;
+        this.accumulators = new Accumulator[WriteOp.values().length];
+        for (WriteOp writeOp : WriteOp.values()) {
+            this.accumulators[writeOp.ordinal()] = new Accumulator(writeOp);
+        }
+    }
+
+    /**
+     * Adds the (completed) tables to the batch of the given write operation.
+     *
+     * @param tables the tables to write
+     * @param writeOp the write operation
+     * @param ctx the context, only the writes with an equal context are batched together
+     * @return the future of this write
+     */
+    CompletableFuture<Result<WriteOk, Err>> add(Collection<Table> tables, WriteOp writeOp, Context ctx) {
+        if (this.stopped) {
+            return this.flusher.flush(tables, writeOp, ctx);
+        }
+
+        int points = 0;
+        int rows = 0;
+        long bytes = 0;
+        for (Table table : tables) {
+            points += table.pointCount();
+            rows += table.rowCount();
+            bytes += table.bytesUsed();
+        }
+
+        CompletableFuture<Result<WriteOk, Err>> future = new CompletableFuture<>();
+        this.accumulators[writeOp.ordinal()].add(tables, points, rows, bytes, future, ctx);
+        return future;
+    }
+
+    /**
+     * Flushes all the pending batches and sends the later writes directly.
+     */
+    void shutdown() {
+        this.stopped = true;
+        for (Accumulator accumulator : this.accumulators) {
+            accumulator.flushNow();
+        }
+    }
+
+    private void sendAsync(Batch batch) {
+        try {
+            this.flushExecutor.execute(() -> send(batch));
+        } catch (Throwable t) {
+            LOG.warn("Failed to hand off the write batch, sending it on the linger thread.", t);
+            send(batch);
+        }
+    }
+
+    private void send(Batch batch) {
+        if (batch.lingerTask != null) {
+            batch.lingerTask.cancel(false);
+        }
+
+        List<Table> tables = new ArrayList<>(batch.tableCount);
+        for (List<Table> sameNameTables : batch.tablesByName.values()) {
+            tables.addAll(sameNameTables);
+        }
+
+        LOG.debug(
+                "Flushing write batch, op={}, writes={}, tables={}, points={}, bytes={}.",
+                batch.writeOp,
+                batch.callers.size(),
+                tables.size(),
+                batch.points,
+                batch.bytes);
+
+        CompletableFuture<Result<WriteOk, Err>> future;
+        try {
+            future = this.flusher.flush(tables, batch.writeOp, batch.ctx);
+        } catch (Throwable t) {
+            future = Util.errorCf(t);
+        }
+
+        future.whenComplete((r, t) -> {
+            for (Caller caller : batch.callers) {
+                if (t != null) {
+                    caller.future.completeExceptionally(t);
+                } else if (r.isOk()) {
+                    caller.future.complete(WriteOk.ok(caller.rows, 0).mapToResult());
+                } else {
+                    caller.future.complete(r);
+                }
+            }
+        });
+    }
+
+    private final class Accumulator {
+        private final WriteOp writeOp;
+        // The open batches by context, guarded by `this`
+        private final Map<CtxKey, Batch> current = new LinkedHashMap<>();
+
+        Accumulator(WriteOp writeOp) {
+            this.writeOp = writeOp;
+        }
+
+        void add(
+                Collection<Table> tables,
+                int points,
+                int rows,
+                long bytes,
+                CompletableFuture<Result<WriteOk, Err>> future,
+                Context ctx) {
+            CtxKey key = new CtxKey(ctx);
+            Batch full = null;
+            Batch sealed = null;
+            synchronized (this) {
+                Batch batch = this.current.get(key);
+                // Not enough room in the current batch, send it and start a new one
+                if (batch != null && (batch.points + points > maxPoints || batch.bytes + bytes > maxBytes)) {
+                    full = batch;
+                    batch = null;
+                }
+                if (batch == null) {
+                    batch = new Batch(this.writeOp, key, ctx);
+                    this.current.put(key, batch);
+                    Batch newBatch = batch;
+                    batch.lingerTask =
+                            scheduler.schedule(() -> flushIfCurrent(newBatch), lingerMs, TimeUnit.MILLISECONDS);
+                }
+
+                batch.add(tables, points, rows, bytes, future);
+
+                if (batch.points >= maxPoints || batch.bytes >= maxBytes) {
+                    sealed = batch;
+                    this.current.remove(key);
+                }
+            }
+
+            if (full != null) {
+                send(full);
+            }
+            if (sealed != null) {
+                send(sealed);
+            }
+        }
+
+        void flushNow() {
+            List<Batch> batches;
+            synchronized (this) {
+                batches = new ArrayList<>(this.current.values());
+                this.current.clear();
+            }
+            for (Batch batch : batches) {
+                send(batch);
+            }
+        }
+
+        private void flushIfCurrent(Batch batch) {
+            synchronized (this) {
+                if (this.current.get(batch.key) != batch) {
+                    // Already sent
+                    return;
+                }
+                this.current.remove(batch.key);
+            }
+            // Off the shared linger thread, the send may block on the limiters
+            sendAsync(batch);
+        }
+    }
+
+    /**
+     * The batching key of a context: a snapshot of its entries and compression.
+     */
+    private static final class CtxKey {
+        private final Map<String, Object> entries;
+        private final Compression compression;
+
+        CtxKey(Context ctx) {
+            Map<String, Object> entries = new HashMap<>();
+            Compression compression = Compression.None;
+            if (ctx != null) {
+                Context snapshot = ctx.copy();
+                for (Map.Entry<String, Object> e : snapshot.entrySet()) {
+                    entries.put(e.getKey(), e.getValue());
+                }
+                compression = snapshot.getCompression();
+            }
+            this.entries = entries;
+            this.compression = compression;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CtxKey)) {
+                return false;
+            }
+            CtxKey that = (CtxKey) o;
+            return this.compression == that.compression && this.entries.equals(that.entries);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.entries, this.compression);
+        }
+    }
+
+    private static final class Batch {
+        private final WriteOp writeOp;
+        private final CtxKey key;
+        private final Context ctx;
+        private final Map<String, List<Table>> tablesByName = new LinkedHashMap<>();
+        private final List<Caller> callers = new ArrayList<>();
+        private int tableCount;
+        private int points;
+        private long bytes;
+        private ScheduledFuture<?> lingerTask;
+
+        Batch(WriteOp writeOp, CtxKey key, Context ctx) {
+            this.writeOp = writeOp;
+            this.key = key;
+            this.ctx = ctx;
+        }
+
+        void add(
+                Collection<Table> tables,
+                int points,
+                int rows,
+                long bytes,
+                CompletableFuture<Result<WriteOk, Err>> future) {
+            for (Table table : tables) {
+                this.tablesByName
+                        .computeIfAbsent(table.tableName(), k -> new ArrayList<>())
+                        .add(table);
+            }
+            this.tableCount += tables.size();
+            this.points += points;
+            this.bytes += bytes;
+            this.callers.add(new Caller(rows, future));
+        }
+    }
+
+    private static final class Caller {
+        private final int rows;
+        private final CompletableFuture<Result<WriteOk, Err>> future;
+
+        Caller(int rows, CompletableFuture<Result<WriteOk, Err>> future) {
+            this.rows = rows;
+            this.future = future;
+        }
+    }
+}
@@ -24,11 +24,13 @@ import io.greptime.common.Display;
 import io.greptime.common.Endpoint;
 import io.greptime.common.Keys;
 import io.greptime.common.Lifecycle;
+import io.greptime.common.MemoryGovernor;
 import io.greptime.common.util.Clock;
 import io.greptime.common.util.Ensures;
 import io.greptime.common.util.MetricExecutor;
 import io.greptime.common.util.MetricsUtil;
 import io.greptime.common.util.SerializingExecutor;
+import io.greptime.common.util.SharedScheduledPool;
 import io.greptime.errors.LimitedException;
 import io.greptime.errors.ServerException;
 import io.greptime.errors.StreamException;
@@ -36,6 +38,7 @@ import io.greptime.limit.LimitedPolicy;
 import io.greptime.limit.WriteLimiter;
 import io.greptime.models.AuthInfo;
 import io.greptime.models.Err;
+import io.greptime.models.GreptimeRequestEncoder;
 import io.greptime.models.Result;
 import io.greptime.models.Table;
 import io.greptime.models.TableHelper;
@@ -46,10 +49,14 @@ import io.greptime.rpc.Context;
 import io.greptime.rpc.Observer;
 import io.greptime.v1.Common;
 import io.greptime.v1.Database;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,10 +68,18 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
 
     private static final Logger LOG = LoggerFactory.getLogger(WriteClient.class);
 
+    private static final SharedScheduledPool BATCH_LINGER_POOL = Util.getSharedScheduledPool("write_batch_linger", 1);
+    private static final SharedScheduledPool MEMORY_TIMEOUT_POOL =
+            Util.getSharedScheduledPool("write_memory_timeout", 1);
+
     private WriteOptions opts;
     private RouterClient routerClient;
     private Executor asyncPool;
     private WriteLimiter writeLimiter;
+    private WriteLimiter writeBytesLimiter;
+    private ScheduledExecutorService batchLingerScheduler;
+    private WriteBatcher batcher;
+    private ScheduledExecutorService memoryTimeoutScheduler;
 
     @Override
     public boolean init(WriteOptions opts) {
@@ -75,12 +90,42 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
         this.asyncPool = new MetricExecutor(this.asyncPool, "async_write_pool");
         this.writeLimiter =
                 new DefaultWriteLimiter(this.opts.getMaxInFlightWritePoints(), this.opts.getLimitedPolicy());
+        this.writeBytesLimiter =
+                new DefaultWriteBytesLimiter(this.opts.getMaxInFlightWriteBytes(), this.opts.getLimitedPolicy());
+        if (this.opts.isBatchingEnabled()) {
+            Ensures.ensure(this.opts.getBatchMaxPoints() > 0, "`batchMaxPoints` must be positive");
+            Ensures.ensure(this.opts.getBatchMaxBytes() > 0, "`batchMaxBytes` must be positive");
+            Ensures.ensure(this.opts.getBatchLingerMs() >= 0, "`batchLingerMs` must not be negative");
+            this.batchLingerScheduler = BATCH_LINGER_POOL.getObject();
+            this.batcher = new WriteBatcher(
+                    this.opts.getBatchMaxPoints(),
+                    this.opts.getBatchMaxBytes(),
+                    this.opts.getBatchLingerMs(),
+                    this.batchLingerScheduler,
+                    this.asyncPool,
+                    this::writeNow);
+        }
+        if (this.opts.getMemoryGovernor() != null) {
+            this.memoryTimeoutScheduler = MEMORY_TIMEOUT_POOL.getObject();
+        }
         return true;
     }
 
     @Override
     public void shutdownGracefully() {
-        // NO-OP
+        if (this.batcher != null) {
+            this.batcher.shutdown();
+        }
+
+        if (this.batchLingerScheduler != null) {
+            BATCH_LINGER_POOL.returnObject(this.batchLingerScheduler);
+            this.batchLingerScheduler = null;
+        }
+
+        if (this.memoryTimeoutScheduler != null) {
+            MEMORY_TIMEOUT_POOL.returnObject(this.memoryTimeoutScheduler);
+            this.memoryTimeoutScheduler = null;
+        }
     }
 
     @Override
@@ -93,9 +138,75 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
             table.complete();
         }
 
+        MemoryGovernor memoryGovernor = this.opts.getMemoryGovernor();
+        if (memoryGovernor == null) {
+            return writeOrBatch(tables, writeOp, ctx);
+        }
+
+        // The rows are held by the client until the write completes, in the batcher or in-flight
+        long bytes = 0;
+        for (Table table : tables) {
+            bytes += table.bytesUsed();
+        }
+        long acquireBytes = bytes;
+        CompletableFuture<Boolean> reserved = memoryGovernor.reserveAsync(
+                acquireBytes,
+                this.opts.getMemoryBlockTimeoutMs(),
+                TimeUnit.MILLISECONDS,
+                this.memoryTimeoutScheduler);
+        if (reserved.isDone()) {
+            return reserved.thenCompose(ok -> writeReserved(memoryGovernor, ok, acquireBytes, tables, writeOp, ctx));
+        }
+        // Waits without blocking the caller, the write goes on when the memory of other writes is released,
+        // which may be on a gRPC callback thread
+        return reserved.thenComposeAsync(
+                ok -> writeReserved(memoryGovernor, ok, acquireBytes, tables, writeOp, ctx), this.asyncPool);
+    }
+
+    private CompletableFuture<Result<WriteOk, Err>> writeReserved(
+            MemoryGovernor memoryGovernor,
+            boolean reserved,
+            long bytes,
+            Collection<Table> tables,
+            WriteOp writeOp,
+            Context ctx) {
+        if (!reserved) {
+            String errMsg = String.format(
+                    "Write limited by client memory, acquireBytes=%d, limitBytes=%d, usedBytes=%d.",
+                    bytes, memoryGovernor.limit(), memoryGovernor.used());
+            return Util.completedCf(
+                    Result.err(Err.writeErr(Result.FLOW_CONTROL, new LimitedException(errMsg), null)));
+        }
+        CompletableFuture<Result<WriteOk, Err>> future;
+        try {
+            future = writeOrBatch(tables, writeOp, ctx);
+        } catch (Throwable t) {
+            memoryGovernor.release(bytes);
+            throw t;
+        }
+        return future.whenComplete((r, e) -> memoryGovernor.release(bytes));
+    }
+
+    private CompletableFuture<Result<WriteOk, Err>> writeOrBatch(
+            Collection<Table> tables, WriteOp writeOp, Context ctx) {
+        if (this.batcher != null) {
+            return this.batcher.add(tables, writeOp, ctx);
+        }
+
+        return writeNow(tables, writeOp, ctx);
+    }
+
+    private CompletableFuture<Result<WriteOk, Err>> writeNow(Collection<Table> tables, WriteOp writeOp, Context ctx) {
+        long bytes = 0;
+        for (Table table : tables) {
+            bytes += table.bytesUsed();
+        }
+        InnerMetricHelper.writeBytes().update(bytes);
+
         long startCall = Clock.defaultClock().getTick();
-        WriteTables writeTables = new WriteTables(tables, writeOp);
-        return this.writeLimiter.acquireAndDo(tables, () -> write0(writeTables, ctx, 0)
+        // Both limiters are no-op if their max in-flight is not positive
+        return this.writeLimiter.acquireAndDo(tables, () -> this.writeBytesLimiter
+                .acquireAndDo(tables, () -> writeSplits(tables, writeOp, ctx))
                 .whenCompleteAsync(
                         (r, e) -> {
                             InnerMetricHelper.writeQps().mark();
@@ -154,6 +265,100 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
                 .join();
     }
 
+    private CompletableFuture<Result<WriteOk, Err>> writeSplits(
+            Collection<Table> tables, WriteOp writeOp, Context ctx) {
+        long maxRequestBytes = this.opts.getMaxRequestBytes();
+        List<List<Table>> splits = maxRequestBytes > 0 ? splitBySize(tables, maxRequestBytes) : null;
+        if (splits == null || splits.size() == 1) {
+            return write0(new WriteTables(tables, writeOp), ctx, 0);
+        }
+
+        InnerMetricHelper.writeSplits().update(splits.size());
+
+        // Each split is routed on its own, so that they are spread across the endpoints
+        List<CompletableFuture<Result<WriteOk, Err>>> futures = new ArrayList<>(splits.size());
+        for (List<Table> split : splits) {
+            futures.add(write0(new WriteTables(split, writeOp), ctx.copy(), 0));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    int success = 0;
+                    int failure = 0;
+                    Err firstErr = null;
+                    for (CompletableFuture<Result<WriteOk, Err>> f : futures) {
+                        Result<WriteOk, Err> r = f.join();
+                        if (r.isOk()) {
+                            success += r.getOk().getSuccess();
+                            failure += r.getOk().getFailure();
+                        } else if (firstErr == null) {
+                            firstErr = r.getErr();
+                        }
+                    }
+                    if (firstErr != null) {
+                        LOG.warn(
+                                "Failed to write {} of {} split requests to {}, the others wrote {} rows.",
+                                futures.stream().filter(f -> !f.join().isOk()).count(),
+                                futures.size(),
+                                Keys.DB_NAME,
+                                success);
+                        return firstErr.mapToResult();
+                    }
+                    return WriteOk.ok(success, failure).mapToResult();
+                });
+    }
+
+    /**
+     * Splits the tables into groups whose estimated sizes are under the byte budget, along the
+     * table boundaries, a table larger than the budget is split into sub-ranges of its rows.
+     *
+     * @param tables the tables to split
+     * @param maxBytes the byte budget of a group
+     * @return the groups, in the order of the tables
+     */
+    static List<List<Table>> splitBySize(Collection<Table> tables, long maxBytes) {
+        List<List<Table>> splits = new ArrayList<>();
+        List<Table> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (Table table : tables) {
+            long bytes = table.bytesUsed();
+            int rowCount = table.rowCount();
+            if (bytes <= maxBytes || rowCount <= 1) {
+                if (!current.isEmpty() && currentBytes + bytes > maxBytes) {
+                    splits.add(current);
+                    current = new ArrayList<>();
+                    currentBytes = 0;
+                }
+                current.add(table);
+                currentBytes += bytes;
+                continue;
+            }
+
+            // Too large for one request, split it by rows (assuming the rows are of a similar size)
+            if (!current.isEmpty()) {
+                splits.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            int rowsPerSplit = (int) Math.max(1, rowCount * maxBytes / bytes);
+            for (int from = 0; from < rowCount; from += rowsPerSplit) {
+                int to = Math.min(rowCount, from + rowsPerSplit);
+                Table subRange = table.subRange(from, to);
+                if (to < rowCount) {
+                    splits.add(Collections.singletonList(subRange));
+                } else {
+                    // The last one may have room for the next tables
+                    current.add(subRange);
+                    currentBytes = bytes * (to - from) / rowCount;
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            splits.add(current);
+        }
+        return splits;
+    }
+
     private CompletableFuture<Result<WriteOk, Err>> write0(WriteTables writeTables, Context ctx, int retries) {
         InnerMetricHelper.writeByRetries(retries).mark();
 
@@ -189,7 +394,8 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
         String database = this.opts.getDatabase();
         AuthInfo authInfo = this.opts.getAuthInfo();
 
-        Database.GreptimeRequest req = TableHelper.toGreptimeRequest(writeTables, database, authInfo);
+        // Encoded straight from the table buffers when gRPC serializes the request
+        GreptimeRequestEncoder req = TableHelper.toGreptimeRequestEncoder(writeTables, database, authInfo);
         ctx.with("retries", retries);
 
         CompletableFuture<Database.GreptimeResponse> future = this.routerClient.invoke(endpoint, req, ctx);
@@ -273,6 +479,8 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
         out.println("--- WriteClient ---")
                 .print("maxRetries=")
                 .println(this.opts.getMaxRetries())
+                .print("batchingEnabled=")
+                .println(this.opts.isBatchingEnabled())
                 .print("asyncPool=")
                 .println(this.asyncPool);
     }
@@ -291,6 +499,8 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
                 MetricsUtil.timer("write_stream_limiter_acquire_wait_time");
         static final Meter WRITE_FAILURE_NUM = MetricsUtil.meter("write_failure_num");
         static final Meter WRITE_QPS = MetricsUtil.meter("write_qps");
+        static final Histogram WRITE_SPLITS = MetricsUtil.histogram("write_splits");
+        static final Histogram WRITE_BYTES = MetricsUtil.histogram("write_bytes");
 
         static Histogram writeRowsSuccessNum(WriteOp writeOp) {
             switch (writeOp) {
@@ -326,6 +536,14 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
             return WRITE_QPS;
         }
 
+        static Histogram writeSplits() {
+            return WRITE_SPLITS;
+        }
+
+        static Histogram writeBytes() {
+            return WRITE_BYTES;
+        }
+
         static Meter writeByRetries(int retries) {
             // more than 3 retries are classified as the same metric
             return MetricsUtil.meter("write_by_retries", Math.min(3, retries));
@@ -352,6 +570,33 @@ public class WriteClient implements Write, Health, Lifecycle<WriteOptions>, Disp
         }
     }
 
+    /**
+     * Limits the in-flight bytes of the writes, the bytes of a table is its {@link Table#bytesUsed()}.
+     */
+    static class DefaultWriteBytesLimiter extends WriteLimiter {
+
+        public DefaultWriteBytesLimiter(int maxInFlightBytes, LimitedPolicy policy) {
+            super(maxInFlightBytes, policy, "write_bytes_limiter_acquire");
+        }
+
+        @Override
+        public int calculatePermits(Collection<Table> in) {
+            long bytes = 0;
+            for (Table table : in) {
+                bytes += table.bytesUsed();
+            }
+            return (int) Math.min(bytes, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public Result<WriteOk, Err> rejected(Collection<Table> in, RejectedState state) {
+            String errMsg = String.format(
+                    "Write limited by client, acquireBytes=%d, maxBytes=%d, availableBytes=%d.",
+                    state.acquirePermits(), state.maxPermits(), state.availablePermits());
+            return Result.err(Err.writeErr(Result.FLOW_CONTROL, new LimitedException(errMsg), null));
+        }
+    }
+
     @SuppressWarnings("UnstableApiUsage")
     abstract static class RateLimitingStreamWriter implements StreamWriter<Table, WriteOk> {
 
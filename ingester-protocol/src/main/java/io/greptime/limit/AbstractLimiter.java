@@ -68,7 +68,15 @@ public abstract class AbstractLimiter<In, Out> {
 
         try {
             if (this.policy.acquire(this.limiter, permits)) {
-                return action.get().whenComplete((r, e) -> release(permits));
+                CompletableFuture<Out> future;
+                try {
+                    future = action.get();
+                } catch (Throwable t) {
+                    // e.g. a nested limiter aborts, the permits must not leak
+                    release(permits);
+                    throw t;
+                }
+                return future.whenComplete((r, e) -> release(permits));
             }
             return Util.completedCf(rejected(in, acquirePermits, maxPermits));
         } finally {
@@ -76,6 +84,53 @@ public abstract class AbstractLimiter<In, Out> {
         }
     }
 
+    /**
+     * Acquire permits without blocking, whatever the policy, and do the action.
+     *
+     * @param in input
+     * @param action the action to do
+     * @return the result of the action, or null if the permits are not available now
+     */
+    public CompletableFuture<Out> tryAcquireAndDo(In in, Supplier<CompletableFuture<Out>> action) {
+        if (this.limiter == null || this.policy == null) {
+            return action.get();
+        }
+
+        int permits = Math.min(calculatePermits(in), this.limiter.maxPermits());
+
+        if (permits <= 0) { // fast path
+            return action.get();
+        }
+
+        try {
+            if (this.limiter.tryAcquire(permits)) {
+                CompletableFuture<Out> future;
+                try {
+                    future = action.get();
+                } catch (Throwable t) {
+                    release(permits);
+                    throw t;
+                }
+                return future.whenComplete((r, e) -> release(permits));
+            }
+            return null;
+        } finally {
+            this.acquireAvailablePermits.update(this.limiter.availablePermits());
+        }
+    }
+
+    /**
+     * Returns the number of permits available now.
+     *
+     * @return the available permits, {@link Integer#MAX_VALUE} if not limited
+     */
+    public int availablePermits() {
+        if (this.limiter == null || this.policy == null) {
+            return Integer.MAX_VALUE;
+        }
+        return this.limiter.availablePermits();
+    }
+
     /**
      * Calculate the number of permits to acquire.
      *
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+import io.greptime.v1.Common;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The base {@link Table.RowWriter} that checks the setter against the column kind resolved
+ * from the schema and dispatches to the typed {@code putXxx} methods of the table implementation.
+ */
+abstract class AbstractRowWriter implements Table.RowWriter {
+
+    private final List<Common.ColumnDataType> dataTypes;
+    private final ColumnKind[] kinds;
+    private final TimeUnit[] timestampUnits;
+
+    AbstractRowWriter(TableSchema tableSchema) {
+        // Shared with the table schema, never modified
+        this.dataTypes = tableSchema.getDataTypes();
+        this.kinds = tableSchema.columnKinds();
+        this.timestampUnits = tableSchema.timestampUnits();
+    }
+
+    @Override
+    public Table.RowWriter setNull(int col) {
+        checkColumnIndex(col);
+        putNull(col);
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setBoolean(int col, boolean value) {
+        checkKind(col, ColumnKind.BOOLEAN, "boolean");
+        putBoolean(col, value);
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setInt(int col, int value) {
+        switch (kind(col)) {
+            case INT:
+                putInt(col, value);
+                break;
+            case LONG:
+            case TIMESTAMP:
+                putLong(col, value);
+                break;
+            default:
+                throw mismatch(col, "int");
+        }
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setLong(int col, long value) {
+        switch (kind(col)) {
+            case LONG:
+            case TIMESTAMP:
+                putLong(col, value);
+                break;
+            default:
+                throw mismatch(col, "long");
+        }
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setFloat(int col, float value) {
+        switch (kind(col)) {
+            case FLOAT:
+                putFloat(col, value);
+                break;
+            case DOUBLE:
+                putDouble(col, value);
+                break;
+            default:
+                throw mismatch(col, "float");
+        }
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setDouble(int col, double value) {
+        checkKind(col, ColumnKind.DOUBLE, "double");
+        putDouble(col, value);
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setString(int col, CharSequence value) {
+        checkKind(col, ColumnKind.STRING, "string");
+        if (value == null) {
+            putNull(col);
+        } else {
+            putString(col, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setBytes(int col, byte[] value) {
+        checkKind(col, ColumnKind.BINARY, "bytes");
+        if (value == null) {
+            putNull(col);
+        } else {
+            putBytes(col, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setDecimal(int col, BigDecimal value) {
+        checkKind(col, ColumnKind.DECIMAL, "decimal");
+        if (value == null) {
+            putNull(col);
+        } else {
+            putDecimal(col, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setTimestamp(int col, long value) {
+        checkKind(col, ColumnKind.TIMESTAMP, "timestamp");
+        putLong(col, value);
+        return this;
+    }
+
+    @Override
+    public Table.RowWriter setTimestampMillis(int col, long millis) {
+        checkKind(col, ColumnKind.TIMESTAMP, "timestamp");
+        putLong(col, this.timestampUnits[col].convert(millis, TimeUnit.MILLISECONDS));
+        return this;
+    }
+
+    Common.ColumnDataType dataType(int col) {
+        return this.dataTypes.get(col);
+    }
+
+    abstract void putNull(int col);
+
+    abstract void putBoolean(int col, boolean value);
+
+    abstract void putInt(int col, int value);
+
+    abstract void putLong(int col, long value);
+
+    abstract void putFloat(int col, float value);
+
+    abstract void putDouble(int col, double value);
+
+    abstract void putString(int col, CharSequence value);
+
+    abstract void putBytes(int col, byte[] value);
+
+    abstract void putDecimal(int col, BigDecimal value);
+
+    private ColumnKind kind(int col) {
+        checkColumnIndex(col);
+        return this.kinds[col];
+    }
+
+    private void checkKind(int col, ColumnKind expected, String javaType) {
+        if (kind(col) != expected) {
+            throw mismatch(col, javaType);
+        }
+    }
+
+    private void checkColumnIndex(int col) {
+        // Not using `Ensures` here, its varargs would box the arguments on every call
+        if (col < 0 || col >= this.kinds.length) {
+            throw new IllegalArgumentException(
+                    String.format("Column index out of range: %d, column count: %d", col, this.kinds.length));
+        }
+    }
+
+    private IllegalArgumentException mismatch(int col, String javaType) {
+        return new IllegalArgumentException(
+                String.format("Cannot set a %s value to column %d of type %s", javaType, col, this.dataTypes.get(col)));
+    }
+}
@@ -20,12 +20,16 @@ import io.greptime.ArrowCompressionType;
 import io.greptime.common.util.Ensures;
 import io.greptime.rpc.Context;
 import io.greptime.v1.Common;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseVariableWidthVector;
 import org.apache.arrow.vector.BigIntVector;
 import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.BitVectorHelper;
 import org.apache.arrow.vector.DateDayVector;
 import org.apache.arrow.vector.DecimalVector;
 import org.apache.arrow.vector.FieldVector;
@@ -48,19 +52,13 @@ import org.apache.arrow.vector.UInt4Vector;
 import org.apache.arrow.vector.UInt8Vector;
 import org.apache.arrow.vector.VarBinaryVector;
 import org.apache.arrow.vector.VarCharVector;
-import org.apache.arrow.vector.holders.TimeMicroHolder;
-import org.apache.arrow.vector.holders.TimeMilliHolder;
-import org.apache.arrow.vector.holders.TimeNanoHolder;
-import org.apache.arrow.vector.holders.TimeSecHolder;
-import org.apache.arrow.vector.holders.TimeStampMicroHolder;
-import org.apache.arrow.vector.holders.TimeStampMilliHolder;
-import org.apache.arrow.vector.holders.TimeStampNanoHolder;
-import org.apache.arrow.vector.holders.TimeStampSecHolder;
 import org.apache.arrow.vector.types.DateUnit;
 import org.apache.arrow.vector.types.FloatingPointPrecision;
 import org.apache.arrow.vector.types.TimeUnit;
 import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
 import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
 import org.apache.arrow.vector.types.pojo.Schema;
 
 /**
@@ -88,7 +86,8 @@ public class ArrowHelper {
     }
 
     /**
-     * Create an Arrow schema from a table schema.
+     * Create an Arrow schema from a table schema, the schema is cached by the table schema
+     * so this is cheap to call repeatedly.
      *
      * @param tableSchema the table schema
      * @return the Arrow schema
@@ -96,6 +95,49 @@ public class ArrowHelper {
     public static Schema createSchema(TableSchema tableSchema) {
         Ensures.ensureNonNull(tableSchema, "tableSchema is null");
 
+        return tableSchema.arrowSchema();
+    }
+
+    /**
+     * Checks that an Arrow schema has the columns of the table schema, in the same order, with
+     * the same names and types. The dictionary-encoded columns are expected with their values,
+     * not encoded.
+     *
+     * @param tableSchema the table schema
+     * @param schema the Arrow schema to check
+     */
+    public static void checkSchema(TableSchema tableSchema, Schema schema) {
+        Ensures.ensureNonNull(tableSchema, "tableSchema is null");
+        Ensures.ensureNonNull(schema, "schema is null");
+
+        List<Field> fields = schema.getFields();
+        List<String> columnNames = tableSchema.getColumnNames();
+        List<Common.ColumnDataType> dataTypes = tableSchema.getDataTypes();
+        List<Common.ColumnDataTypeExtension> dataTypeExtensions = tableSchema.getDataTypeExtensions();
+        Ensures.ensure(
+                fields.size() == columnNames.size(),
+                "Schema mismatch for table %s: expected %d columns, got %d",
+                tableSchema.getTableName(),
+                columnNames.size(),
+                fields.size());
+
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            ArrowType expected = convertToArrowType(dataTypes.get(i), dataTypeExtensions.get(i));
+            Ensures.ensure(
+                    columnNames.get(i).equals(field.getName())
+                            && expected.equals(field.getType())
+                            && field.getDictionary() == null,
+                    "Schema mismatch for table %s at column %d: expected %s %s, got %s",
+                    tableSchema.getTableName(),
+                    i,
+                    columnNames.get(i),
+                    expected,
+                    field);
+        }
+    }
+
+    static Schema buildSchema(TableSchema tableSchema) {
         int columnCount = tableSchema.getColumnNames().size();
 
         List<Field> fields = new ArrayList<>(columnCount);
@@ -106,6 +148,15 @@ public class ArrowHelper {
 
         for (int i = 0; i < columnCount; i++) {
             String name = columnNames.get(i);
+
+            if (tableSchema.isDictionaryEncoded(i)) {
+                // The vector holds the int32 indexes, the dictionary of the values is keyed by the column index
+                ArrowType.Int indexType = new ArrowType.Int(32, true);
+                DictionaryEncoding encoding = new DictionaryEncoding(i, false, indexType);
+                fields.add(new Field(name, new FieldType(true, indexType, encoding), null));
+                continue;
+            }
+
             ArrowType type = convertToArrowType(dataTypes.get(i), dataTypeExtensions.get(i));
 
             Field field = Field.nullable(name, type);
@@ -269,9 +320,10 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeStampSecHolder holder = new TimeStampSecHolder();
-                        holder.value = ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.SECONDS);
-                        ((TimeStampSecVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeStampSecVector) vector)
+                                .setSafe(
+                                        startRowIndex++,
+                                        ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.SECONDS));
                     }
                 }
                 break;
@@ -282,9 +334,10 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeStampMilliHolder holder = new TimeStampMilliHolder();
-                        holder.value = ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.MILLISECONDS);
-                        ((TimeStampMilliVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeStampMilliVector) vector)
+                                .setSafe(
+                                        startRowIndex++,
+                                        ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.MILLISECONDS));
                     }
                 }
                 break;
@@ -295,9 +348,10 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeStampMicroHolder holder = new TimeStampMicroHolder();
-                        holder.value = ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.MICROSECONDS);
-                        ((TimeStampMicroVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeStampMicroVector) vector)
+                                .setSafe(
+                                        startRowIndex++,
+                                        ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.MICROSECONDS));
                     }
                 }
                 break;
@@ -308,9 +362,10 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeStampNanoHolder holder = new TimeStampNanoHolder();
-                        holder.value = ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.NANOSECONDS);
-                        ((TimeStampNanoVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeStampNanoVector) vector)
+                                .setSafe(
+                                        startRowIndex++,
+                                        ValueUtil.getTimestamp(value, java.util.concurrent.TimeUnit.NANOSECONDS));
                     }
                 }
                 break;
@@ -321,9 +376,7 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeSecHolder holder = new TimeSecHolder();
-                        holder.value = (int) ValueUtil.getLongValue(value);
-                        ((TimeSecVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeSecVector) vector).setSafe(startRowIndex++, (int) ValueUtil.getLongValue(value));
                     }
                 }
                 break;
@@ -334,9 +387,7 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeMilliHolder holder = new TimeMilliHolder();
-                        holder.value = (int) ValueUtil.getLongValue(value);
-                        ((TimeMilliVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeMilliVector) vector).setSafe(startRowIndex++, (int) ValueUtil.getLongValue(value));
                     }
                 }
                 break;
@@ -347,9 +398,7 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeMicroHolder holder = new TimeMicroHolder();
-                        holder.value = ValueUtil.getLongValue(value);
-                        ((TimeMicroVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeMicroVector) vector).setSafe(startRowIndex++, ValueUtil.getLongValue(value));
                     }
                 }
                 break;
@@ -360,9 +409,7 @@ public class ArrowHelper {
                     if (value == null) {
                         vector.setNull(startRowIndex++);
                     } else {
-                        TimeNanoHolder holder = new TimeNanoHolder();
-                        holder.value = ValueUtil.getLongValue(value);
-                        ((TimeNanoVector) vector).setSafe(startRowIndex++, holder);
+                        ((TimeNanoVector) vector).setSafe(startRowIndex++, ValueUtil.getLongValue(value));
                     }
                 }
                 break;
@@ -394,6 +441,91 @@ public class ArrowHelper {
         }
     }
 
+    /**
+     * Copies the values into a 64-bit fixed-width data buffer starting from the given value index.
+     */
+    static void copyLongs(ArrowBuf dst, int index, long[] values, int offset, int length) {
+        dst.nioBuffer((long) index * Long.BYTES, length * Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asLongBuffer()
+                .put(values, offset, length);
+    }
+
+    static void copyInts(ArrowBuf dst, int index, int[] values, int offset, int length) {
+        dst.nioBuffer((long) index * Integer.BYTES, length * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer()
+                .put(values, offset, length);
+    }
+
+    static void copyDoubles(ArrowBuf dst, int index, double[] values, int offset, int length) {
+        dst.nioBuffer((long) index * Double.BYTES, length * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer()
+                .put(values, offset, length);
+    }
+
+    /**
+     * Copies the variable-width values {@code data[offsets[i], offsets[i + 1])} into the vector
+     * starting from the given value index, the offsets are rebased onto the data buffer.
+     */
+    static void copyVariableWidth(BaseVariableWidthVector vector, int index, byte[] data, int[] offsets) {
+        int count = offsets.length - 1;
+        ArrowBuf offsetBuffer = vector.getOffsetBuffer();
+        // The values before `index` that are never set (nulls) take no bytes
+        int lastSet = vector.getLastSet();
+        int dataStart = lastSet < 0 ? 0 : vector.getStartOffset(lastSet + 1);
+        for (int i = lastSet + 1; i <= index; i++) {
+            offsetBuffer.setInt((long) i * BaseVariableWidthVector.OFFSET_WIDTH, dataStart);
+        }
+
+        int bytes = offsets[count] - offsets[0];
+        while (vector.getDataBuffer().capacity() < (long) dataStart + bytes) {
+            vector.reallocDataBuffer();
+        }
+        vector.getDataBuffer().setBytes(dataStart, data, offsets[0], bytes);
+
+        int delta = dataStart - offsets[0];
+        for (int i = 1; i <= count; i++) {
+            offsetBuffer.setInt((long) (index + i) * BaseVariableWidthVector.OFFSET_WIDTH, offsets[i] + delta);
+        }
+        vector.setLastSet(index + count - 1);
+    }
+
+    /**
+     * Sets the validity bits of {@code [index, index + length)}.
+     */
+    static void setValidRange(ArrowBuf validity, int index, int length) {
+        int end = index + length;
+        int i = index;
+        for (; i < end && (i & 7) != 0; i++) {
+            BitVectorHelper.setBit(validity, i);
+        }
+        int fullBytes = (end - i) >>> 3;
+        if (fullBytes > 0) {
+            validity.setOne((long) (i >>> 3), fullBytes);
+            i += fullBytes << 3;
+        }
+        for (; i < end; i++) {
+            BitVectorHelper.setBit(validity, i);
+        }
+    }
+
+    /**
+     * Copies {@code length} bits of an LSB-first bitmap into the validity buffer at the given index.
+     */
+    static void copyValidity(ArrowBuf validity, int index, byte[] bitmap, int length) {
+        int i = 0;
+        if ((index & 7) == 0) {
+            int fullBytes = length >>> 3;
+            validity.setBytes(index >>> 3, bitmap, 0, fullBytes);
+            i = fullBytes << 3;
+        }
+        for (; i < length; i++) {
+            BitVectorHelper.setValidityBit(validity, index + i, (bitmap[i >>> 3] >>> (i & 7)) & 1);
+        }
+    }
+
     static ArrowType convertToArrowType(
             Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension) {
         switch (dataType) {
@@ -0,0 +1,887 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import io.greptime.common.util.Ensures;
+import io.greptime.v1.Common;
+import io.greptime.v1.RowData;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A growable, primitive-specialized buffer that holds the values of a single column.
+ *
+ * <p>
+ * Values are stored unboxed ({@code int[]}, {@code long[]}, {@code double[]} ...) together with a
+ * validity bitmap, strings and binaries are stored in one UTF-8 byte arena. They are only converted
+ * into {@link RowData.Value} when the table is serialized.
+ * </p>
+ */
+abstract class ColumnBuffer {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    final Common.ColumnDataType dataType;
+    final Common.ColumnDataTypeExtension dataTypeExtension;
+    // The field number of the value in `RowData.Value`
+    final int valueFieldNumber;
+
+    // The bit at `i` is set if the value at row `i` is not null
+    private long[] validity;
+    int size;
+
+    ColumnBuffer(Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+        this.dataType = dataType;
+        this.dataTypeExtension = dataTypeExtension;
+        this.valueFieldNumber = valueFieldNumber(dataType);
+        this.validity = new long[validityWords(capacity)];
+    }
+
+    static ColumnBuffer create(
+            Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+        Ensures.ensure(capacity > 0, "Column capacity must be positive: %d", capacity);
+        switch (dataType) {
+            case INT8:
+            case INT16:
+            case INT32:
+            case UINT8:
+            case UINT16:
+            case UINT32:
+            case DATE:
+                return new IntColumn(dataType, dataTypeExtension, capacity);
+            case INT64:
+            case UINT64:
+            case TIMESTAMP_SECOND:
+            case TIMESTAMP_MILLISECOND:
+            case TIMESTAMP_MICROSECOND:
+            case TIMESTAMP_NANOSECOND:
+            case TIME_SECOND:
+            case TIME_MILLISECOND:
+            case TIME_MICROSECOND:
+            case TIME_NANOSECOND:
+                return new LongColumn(dataType, dataTypeExtension, capacity);
+            case FLOAT32:
+                return new FloatColumn(dataType, dataTypeExtension, capacity);
+            case FLOAT64:
+                return new DoubleColumn(dataType, dataTypeExtension, capacity);
+            case BOOLEAN:
+                return new BooleanColumn(dataType, dataTypeExtension, capacity);
+            case BINARY:
+            case STRING:
+            case JSON:
+                return new BytesColumn(dataType, dataTypeExtension, capacity);
+            case DECIMAL128:
+                return new Decimal128Column(dataType, dataTypeExtension, capacity);
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported `data_type`: %s", dataType));
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isNull(int row) {
+        return (this.validity[row >>> 6] & (1L << row)) == 0;
+    }
+
+    /**
+     * Appends a value, a null value is recorded in the validity bitmap only.
+     *
+     * @param value the value to append
+     */
+    void append(Object value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        beforeAppend();
+        appendValue(value);
+        afterAppend();
+    }
+
+    void appendNull() {
+        ensureValidityCapacity(this.size + 1);
+        appendDefault();
+        this.size++;
+    }
+
+    // The typed appends, a column only overrides the ones that match its kind
+
+    void appendInt(int value) {
+        throw unsupported("int");
+    }
+
+    void appendLong(long value) {
+        throw unsupported("long");
+    }
+
+    void appendFloat(float value) {
+        throw unsupported("float");
+    }
+
+    void appendDouble(double value) {
+        throw unsupported("double");
+    }
+
+    void appendBoolean(boolean value) {
+        throw unsupported("boolean");
+    }
+
+    void appendString(CharSequence value) {
+        throw unsupported("string");
+    }
+
+    void appendBytes(byte[] value) {
+        throw unsupported("bytes");
+    }
+
+    void appendDecimal(BigDecimal value) {
+        throw unsupported("decimal");
+    }
+
+    final void beforeAppend() {
+        ensureValidityCapacity(this.size + 1);
+    }
+
+    final void afterAppend() {
+        this.validity[this.size >>> 6] |= 1L << this.size;
+        this.size++;
+    }
+
+    private IllegalStateException unsupported(String javaType) {
+        return new IllegalStateException(
+                String.format("Cannot append a %s value to column of type %s", javaType, this.dataType));
+    }
+
+    /**
+     * Discards all the values at and after {@code newSize}.
+     *
+     * @param newSize the new size
+     */
+    void truncate(int newSize) {
+        for (int i = newSize; i < this.size; i++) {
+            this.validity[i >>> 6] &= ~(1L << i);
+        }
+        this.size = newSize;
+    }
+
+    /**
+     * Discards all the values, the allocated arrays are kept for reuse.
+     */
+    void clear() {
+        Arrays.fill(this.validity, 0, validityWords(this.size), 0L);
+        this.size = 0;
+    }
+
+    /**
+     * Gets the value at the given row as a {@link RowData.Value}.
+     *
+     * @param row the row index
+     * @return the value
+     */
+    RowData.Value toValue(int row) {
+        if (isNull(row)) {
+            return RowData.Value.getDefaultInstance();
+        }
+        return toNonNullValue(row);
+    }
+
+    /**
+     * Gets the bytes used by this column, including the validity bitmap.
+     *
+     * @return the bytes used
+     */
+    long bytesUsed() {
+        return validityWords(this.size) * 8L + dataBytesUsed();
+    }
+
+    abstract void appendValue(Object value);
+
+    abstract void appendDefault();
+
+    abstract RowData.Value toNonNullValue(int row);
+
+    abstract long dataBytesUsed();
+
+    /**
+     * Gets the serialized size of the {@link RowData.Value} at the given non-null row.
+     *
+     * @param row the row index
+     * @return the serialized size
+     */
+    abstract int valueSize(int row);
+
+    /**
+     * Writes the fields of the {@link RowData.Value} at the given non-null row.
+     *
+     * @param out the output
+     * @param row the row index
+     * @throws IOException if an I/O error occurs
+     */
+    abstract void writeValue(CodedOutputStream out, int row) throws IOException;
+
+    static int valueFieldNumber(Common.ColumnDataType dataType) {
+        switch (dataType) {
+            case INT8:
+                return RowData.Value.I8_VALUE_FIELD_NUMBER;
+            case INT16:
+                return RowData.Value.I16_VALUE_FIELD_NUMBER;
+            case INT32:
+                return RowData.Value.I32_VALUE_FIELD_NUMBER;
+            case INT64:
+                return RowData.Value.I64_VALUE_FIELD_NUMBER;
+            case UINT8:
+                return RowData.Value.U8_VALUE_FIELD_NUMBER;
+            case UINT16:
+                return RowData.Value.U16_VALUE_FIELD_NUMBER;
+            case UINT32:
+                return RowData.Value.U32_VALUE_FIELD_NUMBER;
+            case UINT64:
+                return RowData.Value.U64_VALUE_FIELD_NUMBER;
+            case FLOAT32:
+                return RowData.Value.F32_VALUE_FIELD_NUMBER;
+            case FLOAT64:
+                return RowData.Value.F64_VALUE_FIELD_NUMBER;
+            case BOOLEAN:
+                return RowData.Value.BOOL_VALUE_FIELD_NUMBER;
+            case BINARY:
+                return RowData.Value.BINARY_VALUE_FIELD_NUMBER;
+            case STRING:
+            case JSON:
+                return RowData.Value.STRING_VALUE_FIELD_NUMBER;
+            case DATE:
+                return RowData.Value.DATE_VALUE_FIELD_NUMBER;
+            case TIMESTAMP_SECOND:
+                return RowData.Value.TIMESTAMP_SECOND_VALUE_FIELD_NUMBER;
+            case TIMESTAMP_MILLISECOND:
+                return RowData.Value.TIMESTAMP_MILLISECOND_VALUE_FIELD_NUMBER;
+            case TIMESTAMP_MICROSECOND:
+                return RowData.Value.TIMESTAMP_MICROSECOND_VALUE_FIELD_NUMBER;
+            case TIMESTAMP_NANOSECOND:
+                return RowData.Value.TIMESTAMP_NANOSECOND_VALUE_FIELD_NUMBER;
+            case TIME_SECOND:
+                return RowData.Value.TIME_SECOND_VALUE_FIELD_NUMBER;
+            case TIME_MILLISECOND:
+                return RowData.Value.TIME_MILLISECOND_VALUE_FIELD_NUMBER;
+            case TIME_MICROSECOND:
+                return RowData.Value.TIME_MICROSECOND_VALUE_FIELD_NUMBER;
+            case TIME_NANOSECOND:
+                return RowData.Value.TIME_NANOSECOND_VALUE_FIELD_NUMBER;
+            case DECIMAL128:
+                return RowData.Value.DECIMAL128_VALUE_FIELD_NUMBER;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported `data_type`: %s", dataType));
+        }
+    }
+
+    private void ensureValidityCapacity(int capacity) {
+        int words = validityWords(capacity);
+        if (words > this.validity.length) {
+            this.validity = Arrays.copyOf(this.validity, Math.max(words, this.validity.length << 1));
+        }
+    }
+
+    private static int validityWords(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    static int newCapacity(int oldCapacity, int minCapacity) {
+        int newCapacity = oldCapacity << 1;
+        if (newCapacity - minCapacity < 0) {
+            newCapacity = minCapacity;
+        }
+        Ensures.ensure(newCapacity > 0, "Column buffer overflow");
+        return newCapacity;
+    }
+
+    static final class IntColumn extends ColumnBuffer {
+
+        private int[] values;
+
+        IntColumn(Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(dataType, dataTypeExtension, capacity);
+            this.values = new int[capacity];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            putInt(
+                    this.dataType == Common.ColumnDataType.DATE
+                            ? ValueUtil.getDateValue(value)
+                            : ValueUtil.getIntValue(value));
+        }
+
+        @Override
+        void appendInt(int value) {
+            beforeAppend();
+            putInt(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            putInt(0);
+        }
+
+        private void putInt(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, newCapacity(this.values.length, this.size + 1));
+            }
+            this.values[this.size] = value;
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            return RowHelper.intValue(this.dataType, this.values[row]);
+        }
+
+        @Override
+        int valueSize(int row) {
+            return isUnsigned()
+                    ? CodedOutputStream.computeUInt32Size(this.valueFieldNumber, this.values[row])
+                    : CodedOutputStream.computeInt32Size(this.valueFieldNumber, this.values[row]);
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            if (isUnsigned()) {
+                out.writeUInt32(this.valueFieldNumber, this.values[row]);
+            } else {
+                out.writeInt32(this.valueFieldNumber, this.values[row]);
+            }
+        }
+
+        private boolean isUnsigned() {
+            return this.dataType == Common.ColumnDataType.UINT8
+                    || this.dataType == Common.ColumnDataType.UINT16
+                    || this.dataType == Common.ColumnDataType.UINT32;
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return this.size * 4L;
+        }
+    }
+
+    static final class LongColumn extends ColumnBuffer {
+
+        private final TimeUnit timestampUnit;
+        private long[] values;
+
+        LongColumn(Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(dataType, dataTypeExtension, capacity);
+            this.timestampUnit = ColumnKind.timestampUnit(dataType);
+            this.values = new long[capacity];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            putLong(
+                    this.timestampUnit == null
+                            ? ValueUtil.getLongValue(value)
+                            : ValueUtil.getTimestamp(value, this.timestampUnit));
+        }
+
+        @Override
+        void appendLong(long value) {
+            beforeAppend();
+            putLong(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            putLong(0);
+        }
+
+        private void putLong(long value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, newCapacity(this.values.length, this.size + 1));
+            }
+            this.values[this.size] = value;
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            return RowHelper.longValue(this.dataType, this.values[row]);
+        }
+
+        // INT64 and UINT64 share the same varint encoding
+        @Override
+        int valueSize(int row) {
+            return CodedOutputStream.computeInt64Size(this.valueFieldNumber, this.values[row]);
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            out.writeInt64(this.valueFieldNumber, this.values[row]);
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return this.size * 8L;
+        }
+    }
+
+    static final class FloatColumn extends ColumnBuffer {
+
+        private float[] values;
+
+        FloatColumn(Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(dataType, dataTypeExtension, capacity);
+            this.values = new float[capacity];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            putFloat(((Number) value).floatValue());
+        }
+
+        @Override
+        void appendFloat(float value) {
+            beforeAppend();
+            putFloat(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            putFloat(0);
+        }
+
+        private void putFloat(float value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, newCapacity(this.values.length, this.size + 1));
+            }
+            this.values[this.size] = value;
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            return RowData.Value.newBuilder().setF32Value(this.values[row]).build();
+        }
+
+        @Override
+        int valueSize(int row) {
+            return CodedOutputStream.computeFloatSize(this.valueFieldNumber, this.values[row]);
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            out.writeFloat(this.valueFieldNumber, this.values[row]);
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return this.size * 4L;
+        }
+    }
+
+    static final class DoubleColumn extends ColumnBuffer {
+
+        private double[] values;
+
+        DoubleColumn(Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(dataType, dataTypeExtension, capacity);
+            this.values = new double[capacity];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            putDouble(((Number) value).doubleValue());
+        }
+
+        @Override
+        void appendDouble(double value) {
+            beforeAppend();
+            putDouble(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            putDouble(0);
+        }
+
+        private void putDouble(double value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, newCapacity(this.values.length, this.size + 1));
+            }
+            this.values[this.size] = value;
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            return RowData.Value.newBuilder().setF64Value(this.values[row]).build();
+        }
+
+        @Override
+        int valueSize(int row) {
+            return CodedOutputStream.computeDoubleSize(this.valueFieldNumber, this.values[row]);
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            out.writeDouble(this.valueFieldNumber, this.values[row]);
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return this.size * 8L;
+        }
+    }
+
+    static final class BooleanColumn extends ColumnBuffer {
+
+        private long[] bits;
+
+        BooleanColumn(Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(dataType, dataTypeExtension, capacity);
+            this.bits = new long[(capacity + 63) >>> 6];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            putBoolean((boolean) value);
+        }
+
+        @Override
+        void appendBoolean(boolean value) {
+            beforeAppend();
+            putBoolean(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            putBoolean(false);
+        }
+
+        private void putBoolean(boolean value) {
+            int word = this.size >>> 6;
+            if (word == this.bits.length) {
+                this.bits = Arrays.copyOf(this.bits, newCapacity(this.bits.length, word + 1));
+            }
+            if (value) {
+                this.bits[word] |= 1L << this.size;
+            } else {
+                this.bits[word] &= ~(1L << this.size);
+            }
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            boolean value = (this.bits[row >>> 6] & (1L << row)) != 0;
+            return RowData.Value.newBuilder().setBoolValue(value).build();
+        }
+
+        @Override
+        int valueSize(int row) {
+            return CodedOutputStream.computeBoolSize(this.valueFieldNumber, true);
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            out.writeBool(this.valueFieldNumber, (this.bits[row >>> 6] & (1L << row)) != 0);
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return ((this.size + 63) >>> 6) * 8L;
+        }
+    }
+
+    /**
+     * Variable-length values share one byte arena, the value at row {@code i} is stored in
+     * {@code data[offsets[i], offsets[i + 1])}. Strings and JSON are kept UTF-8 encoded.
+     */
+    static final class BytesColumn extends ColumnBuffer {
+
+        private byte[] data;
+        private int[] offsets;
+
+        BytesColumn(Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(dataType, dataTypeExtension, capacity);
+            this.data = new byte[capacity * 8];
+            this.offsets = new int[capacity + 1];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            switch (this.dataType) {
+                case STRING:
+                    putUtf8((CharSequence) value);
+                    break;
+                case JSON:
+                    putUtf8(ValueUtil.getJsonString(value));
+                    break;
+                case BINARY:
+                    putBytes((byte[]) value);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected `data_type`: " + this.dataType);
+            }
+        }
+
+        @Override
+        void appendString(CharSequence value) {
+            beforeAppend();
+            putUtf8(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendBytes(byte[] value) {
+            beforeAppend();
+            putBytes(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            ensureOffsetsCapacity();
+            this.offsets[this.size + 1] = this.offsets[this.size];
+        }
+
+        private void putUtf8(CharSequence cs) {
+            ensureOffsetsCapacity();
+            int start = this.offsets[this.size];
+            ensureDataCapacity(start + Utf8Helper.maxEncodedLength(cs));
+            this.offsets[this.size + 1] = Utf8Helper.encode(cs, this.data, start);
+        }
+
+        private void putBytes(byte[] bytes) {
+            ensureOffsetsCapacity();
+            int start = this.offsets[this.size];
+            ensureDataCapacity(start + bytes.length);
+            System.arraycopy(bytes, 0, this.data, start, bytes.length);
+            this.offsets[this.size + 1] = start + bytes.length;
+        }
+
+        private void ensureOffsetsCapacity() {
+            if (this.size + 1 == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, newCapacity(this.offsets.length, this.size + 2));
+            }
+        }
+
+        private void ensureDataCapacity(int capacity) {
+            if (capacity > this.data.length) {
+                this.data = Arrays.copyOf(this.data, newCapacity(this.data.length, capacity));
+            }
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            int start = this.offsets[row];
+            int len = this.offsets[row + 1] - start;
+            // The wrapped bytes are never modified once appended, it's safe to share them
+            if (this.dataType == Common.ColumnDataType.BINARY) {
+                return RowData.Value.newBuilder()
+                        .setBinaryValue(UnsafeByteOperations.unsafeWrap(this.data, start, len))
+                        .build();
+            }
+            return RowData.Value.newBuilder()
+                    .setStringValueBytes(UnsafeByteOperations.unsafeWrap(this.data, start, len))
+                    .build();
+        }
+
+        @Override
+        int valueSize(int row) {
+            int len = this.offsets[row + 1] - this.offsets[row];
+            return CodedOutputStream.computeTagSize(this.valueFieldNumber)
+                    + CodedOutputStream.computeUInt32SizeNoTag(len)
+                    + len;
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            int start = this.offsets[row];
+            out.writeByteArray(this.valueFieldNumber, this.data, start, this.offsets[row + 1] - start);
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return this.offsets[this.size] + (this.size + 1) * 4L;
+        }
+    }
+
+    /**
+     * A string tag column that keeps a code per row, the distinct values are stored once
+     * in a {@link TagDictionary}.
+     */
+    static final class DictionaryColumn extends ColumnBuffer {
+
+        private final TagDictionary dictionary;
+        private int[] codes;
+
+        DictionaryColumn(Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(Common.ColumnDataType.STRING, dataTypeExtension, capacity);
+            this.dictionary = new TagDictionary();
+            this.codes = new int[capacity];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            putCode(this.dictionary.intern((CharSequence) value));
+        }
+
+        @Override
+        void appendString(CharSequence value) {
+            beforeAppend();
+            putCode(this.dictionary.intern(value));
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            putCode(0);
+        }
+
+        /**
+         * Discards all the values, the dictionary is kept unless it is over its max size.
+         */
+        @Override
+        void clear() {
+            super.clear();
+            this.dictionary.clearIfOverMaxSize();
+        }
+
+        private void putCode(int code) {
+            if (this.size == this.codes.length) {
+                this.codes = Arrays.copyOf(this.codes, newCapacity(this.codes.length, this.size + 1));
+            }
+            this.codes[this.size] = code;
+        }
+
+        TagDictionary dictionary() {
+            return this.dictionary;
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            return this.dictionary.value(this.codes[row]);
+        }
+
+        @Override
+        int valueSize(int row) {
+            return this.dictionary.valueSize(this.valueFieldNumber, this.codes[row]);
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            this.dictionary.writeValue(out, this.valueFieldNumber, this.codes[row]);
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return this.size * 4L + this.dictionary.bytesUsed();
+        }
+    }
+
+    static final class Decimal128Column extends ColumnBuffer {
+
+        private long[] his;
+        private long[] los;
+
+        Decimal128Column(
+                Common.ColumnDataType dataType, Common.ColumnDataTypeExtension dataTypeExtension, int capacity) {
+            super(dataType, dataTypeExtension, capacity);
+            this.his = new long[capacity];
+            this.los = new long[capacity];
+        }
+
+        @Override
+        void appendValue(Object value) {
+            Common.Decimal128 decimal128 = ValueUtil.getDecimal128Value(this.dataTypeExtension, value);
+            putDecimal128(decimal128.getHi(), decimal128.getLo());
+        }
+
+        @Override
+        void appendDecimal(BigDecimal value) {
+            beforeAppend();
+            appendValue(value);
+            afterAppend();
+        }
+
+        @Override
+        void appendDefault() {
+            putDecimal128(0, 0);
+        }
+
+        private void putDecimal128(long hi, long lo) {
+            if (this.size == this.his.length) {
+                int newCapacity = newCapacity(this.his.length, this.size + 1);
+                this.his = Arrays.copyOf(this.his, newCapacity);
+                this.los = Arrays.copyOf(this.los, newCapacity);
+            }
+            this.his[this.size] = hi;
+            this.los[this.size] = lo;
+        }
+
+        @Override
+        RowData.Value toNonNullValue(int row) {
+            Common.Decimal128 decimal128 = Common.Decimal128.newBuilder()
+                    .setHi(this.his[row])
+                    .setLo(this.los[row])
+                    .build();
+            return RowData.Value.newBuilder().setDecimal128Value(decimal128).build();
+        }
+
+        @Override
+        int valueSize(int row) {
+            int size = decimal128Size(row);
+            return CodedOutputStream.computeTagSize(this.valueFieldNumber)
+                    + CodedOutputStream.computeUInt32SizeNoTag(size)
+                    + size;
+        }
+
+        @Override
+        void writeValue(CodedOutputStream out, int row) throws IOException {
+            out.writeTag(this.valueFieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(decimal128Size(row));
+            // Zero is the default value of a proto3 scalar, it is not written
+            if (this.his[row] != 0) {
+                out.writeInt64(Common.Decimal128.HI_FIELD_NUMBER, this.his[row]);
+            }
+            if (this.los[row] != 0) {
+                out.writeInt64(Common.Decimal128.LO_FIELD_NUMBER, this.los[row]);
+            }
+        }
+
+        private int decimal128Size(int row) {
+            int size = 0;
+            if (this.his[row] != 0) {
+                size += CodedOutputStream.computeInt64Size(Common.Decimal128.HI_FIELD_NUMBER, this.his[row]);
+            }
+            if (this.los[row] != 0) {
+                size += CodedOutputStream.computeInt64Size(Common.Decimal128.LO_FIELD_NUMBER, this.los[row]);
+            }
+            return size;
+        }
+
+        @Override
+        long dataBytesUsed() {
+            return this.size * 16L;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+import io.greptime.v1.Common;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The kind of Java primitive (or value class) that a column accepts, it is resolved once from
+ * the column data type so that the typed setters don't need to inspect the data type per cell.
+ */
+enum ColumnKind {
+    // INT8, INT16, INT32, UINT8, UINT16, UINT32, DATE
+    INT,
+    // INT64, UINT64, TIME_*
+    LONG,
+    // TIMESTAMP_*
+    TIMESTAMP,
+    FLOAT,
+    DOUBLE,
+    BOOLEAN,
+    // STRING, JSON
+    STRING,
+    BINARY,
+    DECIMAL;
+
+    static ColumnKind of(Common.ColumnDataType dataType) {
+        switch (dataType) {
+            case INT8:
+            case INT16:
+            case INT32:
+            case UINT8:
+            case UINT16:
+            case UINT32:
+            case DATE:
+                return INT;
+            case INT64:
+            case UINT64:
+            case TIME_SECOND:
+            case TIME_MILLISECOND:
+            case TIME_MICROSECOND:
+            case TIME_NANOSECOND:
+                return LONG;
+            case TIMESTAMP_SECOND:
+            case TIMESTAMP_MILLISECOND:
+            case TIMESTAMP_MICROSECOND:
+            case TIMESTAMP_NANOSECOND:
+                return TIMESTAMP;
+            case FLOAT32:
+                return FLOAT;
+            case FLOAT64:
+                return DOUBLE;
+            case BOOLEAN:
+                return BOOLEAN;
+            case STRING:
+            case JSON:
+                return STRING;
+            case BINARY:
+                return BINARY;
+            case DECIMAL128:
+                return DECIMAL;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported `data_type`: %s", dataType));
+        }
+    }
+
+    static ColumnKind[] of(List<Common.ColumnDataType> dataTypes) {
+        ColumnKind[] kinds = new ColumnKind[dataTypes.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = of(dataTypes.get(i));
+        }
+        return kinds;
+    }
+
+    /**
+     * Gets the time unit of a timestamp data type.
+     *
+     * @param dataType the column data type
+     * @return the time unit, or null if the data type is not a timestamp
+     */
+    static TimeUnit timestampUnit(Common.ColumnDataType dataType) {
+        switch (dataType) {
+            case TIMESTAMP_SECOND:
+                return TimeUnit.SECONDS;
+            case TIMESTAMP_MILLISECOND:
+                return TimeUnit.MILLISECONDS;
+            case TIMESTAMP_MICROSECOND:
+                return TimeUnit.MICROSECONDS;
+            case TIMESTAMP_NANOSECOND:
+                return TimeUnit.NANOSECONDS;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.WireFormat;
+import io.greptime.WriteOp;
+import io.greptime.common.util.Ensures;
+import io.greptime.rpc.WireEncodable;
+import io.greptime.v1.Common;
+import io.greptime.v1.Database;
+import io.greptime.v1.RowData;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Encodes the tables to write as the wire format of {@link Database.GreptimeRequest}, straight
+ * from the table buffers.
+ *
+ * <p>
+ * Compared with {@link TableHelper#toGreptimeRequest(WriteTables, String, AuthInfo)} it doesn't
+ * build the {@code RowInsertRequests -> RowInsertRequest -> Rows} message graph, the sizes of
+ * all the nested messages are computed once in the constructor, then {@link #writeTo(OutputStream)}
+ * encodes the request straight into the output stream through {@link CodedOutputStream}.
+ * </p>
+ */
+public final class GreptimeRequestEncoder implements WireEncodable {
+
+    // The max buffer of the CodedOutputStream, it is flushed to the output when full
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final Common.RequestHeader header;
+    // `row_inserts` or `row_deletes` of `GreptimeRequest`
+    private final int requestsFieldNumber;
+    private final TableEncoder[] tables;
+    private final int requestsSize;
+    private final int serializedSize;
+
+    public GreptimeRequestEncoder(WriteTables writeTables, String database, AuthInfo authInfo) {
+        this.header = TableHelper.buildHeader(database, authInfo);
+
+        WriteOp writeOp = writeTables.getWriteOp();
+        String action;
+        switch (writeOp) {
+            case Insert:
+                this.requestsFieldNumber = Database.GreptimeRequest.ROW_INSERTS_FIELD_NUMBER;
+                action = "insert";
+                break;
+            case Delete:
+                this.requestsFieldNumber = Database.GreptimeRequest.ROW_DELETES_FIELD_NUMBER;
+                action = "delete";
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported write operation: " + writeOp);
+        }
+
+        // The tables with the same name and schema are merged into one request
+        List<List<Table>> groups = TableHelper.mergeableGroups(writeTables.getTables());
+        this.tables = new TableEncoder[groups.size()];
+        int requestsSize = 0;
+        int i = 0;
+        for (List<Table> group : groups) {
+            for (Table t : group) {
+                Ensures.ensure(t.pointCount() > 0, "No data to %s in table: %s", action, t.tableName());
+            }
+            TableEncoder encoder = newTableEncoder(group, writeOp);
+            requestsSize += lengthDelimitedSize(Database.RowInsertRequests.INSERTS_FIELD_NUMBER, encoder.requestSize);
+            this.tables[i++] = encoder;
+        }
+        this.requestsSize = requestsSize;
+        this.serializedSize =
+                CodedOutputStream.computeMessageSize(Database.GreptimeRequest.HEADER_FIELD_NUMBER, this.header)
+                        + lengthDelimitedSize(this.requestsFieldNumber, requestsSize);
+    }
+
+    @Override
+    public Class<?> messageClass() {
+        return Database.GreptimeRequest.class;
+    }
+
+    @Override
+    public int serializedSize() {
+        return this.serializedSize;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        // No per-thread buffer is kept: the request is encoded into the transport buffers as it goes
+        CodedOutputStream cos = CodedOutputStream.newInstance(out, Math.min(this.serializedSize, STREAM_BUFFER_SIZE));
+        encode(cos);
+        cos.flush();
+    }
+
+    /**
+     * Encodes to a new byte array.
+     *
+     * @return the encoded bytes
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[this.serializedSize];
+        CodedOutputStream cos = CodedOutputStream.newInstance(bytes);
+        try {
+            encode(cos);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to a byte array threw an IOException", e);
+        }
+        cos.checkNoSpaceLeft();
+        return bytes;
+    }
+
+    private void encode(CodedOutputStream out) throws IOException {
+        out.writeMessage(Database.GreptimeRequest.HEADER_FIELD_NUMBER, this.header);
+        out.writeTag(this.requestsFieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(this.requestsSize);
+        // `RowInsertRequests.inserts` and `RowDeleteRequests.deletes` share the same field number
+        for (TableEncoder table : this.tables) {
+            out.writeTag(Database.RowInsertRequests.INSERTS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(table.requestSize);
+            table.writeRequest(out);
+        }
+    }
+
+    private static TableEncoder newTableEncoder(List<Table> group, WriteOp writeOp) {
+        Table first = group.get(0);
+        List<RowData.ColumnSchema> columnSchemas = TableHelper.columnSchemas(first);
+        if (columnSchemas == null) {
+            // Never merged with others
+            return new MessageEncoder(
+                    writeOp == WriteOp.Insert ? first.intoRowInsertRequest() : first.intoRowDeleteRequest());
+        }
+        RowsWriter[] rows = new RowsWriter[group.size()];
+        for (int i = 0; i < rows.length; i++) {
+            Table table = group.get(i);
+            if (table instanceof Table.RowBasedTable) {
+                rows[i] = new RowBasedRowsWriter((Table.RowBasedTable) table);
+            } else {
+                rows[i] = new ColumnarRowsWriter((Table.ColumnarTable) table);
+            }
+        }
+        return new RowsEncoder(first.tableName(), columnSchemas, rows);
+    }
+
+    static int lengthDelimitedSize(int fieldNumber, int size) {
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    abstract static class TableEncoder {
+
+        final int requestSize;
+
+        TableEncoder(int requestSize) {
+            this.requestSize = requestSize;
+        }
+
+        /**
+         * Writes the content of a {@code RowInsertRequest} or {@code RowDeleteRequest}.
+         *
+         * @param out the output
+         * @throws IOException if an I/O error occurs
+         */
+        abstract void writeRequest(CodedOutputStream out) throws IOException;
+    }
+
+    /**
+     * Encodes the rows of one or more tables with the same name and schema as one request, the
+     * {@code RowInsertRequest} and {@code RowDeleteRequest} have the same layout:
+     * {@code table_name = 1, rows = 2}.
+     */
+    static final class RowsEncoder extends TableEncoder {
+
+        private final String tableName;
+        private final List<RowData.ColumnSchema> columnSchemas;
+        private final RowsWriter[] rows;
+        private final int rowsSize;
+
+        RowsEncoder(String tableName, List<RowData.ColumnSchema> columnSchemas, RowsWriter[] rows) {
+            this(tableName, columnSchemas, rows, rowsSize(columnSchemas, rows));
+        }
+
+        private RowsEncoder(
+                String tableName, List<RowData.ColumnSchema> columnSchemas, RowsWriter[] rows, int rowsSize) {
+            super(requestSize(tableName, rowsSize));
+            this.tableName = tableName;
+            this.columnSchemas = columnSchemas;
+            this.rows = rows;
+            this.rowsSize = rowsSize;
+        }
+
+        private static int rowsSize(List<RowData.ColumnSchema> columnSchemas, RowsWriter[] rows) {
+            int size = 0;
+            for (RowData.ColumnSchema columnSchema : columnSchemas) {
+                size += CodedOutputStream.computeMessageSize(RowData.Rows.SCHEMA_FIELD_NUMBER, columnSchema);
+            }
+            for (RowsWriter writer : rows) {
+                size += writer.size;
+            }
+            return size;
+        }
+
+        private static int requestSize(String tableName, int rowsSize) {
+            int size = lengthDelimitedSize(Database.RowInsertRequest.ROWS_FIELD_NUMBER, rowsSize);
+            if (!tableName.isEmpty()) {
+                size += CodedOutputStream.computeStringSize(
+                        Database.RowInsertRequest.TABLE_NAME_FIELD_NUMBER, tableName);
+            }
+            return size;
+        }
+
+        @Override
+        void writeRequest(CodedOutputStream out) throws IOException {
+            if (!this.tableName.isEmpty()) {
+                out.writeString(Database.RowInsertRequest.TABLE_NAME_FIELD_NUMBER, this.tableName);
+            }
+            out.writeTag(Database.RowInsertRequest.ROWS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(this.rowsSize);
+            for (RowData.ColumnSchema columnSchema : this.columnSchemas) {
+                out.writeMessage(RowData.Rows.SCHEMA_FIELD_NUMBER, columnSchema);
+            }
+            for (RowsWriter writer : this.rows) {
+                writer.writeRows(out);
+            }
+        }
+    }
+
+    /**
+     * Writes the {@code Rows.rows} of a table, without the schema.
+     */
+    abstract static class RowsWriter {
+
+        final int size;
+
+        RowsWriter(int size) {
+            this.size = size;
+        }
+
+        abstract void writeRows(CodedOutputStream out) throws IOException;
+    }
+
+    /**
+     * The rows of a {@link Table.RowBasedTable} are already protobuf messages (with memoized
+     * sizes), they are written as they are.
+     */
+    static final class RowBasedRowsWriter extends RowsWriter {
+
+        private final List<RowData.Row> rows;
+
+        RowBasedRowsWriter(Table.RowBasedTable table) {
+            super(rowsSize(table.rows()));
+            this.rows = table.rows();
+        }
+
+        private static int rowsSize(List<RowData.Row> rows) {
+            int size = 0;
+            for (RowData.Row row : rows) {
+                size += CodedOutputStream.computeMessageSize(RowData.Rows.ROWS_FIELD_NUMBER, row);
+            }
+            return size;
+        }
+
+        @Override
+        void writeRows(CodedOutputStream out) throws IOException {
+            for (RowData.Row row : this.rows) {
+                out.writeMessage(RowData.Rows.ROWS_FIELD_NUMBER, row);
+            }
+        }
+    }
+
+    /**
+     * The rows of a {@link Table.ColumnarTable} are encoded from its primitive column buffers.
+     */
+    static final class ColumnarRowsWriter extends RowsWriter {
+
+        private final ColumnBuffer[] columns;
+        private final int offset;
+        private final int[] rowSizes;
+
+        ColumnarRowsWriter(Table.ColumnarTable table) {
+            this(table, computeRowSizes(table));
+        }
+
+        private ColumnarRowsWriter(Table.ColumnarTable table, int[] rowSizes) {
+            super(rowsSize(rowSizes));
+            this.columns = table.columns();
+            this.offset = table.offset();
+            this.rowSizes = rowSizes;
+        }
+
+        private static int[] computeRowSizes(Table.ColumnarTable table) {
+            ColumnBuffer[] columns = table.columns();
+            int offset = table.offset();
+            int[] rowSizes = new int[table.rowCount()];
+            for (int i = 0; i < rowSizes.length; i++) {
+                int row = offset + i;
+                int size = 0;
+                for (ColumnBuffer column : columns) {
+                    int valueSize = column.isNull(row) ? 0 : column.valueSize(row);
+                    size += lengthDelimitedSize(RowData.Row.VALUES_FIELD_NUMBER, valueSize);
+                }
+                rowSizes[i] = size;
+            }
+            return rowSizes;
+        }
+
+        private static int rowsSize(int[] rowSizes) {
+            int size = 0;
+            for (int rowSize : rowSizes) {
+                size += lengthDelimitedSize(RowData.Rows.ROWS_FIELD_NUMBER, rowSize);
+            }
+            return size;
+        }
+
+        @Override
+        void writeRows(CodedOutputStream out) throws IOException {
+            for (int i = 0; i < this.rowSizes.length; i++) {
+                int row = this.offset + i;
+                out.writeTag(RowData.Rows.ROWS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                out.writeUInt32NoTag(this.rowSizes[i]);
+                for (ColumnBuffer column : this.columns) {
+                    out.writeTag(RowData.Row.VALUES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                    if (column.isNull(row)) {
+                        out.writeUInt32NoTag(0);
+                    } else {
+                        out.writeUInt32NoTag(column.valueSize(row));
+                        column.writeValue(out, row);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fallback for the other tables, they are converted to protobuf messages first.
+     */
+    static final class MessageEncoder extends TableEncoder {
+
+        private final MessageLite request;
+
+        MessageEncoder(MessageLite request) {
+            super(request.getSerializedSize());
+            this.request = request;
+        }
+
+        @Override
+        void writeRequest(CodedOutputStream out) throws IOException {
+            this.request.writeTo(out);
+        }
+    }
+}
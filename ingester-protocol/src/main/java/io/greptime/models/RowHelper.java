@@ -117,5 +117,69 @@ public final class RowHelper {
         builder.addValues(valueBuilder.build());
     }
 
+    /**
+     * Creates a value of a 32-bit integer column (INT8/16/32, UINT8/16/32 and DATE).
+     *
+     * @param dataType the column data type
+     * @param value the value
+     * @return the value
+     */
+    static RowData.Value intValue(Common.ColumnDataType dataType, int value) {
+        RowData.Value.Builder builder = RowData.Value.newBuilder();
+        switch (dataType) {
+            case INT8:
+                return builder.setI8Value(value).build();
+            case INT16:
+                return builder.setI16Value(value).build();
+            case INT32:
+                return builder.setI32Value(value).build();
+            case UINT8:
+                return builder.setU8Value(value).build();
+            case UINT16:
+                return builder.setU16Value(value).build();
+            case UINT32:
+                return builder.setU32Value(value).build();
+            case DATE:
+                return builder.setDateValue(value).build();
+            default:
+                throw new IllegalArgumentException(String.format("Unexpected `data_type`: %s", dataType));
+        }
+    }
+
+    /**
+     * Creates a value of a 64-bit integer column (INT64, UINT64, TIMESTAMP_* and TIME_*).
+     *
+     * @param dataType the column data type
+     * @param value the value
+     * @return the value
+     */
+    static RowData.Value longValue(Common.ColumnDataType dataType, long value) {
+        RowData.Value.Builder builder = RowData.Value.newBuilder();
+        switch (dataType) {
+            case INT64:
+                return builder.setI64Value(value).build();
+            case UINT64:
+                return builder.setU64Value(value).build();
+            case TIMESTAMP_SECOND:
+                return builder.setTimestampSecondValue(value).build();
+            case TIMESTAMP_MILLISECOND:
+                return builder.setTimestampMillisecondValue(value).build();
+            case TIMESTAMP_MICROSECOND:
+                return builder.setTimestampMicrosecondValue(value).build();
+            case TIMESTAMP_NANOSECOND:
+                return builder.setTimestampNanosecondValue(value).build();
+            case TIME_SECOND:
+                return builder.setTimeSecondValue(value).build();
+            case TIME_MILLISECOND:
+                return builder.setTimeMillisecondValue(value).build();
+            case TIME_MICROSECOND:
+                return builder.setTimeMicrosecondValue(value).build();
+            case TIME_NANOSECOND:
+                return builder.setTimeNanosecondValue(value).build();
+            default:
+                throw new IllegalArgumentException(String.format("Unexpected `data_type`: %s", dataType));
+        }
+    }
+
     private RowHelper() {}
 }
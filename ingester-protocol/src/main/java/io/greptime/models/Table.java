@@ -16,16 +16,41 @@
 
 package io.greptime.models;
 
+import com.google.protobuf.UnsafeByteOperations;
+import io.greptime.ArrowDictionaryEncoder;
 import io.greptime.common.Into;
 import io.greptime.common.util.Ensures;
 import io.greptime.v1.Common;
 import io.greptime.v1.Database;
 import io.greptime.v1.RowData;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
 import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeSecVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.UInt1Vector;
+import org.apache.arrow.vector.UInt2Vector;
+import org.apache.arrow.vector.UInt4Vector;
+import org.apache.arrow.vector.UInt8Vector;
+import org.apache.arrow.vector.VarBinaryVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
 
 /**
@@ -42,7 +67,7 @@ import org.apache.arrow.vector.VectorSchemaRoot;
  * </p>
  * <ul>
  *   <li>Tables are not thread-safe</li>
- *   <li>Tables cannot be reused - create a new instance for each write operation</li>
+ *   <li>A table can be reused by {@link #reset()} once its write has completed, see {@link TablePool}</li>
  *   <li>The associated {@link TableSchema} is immutable and can be reused</li>
  * </ul>
  *
@@ -114,6 +139,29 @@ public interface Table {
      */
     Table addRow(Object... values);
 
+    /**
+     * Starts a new row that is filled by the typed setters of the returned {@link RowWriter},
+     * which avoids the varargs array and the boxing of {@link #addRow(Object...)}.
+     *
+     * <pre>{@code
+     * table.row()
+     *     .setString(0, host)
+     *     .setTimestampMillis(1, ts)
+     *     .setDouble(2, cpu)
+     *     .endRow();
+     * }</pre>
+     *
+     * <p>
+     * The returned writer is owned by the table and reused for every row, columns that are not set
+     * before {@link RowWriter#endRow()} are null. Starting a new row discards an unfinished one.
+     * </p>
+     *
+     * @return the row writer of this table
+     */
+    default RowWriter row() {
+        throw new UnsupportedOperationException("Not supported for this table type");
+    }
+
     /**
      * Gets a sub-range of the table.
      *
@@ -163,11 +211,89 @@ public interface Table {
         throw new UnsupportedOperationException("Not supported for this table type");
     }
 
+    /**
+     * Discards all the rows and makes the table writable again, the internal storage is kept so
+     * that the table can be refilled without allocating it again. It must only be called after
+     * the write of the table has completed, since the rows may still be read until then.
+     *
+     * <p>
+     * A sub-range of a table cannot be reset.
+     * </p>
+     *
+     * @return this
+     */
+    default Table reset() {
+        throw new UnsupportedOperationException("Not supported for this table type");
+    }
+
     default void checkNumValues(int len) {
         int columnCount = columnCount();
         Ensures.ensure(columnCount == len, "Expected values num: %d, actual: %d", columnCount, len);
     }
 
+    /**
+     * A typed, boxing-free writer that fills one row of a table.
+     *
+     * <p>
+     * The setters are checked against the column data types, a value of a narrower type is
+     * accepted by a wider column (e.g. {@code setInt} to an Int64 column), setting the same column
+     * twice in a row keeps the last value.
+     * </p>
+     */
+    interface RowWriter {
+
+        RowWriter setNull(int col);
+
+        RowWriter setBoolean(int col, boolean value);
+
+        RowWriter setInt(int col, int value);
+
+        RowWriter setLong(int col, long value);
+
+        RowWriter setFloat(int col, float value);
+
+        RowWriter setDouble(int col, double value);
+
+        /**
+         * Sets a String or Json column.
+         *
+         * @param col the column index
+         * @param value the value
+         * @return this
+         */
+        RowWriter setString(int col, CharSequence value);
+
+        RowWriter setBytes(int col, byte[] value);
+
+        RowWriter setDecimal(int col, BigDecimal value);
+
+        /**
+         * Sets a timestamp column with a value in the column's own time unit.
+         *
+         * @param col the column index
+         * @param value the timestamp value
+         * @return this
+         */
+        RowWriter setTimestamp(int col, long value);
+
+        /**
+         * Sets a timestamp column with a value in milliseconds, it is converted to the
+         * column's time unit.
+         *
+         * @param col the column index
+         * @param millis the timestamp in milliseconds
+         * @return this
+         */
+        RowWriter setTimestampMillis(int col, long millis);
+
+        /**
+         * Finishes the current row.
+         *
+         * @return the table
+         */
+        Table endRow();
+    }
+
     /**
      * `TableBufferRoot` is an internal interface that represents a reference to table data stored in direct memory.
      * It provides access to the underlying memory allocation for efficient bulk data operations.
@@ -176,7 +302,77 @@ public interface Table {
      * `TableBufferRoot` is not thread-safe.
      * </p>
      */
-    interface TableBufferRoot extends Table {}
+    interface TableBufferRoot extends Table {
+
+        /**
+         * Appends a slice of values to an Int64, UInt64, Timestamp, TimeMicrosecond or
+         * TimeNanosecond column. The values are copied into the vector in one bulk copy.
+         *
+         * <p>
+         * The columns of a column batch are appended one by one, then {@link #endColumns()}
+         * adds the rows to the table at once.
+         * </p>
+         *
+         * @param col the column index
+         * @param values the values, timestamps are in the column's own time unit
+         * @param offset the start offset in {@code values}
+         * @param length the number of values to append
+         * @return this
+         */
+        TableBufferRoot appendLongs(int col, long[] values, int offset, int length);
+
+        /**
+         * Appends a slice of values to an Int32, UInt32, Date, TimeSecond or TimeMillisecond column.
+         *
+         * @param col the column index
+         * @param values the values
+         * @param offset the start offset in {@code values}
+         * @param length the number of values to append
+         * @return this
+         */
+        TableBufferRoot appendInts(int col, int[] values, int offset, int length);
+
+        /**
+         * Appends a slice of values to a Float64 column.
+         *
+         * @param col the column index
+         * @param values the values
+         * @param offset the start offset in {@code values}
+         * @param length the number of values to append
+         * @return this
+         */
+        TableBufferRoot appendDoubles(int col, double[] values, int offset, int length);
+
+        /**
+         * Appends encoded values to a String, Json or Binary column, the value {@code i} is
+         * {@code data[offsets[i], offsets[i + 1])}, so {@code offsets.length - 1} values are appended.
+         *
+         * @param col the column index
+         * @param data the UTF-8 (or binary) bytes of the values
+         * @param offsets the offsets of the values in {@code data}
+         * @return this
+         */
+        TableBufferRoot appendUtf8(int col, byte[] data, int[] offsets);
+
+        /**
+         * Sets the validity of the last slice appended to the column, the bit {@code i} (LSB first,
+         * the same as Arrow) is the validity of the {@code i}-th value of the slice, 0 means null.
+         * The values of an appended slice are all valid until this is called.
+         *
+         * @param col the column index
+         * @param bitmap the validity bitmap
+         * @return this
+         */
+        TableBufferRoot appendValidity(int col, byte[] bitmap);
+
+        /**
+         * Adds the appended column slices to the table as rows. All the appended columns must
+         * have the same number of values, the columns that are not appended are null.
+         *
+         * @return this
+         */
+        TableBufferRoot endColumns();
+    }
 
     /**
      * Create a table from a table schema.
@@ -200,58 +396,77 @@ public interface Table {
         return new BulkTableBuilder(tableSchema, root, columnBufferSize).build();
     }
 
+    /**
+     * Create a bulk table buffer root whose dictionary-encoded columns are encoded by the given
+     * encoders of the stream.
+     *
+     * @param tableSchema the table schema
+     * @param root the vector schema root
+     * @param columnBufferSize the buffer size for each column
+     * @param dictionaryEncoders the encoders indexed by column, null for plain columns
+     * @return a table buffer root
+     */
+    static TableBufferRoot tableBufferRoot(
+            TableSchema tableSchema,
+            VectorSchemaRoot root,
+            int columnBufferSize,
+            ArrowDictionaryEncoder[] dictionaryEncoders) {
+        return new BulkTableBuilder(tableSchema, root, columnBufferSize)
+                .dictionaryEncoders(dictionaryEncoders)
+                .build();
+    }
+
+    /**
+     * Create a columnar table from a table schema, the values of each column are stored in
+     * primitive arrays and only converted into protobuf rows when the table is written.
+     *
+     * @param tableSchema the table schema
+     * @return a table
+     */
+    static Table columnar(TableSchema tableSchema) {
+        return columnar(tableSchema, ColumnBuffer.DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create a columnar table from a table schema.
+     *
+     * @param tableSchema the table schema
+     * @param initialCapacity the initial rows capacity of each column
+     * @return a table
+     */
+    static Table columnar(TableSchema tableSchema, int initialCapacity) {
+        return new Builder(tableSchema).buildColumnar(initialCapacity);
+    }
+
     class Builder {
         private final TableSchema tableSchema;
+        private boolean tagDictionary;
 
         public Builder(TableSchema tableSchema) {
+            Ensures.ensureNonNull(tableSchema, "Null table schema");
             this.tableSchema = tableSchema;
         }
 
-        public Table build() {
-            String tableName = this.tableSchema.getTableName();
-            List<String> columnNames = this.tableSchema.getColumnNames();
-            List<Common.SemanticType> semanticTypes = this.tableSchema.getSemanticTypes();
-            List<Common.ColumnDataType> dataTypes = this.tableSchema.getDataTypes();
-            List<Common.ColumnDataTypeExtension> dataTypeExtensions = this.tableSchema.getDataTypeExtensions();
-
-            Ensures.ensureNonNull(tableName, "Null table name");
-            Ensures.ensureNonNull(columnNames, "Null column names");
-            Ensures.ensureNonNull(semanticTypes, "Null semantic types");
-            Ensures.ensureNonNull(dataTypes, "Null data types");
-
-            int columnCount = columnNames.size();
-
-            Ensures.ensure(columnCount > 0, "Empty column names");
-            Ensures.ensure(columnCount == semanticTypes.size(), "Column names size not equal to semantic types size");
-            Ensures.ensure(columnCount == dataTypes.size(), "Column names size not equal to data types size");
-            Ensures.ensure(
-                    columnCount == dataTypeExtensions.size(),
-                    "Column names size not equal to data type extensions size");
-
-            return buildTable(tableName, columnCount, columnNames, semanticTypes, dataTypes, dataTypeExtensions);
+        /**
+         * Stores the values of the string tag columns in a per-table dictionary, each distinct
+         * value is kept and encoded to UTF-8 only once. It pays off when the tag values repeat
+         * across the rows, which is the common case, it should be left disabled for the tags
+         * with nearly unique values.
+         *
+         * @param tagDictionary whether to enable the tag dictionary
+         * @return this builder
+         */
+        public Builder tagDictionary(boolean tagDictionary) {
+            this.tagDictionary = tagDictionary;
+            return this;
         }
 
-        private static Table buildTable(
-                String tableName,
-                int columnCount,
-                List<String> columnNames,
-                List<Common.SemanticType> semanticTypes,
-                List<Common.ColumnDataType> dataTypes,
-                List<Common.ColumnDataTypeExtension> dataTypeExtensions) {
-            RowBasedTable table = new RowBasedTable(tableName, new ArrayList<>(columnCount));
+        public Table build() {
+            return new RowBasedTable(this.tableSchema, this.tagDictionary);
+        }
 
-            for (int i = 0; i < columnCount; i++) {
-                RowData.ColumnSchema.Builder builder = RowData.ColumnSchema.newBuilder();
-                builder.setColumnName(columnNames.get(i))
-                        .setSemanticType(semanticTypes.get(i))
-                        .setDatatype(dataTypes.get(i));
-                Common.ColumnDataTypeExtension ext = dataTypeExtensions.get(i);
-                if (ext != null) {
-                    builder.setDatatypeExtension(ext);
-                }
-                table.columnSchemas.add(builder.build());
-            }
-            return table;
+        public Table buildColumnar(int initialCapacity) {
+            return new ColumnarTable(this.tableSchema, initialCapacity, this.tagDictionary);
         }
     }
 
@@ -262,15 +477,52 @@ public interface Table {
         private final String tableName;
         private final List<RowData.ColumnSchema> columnSchemas;
         private final List<RowData.Row> rows;
+        private final boolean subRange;
+        // Indexed by column, null if the tag dictionary is disabled, see `Builder#tagDictionary`
+        private final TagDictionary[] tagDictionaries;
+        // The sum of the serialized sizes of the rows, updated as the rows are added
+        private long bytesUsed;
+        // Null if the table is not created from a `TableSchema`, see `row()`
+        private TableSchema tableSchema;
+        private RowBasedRowWriter rowWriter;
 
         public RowBasedTable(String tableName, List<RowData.ColumnSchema> columnSchemas) {
-            this(tableName, columnSchemas, new ArrayList<>());
+            this(tableName, columnSchemas, null, new ArrayList<>(), false, null);
+        }
+
+        RowBasedTable(TableSchema tableSchema) {
+            this(tableSchema, false);
+        }
+
+        RowBasedTable(TableSchema tableSchema, boolean tagDictionary) {
+            this(
+                    tableSchema.getTableName(),
+                    tableSchema.getColumnSchemas(),
+                    tableSchema,
+                    new ArrayList<>(),
+                    false,
+                    tagDictionary ? TagDictionary.forTags(tableSchema.getColumnSchemas()) : null);
         }
 
-        private RowBasedTable(String tableName, List<RowData.ColumnSchema> columnSchemas, List<RowData.Row> rows) {
+        private RowBasedTable(
+                String tableName,
+                List<RowData.ColumnSchema> columnSchemas,
+                TableSchema tableSchema,
+                List<RowData.Row> rows,
+                boolean subRange,
+                TagDictionary[] tagDictionaries) {
             this.tableName = tableName;
             this.columnSchemas = columnSchemas;
+            this.tableSchema = tableSchema;
             this.rows = rows;
+            this.subRange = subRange;
+            this.tagDictionaries = tagDictionaries;
+            long bytesUsed = 0;
+            for (RowData.Row row : rows) {
+                // Memoized by the row, it is only computed once
+                bytesUsed += row.getSerializedSize();
+            }
+            this.bytesUsed = bytesUsed;
         }
 
         @Override
@@ -289,20 +541,17 @@ public interface Table {
         }
 
         /**
-         * <p>
-         * This is an expensive operation, only used for testing
-         * </p>
+         * Returns the sum of the serialized sizes of the rows, it is accumulated when the rows
+         * are added, so this is a constant-time operation.
          */
         @Override
         public long bytesUsed() {
-            return this.rows.stream().mapToLong(row -> row.getSerializedSize()).sum();
+            return this.bytesUsed;
         }
 
         @Override
         public Table addRow(Object... values) {
-            Ensures.ensure(
-                    !this.completed,
-                    "Table data construction has been completed. Cannot add more rows. Please create a new table instance.");
+            TableHelper.ensureNotCompleted(this.completed);
 
             checkNumValues(values.length);
 
@@ -310,17 +559,69 @@ public interface Table {
             for (int i = 0; i < values.length; i++) {
                 RowData.ColumnSchema columnSchema = this.columnSchemas.get(i);
                 Object value = values[i];
+                TagDictionary dictionary = tagDictionary(i);
+                if (dictionary != null && value != null) {
+                    rowBuilder.addValues(dictionary.value(dictionary.intern((CharSequence) value)));
+                    continue;
+                }
                 RowHelper.addValue(rowBuilder, columnSchema.getDatatype(), columnSchema.getDatatypeExtension(), value);
             }
-            this.rows.add(rowBuilder.build());
+            addRow0(rowBuilder.build());
 
             return this;
         }
 
+        @Override
+        public RowWriter row() {
+            TableHelper.ensureNotCompleted(this.completed);
+            if (this.rowWriter == null) {
+                if (this.tableSchema == null) {
+                    this.tableSchema = TableSchema.fromColumnSchemas(this.tableName, this.columnSchemas);
+                }
+                this.rowWriter = new RowBasedRowWriter(this.tableSchema);
+            }
+            this.rowWriter.clear();
+            return this.rowWriter;
+        }
+
+        private TagDictionary tagDictionary(int col) {
+            return this.tagDictionaries == null ? null : this.tagDictionaries[col];
+        }
+
+        private void addRow0(RowData.Row row) {
+            this.rows.add(row);
+            // The sizes of the nested values are memoized as well, they are reused when encoding
+            this.bytesUsed += row.getSerializedSize();
+        }
+
         @Override
         public Table subRange(int fromIndex, int toIndex) {
             List<RowData.Row> rows = this.rows.subList(fromIndex, toIndex);
-            return new RowBasedTable(this.tableName, this.columnSchemas, rows);
+            return new RowBasedTable(
+                    this.tableName, this.columnSchemas, this.tableSchema, rows, true, this.tagDictionaries);
+        }
+
+        /**
+         * Clears the rows, the capacity of the row list and the tag dictionaries are kept, so the
+         * recurring tag values are not encoded again. A dictionary over its max size is dropped.
+         */
+        @Override
+        public Table reset() {
+            Ensures.ensure(!this.subRange, "Cannot reset a sub-range of a table");
+            this.rows.clear();
+            this.bytesUsed = 0;
+            if (this.tagDictionaries != null) {
+                for (TagDictionary dictionary : this.tagDictionaries) {
+                    if (dictionary != null) {
+                        dictionary.clearIfOverMaxSize();
+                    }
+                }
+            }
+            if (this.rowWriter != null) {
+                this.rowWriter.clear();
+            }
+            this.completed = false;
+            return this;
         }
 
         @Override
@@ -347,6 +648,327 @@ public interface Table {
                     .build();
         }
 
+        List<RowData.ColumnSchema> columnSchemas() {
+            return this.columnSchemas;
+        }
+
+        List<RowData.Row> rows() {
+            return this.rows;
+        }
+
+        @Override
+        public Table complete() {
+            this.completed = true;
+            return this;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return this.completed;
+        }
+
+        private final class RowBasedRowWriter extends AbstractRowWriter {
+
+            private final RowData.Value[] values;
+
+            RowBasedRowWriter(TableSchema tableSchema) {
+                super(tableSchema);
+                this.values = new RowData.Value[tableSchema.getColumnCount()];
+            }
+
+            void clear() {
+                Arrays.fill(this.values, null);
+            }
+
+            @Override
+            void putNull(int col) {
+                this.values[col] = null;
+            }
+
+            @Override
+            void putBoolean(int col, boolean value) {
+                this.values[col] =
+                        RowData.Value.newBuilder().setBoolValue(value).build();
+            }
+
+            @Override
+            void putInt(int col, int value) {
+                this.values[col] = RowHelper.intValue(dataType(col), value);
+            }
+
+            @Override
+            void putLong(int col, long value) {
+                this.values[col] = RowHelper.longValue(dataType(col), value);
+            }
+
+            @Override
+            void putFloat(int col, float value) {
+                this.values[col] = RowData.Value.newBuilder().setF32Value(value).build();
+            }
+
+            @Override
+            void putDouble(int col, double value) {
+                this.values[col] = RowData.Value.newBuilder().setF64Value(value).build();
+            }
+
+            @Override
+            void putString(int col, CharSequence value) {
+                TagDictionary dictionary = tagDictionary(col);
+                if (dictionary != null) {
+                    this.values[col] = dictionary.value(dictionary.intern(value));
+                    return;
+                }
+                this.values[col] = RowData.Value.newBuilder()
+                        .setStringValue(value.toString())
+                        .build();
+            }
+
+            @Override
+            void putBytes(int col, byte[] value) {
+                this.values[col] = RowData.Value.newBuilder()
+                        .setBinaryValue(UnsafeByteOperations.unsafeWrap(value))
+                        .build();
+            }
+
+            @Override
+            void putDecimal(int col, BigDecimal value) {
+                RowData.ColumnSchema columnSchema = columnSchemas.get(col);
+                this.values[col] = RowData.Value.newBuilder()
+                        .setDecimal128Value(ValueUtil.getDecimal128Value(columnSchema.getDatatypeExtension(), value))
+                        .build();
+            }
+
+            @Override
+            public Table endRow() {
+                TableHelper.ensureNotCompleted(completed);
+                RowData.Row.Builder rowBuilder = RowData.Row.newBuilder();
+                for (RowData.Value value : this.values) {
+                    rowBuilder.addValues(value == null ? RowData.Value.getDefaultInstance() : value);
+                }
+                addRow0(rowBuilder.build());
+                clear();
+                return RowBasedTable.this;
+            }
+        }
+    }
+
+    /**
+     * A table that stores each column in a primitive-specialized {@link ColumnBuffer} instead of
+     * materializing a protobuf row per {@link #addRow(Object...)}, this avoids most of the per-value
+     * allocations on the write path. The protobuf rows are only built by
+     * {@link #intoRowInsertRequest()} and {@link #intoRowDeleteRequest()}.
+     */
+    class ColumnarTable implements Table, Into<RowData.Rows> {
+
+        private volatile boolean completed = false;
+
+        private final String tableName;
+        private final List<RowData.ColumnSchema> columnSchemas;
+        private final ColumnBuffer[] columns;
+        // Only a sub-range view has a non-zero offset
+        private final int offset;
+        private final boolean subRange;
+        private int rowCount;
+        // Null if the table is not created from a `TableSchema`, see `row()`
+        private TableSchema tableSchema;
+        private ColumnarRowWriter rowWriter;
+
+        public ColumnarTable(String tableName, List<RowData.ColumnSchema> columnSchemas, int initialCapacity) {
+            this(tableName, columnSchemas, null, initialCapacity, false);
+        }
+
+        ColumnarTable(TableSchema tableSchema, int initialCapacity) {
+            this(tableSchema, initialCapacity, false);
+        }
+
+        ColumnarTable(TableSchema tableSchema, int initialCapacity, boolean tagDictionary) {
+            this(
+                    tableSchema.getTableName(),
+                    tableSchema.getColumnSchemas(),
+                    tableSchema,
+                    initialCapacity,
+                    tagDictionary);
+        }
+
+        private ColumnarTable(
+                String tableName,
+                List<RowData.ColumnSchema> columnSchemas,
+                TableSchema tableSchema,
+                int initialCapacity,
+                boolean tagDictionary) {
+            Ensures.ensure(initialCapacity > 0, "Column capacity must be positive: %d", initialCapacity);
+            this.tableName = tableName;
+            this.columnSchemas = columnSchemas;
+            this.tableSchema = tableSchema;
+            this.columns = new ColumnBuffer[columnSchemas.size()];
+            for (int i = 0; i < this.columns.length; i++) {
+                RowData.ColumnSchema columnSchema = columnSchemas.get(i);
+                if (tagDictionary && TagDictionary.isDictionaryColumn(columnSchema)) {
+                    this.columns[i] =
+                            new ColumnBuffer.DictionaryColumn(columnSchema.getDatatypeExtension(), initialCapacity);
+                } else {
+                    this.columns[i] = ColumnBuffer.create(
+                            columnSchema.getDatatype(), columnSchema.getDatatypeExtension(), initialCapacity);
+                }
+            }
+            this.offset = 0;
+            this.subRange = false;
+        }
+
+        private ColumnarTable(ColumnarTable parent, int fromIndex, int toIndex) {
+            this.tableName = parent.tableName;
+            this.columnSchemas = parent.columnSchemas;
+            this.tableSchema = parent.tableSchema;
+            this.columns = parent.columns;
+            this.offset = parent.offset + fromIndex;
+            this.subRange = true;
+            this.rowCount = toIndex - fromIndex;
+        }
+
+        @Override
+        public String tableName() {
+            return this.tableName;
+        }
+
+        @Override
+        public int rowCount() {
+            return this.rowCount;
+        }
+
+        @Override
+        public int columnCount() {
+            return this.columns.length;
+        }
+
+        @Override
+        public long bytesUsed() {
+            long bytes = 0;
+            for (ColumnBuffer column : this.columns) {
+                bytes += column.bytesUsed();
+            }
+            if (this.subRange) {
+                // The columns are shared with the parent table, only count our share of the rows
+                int totalRows = this.columns[0].size();
+                return totalRows == 0 ? 0 : bytes * this.rowCount / totalRows;
+            }
+            return bytes;
+        }
+
+        @Override
+        public Table addRow(Object... values) {
+            TableHelper.ensureNotCompleted(this.completed);
+            Ensures.ensure(!this.subRange, "Cannot add rows to a sub-range of a table");
+
+            checkNumValues(values.length);
+            discardUnfinishedRow();
+
+            int i = 0;
+            try {
+                for (; i < values.length; i++) {
+                    this.columns[i].append(values[i]);
+                }
+            } catch (RuntimeException e) {
+                // Roll back the partially appended row, keep all columns aligned
+                for (int j = 0; j < i; j++) {
+                    this.columns[j].truncate(this.rowCount);
+                }
+                throw e;
+            }
+            this.rowCount++;
+
+            return this;
+        }
+
+        @Override
+        public RowWriter row() {
+            TableHelper.ensureNotCompleted(this.completed);
+            Ensures.ensure(!this.subRange, "Cannot add rows to a sub-range of a table");
+            discardUnfinishedRow();
+            if (this.rowWriter == null) {
+                if (this.tableSchema == null) {
+                    this.tableSchema = TableSchema.fromColumnSchemas(this.tableName, this.columnSchemas);
+                }
+                this.rowWriter = new ColumnarRowWriter(this.tableSchema);
+            }
+            return this.rowWriter;
+        }
+
+        private void discardUnfinishedRow() {
+            for (ColumnBuffer column : this.columns) {
+                if (column.size() > this.rowCount) {
+                    column.truncate(this.rowCount);
+                }
+            }
+        }
+
+        @Override
+        public Table subRange(int fromIndex, int toIndex) {
+            Ensures.ensure(
+                    fromIndex >= 0 && fromIndex <= toIndex && toIndex <= this.rowCount,
+                    "Invalid sub-range [%d, %d), row count: %d",
+                    fromIndex,
+                    toIndex,
+                    this.rowCount);
+            return new ColumnarTable(this, fromIndex, toIndex);
+        }
+
+        /**
+         * Clears the columns, their arrays and the tag dictionaries are kept, unless a dictionary
+         * is over its max size.
+         */
+        @Override
+        public Table reset() {
+            Ensures.ensure(!this.subRange, "Cannot reset a sub-range of a table");
+            for (ColumnBuffer column : this.columns) {
+                column.clear();
+            }
+            this.rowCount = 0;
+            this.completed = false;
+            return this;
+        }
+
+        @Override
+        public Database.RowInsertRequest intoRowInsertRequest() {
+            return Database.RowInsertRequest.newBuilder()
+                    .setTableName(this.tableName)
+                    .setRows(into())
+                    .build();
+        }
+
+        @Override
+        public Database.RowDeleteRequest intoRowDeleteRequest() {
+            return Database.RowDeleteRequest.newBuilder()
+                    .setTableName(this.tableName)
+                    .setRows(into())
+                    .build();
+        }
+
+        @Override
+        public RowData.Rows into() {
+            RowData.Rows.Builder builder = RowData.Rows.newBuilder().addAllSchema(this.columnSchemas);
+            int end = this.offset + this.rowCount;
+            for (int row = this.offset; row < end; row++) {
+                RowData.Row.Builder rowBuilder = RowData.Row.newBuilder();
+                for (ColumnBuffer column : this.columns) {
+                    rowBuilder.addValues(column.toValue(row));
+                }
+                builder.addRows(rowBuilder.build());
+            }
+            return builder.build();
+        }
+
+        List<RowData.ColumnSchema> columnSchemas() {
+            return this.columnSchemas;
+        }
+
+        ColumnBuffer[] columns() {
+            return this.columns;
+        }
+
+        int offset() {
+            return this.offset;
+        }
+
         @Override
         public Table complete() {
             this.completed = true;
@@ -357,12 +979,86 @@ public interface Table {
         public boolean isCompleted() {
             return this.completed;
         }
+
+        private final class ColumnarRowWriter extends AbstractRowWriter {
+
+            ColumnarRowWriter(TableSchema tableSchema) {
+                super(tableSchema);
+            }
+
+            // The value of the current row is at `rowCount`, drop it if the column was already set
+            private ColumnBuffer column(int col) {
+                ColumnBuffer column = columns[col];
+                if (column.size() > rowCount) {
+                    column.truncate(rowCount);
+                }
+                return column;
+            }
+
+            @Override
+            void putNull(int col) {
+                column(col).appendNull();
+            }
+
+            @Override
+            void putBoolean(int col, boolean value) {
+                column(col).appendBoolean(value);
+            }
+
+            @Override
+            void putInt(int col, int value) {
+                column(col).appendInt(value);
+            }
+
+            @Override
+            void putLong(int col, long value) {
+                column(col).appendLong(value);
+            }
+
+            @Override
+            void putFloat(int col, float value) {
+                column(col).appendFloat(value);
+            }
+
+            @Override
+            void putDouble(int col, double value) {
+                column(col).appendDouble(value);
+            }
+
+            @Override
+            void putString(int col, CharSequence value) {
+                column(col).appendString(value);
+            }
+
+            @Override
+            void putBytes(int col, byte[] value) {
+                column(col).appendBytes(value);
+            }
+
+            @Override
+            void putDecimal(int col, BigDecimal value) {
+                column(col).appendDecimal(value);
+            }
+
+            @Override
+            public Table endRow() {
+                TableHelper.ensureNotCompleted(completed);
+                for (ColumnBuffer column : columns) {
+                    if (column.size() == rowCount) {
+                        column.appendNull();
+                    }
+                }
+                rowCount++;
+                return ColumnarTable.this;
+            }
+        }
     }
 
     class BulkTableBuilder {
         private final TableSchema tableSchema;
         private final VectorSchemaRoot root;
         private final int columnBufferSize;
+        private ArrowDictionaryEncoder[] dictionaryEncoders;
 
         public BulkTableBuilder(TableSchema tableSchema, VectorSchemaRoot root, int columnBufferSize) {
             this.tableSchema = tableSchema;
@@ -370,51 +1066,129 @@ public interface Table {
             this.columnBufferSize = columnBufferSize;
         }
 
-        public BulkTable build() {
-            String tableName = this.tableSchema.getTableName();
-            List<Common.ColumnDataType> dataTypes = this.tableSchema.getDataTypes();
-            List<Common.ColumnDataTypeExtension> dataTypeExtensions = this.tableSchema.getDataTypeExtensions();
-
-            Ensures.ensureNonNull(tableName, "Null table name");
-            Ensures.ensureNonNull(dataTypes, "Null data types");
-
-            int columnCount = dataTypes.size();
+        public BulkTableBuilder dictionaryEncoders(ArrowDictionaryEncoder[] dictionaryEncoders) {
+            this.dictionaryEncoders = dictionaryEncoders;
+            return this;
+        }
 
-            Ensures.ensure(columnCount > 0, "Empty column data types");
-            Ensures.ensure(
-                    columnCount == dataTypeExtensions.size(),
-                    "Column data types size not equal to data type extensions size");
+        public BulkTable build() {
+            // The table schema is already validated when it was built
+            Ensures.ensureNonNull(this.tableSchema, "Null table schema");
             Ensures.ensure(
-                    columnCount == this.root.getSchema().getFields().size(),
+                    this.tableSchema.getColumnCount()
+                            == this.root.getSchema().getFields().size(),
                     "Column count not equal to root schema fields size");
+            for (int i = 0; i < this.tableSchema.getColumnCount(); i++) {
+                if (this.tableSchema.isDictionaryEncoded(i)) {
+                    Ensures.ensure(
+                            this.dictionaryEncoders != null && this.dictionaryEncoders[i] != null,
+                            "No dictionary encoder for column %d",
+                            i);
+                }
+            }
 
-            return new BulkTable(tableName, dataTypes, dataTypeExtensions, this.root, this.columnBufferSize);
+            return new BulkTable(this.tableSchema, this.root, this.columnBufferSize, this.dictionaryEncoders);
         }
     }
 
+    /**
+     * A table that writes the values straight into the vectors of a {@link VectorSchemaRoot}.
+     *
+     * <p>
+     * The vectors are grown by one capacity check per row, then filled with the unchecked
+     * {@code set} methods. The row count and the string bytes of the last batch are used as
+     * the initial capacity of the next batch, so a reused table (see {@link #reset()}) rarely
+     * grows its vectors in the steady state.
+     * </p>
+     */
     class BulkTable implements TableBufferRoot {
 
         private volatile AtomicBoolean completed = new AtomicBoolean(false);
 
+        private final TableSchema tableSchema;
         private final String tableName;
         private final List<Common.ColumnDataType> dataTypes;
         private final List<Common.ColumnDataTypeExtension> dataTypeExtensions;
         private final VectorSchemaRoot root;
+        private final FieldVector[] vectors;
+        // The rows are reflected in the row count of the root every `columnBufferSize` rows
         private final int columnBufferSize;
-        private final List<Object[]> buffer;
+        // Rows written but not yet reflected in the row count of the root
+        private int pendingRows;
+        // The min value capacity of the vectors, a row at a smaller index can be set without checks
+        private int capacity;
+        // Learned from the last batch
+        private int rowsHint;
+        private final long[] bytesHints;
+        // The number of values appended to each column of the current column batch, see `endColumns()`
+        private final int[] appended;
+        private final int[] lastSliceStarts;
+        // Indexed by column, null if no column is dictionary-encoded
+        private final ArrowDictionaryEncoder[] dictionaryEncoders;
+        private BulkRowWriter rowWriter;
+
+        public BulkTable(TableSchema tableSchema, VectorSchemaRoot root, int columnBufferSize) {
+            this(tableSchema, root, columnBufferSize, null);
+        }
 
+        /**
+         * @deprecated use {@link #BulkTable(TableSchema, VectorSchemaRoot, int)}, the column names are
+         * taken from the fields of the root and all the columns are fields here.
+         */
+        @Deprecated
         public BulkTable(
                 String tableName,
                 List<Common.ColumnDataType> dataTypes,
                 List<Common.ColumnDataTypeExtension> dataTypeExtensions,
                 VectorSchemaRoot root,
                 int columnBufferSize) {
-            this.tableName = tableName;
-            this.dataTypes = dataTypes;
-            this.dataTypeExtensions = dataTypeExtensions;
+            this(schemaOf(tableName, dataTypes, dataTypeExtensions, root), root, columnBufferSize);
+        }
+
+        public BulkTable(
+                TableSchema tableSchema,
+                VectorSchemaRoot root,
+                int columnBufferSize,
+                ArrowDictionaryEncoder[] dictionaryEncoders) {
+            this.tableSchema = tableSchema;
+            this.tableName = tableSchema.getTableName();
+            this.dataTypes = tableSchema.getDataTypes();
+            this.dataTypeExtensions = tableSchema.getDataTypeExtensions();
             this.root = root;
-            this.columnBufferSize = columnBufferSize;
-            this.buffer = new ArrayList<>(columnBufferSize);
+            this.vectors = root.getFieldVectors().toArray(new FieldVector[0]);
+            this.columnBufferSize = Math.max(columnBufferSize, 1);
+            this.bytesHints = new long[this.vectors.length];
+            this.appended = new int[this.vectors.length];
+            this.lastSliceStarts = new int[this.vectors.length];
+            this.dictionaryEncoders = dictionaryEncoders;
+        }
+
+        private ArrowDictionaryEncoder dictionaryEncoder(int col) {
+            return this.dictionaryEncoders == null ? null : this.dictionaryEncoders[col];
+        }
+
+        private static TableSchema schemaOf(
+                String tableName,
+                List<Common.ColumnDataType> dataTypes,
+                List<Common.ColumnDataTypeExtension> dataTypeExtensions,
+                VectorSchemaRoot root) {
+            Ensures.ensureNonNull(dataTypes, "Null data types");
+            Ensures.ensure(
+                    dataTypes.size() == root.getSchema().getFields().size(),
+                    "Column count not equal to root schema fields size");
+            List<RowData.ColumnSchema> columnSchemas = new ArrayList<>(dataTypes.size());
+            for (int i = 0; i < dataTypes.size(); i++) {
+                RowData.ColumnSchema.Builder builder = RowData.ColumnSchema.newBuilder()
+                        .setColumnName(root.getSchema().getFields().get(i).getName())
+                        .setSemanticType(Common.SemanticType.FIELD)
+                        .setDatatype(dataTypes.get(i));
+                Common.ColumnDataTypeExtension ext = dataTypeExtensions == null ? null : dataTypeExtensions.get(i);
+                if (ext != null) {
+                    builder.setDatatypeExtension(ext);
+                }
+                columnSchemas.add(builder.build());
+            }
+            return TableSchema.fromColumnSchemas(tableName, columnSchemas);
         }
 
         @Override
@@ -424,7 +1198,7 @@ public interface Table {
 
         @Override
         public int rowCount() {
-            return this.root.getRowCount();
+            return this.root.getRowCount() + this.pendingRows;
         }
 
         @Override
@@ -441,33 +1215,213 @@ public interface Table {
 
         @Override
         public Table addRow(Object... values) {
-            Ensures.ensure(
-                    !this.completed.get(),
-                    "Table data construction has been completed. Cannot add more rows. Please create a new table instance.");
+            TableHelper.ensureNotCompleted(this.completed.get());
 
             checkNumValues(values.length);
 
-            this.buffer.add(values);
-            if (this.buffer.size() < this.columnBufferSize) {
+            BulkRowWriter writer = rowWriter();
+            for (int i = 0; i < values.length; i++) {
+                writer.putObject(i, values[i]);
+            }
+            return writer.endRow();
+        }
+
+        @Override
+        public RowWriter row() {
+            TableHelper.ensureNotCompleted(this.completed.get());
+            return rowWriter();
+        }
+
+        private BulkRowWriter rowWriter() {
+            if (this.rowWriter == null) {
+                this.rowWriter = new BulkRowWriter(this.tableSchema);
+            }
+            // Starting a new row discards an unfinished one, its values are overwritten
+            this.rowWriter.begin(this.root.getRowCount() + this.pendingRows);
+            return this.rowWriter;
+        }
+
+        @Override
+        public TableBufferRoot appendLongs(int col, long[] values, int offset, int length) {
+            switch (columnType(col)) {
+                case INT64:
+                case UINT64:
+                case TIMESTAMP_SECOND:
+                case TIMESTAMP_MILLISECOND:
+                case TIMESTAMP_MICROSECOND:
+                case TIMESTAMP_NANOSECOND:
+                case TIME_MICROSECOND:
+                case TIME_NANOSECOND:
+                    break;
+                default:
+                    throw mismatch(col, "long");
+            }
+            int start = beginSlice(col, length);
+            FieldVector vector = this.vectors[col];
+            ArrowHelper.copyLongs(vector.getDataBuffer(), start, values, offset, length);
+            ArrowHelper.setValidRange(vector.getValidityBuffer(), start, length);
+            return this;
+        }
+
+        @Override
+        public TableBufferRoot appendInts(int col, int[] values, int offset, int length) {
+            switch (columnType(col)) {
+                case INT32:
+                case UINT32:
+                case DATE:
+                case TIME_SECOND:
+                case TIME_MILLISECOND:
+                    break;
+                default:
+                    throw mismatch(col, "int");
+            }
+            int start = beginSlice(col, length);
+            FieldVector vector = this.vectors[col];
+            ArrowHelper.copyInts(vector.getDataBuffer(), start, values, offset, length);
+            ArrowHelper.setValidRange(vector.getValidityBuffer(), start, length);
+            return this;
+        }
+
+        @Override
+        public TableBufferRoot appendDoubles(int col, double[] values, int offset, int length) {
+            if (columnType(col) != Common.ColumnDataType.FLOAT64) {
+                throw mismatch(col, "double");
+            }
+            int start = beginSlice(col, length);
+            FieldVector vector = this.vectors[col];
+            ArrowHelper.copyDoubles(vector.getDataBuffer(), start, values, offset, length);
+            ArrowHelper.setValidRange(vector.getValidityBuffer(), start, length);
+            return this;
+        }
+
+        @Override
+        public TableBufferRoot appendUtf8(int col, byte[] data, int[] offsets) {
+            Ensures.ensure(offsets.length > 0, "Empty offsets");
+            int length = offsets.length - 1;
+            switch (columnType(col)) {
+                case STRING:
+                case JSON:
+                case BINARY:
+                    break;
+                default:
+                    throw mismatch(col, "utf8");
+            }
+            int start = beginSlice(col, length);
+            ArrowDictionaryEncoder encoder = dictionaryEncoder(col);
+            if (encoder != null) {
+                IntVector indexes = (IntVector) this.vectors[col];
+                for (int i = 0; i < length; i++) {
+                    String value =
+                            new String(data, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+                    indexes.set(start + i, encoder.encode(value));
+                }
                 return this;
             }
+            BaseVariableWidthVector vector = (BaseVariableWidthVector) this.vectors[col];
+            ArrowHelper.copyVariableWidth(vector, start, data, offsets);
+            ArrowHelper.setValidRange(vector.getValidityBuffer(), start, length);
+            return this;
+        }
 
-            addRowInner();
+        @Override
+        public TableBufferRoot appendValidity(int col, byte[] bitmap) {
+            TableHelper.ensureNotCompleted(this.completed.get());
+            columnType(col);
+            int start = this.lastSliceStarts[col];
+            int length = rowCount() + this.appended[col] - start;
+            Ensures.ensure(length > 0, "No slice appended to column %d", col);
+            Ensures.ensure(bitmap.length * 8 >= length, "Validity bitmap too short: %d bits", bitmap.length * 8);
+            ArrowHelper.copyValidity(this.vectors[col].getValidityBuffer(), start, bitmap, length);
+            return this;
+        }
 
+        @Override
+        public TableBufferRoot endColumns() {
+            TableHelper.ensureNotCompleted(this.completed.get());
+            endColumns0();
             return this;
         }
 
+        private void endColumns0() {
+            int rows = 0;
+            for (int count : this.appended) {
+                rows = Math.max(rows, count);
+            }
+            int start = rowCount();
+            for (int col = 0; col < this.appended.length; col++) {
+                if (this.appended[col] == 0) {
+                    ensureColumnCapacity(col, start + rows);
+                    for (int i = 0; i < rows; i++) {
+                        this.vectors[col].setNull(start + i);
+                    }
+                } else if (this.appended[col] != rows) {
+                    int count = this.appended[col];
+                    Arrays.fill(this.appended, 0);
+                    throw new IllegalArgumentException(String.format(
+                            "Column %d has %d values, expected %d, the column batch is discarded", col, count, rows));
+                }
+            }
+            Arrays.fill(this.appended, 0);
+            this.pendingRows += rows;
+            syncPendingRows();
+        }
+
+        private Common.ColumnDataType columnType(int col) {
+            Ensures.ensure(col >= 0 && col < this.vectors.length, "Column index out of range: %d", col);
+            return this.dataTypes.get(col);
+        }
+
+        private int beginSlice(int col, int length) {
+            TableHelper.ensureNotCompleted(this.completed.get());
+            Ensures.ensure(length >= 0, "Negative length: %d", length);
+            int start = rowCount() + this.appended[col];
+            ensureColumnCapacity(col, start + length);
+            this.lastSliceStarts[col] = start;
+            this.appended[col] += length;
+            return start;
+        }
+
+        private IllegalArgumentException mismatch(int col, String javaType) {
+            return new IllegalArgumentException(String.format(
+                    "Cannot append %s values to column %d of type %s", javaType, col, this.dataTypes.get(col)));
+        }
+
         @Override
         public Table subRange(int fromIndex, int toIndex) {
             throw new UnsupportedOperationException("Unsupported method 'subRange' by BulkTable");
         }
 
+        /**
+         * Drops the rows that are not written yet. The vectors are owned by the stream writer,
+         * they are cleared once the data is written.
+         */
+        @Override
+        public Table reset() {
+            this.pendingRows = 0;
+            Arrays.fill(this.appended, 0);
+            if (this.root.getRowCount() > 0) {
+                for (FieldVector vector : this.vectors) {
+                    vector.reset();
+                }
+                this.root.setRowCount(0);
+            }
+            // The vectors may have been released by the writer
+            this.capacity = 0;
+            this.completed.set(false);
+            return this;
+        }
+
         @Override
         public Table complete() {
             if (this.completed.compareAndSet(false, true)) {
-                if (!this.buffer.isEmpty()) {
-                    addRowInner();
+                for (int count : this.appended) {
+                    if (count > 0) {
+                        endColumns0();
+                        break;
+                    }
                 }
+                syncPendingRows();
+                learnHints();
             }
             return this;
         }
@@ -477,37 +1431,297 @@ public interface Table {
             return this.completed.get();
         }
 
-        private void addRowInner() {
+        private void syncPendingRows() {
+            if (this.pendingRows > 0) {
+                this.root.setRowCount(this.root.getRowCount() + this.pendingRows);
+                this.pendingRows = 0;
+            }
+        }
+
+        private void learnHints() {
             int rowCount = this.root.getRowCount();
-            int rowCountToAdd = this.buffer.size();
-            int columnCount = columnCount();
-            for (int i = 0; i < columnCount; i++) {
-                FieldVector vector = this.root.getVector(i);
-                while (vector.getValueCapacity() < rowCount + rowCountToAdd) {
-                    vector.reAlloc();
+            if (rowCount == 0) {
+                return;
+            }
+            this.rowsHint = rowCount;
+            for (int i = 0; i < this.vectors.length; i++) {
+                if (this.vectors[i] instanceof BaseVariableWidthVector) {
+                    this.bytesHints[i] = ((BaseVariableWidthVector) this.vectors[i]).getStartOffset(rowCount);
+                }
+            }
+        }
+
+        /**
+         * Makes sure all the vectors can hold the row at the given index.
+         */
+        private void ensureCapacity(int index) {
+            if (index < this.capacity) {
+                return;
+            }
+            int minCapacity = Integer.MAX_VALUE;
+            for (int i = 0; i < this.vectors.length; i++) {
+                ensureColumnCapacity(i, index + 1);
+                minCapacity = Math.min(minCapacity, this.vectors[i].getValueCapacity());
+            }
+            this.capacity = minCapacity;
+        }
+
+        private void ensureColumnCapacity(int col, int valueCount) {
+            FieldVector vector = this.vectors[col];
+            if (vector.getValueCapacity() == 0) {
+                allocate(col, Math.max(valueCount, Math.max(this.rowsHint, this.columnBufferSize)));
+            }
+            while (vector.getValueCapacity() < valueCount) {
+                vector.reAlloc();
+            }
+        }
+
+        private void allocate(int col, int valueCount) {
+            FieldVector vector = this.vectors[col];
+            if (vector instanceof BaseVariableWidthVector && this.rowsHint > 0) {
+                double density = Math.max((double) this.bytesHints[col] / this.rowsHint, 1.0);
+                ((BaseVariableWidthVector) vector).setInitialCapacity(valueCount, density);
+            } else {
+                vector.setInitialCapacity(valueCount);
+            }
+            vector.allocateNew();
+        }
+
+        /**
+         * Writes the values straight into the vectors of the root, no {@code Object[]} staging.
+         */
+        private final class BulkRowWriter extends AbstractRowWriter {
+
+            private final FieldVector[] vectors;
+            private final boolean[] written;
+            private final TimeUnit[] timestampUnits;
+            private byte[] scratch = new byte[64];
+            private int index;
+
+            BulkRowWriter(TableSchema tableSchema) {
+                super(tableSchema);
+                this.vectors = BulkTable.this.vectors;
+                this.written = new boolean[tableSchema.getColumnCount()];
+                this.timestampUnits = tableSchema.timestampUnits();
+            }
+
+            void begin(int index) {
+                ensureCapacity(index);
+                this.index = index;
+                Arrays.fill(this.written, false);
+            }
+
+            /**
+             * Converts and writes a value of {@link Table#addRow(Object...)}.
+             */
+            void putObject(int col, Object value) {
+                if (value == null) {
+                    putNull(col);
+                    return;
+                }
+                Common.ColumnDataType dataType = dataType(col);
+                switch (dataType) {
+                    case INT8:
+                    case INT16:
+                    case INT32:
+                    case UINT8:
+                    case UINT16:
+                        putInt(col, (int) value);
+                        break;
+                    case UINT32:
+                        putInt(col, ValueUtil.getIntValue(value));
+                        break;
+                    case DATE:
+                        putInt(col, ValueUtil.getDateValue(value));
+                        break;
+                    case INT64:
+                    case UINT64:
+                        putLong(col, (long) value);
+                        break;
+                    case TIMESTAMP_SECOND:
+                    case TIMESTAMP_MILLISECOND:
+                    case TIMESTAMP_MICROSECOND:
+                    case TIMESTAMP_NANOSECOND:
+                        putLong(col, ValueUtil.getTimestamp(value, this.timestampUnits[col]));
+                        break;
+                    case TIME_SECOND:
+                    case TIME_MILLISECOND:
+                    case TIME_MICROSECOND:
+                    case TIME_NANOSECOND:
+                        putLong(col, ValueUtil.getLongValue(value));
+                        break;
+                    case FLOAT32:
+                        putFloat(col, (float) value);
+                        break;
+                    case FLOAT64:
+                        putDouble(col, (double) value);
+                        break;
+                    case BOOLEAN:
+                        putBoolean(col, (boolean) value);
+                        break;
+                    case BINARY:
+                        putBytes(col, (byte[]) value);
+                        break;
+                    case STRING:
+                        putString(col, (String) value);
+                        break;
+                    case JSON:
+                        putString(col, ValueUtil.getJsonString(value));
+                        break;
+                    case DECIMAL128:
+                        byte[] bytes = ValueUtil.getDecimal128BigEndianBytes(dataTypeExtensions.get(col), value);
+                        ((DecimalVector) vector(col)).setBigEndian(this.index, bytes);
+                        this.written[col] = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported data type: " + dataType);
                 }
-                final int colIndex = i;
-                ArrowHelper.addValues(
-                        vector,
-                        rowCount,
-                        this.dataTypes.get(colIndex),
-                        this.dataTypeExtensions.get(colIndex),
-                        new Iterator<Object>() {
-                            private int index = 0;
-
-                            @Override
-                            public boolean hasNext() {
-                                return index < rowCountToAdd;
-                            }
-
-                            @Override
-                            public Object next() {
-                                return buffer.get(index++)[colIndex];
-                            }
-                        });
-            }
-            this.buffer.clear();
-            this.root.setRowCount(rowCount + rowCountToAdd);
+            }
+
+            @Override
+            void putNull(int col) {
+                vector(col).setNull(this.index);
+                this.written[col] = true;
+            }
+
+            @Override
+            void putBoolean(int col, boolean value) {
+                ((BitVector) vector(col)).set(this.index, value ? 1 : 0);
+                this.written[col] = true;
+            }
+
+            @Override
+            void putInt(int col, int value) {
+                FieldVector vector = vector(col);
+                switch (dataType(col)) {
+                    case INT8:
+                        ((TinyIntVector) vector).set(this.index, value);
+                        break;
+                    case INT16:
+                        ((SmallIntVector) vector).set(this.index, value);
+                        break;
+                    case INT32:
+                        ((IntVector) vector).set(this.index, value);
+                        break;
+                    case UINT8:
+                        ((UInt1Vector) vector).set(this.index, value);
+                        break;
+                    case UINT16:
+                        ((UInt2Vector) vector).set(this.index, value);
+                        break;
+                    case UINT32:
+                        ((UInt4Vector) vector).set(this.index, value);
+                        break;
+                    case DATE:
+                        ((DateDayVector) vector).set(this.index, value);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected `data_type`: " + dataType(col));
+                }
+                this.written[col] = true;
+            }
+
+            @Override
+            void putLong(int col, long value) {
+                FieldVector vector = vector(col);
+                switch (dataType(col)) {
+                    case INT64:
+                        ((BigIntVector) vector).set(this.index, value);
+                        break;
+                    case UINT64:
+                        ((UInt8Vector) vector).set(this.index, value);
+                        break;
+                    case TIMESTAMP_SECOND:
+                    case TIMESTAMP_MILLISECOND:
+                    case TIMESTAMP_MICROSECOND:
+                    case TIMESTAMP_NANOSECOND:
+                        ((TimeStampVector) vector).set(this.index, value);
+                        break;
+                    case TIME_SECOND:
+                        ((TimeSecVector) vector).set(this.index, (int) value);
+                        break;
+                    case TIME_MILLISECOND:
+                        ((TimeMilliVector) vector).set(this.index, (int) value);
+                        break;
+                    case TIME_MICROSECOND:
+                        ((TimeMicroVector) vector).set(this.index, value);
+                        break;
+                    case TIME_NANOSECOND:
+                        ((TimeNanoVector) vector).set(this.index, value);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected `data_type`: " + dataType(col));
+                }
+                this.written[col] = true;
+            }
+
+            @Override
+            void putFloat(int col, float value) {
+                ((Float4Vector) vector(col)).set(this.index, value);
+                this.written[col] = true;
+            }
+
+            @Override
+            void putDouble(int col, double value) {
+                ((Float8Vector) vector(col)).set(this.index, value);
+                this.written[col] = true;
+            }
+
+            @Override
+            void putString(int col, CharSequence value) {
+                ArrowDictionaryEncoder encoder = dictionaryEncoder(col);
+                if (encoder != null) {
+                    ((IntVector) vector(col)).set(this.index, encoder.encode(value.toString()));
+                    this.written[col] = true;
+                    return;
+                }
+                int maxLen = Utf8Helper.maxEncodedLength(value);
+                if (maxLen > this.scratch.length) {
+                    this.scratch = new byte[Math.max(maxLen, this.scratch.length << 1)];
+                }
+                int len = Utf8Helper.encode(value, this.scratch, 0);
+                // Both the String (VarChar) and Json (VarBinary) vectors are variable width, the
+                // data buffer may still need to grow
+                ((BaseVariableWidthVector) vector(col)).setSafe(this.index, this.scratch, 0, len);
+                this.written[col] = true;
+            }
+
+            @Override
+            void putBytes(int col, byte[] value) {
+                ((VarBinaryVector) vector(col)).setSafe(this.index, value);
+                this.written[col] = true;
+            }
+
+            @Override
+            void putDecimal(int col, BigDecimal value) {
+                byte[] bytes = ValueUtil.getDecimal128BigEndianBytes(dataTypeExtensions.get(col), value);
+                ((DecimalVector) vector(col)).setBigEndian(this.index, bytes);
+                this.written[col] = true;
+            }
+
+            // The capacity of a row is only ensured once it is written, not when the previous row ends,
+            // a batch that fills the vectors exactly must not grow them for a row that never comes
+            private FieldVector vector(int col) {
+                ensureCapacity(this.index);
+                return this.vectors[col];
+            }
+
+            @Override
+            public Table endRow() {
+                TableHelper.ensureNotCompleted(completed.get());
+                ensureCapacity(this.index);
+                for (int i = 0; i < this.written.length; i++) {
+                    if (!this.written[i]) {
+                        this.vectors[i].setNull(this.index);
+                    }
+                }
+                if (++pendingRows >= columnBufferSize) {
+                    syncPendingRows();
+                }
+                this.index++;
+                Arrays.fill(this.written, false);
+                return BulkTable.this;
+            }
         }
     }
 }
@@ -17,10 +17,17 @@
 package io.greptime.models;
 
 import io.greptime.WriteOp;
+import io.greptime.common.Into;
 import io.greptime.common.util.Ensures;
 import io.greptime.v1.Common;
 import io.greptime.v1.Database;
+import io.greptime.v1.RowData;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Helper class for table data to GreptimeRequest.
@@ -29,36 +36,48 @@ public class TableHelper {
 
     public static Database.GreptimeRequest toGreptimeRequest(
             WriteTables writeTables, String database, AuthInfo authInfo) {
-        Common.RequestHeader.Builder headerBuilder = Common.RequestHeader.newBuilder();
-        if (database != null) {
-            headerBuilder.setDbname(database);
-        }
-        if (authInfo != null) {
-            headerBuilder.setAuthorization(authInfo.into());
-        }
+        Common.RequestHeader header = buildHeader(database, authInfo);
 
-        Collection<Table> tables = writeTables.getTables();
         WriteOp writeOp = writeTables.getWriteOp();
+        List<List<Table>> groups = mergeableGroups(writeTables.getTables());
 
         switch (writeOp) {
             case Insert:
                 Database.RowInsertRequests.Builder insertBuilder = Database.RowInsertRequests.newBuilder();
-                for (Table t : tables) {
-                    Ensures.ensure(t.pointCount() > 0, "No data to insert in table: %s", t.tableName());
-                    insertBuilder.addInserts(t.intoRowInsertRequest());
+                for (List<Table> group : groups) {
+                    for (Table t : group) {
+                        Ensures.ensure(t.pointCount() > 0, "No data to insert in table: %s", t.tableName());
+                    }
+                    if (group.size() == 1) {
+                        insertBuilder.addInserts(group.get(0).intoRowInsertRequest());
+                    } else {
+                        insertBuilder.addInserts(Database.RowInsertRequest.newBuilder()
+                                .setTableName(group.get(0).tableName())
+                                .setRows(mergeRows(group))
+                                .build());
+                    }
                 }
                 return Database.GreptimeRequest.newBuilder()
-                        .setHeader(headerBuilder.build())
+                        .setHeader(header)
                         .setRowInserts(insertBuilder.build())
                         .build();
             case Delete:
                 Database.RowDeleteRequests.Builder deleteBuilder = Database.RowDeleteRequests.newBuilder();
-                for (Table t : tables) {
-                    Ensures.ensure(t.pointCount() > 0, "No data to delete in table: %s", t.tableName());
-                    deleteBuilder.addDeletes(t.intoRowDeleteRequest());
+                for (List<Table> group : groups) {
+                    for (Table t : group) {
+                        Ensures.ensure(t.pointCount() > 0, "No data to delete in table: %s", t.tableName());
+                    }
+                    if (group.size() == 1) {
+                        deleteBuilder.addDeletes(group.get(0).intoRowDeleteRequest());
+                    } else {
+                        deleteBuilder.addDeletes(Database.RowDeleteRequest.newBuilder()
+                                .setTableName(group.get(0).tableName())
+                                .setRows(mergeRows(group))
+                                .build());
+                    }
                 }
                 return Database.GreptimeRequest.newBuilder()
-                        .setHeader(headerBuilder.build())
+                        .setHeader(header)
                         .setRowDeletes(deleteBuilder.build())
                         .build();
             default:
@@ -66,5 +85,100 @@ public class TableHelper {
         }
     }
 
+    /**
+     * Creates an encoder that writes the {@link Database.GreptimeRequest} wire format straight from the
+     * table buffers, it is sent as is by the RPC client.
+     *
+     * @param writeTables the tables to write
+     * @param database the database name
+     * @param authInfo the auth info
+     * @return the request encoder
+     */
+    public static GreptimeRequestEncoder toGreptimeRequestEncoder(
+            WriteTables writeTables, String database, AuthInfo authInfo) {
+        return new GreptimeRequestEncoder(writeTables, database, authInfo);
+    }
+
+    /**
+     * Groups the tables that can be written as one {@code RowInsertRequest} (or {@code RowDeleteRequest}):
+     * the tables with the same name and the same column schemas. The tables with the same name but a
+     * different schema are split into different groups, and so are the tables whose rows can't be
+     * merged (not a row-based or columnar table). The groups keep the order of their first table.
+     *
+     * @param tables the tables to write
+     * @return the groups of tables
+     */
+    static List<List<Table>> mergeableGroups(Collection<Table> tables) {
+        List<List<Table>> groups = new ArrayList<>(tables.size());
+        // Table name -> groups with the name, usually only one
+        Map<String, List<List<Table>>> groupsByName = null;
+        for (Table t : tables) {
+            List<RowData.ColumnSchema> columnSchemas = columnSchemas(t);
+            if (columnSchemas == null) {
+                groups.add(Collections.singletonList(t));
+                continue;
+            }
+            if (groupsByName == null) {
+                groupsByName = new HashMap<>();
+            }
+            List<List<Table>> sameNameGroups = groupsByName.computeIfAbsent(t.tableName(), k -> new ArrayList<>(1));
+            List<Table> group = null;
+            for (List<Table> g : sameNameGroups) {
+                List<RowData.ColumnSchema> groupSchemas = columnSchemas(g.get(0));
+                // Usually the same list instance, shared by the tables created from the same `TableSchema`
+                if (groupSchemas == columnSchemas || groupSchemas.equals(columnSchemas)) {
+                    group = g;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>(1);
+                sameNameGroups.add(group);
+                groups.add(group);
+            }
+            group.add(t);
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the column schemas of a table whose rows can be merged with others, otherwise null.
+     */
+    static List<RowData.ColumnSchema> columnSchemas(Table table) {
+        if (table instanceof Table.RowBasedTable) {
+            return ((Table.RowBasedTable) table).columnSchemas();
+        }
+        if (table instanceof Table.ColumnarTable) {
+            return ((Table.ColumnarTable) table).columnSchemas();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RowData.Rows mergeRows(List<Table> group) {
+        RowData.Rows.Builder builder = RowData.Rows.newBuilder().addAllSchema(columnSchemas(group.get(0)));
+        for (Table t : group) {
+            builder.addAllRows(((Into<RowData.Rows>) t).into().getRowsList());
+        }
+        return builder.build();
+    }
+
+    static Common.RequestHeader buildHeader(String database, AuthInfo authInfo) {
+        Common.RequestHeader.Builder headerBuilder = Common.RequestHeader.newBuilder();
+        if (database != null) {
+            headerBuilder.setDbname(database);
+        }
+        if (authInfo != null) {
+            headerBuilder.setAuthorization(authInfo.into());
+        }
+        return headerBuilder.build();
+    }
+
+    static void ensureNotCompleted(boolean completed) {
+        Ensures.ensure(
+                !completed,
+                "Table data construction has been completed. Cannot add more rows. Please create a new table instance.");
+    }
+
     private TableHelper() {}
 }
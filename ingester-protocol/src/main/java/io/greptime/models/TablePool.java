@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+import io.greptime.common.util.Ensures;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A pool of reusable tables of the same schema. A table is {@link Table#reset() reset} when it's
+ * released, so the tables handed out keep the storage sized by their previous batches.
+ *
+ * <p>
+ * A table must only be released after its write has completed:
+ * </p>
+ * <pre>{@code
+ * TablePool pool = TablePool.columnar(schema, 1024, 8);
+ *
+ * Table table = pool.acquire();
+ * // add rows ...
+ * table.complete();
+ * greptimeDB.write(table).whenComplete((r, e) -> pool.release(table));
+ * }</pre>
+ *
+ * <p>
+ * `TablePool` is thread-safe, the tables are not.
+ * </p>
+ */
+public final class TablePool {
+
+    private final Supplier<Table> factory;
+    private final BlockingQueue<Table> idle;
+
+    /**
+     * Creates a pool of row-based tables.
+     *
+     * @param tableSchema the table schema
+     * @param maxIdle the max number of idle tables kept by the pool
+     * @return the pool
+     */
+    public static TablePool rowBased(TableSchema tableSchema, int maxIdle) {
+        Table.Builder builder = new Table.Builder(tableSchema);
+        return new TablePool(builder::build, maxIdle);
+    }
+
+    /**
+     * Creates a pool of columnar tables.
+     *
+     * @param tableSchema the table schema
+     * @param initialCapacity the initial rows capacity of each column
+     * @param maxIdle the max number of idle tables kept by the pool
+     * @return the pool
+     */
+    public static TablePool columnar(TableSchema tableSchema, int initialCapacity, int maxIdle) {
+        Table.Builder builder = new Table.Builder(tableSchema);
+        return new TablePool(() -> builder.buildColumnar(initialCapacity), maxIdle);
+    }
+
+    /**
+     * Creates a pool that creates the tables by the given factory, e.g.
+     * {@code () -> new Table.Builder(schema).tagDictionary(true).buildColumnar(1024)}.
+     *
+     * @param factory creates a new table when the pool is empty
+     * @param maxIdle the max number of idle tables kept by the pool
+     */
+    public TablePool(Supplier<Table> factory, int maxIdle) {
+        Ensures.ensureNonNull(factory, "Null table factory");
+        Ensures.ensure(maxIdle > 0, "`maxIdle` must be positive: %d", maxIdle);
+        this.factory = factory;
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Takes an idle table from the pool, or creates a new one if there is none.
+     *
+     * @return an empty table
+     */
+    public Table acquire() {
+        Table table = this.idle.poll();
+        return table != null ? table : this.factory.get();
+    }
+
+    /**
+     * Resets the table and returns it to the pool, the table is dropped if the pool is full.
+     * The caller must not use the table after releasing it.
+     *
+     * @param table the table whose write has completed
+     */
+    public void release(Table table) {
+        if (table == null) {
+            return;
+        }
+        this.idle.offer(table.reset());
+    }
+
+    /**
+     * Returns the number of idle tables.
+     *
+     * @return the number of idle tables
+     */
+    public int idleCount() {
+        return this.idle.size();
+    }
+}
@@ -16,10 +16,17 @@
 
 package io.greptime.models;
 
+import io.greptime.ArrowDictionaryEncoder;
 import io.greptime.common.util.Ensures;
 import io.greptime.v1.Common;
+import io.greptime.v1.RowData;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.vector.types.pojo.Schema;
 
 /**
  * Defines the schema structure for writing data to the database.
@@ -43,6 +50,12 @@ import java.util.List;
  * table.addRow(tag_value_2, now, field_value_2);
  * table.complete();
  * }</pre>
+ *
+ * <p>
+ * A {@code TableSchema} is immutable once built, everything a table needs per column (the protobuf
+ * column schemas, the column kinds used by the typed writers, the name to index map and the Arrow
+ * schema) is compiled once here and shared by all the tables created from it.
+ * </p>
  */
 public class TableSchema {
 
@@ -51,6 +64,16 @@ public class TableSchema {
     private List<Common.SemanticType> semanticTypes;
     private List<Common.ColumnDataType> dataTypes;
     private List<Common.ColumnDataTypeExtension> dataTypeExtensions;
+    // Indexed by column, 0 if the column is not dictionary-encoded in bulk writes
+    private int[] dictionaryMaxSizes;
+
+    // Compiled from the above, see `compile()`
+    private List<RowData.ColumnSchema> columnSchemas;
+    private Map<String, Integer> columnIndexes;
+    private ColumnKind[] columnKinds;
+    private TimeUnit[] timestampUnits;
+    // Lazily created, only the bulk writes need it
+    private volatile Schema arrowSchema;
 
     private TableSchema() {}
 
@@ -74,6 +97,137 @@ public class TableSchema {
         return dataTypeExtensions;
     }
 
+    /**
+     * Returns the prebuilt protobuf column schemas, they are shared by all the tables
+     * created from this schema.
+     *
+     * @return the column schemas
+     */
+    public List<RowData.ColumnSchema> getColumnSchemas() {
+        return columnSchemas;
+    }
+
+    /**
+     * Returns the index of the given column.
+     *
+     * @param columnName the column name
+     * @return the index of the column, or -1 if there is no such column
+     */
+    public int getColumnIndex(String columnName) {
+        Integer index = this.columnIndexes.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    public int getColumnCount() {
+        return this.columnNames.size();
+    }
+
+    /**
+     * Returns whether the column is dictionary-encoded in bulk writes, see
+     * {@link Builder#dictionaryEncoded(String, int)}.
+     *
+     * @param col the column index
+     * @return true if the column is dictionary-encoded
+     */
+    public boolean isDictionaryEncoded(int col) {
+        return this.dictionaryMaxSizes[col] > 0;
+    }
+
+    /**
+     * Returns the max number of entries of the dictionary of a dictionary-encoded column.
+     *
+     * @param col the column index
+     * @return the max dictionary size, 0 if the column is not dictionary-encoded
+     */
+    public int getDictionaryMaxSize(int col) {
+        return this.dictionaryMaxSizes[col];
+    }
+
+    ColumnKind[] columnKinds() {
+        return this.columnKinds;
+    }
+
+    TimeUnit[] timestampUnits() {
+        return this.timestampUnits;
+    }
+
+    /**
+     * Returns the Arrow schema of this table schema, it is created on first use and cached.
+     */
+    Schema arrowSchema() {
+        Schema schema = this.arrowSchema;
+        if (schema == null) {
+            // The Arrow schema is immutable, a racy creation is harmless
+            schema = ArrowHelper.buildSchema(this);
+            this.arrowSchema = schema;
+        }
+        return schema;
+    }
+
+    /**
+     * Creates a table schema from the given protobuf column schemas, only for the tables that are
+     * not created from a {@code TableSchema}.
+     */
+    static TableSchema fromColumnSchemas(String tableName, List<RowData.ColumnSchema> columnSchemas) {
+        Ensures.ensureNonNull(tableName, "Null table name");
+        Ensures.ensureNonNull(columnSchemas, "Null column schemas");
+
+        int columnCount = columnSchemas.size();
+        List<String> columnNames = new ArrayList<>(columnCount);
+        List<Common.SemanticType> semanticTypes = new ArrayList<>(columnCount);
+        List<Common.ColumnDataType> dataTypes = new ArrayList<>(columnCount);
+        List<Common.ColumnDataTypeExtension> dataTypeExtensions = new ArrayList<>(columnCount);
+        for (RowData.ColumnSchema columnSchema : columnSchemas) {
+            columnNames.add(columnSchema.getColumnName());
+            semanticTypes.add(columnSchema.getSemanticType());
+            dataTypes.add(columnSchema.getDatatype());
+            dataTypeExtensions.add(columnSchema.hasDatatypeExtension() ? columnSchema.getDatatypeExtension() : null);
+        }
+
+        TableSchema tableSchema = new TableSchema();
+        tableSchema.tableName = tableName;
+        tableSchema.columnNames = Collections.unmodifiableList(columnNames);
+        tableSchema.semanticTypes = Collections.unmodifiableList(semanticTypes);
+        tableSchema.dataTypes = Collections.unmodifiableList(dataTypes);
+        tableSchema.dataTypeExtensions = Collections.unmodifiableList(dataTypeExtensions);
+        tableSchema.columnSchemas = columnSchemas;
+        tableSchema.dictionaryMaxSizes = new int[columnCount];
+        tableSchema.compileKernels();
+        return tableSchema;
+    }
+
+    private void compile() {
+        int columnCount = this.columnNames.size();
+        List<RowData.ColumnSchema> columnSchemas = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            RowData.ColumnSchema.Builder builder = RowData.ColumnSchema.newBuilder();
+            builder.setColumnName(this.columnNames.get(i))
+                    .setSemanticType(this.semanticTypes.get(i))
+                    .setDatatype(this.dataTypes.get(i));
+            Common.ColumnDataTypeExtension ext = this.dataTypeExtensions.get(i);
+            if (ext != null) {
+                builder.setDatatypeExtension(ext);
+            }
+            columnSchemas.add(builder.build());
+        }
+        this.columnSchemas = Collections.unmodifiableList(columnSchemas);
+        compileKernels();
+    }
+
+    private void compileKernels() {
+        int columnCount = this.columnNames.size();
+        Map<String, Integer> columnIndexes = new HashMap<>(columnCount * 2);
+        for (int i = 0; i < columnCount; i++) {
+            columnIndexes.putIfAbsent(this.columnNames.get(i), i);
+        }
+        this.columnIndexes = columnIndexes;
+        this.columnKinds = ColumnKind.of(this.dataTypes);
+        this.timestampUnits = new TimeUnit[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            this.timestampUnits[i] = ColumnKind.timestampUnit(this.dataTypes.get(i));
+        }
+    }
+
     public static Builder newBuilder(String tableName) {
         return new Builder(tableName);
     }
@@ -84,6 +238,7 @@ public class TableSchema {
         private final List<Common.SemanticType> semanticTypes = new ArrayList<>();
         private final List<Common.ColumnDataType> dataTypes = new ArrayList<>();
         private final List<Common.ColumnDataTypeExtension> dataTypeExtensions = new ArrayList<>();
+        private final Map<String, Integer> dictionaryMaxSizes = new HashMap<>();
 
         public Builder(String tableName) {
             this.tableName = tableName;
@@ -210,6 +365,38 @@ public class TableSchema {
             return this;
         }
 
+        /**
+         * Dictionary-encodes a string tag in bulk writes, with the default max dictionary size
+         * ({@code ArrowDictionaryEncoder.DEFAULT_MAX_SIZE}).
+         *
+         * @param tagName the name of a string tag
+         * @return this builder
+         * @see #dictionaryEncoded(String, int)
+         */
+        public Builder dictionaryEncoded(String tagName) {
+            return dictionaryEncoded(tagName, ArrowDictionaryEncoder.DEFAULT_MAX_SIZE);
+        }
+
+        /**
+         * Dictionary-encodes a string tag in bulk writes. Each distinct value is sent once per
+         * stream, and the rows only carry its index, so the low-cardinality tags (log level,
+         * service name, region...) cost a few bytes per row. Other writes are not affected.
+         * <p>
+         * When the dictionary grows over {@code maxSize} entries, it is replaced by the values of
+         * the next batch only, so a tag whose values turn out to be nearly unique costs about as
+         * much as a plain one.
+         *
+         * @param tagName the name of a string tag
+         * @param maxSize the max number of entries of the dictionary
+         * @return this builder
+         */
+        public Builder dictionaryEncoded(String tagName, int maxSize) {
+            Ensures.ensureNonNull(tagName, "Null tag name");
+            Ensures.ensure(maxSize > 0, "`maxSize` must be positive: %d", maxSize);
+            this.dictionaryMaxSizes.put(tagName.trim(), maxSize);
+            return this;
+        }
+
         /**
          * Build the table schema.
          *
@@ -231,12 +418,25 @@ public class TableSchema {
                     columnCount == this.dataTypeExtensions.size(),
                     "Column names size not equal to data type extensions size");
 
+            // Copy the lists, so that the schema is not affected by the later use of this builder
             TableSchema tableSchema = new TableSchema();
             tableSchema.tableName = this.tableName;
-            tableSchema.columnNames = this.columnNames;
-            tableSchema.semanticTypes = this.semanticTypes;
-            tableSchema.dataTypes = this.dataTypes;
-            tableSchema.dataTypeExtensions = this.dataTypeExtensions;
+            tableSchema.columnNames = Collections.unmodifiableList(new ArrayList<>(this.columnNames));
+            tableSchema.semanticTypes = Collections.unmodifiableList(new ArrayList<>(this.semanticTypes));
+            tableSchema.dataTypes = Collections.unmodifiableList(new ArrayList<>(this.dataTypes));
+            tableSchema.dataTypeExtensions = Collections.unmodifiableList(new ArrayList<>(this.dataTypeExtensions));
+            tableSchema.dictionaryMaxSizes = new int[columnCount];
+            for (Map.Entry<String, Integer> e : this.dictionaryMaxSizes.entrySet()) {
+                int col = this.columnNames.indexOf(e.getKey());
+                Ensures.ensure(col >= 0, "No such column to dictionary-encode: %s", e.getKey());
+                Ensures.ensure(
+                        this.semanticTypes.get(col) == Common.SemanticType.TAG
+                                && this.dataTypes.get(col) == Common.ColumnDataType.STRING,
+                        "Only string tags can be dictionary-encoded: %s",
+                        e.getKey());
+                tableSchema.dictionaryMaxSizes[col] = e.getValue();
+            }
+            tableSchema.compile();
             return tableSchema;
         }
     }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import io.greptime.v1.Common;
+import io.greptime.v1.RowData;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary of the distinct values of a tag column. Tag values repeat a lot (host, pod,
+ * service ...), so each distinct value is encoded to UTF-8 only once and the rows only keep
+ * a small integer code or a shared {@link RowData.Value}. The dictionary is kept when its table
+ * is reset, unless it has grown over its max size.
+ *
+ * <p>
+ * `TagDictionary` is not thread-safe, it is owned by a single table.
+ * </p>
+ */
+final class TagDictionary {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The default max number of distinct values, the same as the dictionaries of the bulk writes.
+     */
+    static final int DEFAULT_MAX_SIZE = 65536;
+
+    private final int maxSize;
+    private final Map<String, Integer> codes = new HashMap<>();
+    // Indexed by code
+    private ByteString[] utf8Values = new ByteString[INITIAL_CAPACITY];
+    private RowData.Value[] values = new RowData.Value[INITIAL_CAPACITY];
+    private int size;
+    private long bytesUsed;
+
+    TagDictionary() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    TagDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates the dictionaries for the string tag columns, the others are left null.
+     *
+     * @param columnSchemas the column schemas
+     * @return the dictionaries indexed by column, or null if there is no string tag column
+     */
+    static TagDictionary[] forTags(List<RowData.ColumnSchema> columnSchemas) {
+        TagDictionary[] dictionaries = null;
+        for (int i = 0; i < columnSchemas.size(); i++) {
+            if (isDictionaryColumn(columnSchemas.get(i))) {
+                if (dictionaries == null) {
+                    dictionaries = new TagDictionary[columnSchemas.size()];
+                }
+                dictionaries[i] = new TagDictionary();
+            }
+        }
+        return dictionaries;
+    }
+
+    static boolean isDictionaryColumn(RowData.ColumnSchema columnSchema) {
+        return columnSchema.getSemanticType() == Common.SemanticType.TAG
+                && columnSchema.getDatatype() == Common.ColumnDataType.STRING;
+    }
+
+    /**
+     * Gets the code of the value, the value is added to the dictionary if it's absent.
+     *
+     * @param value the tag value
+     * @return the code
+     */
+    int intern(CharSequence value) {
+        String key = value.toString();
+        Integer code = this.codes.get(key);
+        if (code != null) {
+            return code;
+        }
+        return add(key);
+    }
+
+    private int add(String key) {
+        int code = this.size;
+        if (code == this.values.length) {
+            int newCapacity = ColumnBuffer.newCapacity(code, code + 1);
+            this.utf8Values = Arrays.copyOf(this.utf8Values, newCapacity);
+            this.values = Arrays.copyOf(this.values, newCapacity);
+        }
+        ByteString utf8 = ByteString.copyFromUtf8(key);
+        this.utf8Values[code] = utf8;
+        this.values[code] = RowData.Value.newBuilder().setStringValueBytes(utf8).build();
+        this.codes.put(key, code);
+        this.size++;
+        this.bytesUsed += utf8.size();
+        return code;
+    }
+
+    /**
+     * Gets the shared protobuf value of the code.
+     *
+     * @param code the code
+     * @return the value
+     */
+    RowData.Value value(int code) {
+        return this.values[code];
+    }
+
+    int valueSize(int fieldNumber, int code) {
+        return CodedOutputStream.computeBytesSize(fieldNumber, this.utf8Values[code]);
+    }
+
+    void writeValue(CodedOutputStream out, int fieldNumber, int code) throws IOException {
+        out.writeBytes(fieldNumber, this.utf8Values[code]);
+    }
+
+    /**
+     * Drops the distinct values if there are more than the max size, so the dictionary of a
+     * high-cardinality column does not grow without bound across the batches of a reused table.
+     * It must only be called when no row refers to the codes.
+     *
+     * @return true if the values were dropped
+     */
+    boolean clearIfOverMaxSize() {
+        if (this.size <= this.maxSize) {
+            return false;
+        }
+        this.codes.clear();
+        this.utf8Values = new ByteString[INITIAL_CAPACITY];
+        this.values = new RowData.Value[INITIAL_CAPACITY];
+        this.size = 0;
+        this.bytesUsed = 0;
+        return true;
+    }
+
+    /**
+     * Returns the number of distinct values.
+     *
+     * @return the dictionary size
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the UTF-8 bytes of the distinct values.
+     *
+     * @return the bytes used
+     */
+    long bytesUsed() {
+        return this.bytesUsed;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+/**
+ * A utility that encodes a {@link CharSequence} as UTF-8 straight into a caller-provided
+ * byte array, so that no intermediate {@code byte[]} is allocated per value.
+ */
+final class Utf8Helper {
+
+    /**
+     * Returns the maximum number of bytes needed to encode the given sequence.
+     *
+     * @param cs the char sequence
+     * @return the upper bound of the encoded length
+     */
+    static int maxEncodedLength(CharSequence cs) {
+        return cs.length() * 3;
+    }
+
+    /**
+     * Encodes the char sequence into {@code dst} starting from {@code offset}, the caller must
+     * make sure there is at least {@link #maxEncodedLength(CharSequence)} bytes available.
+     * Unpaired surrogates are replaced with '?', the same as {@link String#getBytes}.
+     *
+     * @param cs the char sequence to encode
+     * @param dst the destination buffer
+     * @param offset the start offset in the destination buffer
+     * @return the offset after the last written byte
+     */
+    static int encode(CharSequence cs, byte[] dst, int offset) {
+        int len = cs.length();
+        int i = 0;
+        int pos = offset;
+
+        // Fast path for ASCII
+        for (char c; i < len && (c = cs.charAt(i)) < 0x80; i++) {
+            dst[pos++] = (byte) c;
+        }
+
+        for (; i < len; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                dst[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[pos++] = (byte) (0xC0 | (c >>> 6));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                char low;
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(low = cs.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, low);
+                    i++;
+                    dst[pos++] = (byte) (0xF0 | (cp >>> 18));
+                    dst[pos++] = (byte) (0x80 | ((cp >>> 12) & 0x3F));
+                    dst[pos++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+                    dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    dst[pos++] = (byte) '?';
+                }
+            } else {
+                dst[pos++] = (byte) (0xE0 | (c >>> 12));
+                dst[pos++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return pos;
+    }
+
+    private Utf8Helper() {}
+}
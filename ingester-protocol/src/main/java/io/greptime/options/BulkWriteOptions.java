@@ -16,9 +16,12 @@
 
 package io.greptime.options;
 
+import io.greptime.ArrowCompressionOptions;
 import io.greptime.RouterClient;
 import io.greptime.common.Copiable;
+import io.greptime.common.MemoryGovernor;
 import io.greptime.models.AuthInfo;
+import io.greptime.rpc.RpcOptions;
 import io.greptime.rpc.TlsOptions;
 import java.util.concurrent.Executor;
 
@@ -33,6 +36,14 @@ public class BulkWriteOptions implements Copiable<BulkWriteOptions> {
     private boolean useZeroCopyWrite;
     // GreptimeDB secure connection options
     private TlsOptions tlsOptions;
+    // The bulk writers share the channels of the rpc client if set
+    private RpcOptions rpcOptions;
+    // The compression of the record batches, null for the default
+    private ArrowCompressionOptions compressionOptions;
+    // The client memory budget shared with the regular writes, null means no budget
+    private MemoryGovernor memoryGovernor;
+    // The max time a writer waits for the memory budget before filling a table
+    private long memoryBlockTimeoutMs = 3000;
 
     public String getDatabase() {
         return database;
@@ -82,6 +93,38 @@ public class BulkWriteOptions implements Copiable<BulkWriteOptions> {
         this.tlsOptions = tlsOptions;
     }
 
+    public RpcOptions getRpcOptions() {
+        return rpcOptions;
+    }
+
+    public void setRpcOptions(RpcOptions rpcOptions) {
+        this.rpcOptions = rpcOptions;
+    }
+
+    public ArrowCompressionOptions getCompressionOptions() {
+        return compressionOptions;
+    }
+
+    public void setCompressionOptions(ArrowCompressionOptions compressionOptions) {
+        this.compressionOptions = compressionOptions;
+    }
+
+    public MemoryGovernor getMemoryGovernor() {
+        return memoryGovernor;
+    }
+
+    public void setMemoryGovernor(MemoryGovernor memoryGovernor) {
+        this.memoryGovernor = memoryGovernor;
+    }
+
+    public long getMemoryBlockTimeoutMs() {
+        return memoryBlockTimeoutMs;
+    }
+
+    public void setMemoryBlockTimeoutMs(long memoryBlockTimeoutMs) {
+        this.memoryBlockTimeoutMs = memoryBlockTimeoutMs;
+    }
+
     @Override
     public BulkWriteOptions copy() {
         BulkWriteOptions opts = new BulkWriteOptions();
@@ -91,6 +134,10 @@ public class BulkWriteOptions implements Copiable<BulkWriteOptions> {
         opts.asyncPool = this.asyncPool;
         opts.useZeroCopyWrite = this.useZeroCopyWrite;
         opts.tlsOptions = this.tlsOptions;
+        opts.rpcOptions = this.rpcOptions;
+        opts.compressionOptions = this.compressionOptions;
+        opts.memoryGovernor = this.memoryGovernor;
+        opts.memoryBlockTimeoutMs = this.memoryBlockTimeoutMs;
         return opts;
     }
 
@@ -103,6 +150,10 @@ public class BulkWriteOptions implements Copiable<BulkWriteOptions> {
                 + ", asyncPool=" + asyncPool
                 + ", useZeroCopyWrite=" + useZeroCopyWrite
                 + ", tlsOptions=" + tlsOptions
+                + ", rpcOptions=" + rpcOptions
+                + ", compressionOptions=" + compressionOptions
+                + ", memoryGovernor=" + memoryGovernor
+                + ", memoryBlockTimeoutMs=" + memoryBlockTimeoutMs
                 + '}';
     }
 }
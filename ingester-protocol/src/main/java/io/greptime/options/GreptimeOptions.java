@@ -16,9 +16,11 @@
 
 package io.greptime.options;
 
+import io.greptime.ArrowCompressionOptions;
 import io.greptime.Router;
 import io.greptime.common.Copiable;
 import io.greptime.common.Endpoint;
+import io.greptime.common.MemoryGovernor;
 import io.greptime.common.util.Ensures;
 import io.greptime.limit.LimitedPolicy;
 import io.greptime.models.AuthInfo;
@@ -37,7 +39,14 @@ import java.util.stream.Collectors;
 public class GreptimeOptions implements Copiable<GreptimeOptions> {
     public static final int DEFAULT_WRITE_MAX_RETRIES = 1;
     public static final int DEFAULT_MAX_IN_FLIGHT_WRITE_POINTS = 10 * 65536;
+    public static final int DEFAULT_MAX_IN_FLIGHT_WRITE_BYTES = 0;
     public static final int DEFAULT_DEFAULT_STREAM_MAX_WRITE_POINTS_PER_SECOND = 10 * 65536;
+    public static final long DEFAULT_MAX_WRITE_REQUEST_BYTES = 0;
+    public static final int DEFAULT_WRITE_BATCH_MAX_POINTS = 16384;
+    public static final long DEFAULT_WRITE_BATCH_MAX_BYTES = 4 * 1024 * 1024;
+    public static final long DEFAULT_WRITE_BATCH_LINGER_MS = 5;
+    public static final long DEFAULT_MEMORY_LIMIT_BYTES = 0;
+    public static final long DEFAULT_MEMORY_BLOCK_TIMEOUT_MS = 3000;
     public static final long DEFAULT_ROUTE_TABLE_REFRESH_PERIOD_SECONDS = 10 * 60;
     public static final long DEFAULT_CHECK_HEALTH_TIMEOUT_MS = 1000;
 
@@ -164,10 +173,24 @@ public class GreptimeOptions implements Copiable<GreptimeOptions> {
         private int writeMaxRetries = DEFAULT_WRITE_MAX_RETRIES;
         // Write flow limit: maximum number of data points in-flight.
         private int maxInFlightWritePoints = DEFAULT_MAX_IN_FLIGHT_WRITE_POINTS;
+        // Write flow limit: maximum number of bytes in-flight.
+        private int maxInFlightWriteBytes = DEFAULT_MAX_IN_FLIGHT_WRITE_BYTES;
         private LimitedPolicy writeLimitedPolicy = LimitedPolicy.defaultWriteLimitedPolicy();
         private int defaultStreamMaxWritePointsPerSecond = DEFAULT_DEFAULT_STREAM_MAX_WRITE_POINTS_PER_SECOND;
+        // Split the writes larger than this into parallel requests
+        private long maxWriteRequestBytes = DEFAULT_MAX_WRITE_REQUEST_BYTES;
+        // Auto batching of the small writes
+        private boolean writeBatching = false;
+        private int writeBatchMaxPoints = DEFAULT_WRITE_BATCH_MAX_POINTS;
+        private long writeBatchMaxBytes = DEFAULT_WRITE_BATCH_MAX_BYTES;
+        private long writeBatchLingerMs = DEFAULT_WRITE_BATCH_LINGER_MS;
         // Use zero copy write in bulk write
         private boolean useZeroCopyWriteInBulkWrite = true;
+        // The compression of the record batches in bulk write
+        private ArrowCompressionOptions bulkWriteCompressionOptions;
+        // The memory budget shared by the writes and the bulk writes, 0 means no budget
+        private long memoryLimitBytes = DEFAULT_MEMORY_LIMIT_BYTES;
+        private long memoryBlockTimeoutMs = DEFAULT_MEMORY_BLOCK_TIMEOUT_MS;
         // Refresh frequency of route tables. The background refreshes all route tables periodically.
         // If the value is less than or equal to 0, the route tables will not be refreshed.
         private long routeTableRefreshPeriodSeconds = DEFAULT_ROUTE_TABLE_REFRESH_PERIOD_SECONDS;
@@ -245,6 +268,20 @@ public class GreptimeOptions implements Copiable<GreptimeOptions> {
             return this;
         }
 
+        /**
+         * Write flow limit: maximum number of bytes in-flight, the bytes of a table is
+         * estimated by `Table#bytesUsed()`. It works together with `maxInFlightWritePoints`,
+         * a write has to acquire both. To limit the writes by bytes only, set
+         * `maxInFlightWritePoints` to 0. The default is 0 (no limit).
+         *
+         * @param maxInFlightWriteBytes max in-flight bytes
+         * @return this builder
+         */
+        public Builder maxInFlightWriteBytes(int maxInFlightWriteBytes) {
+            this.maxInFlightWriteBytes = maxInFlightWriteBytes;
+            return this;
+        }
+
         /**
          * Write flow limit: the policy to use when the write flow limit is exceeded.
          * The options:
@@ -276,6 +313,70 @@ public class GreptimeOptions implements Copiable<GreptimeOptions> {
             return this;
         }
 
+        /**
+         * The byte budget of a write request. A write whose tables are estimated to be larger
+         * than this is split along the table boundaries (and the row ranges of a large table)
+         * into several requests, which are sent in parallel to the routed endpoints, and their
+         * results are aggregated into one. A split write is not atomic: if some of the requests
+         * fail, the write returns the first error although the other requests may have written
+         * their rows. Set to 0 to never split, which is the default.
+         *
+         * @param maxWriteRequestBytes max bytes of a write request
+         * @return this builder
+         */
+        public Builder maxWriteRequestBytes(long maxWriteRequestBytes) {
+            this.maxWriteRequestBytes = maxWriteRequestBytes;
+            return this;
+        }
+
+        /**
+         * Enables the auto batching of writes. The tables of the concurrent writes are
+         * accumulated into one request per write operation, which is sent once it reaches
+         * `writeBatchMaxPoints`, `writeBatchMaxBytes` or `writeBatchLingerMs`, whichever
+         * comes first. The future of each write completes when its batch is acknowledged.
+         * The default is false.
+         *
+         * @param writeBatching whether to batch the writes
+         * @return this builder
+         */
+        public Builder writeBatching(boolean writeBatching) {
+            this.writeBatching = writeBatching;
+            return this;
+        }
+
+        /**
+         * The max number of points of a write batch. The default is 16384.
+         *
+         * @param writeBatchMaxPoints max points of a write batch
+         * @return this builder
+         */
+        public Builder writeBatchMaxPoints(int writeBatchMaxPoints) {
+            this.writeBatchMaxPoints = writeBatchMaxPoints;
+            return this;
+        }
+
+        /**
+         * The max bytes of a write batch. The default is 4 MiB.
+         *
+         * @param writeBatchMaxBytes max bytes of a write batch
+         * @return this builder
+         */
+        public Builder writeBatchMaxBytes(long writeBatchMaxBytes) {
+            this.writeBatchMaxBytes = writeBatchMaxBytes;
+            return this;
+        }
+
+        /**
+         * The max time a write waits for its batch to fill up. The default is 5 ms.
+         *
+         * @param writeBatchLingerMs linger time in milliseconds
+         * @return this builder
+         */
+        public Builder writeBatchLingerMs(long writeBatchLingerMs) {
+            this.writeBatchLingerMs = writeBatchLingerMs;
+            return this;
+        }
+
         /**
          * Use zero copy write in bulk write.
          *
@@ -287,6 +388,43 @@ public class GreptimeOptions implements Copiable<GreptimeOptions> {
             return this;
         }
 
+        /**
+         * The compression of the record batches in bulk write: the per column codec policy and the
+         * worker pool the buffers are compressed on. It applies to the compressed streams.
+         *
+         * @param bulkWriteCompressionOptions the compression options
+         * @return this builder
+         */
+        public Builder bulkWriteCompressionOptions(ArrowCompressionOptions bulkWriteCompressionOptions) {
+            this.bulkWriteCompressionOptions = bulkWriteCompressionOptions;
+            return this;
+        }
+
+        /**
+         * The memory budget of the client, shared by the buffered and in-flight rows of the
+         * regular writes and the Arrow direct memory of the bulk writers. The producers wait
+         * when the budget is exhausted. The default is 0, no budget.
+         *
+         * @param memoryLimitBytes the memory budget in bytes
+         * @return this builder
+         */
+        public Builder memoryLimitBytes(long memoryLimitBytes) {
+            this.memoryLimitBytes = memoryLimitBytes;
+            return this;
+        }
+
+        /**
+         * The max time a write, or a bulk writer asking for a table buffer, waits for the memory
+         * budget before it fails with a flow control error. The default is 3000ms.
+         *
+         * @param memoryBlockTimeoutMs the max time to wait for the memory budget
+         * @return this builder
+         */
+        public Builder memoryBlockTimeoutMs(long memoryBlockTimeoutMs) {
+            this.memoryBlockTimeoutMs = memoryBlockTimeoutMs;
+            return this;
+        }
+
         /**
          * Refresh frequency of route tables. The background refreshes all route tables
          * periodically. By default, By default, the route tables will not be refreshed.
@@ -351,8 +489,11 @@ public class GreptimeOptions implements Copiable<GreptimeOptions> {
             opts.setRpcOptions(this.rpcOptions);
             opts.setDatabase(this.database);
             opts.setRouterOptions(routerOptions());
-            opts.setWriteOptions(writeOptions());
-            opts.setBulkWriteOptions(bulkWriteOptions());
+            // One budget for the whole client
+            MemoryGovernor memoryGovernor =
+                    this.memoryLimitBytes > 0 ? new MemoryGovernor(this.memoryLimitBytes) : null;
+            opts.setWriteOptions(writeOptions(memoryGovernor));
+            opts.setBulkWriteOptions(bulkWriteOptions(memoryGovernor));
             return GreptimeOptions.checkSelf(opts);
         }
 
@@ -365,25 +506,37 @@ public class GreptimeOptions implements Copiable<GreptimeOptions> {
             return routerOpts;
         }
 
-        private WriteOptions writeOptions() {
+        private WriteOptions writeOptions(MemoryGovernor memoryGovernor) {
             WriteOptions writeOpts = new WriteOptions();
             writeOpts.setDatabase(this.database);
             writeOpts.setAuthInfo(this.authInfo);
             writeOpts.setAsyncPool(this.asyncPool);
             writeOpts.setMaxRetries(this.writeMaxRetries);
             writeOpts.setMaxInFlightWritePoints(this.maxInFlightWritePoints);
+            writeOpts.setMaxInFlightWriteBytes(this.maxInFlightWriteBytes);
             writeOpts.setLimitedPolicy(this.writeLimitedPolicy);
             writeOpts.setDefaultStreamMaxWritePointsPerSecond(this.defaultStreamMaxWritePointsPerSecond);
+            writeOpts.setMaxRequestBytes(this.maxWriteRequestBytes);
+            writeOpts.setBatchingEnabled(this.writeBatching);
+            writeOpts.setBatchMaxPoints(this.writeBatchMaxPoints);
+            writeOpts.setBatchMaxBytes(this.writeBatchMaxBytes);
+            writeOpts.setBatchLingerMs(this.writeBatchLingerMs);
+            writeOpts.setMemoryGovernor(memoryGovernor);
+            writeOpts.setMemoryBlockTimeoutMs(this.memoryBlockTimeoutMs);
             return writeOpts;
         }
 
-        private BulkWriteOptions bulkWriteOptions() {
+        private BulkWriteOptions bulkWriteOptions(MemoryGovernor memoryGovernor) {
             BulkWriteOptions bulkWriteOpts = new BulkWriteOptions();
             bulkWriteOpts.setDatabase(this.database);
             bulkWriteOpts.setAuthInfo(this.authInfo);
             bulkWriteOpts.setAsyncPool(this.asyncPool);
             bulkWriteOpts.setUseZeroCopyWrite(this.useZeroCopyWriteInBulkWrite);
             bulkWriteOpts.setTlsOptions(this.tlsOptions);
+            bulkWriteOpts.setRpcOptions(this.rpcOptions);
+            bulkWriteOpts.setCompressionOptions(this.bulkWriteCompressionOptions);
+            bulkWriteOpts.setMemoryGovernor(memoryGovernor);
+            bulkWriteOpts.setMemoryBlockTimeoutMs(this.memoryBlockTimeoutMs);
             return bulkWriteOpts;
         }
     }
@@ -18,6 +18,7 @@ package io.greptime.options;
 
 import io.greptime.RouterClient;
 import io.greptime.common.Copiable;
+import io.greptime.common.MemoryGovernor;
 import io.greptime.limit.LimitedPolicy;
 import io.greptime.models.AuthInfo;
 import java.util.concurrent.Executor;
@@ -33,9 +34,25 @@ public class WriteOptions implements Copiable<WriteOptions> {
     private int maxRetries = 1;
     // Write flow limit: maximum number of data rows in-flight.
     private int maxInFlightWritePoints = 10 * 65536;
+    // Write flow limit: maximum number of bytes in-flight, 0 means no limit.
+    private int maxInFlightWriteBytes = 0;
     private LimitedPolicy limitedPolicy = LimitedPolicy.defaultWriteLimitedPolicy();
     // Default rate limit for stream writer
     private int defaultStreamMaxWritePointsPerSecond = 10 * 65536;
+    // A write larger than this is split into several (non-atomic) requests sent in parallel, 0 means never split
+    private long maxRequestBytes = 0;
+    // Auto batching of the small writes, disabled by default
+    private boolean batchingEnabled = false;
+    // A batch is sent once it has this many points
+    private int batchMaxPoints = 16384;
+    // A batch is sent once it has this many bytes
+    private long batchMaxBytes = 4 * 1024 * 1024;
+    // A batch is sent this long after its first write at the latest
+    private long batchLingerMs = 5;
+    // The client memory budget shared with the bulk writers, null means no budget
+    private MemoryGovernor memoryGovernor;
+    // The max time a write waits for the memory budget
+    private long memoryBlockTimeoutMs = 3000;
 
     public String getDatabase() {
         return database;
@@ -85,6 +102,14 @@ public class WriteOptions implements Copiable<WriteOptions> {
         this.maxInFlightWritePoints = maxInFlightWritePoints;
     }
 
+    public int getMaxInFlightWriteBytes() {
+        return maxInFlightWriteBytes;
+    }
+
+    public void setMaxInFlightWriteBytes(int maxInFlightWriteBytes) {
+        this.maxInFlightWriteBytes = maxInFlightWriteBytes;
+    }
+
     public LimitedPolicy getLimitedPolicy() {
         return limitedPolicy;
     }
@@ -101,6 +126,62 @@ public class WriteOptions implements Copiable<WriteOptions> {
         this.defaultStreamMaxWritePointsPerSecond = defaultStreamMaxWritePointsPerSecond;
     }
 
+    public long getMaxRequestBytes() {
+        return maxRequestBytes;
+    }
+
+    public void setMaxRequestBytes(long maxRequestBytes) {
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    public boolean isBatchingEnabled() {
+        return batchingEnabled;
+    }
+
+    public void setBatchingEnabled(boolean batchingEnabled) {
+        this.batchingEnabled = batchingEnabled;
+    }
+
+    public int getBatchMaxPoints() {
+        return batchMaxPoints;
+    }
+
+    public void setBatchMaxPoints(int batchMaxPoints) {
+        this.batchMaxPoints = batchMaxPoints;
+    }
+
+    public long getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public void setBatchMaxBytes(long batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    public long getBatchLingerMs() {
+        return batchLingerMs;
+    }
+
+    public void setBatchLingerMs(long batchLingerMs) {
+        this.batchLingerMs = batchLingerMs;
+    }
+
+    public MemoryGovernor getMemoryGovernor() {
+        return memoryGovernor;
+    }
+
+    public void setMemoryGovernor(MemoryGovernor memoryGovernor) {
+        this.memoryGovernor = memoryGovernor;
+    }
+
+    public long getMemoryBlockTimeoutMs() {
+        return memoryBlockTimeoutMs;
+    }
+
+    public void setMemoryBlockTimeoutMs(long memoryBlockTimeoutMs) {
+        this.memoryBlockTimeoutMs = memoryBlockTimeoutMs;
+    }
+
     @Override
     public WriteOptions copy() {
         WriteOptions opts = new WriteOptions();
@@ -110,8 +191,16 @@ public class WriteOptions implements Copiable<WriteOptions> {
         opts.asyncPool = this.asyncPool;
         opts.maxRetries = this.maxRetries;
         opts.maxInFlightWritePoints = this.maxInFlightWritePoints;
+        opts.maxInFlightWriteBytes = this.maxInFlightWriteBytes;
         opts.limitedPolicy = this.limitedPolicy;
         opts.defaultStreamMaxWritePointsPerSecond = this.defaultStreamMaxWritePointsPerSecond;
+        opts.maxRequestBytes = this.maxRequestBytes;
+        opts.batchingEnabled = this.batchingEnabled;
+        opts.batchMaxPoints = this.batchMaxPoints;
+        opts.batchMaxBytes = this.batchMaxBytes;
+        opts.batchLingerMs = this.batchLingerMs;
+        opts.memoryGovernor = this.memoryGovernor;
+        opts.memoryBlockTimeoutMs = this.memoryBlockTimeoutMs;
         return opts;
     }
 
@@ -123,8 +212,16 @@ public class WriteOptions implements Copiable<WriteOptions> {
                 + routerClient + ", asyncPool="
                 + asyncPool + ", maxRetries="
                 + maxRetries + ", maxInFlightWritePoints="
-                + maxInFlightWritePoints + ", limitedPolicy="
+                + maxInFlightWritePoints + ", maxInFlightWriteBytes="
+                + maxInFlightWriteBytes + ", limitedPolicy="
                 + limitedPolicy + ", defaultStreamMaxWritePointsPerSecond="
-                + defaultStreamMaxWritePointsPerSecond + '}';
+                + defaultStreamMaxWritePointsPerSecond + ", maxRequestBytes="
+                + maxRequestBytes + ", batchingEnabled="
+                + batchingEnabled + ", batchMaxPoints="
+                + batchMaxPoints + ", batchMaxBytes="
+                + batchMaxBytes + ", batchLingerMs="
+                + batchLingerMs + ", memoryGovernor="
+                + memoryGovernor + ", memoryBlockTimeoutMs="
+                + memoryBlockTimeoutMs + '}';
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class AdaptiveBatchSizerTest {
+
+    @Test
+    public void latencyObjectiveTest() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(AdaptiveBatchSizer.Options.newBuilder()
+                .latencyObjective(100)
+                .initialRows(10000)
+                .rowsRange(1000, 100000)
+                .maxBatchBytes(0)
+                .build());
+        Assert.assertEquals(10000, sizer.targetRows());
+
+        // fast puts, the batches grow up to the max rows
+        for (int i = 0; i < 20; i++) {
+            sizer.observe(sizer.targetRows(), sizer.targetRows() * 100L, 10, 1);
+        }
+        Assert.assertEquals(100000, sizer.targetRows());
+
+        // slow puts, the batches shrink down to the min rows
+        for (int i = 0; i < 40; i++) {
+            sizer.observe(sizer.targetRows(), sizer.targetRows() * 100L, 1000, 1);
+        }
+        Assert.assertEquals(1000, sizer.targetRows());
+    }
+
+    @Test
+    public void maxBatchBytesTest() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(AdaptiveBatchSizer.Options.newBuilder()
+                .latencyObjective(100)
+                .initialRows(10000)
+                .rowsRange(1000, 100000)
+                .maxBatchBytes(1024 * 1024)
+                .build());
+        // 1KB per row, at most 1024 rows per batch
+        for (int i = 0; i < 10; i++) {
+            sizer.observe(sizer.targetRows(), sizer.targetRows() * 1024L, 10, 1);
+        }
+        Assert.assertEquals(1024, sizer.targetRows());
+    }
+
+    @Test
+    public void throughputObjectiveTest() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(AdaptiveBatchSizer.Options.newBuilder()
+                .throughputObjective()
+                .initialRows(10000)
+                .rowsRange(1000, 100000)
+                .build());
+        // a constant latency per batch, bigger batches give a higher throughput
+        for (int i = 0; i < 200; i++) {
+            sizer.observe(sizer.targetRows(), sizer.targetRows() * 10L, 50, 2);
+        }
+        Assert.assertTrue(sizer.targetRows() > 50000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRowsRangeTest() {
+        new AdaptiveBatchSizer(
+                AdaptiveBatchSizer.Options.newBuilder().rowsRange(100, 10).build());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.models.ArrowHelper;
+import io.greptime.models.DataType;
+import io.greptime.models.Table;
+import io.greptime.models.TableSchema;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ *
+ */
+public class BulkSinkTest {
+
+    private static final TableSchema SCHEMA = TableSchema.newBuilder("bulk_sink_test")
+            .addTag("host", DataType.String)
+            .addTimestamp("ts", DataType.TimestampMillisecond)
+            .addField("cpu", DataType.Float64)
+            .build();
+
+    private BufferAllocator allocator;
+    private List<VectorSchemaRoot> roots;
+    private List<Integer> writtenRows;
+    private List<String> writeThreads;
+    private CountDownLatch written;
+    private BulkStreamWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        this.allocator = new RootAllocator();
+        this.roots = new ArrayList<>();
+        this.writtenRows = new CopyOnWriteArrayList<>();
+        this.writeThreads = new CopyOnWriteArrayList<>();
+        this.written = new CountDownLatch(1);
+        this.writer = Mockito.mock(BulkStreamWriter.class);
+        Table.TableBufferRoot[] current = new Table.TableBufferRoot[1];
+        Mockito.when(this.writer.targetBatchRows()).thenReturn(-1);
+        Mockito.when(this.writer.whenReady()).thenReturn(Util.completedCf(null));
+        Mockito.when(this.writer.completedAsync()).thenReturn(Util.completedCf(null));
+        Mockito.when(this.writer.tableBufferRoot(Mockito.anyInt())).thenAnswer(invocation -> {
+            VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(SCHEMA), this.allocator);
+            this.roots.add(root);
+            current[0] = Table.tableBufferRoot(SCHEMA, root, (Integer) invocation.getArguments()[0]);
+            return current[0];
+        });
+        Mockito.when(this.writer.writeNextAsync()).thenAnswer(invocation -> {
+            int rows = current[0].rowCount();
+            this.writtenRows.add(rows);
+            this.writeThreads.add(Thread.currentThread().getName());
+            this.written.countDown();
+            return Util.completedCf(rows);
+        });
+    }
+
+    @After
+    public void after() throws Exception {
+        AutoCloseables.close(this.roots);
+        this.allocator.close();
+    }
+
+    @Test
+    public void sealOnMaxRowsTest() throws Exception {
+        BulkSink.Options options =
+                BulkSink.Options.newBuilder().maxRows(3).lingerMs(60000).build();
+        try (BulkSink sink = new BulkSink(this.writer, options)) {
+            for (int i = 0; i < 7; i++) {
+                sink.add("host", (long) i, 0.1 * i);
+            }
+            Assert.assertEquals(2, this.writtenRows.size());
+            Assert.assertEquals(3, (int) this.writtenRows.get(0));
+            Assert.assertEquals(3, (int) this.writtenRows.get(1));
+
+            sink.completed();
+            Assert.assertEquals(3, this.writtenRows.size());
+            Assert.assertEquals(1, (int) this.writtenRows.get(2));
+            Mockito.verify(this.writer).completedAsync();
+        }
+    }
+
+    @Test
+    public void sealOnLingerTest() throws Exception {
+        BulkSink.Options options =
+                BulkSink.Options.newBuilder().maxRows(1000).lingerMs(10).build();
+        try (BulkSink sink = new BulkSink(this.writer, options)) {
+            sink.add(row -> row.setString(0, "host").setTimestamp(1, 1L).setDouble(2, 0.5));
+            sink.add("host", 2L, 0.6);
+            Assert.assertTrue(this.written.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, this.writtenRows.size());
+            Assert.assertEquals(2, (int) this.writtenRows.get(0));
+            // Not written on the shared linger thread
+            Assert.assertTrue(this.writeThreads.get(0), this.writeThreads.get(0).contains("bulk_sink_send"));
+        }
+    }
+
+    @Test
+    public void failedBatchFailsSinkTest() throws Exception {
+        Mockito.doReturn(Util.errorCf(new IllegalStateException("test")))
+                .when(this.writer)
+                .writeNextAsync();
+        BulkSink.Options options =
+                BulkSink.Options.newBuilder().maxRows(1).lingerMs(60000).build();
+        try (BulkSink sink = new BulkSink(this.writer, options)) {
+            sink.add("host", 1L, 0.1);
+            try {
+                sink.add("host", 2L, 0.2);
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("test", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void failedRowIsDiscardedTest() throws Exception {
+        try (BulkSink sink = new BulkSink(this.writer)) {
+            try {
+                sink.add(row -> {
+                    row.setString(0, "unfinished").setTimestamp(1, 1L);
+                    throw new IllegalArgumentException("test");
+                });
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals("test", e.getMessage());
+            }
+            sink.add(row -> row.setString(0, "host").setDouble(2, 0.5));
+            Assert.assertEquals(1, (int) sink.flush().get());
+
+            VectorSchemaRoot root = this.roots.get(0);
+            Assert.assertEquals("host", root.getVector(0).getObject(0).toString());
+            Assert.assertTrue(root.getVector(1).isNull(0));
+        }
+    }
+
+    @Test
+    public void flushWithoutRowsTest() throws Exception {
+        try (BulkSink sink = new BulkSink(this.writer)) {
+            CompletableFuture<Integer> future = sink.flush();
+            Assert.assertEquals(0, (int) future.get());
+            Mockito.verify(this.writer, Mockito.never()).writeNextAsync();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.models.ArrowHelper;
+import io.greptime.models.DataType;
+import io.greptime.models.Table;
+import io.greptime.models.TableSchema;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ *
+ */
+public class BulkStreamPoolTest {
+
+    private static final TableSchema SCHEMA_1 = newSchema("bulk_stream_pool_1");
+    private static final TableSchema SCHEMA_2 = newSchema("bulk_stream_pool_2");
+
+    private BufferAllocator allocator;
+    private List<VectorSchemaRoot> roots;
+    private Map<String, BulkStreamWriter> writers;
+
+    private static TableSchema newSchema(String tableName) {
+        return TableSchema.newBuilder(tableName)
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .build();
+    }
+
+    @Before
+    public void before() {
+        this.allocator = new RootAllocator();
+        this.roots = new CopyOnWriteArrayList<>();
+        this.writers = new ConcurrentHashMap<>();
+    }
+
+    @After
+    public void after() throws Exception {
+        AutoCloseables.close(this.roots);
+        this.allocator.close();
+    }
+
+    private BulkStreamWriter open(TableSchema schema) {
+        BulkStreamWriter writer = Mockito.mock(BulkStreamWriter.class);
+        Mockito.when(writer.targetBatchRows()).thenReturn(-1);
+        Mockito.when(writer.whenReady()).thenReturn(Util.completedCf(null));
+        Mockito.when(writer.writeNextAsync()).thenReturn(Util.completedCf(1));
+        Mockito.when(writer.completedAsync()).thenReturn(Util.completedCf(null));
+        Mockito.when(writer.tableBufferRoot(Mockito.anyInt())).thenAnswer(invocation -> {
+            VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), this.allocator);
+            this.roots.add(root);
+            return Table.tableBufferRoot(schema, root, (Integer) invocation.getArguments()[0]);
+        });
+        Assert.assertNull(this.writers.put(schema.getTableName(), writer));
+        return writer;
+    }
+
+    @Test
+    public void reuseStreamOfSameTableTest() throws Exception {
+        BulkStreamPool.Options options = BulkStreamPool.Options.newBuilder().build();
+        try (BulkStreamPool pool = new BulkStreamPool(this::open, options, null)) {
+            pool.add(SCHEMA_1, "host", 1L);
+            pool.add(newSchema("bulk_stream_pool_1"), "host", 2L);
+            pool.add(SCHEMA_2, "host", 3L);
+            Assert.assertEquals(2, pool.openStreams());
+            Assert.assertEquals(2, this.writers.size());
+        }
+        // Closing the pool completes the streams
+        for (BulkStreamWriter writer : this.writers.values()) {
+            Mockito.verify(writer).writeNextAsync();
+            Mockito.verify(writer).completedAsync();
+            Mockito.verify(writer).close();
+        }
+    }
+
+    @Test
+    public void separateStreamOfDictionaryEncodingTest() throws Exception {
+        TableSchema encoded = TableSchema.newBuilder("bulk_stream_pool_1")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .dictionaryEncoded("host", 16)
+                .build();
+        List<TableSchema> opened = new CopyOnWriteArrayList<>();
+        BulkStreamPool.Options options = BulkStreamPool.Options.newBuilder().build();
+        try (BulkStreamPool pool = new BulkStreamPool(
+                schema -> {
+                    opened.add(schema);
+                    return open(newSchema("bulk_stream_pool_" + opened.size()));
+                },
+                options,
+                null)) {
+            pool.add(SCHEMA_1, "host", 1L);
+            // Same columns, but the tag is sent with another Arrow type
+            pool.add(encoded, "host", 2L);
+            Assert.assertEquals(2, pool.openStreams());
+            Assert.assertSame(SCHEMA_1, opened.get(0));
+            Assert.assertSame(encoded, opened.get(1));
+        }
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedTest() throws Exception {
+        BulkStreamPool.Options options =
+                BulkStreamPool.Options.newBuilder().maxOpenStreams(1).build();
+        try (BulkStreamPool pool = new BulkStreamPool(this::open, options, null)) {
+            pool.add(SCHEMA_1, "host", 1L);
+            pool.add(SCHEMA_2, "host", 2L);
+            Assert.assertEquals(1, pool.openStreams());
+
+            // The evicted stream writes its rows and completes before it is closed
+            BulkStreamWriter writer = this.writers.get(SCHEMA_1.getTableName());
+            Mockito.verify(writer, Mockito.timeout(5000)).close();
+            Mockito.verify(writer).writeNextAsync();
+            Mockito.verify(writer).completedAsync();
+        }
+    }
+
+    @Test
+    public void evictIdleTest() throws Exception {
+        BulkStreamPool.Options options =
+                BulkStreamPool.Options.newBuilder().idleTimeoutMs(20).build();
+        try (BulkStreamPool pool = new BulkStreamPool(this::open, options, null)) {
+            pool.add(SCHEMA_1, "host", 1L);
+
+            BulkStreamWriter writer = this.writers.get(SCHEMA_1.getTableName());
+            Mockito.verify(writer, Mockito.timeout(5000)).close();
+            Mockito.verify(writer).completedAsync();
+            Assert.assertEquals(0, pool.openStreams());
+        }
+    }
+
+    @Test
+    public void slowCloseDoesNotBlockEvictionTest() throws Exception {
+        CountDownLatch closing = new CountDownLatch(1);
+        BulkStreamPool.Options options =
+                BulkStreamPool.Options.newBuilder().idleTimeoutMs(20).build();
+        try (BulkStreamPool pool = new BulkStreamPool(
+                schema -> {
+                    BulkStreamWriter writer = open(schema);
+                    if (schema == SCHEMA_1) {
+                        try {
+                            Mockito.doAnswer(invocation -> {
+                                        closing.await();
+                                        return null;
+                                    })
+                                    .when(writer)
+                                    .close();
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    return writer;
+                },
+                options,
+                null)) {
+            try {
+                pool.add(SCHEMA_1, "host", 1L);
+                BulkStreamWriter writer1 = this.writers.get(SCHEMA_1.getTableName());
+                Mockito.verify(writer1, Mockito.timeout(5000)).close();
+
+                // The first stream is still closing, the idle sweep goes on
+                pool.add(SCHEMA_2, "host", 2L);
+                BulkStreamWriter writer2 = this.writers.get(SCHEMA_2.getTableName());
+                Mockito.verify(writer2, Mockito.timeout(5000)).completedAsync();
+                Assert.assertEquals(1, closing.getCount());
+            } finally {
+                closing.countDown();
+            }
+        }
+    }
+}
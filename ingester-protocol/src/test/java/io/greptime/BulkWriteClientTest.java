@@ -0,0 +1,368 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.common.util.ExecutorServiceHelper;
+import io.greptime.common.util.NamedThreadFactory;
+import io.greptime.models.ArrowHelper;
+import io.greptime.models.DataType;
+import io.greptime.models.TableSchema;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ *
+ */
+public class BulkWriteClientTest {
+
+    @Test
+    public void parallelWriterDispatchesToLeastInFlightTest() throws Exception {
+        BulkStreamWriter w0 = Mockito.mock(BulkStreamWriter.class);
+        BulkStreamWriter w1 = Mockito.mock(BulkStreamWriter.class);
+        CompletableFuture<Integer> f0 = new CompletableFuture<>();
+        CompletableFuture<Integer> f1 = new CompletableFuture<>();
+        Mockito.when(w0.writeNext()).thenReturn(f0);
+        Mockito.when(w1.writeNext()).thenReturn(f1);
+
+        BulkWriteClient.ParallelBulkStreamWriter writer =
+                new BulkWriteClient.ParallelBulkStreamWriter(Arrays.asList(w0, w1));
+
+        // round-robin while nothing is in flight
+        writer.tableBufferRoot(16);
+        Assert.assertSame(f0, writer.writeNext());
+        writer.tableBufferRoot(16);
+        Assert.assertSame(f1, writer.writeNext());
+
+        // the first stream has completed its request, the second has not
+        f0.complete(1);
+        writer.tableBufferRoot(16);
+        writer.writeNext();
+        Mockito.verify(w0, Mockito.times(2)).tableBufferRoot(16);
+        Mockito.verify(w1, Mockito.times(1)).tableBufferRoot(16);
+    }
+
+    @Test
+    public void parallelWriterWriteNextWithoutTableTest() throws Exception {
+        BulkStreamWriter w0 = Mockito.mock(BulkStreamWriter.class);
+        BulkWriteClient.ParallelBulkStreamWriter writer =
+                new BulkWriteClient.ParallelBulkStreamWriter(Arrays.asList(w0));
+
+        Assert.assertTrue(writer.writeNext().isCompletedExceptionally());
+        Mockito.verify(w0, Mockito.never()).writeNext();
+    }
+
+    @Test
+    public void parallelWriterCompletesAllStreamsTest() throws Exception {
+        BulkStreamWriter w0 = Mockito.mock(BulkStreamWriter.class);
+        BulkStreamWriter w1 = Mockito.mock(BulkStreamWriter.class);
+        Mockito.doThrow(new IllegalStateException("stream 0")).when(w0).completed();
+
+        BulkWriteClient.ParallelBulkStreamWriter writer =
+                new BulkWriteClient.ParallelBulkStreamWriter(Arrays.asList(w0, w1));
+
+        try {
+            writer.completed();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("stream 0", e.getMessage());
+        }
+        Mockito.verify(w1).completed();
+    }
+
+    @Test
+    public void parallelWriterCompletesAllStreamsAsyncTest() throws Exception {
+        BulkStreamWriter w0 = Mockito.mock(BulkStreamWriter.class);
+        BulkStreamWriter w1 = Mockito.mock(BulkStreamWriter.class);
+        CompletableFuture<Void> f0 = new CompletableFuture<>();
+        CompletableFuture<Void> f1 = new CompletableFuture<>();
+        Mockito.when(w0.completedAsync()).thenReturn(f0);
+        Mockito.when(w1.completedAsync()).thenReturn(f1);
+
+        BulkWriteClient.ParallelBulkStreamWriter writer =
+                new BulkWriteClient.ParallelBulkStreamWriter(Arrays.asList(w0, w1));
+
+        CompletableFuture<Void> future = writer.completedAsync();
+        f1.completeExceptionally(new IllegalStateException("stream 1"));
+        Assert.assertFalse(future.isDone());
+        f0.complete(null);
+        try {
+            future.join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertEquals("stream 1", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void parallelWriterWhenReadySelectsStreamTest() throws Exception {
+        BulkStreamWriter w0 = Mockito.mock(BulkStreamWriter.class);
+        BulkStreamWriter w1 = Mockito.mock(BulkStreamWriter.class);
+        CompletableFuture<Void> ready1 = new CompletableFuture<>();
+        Mockito.when(w0.writeNextAsync()).thenReturn(new CompletableFuture<>());
+        Mockito.when(w1.whenReady()).thenReturn(ready1);
+
+        BulkWriteClient.ParallelBulkStreamWriter writer =
+                new BulkWriteClient.ParallelBulkStreamWriter(Arrays.asList(w0, w1));
+
+        writer.tableBufferRoot(16);
+        writer.writeNextAsync();
+
+        // the first stream has a request in flight, the next table goes to the second one
+        Assert.assertSame(ready1, writer.whenReady());
+        writer.tableBufferRoot(16);
+        Mockito.verify(w1).tableBufferRoot(16);
+    }
+
+    @Test
+    public void writeNextAsyncPutsOnSendExecutorTest() throws Exception {
+        TableSchema schema = TableSchema.newBuilder("async_send")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .build();
+        ExecutorService sendExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("test_send", true));
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot streamRoot = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator)) {
+            CompletableFuture<Void> streamReady = new CompletableFuture<>();
+            AtomicReference<String> takeThread = new AtomicReference<>();
+            AtomicReference<String> putThread = new AtomicReference<>();
+            BulkWriteService service = Mockito.mock(BulkWriteService.class);
+            Mockito.when(service.nextRoot()).thenReturn(streamRoot);
+            Mockito.when(service.getDictionaryEncoders()).thenReturn(new ArrowDictionaryEncoder[2]);
+            Mockito.when(service.whenStreamReady()).thenReturn(streamReady);
+            Mockito.when(service.takeDictionaryBatches()).thenAnswer(invocation -> {
+                takeThread.set(Thread.currentThread().getName());
+                return Collections.emptyList();
+            });
+            Mockito.when(service.putNext(Mockito.eq(streamRoot), Mockito.anyListOf(ArrowDictionaryEncoder.Batch.class)))
+                    .thenAnswer(invocation -> {
+                        putThread.set(Thread.currentThread().getName());
+                        return new BulkWriteService.PutStage(Util.completedCf(1), 1);
+                    });
+
+            BulkWriteClient.DefaultBulkStreamWriter writer =
+                    new BulkWriteClient.DefaultBulkStreamWriter(service, schema, 4, null, null, 0, sendExecutor);
+            writer.tableBufferRoot(16).addRow("host0", 1000L);
+            CompletableFuture<Integer> future = writer.writeNextAsync();
+            Assert.assertFalse(future.isDone());
+            // The dictionary batches are taken before the producer encodes the next root
+            Assert.assertEquals(Thread.currentThread().getName(), takeThread.get());
+
+            // The stream becomes ready on this thread, the put is still handed off
+            streamReady.complete(null);
+            Assert.assertEquals(1, (int) future.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(putThread.get(), putThread.get().contains("test_send"));
+        } finally {
+            ExecutorServiceHelper.shutdownAndAwaitTermination(sendExecutor);
+        }
+    }
+
+    @Test
+    public void writeNextRootMovesVectorsTest() throws Exception {
+        TableSchema schema = TableSchema.newBuilder("move_root")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("cpu", DataType.Float64)
+                .build();
+        Schema arrowSchema = ArrowHelper.createSchema(schema);
+        try (BufferAllocator streamAllocator =
+                        BulkWriteManager.getRootAllocator().newChildAllocator("stream", 0, Long.MAX_VALUE);
+                BufferAllocator callerAllocator =
+                        BulkWriteManager.getRootAllocator().newChildAllocator("caller", 0, Long.MAX_VALUE);
+                VectorSchemaRoot streamRoot = VectorSchemaRoot.create(arrowSchema, streamAllocator);
+                VectorSchemaRoot source = VectorSchemaRoot.create(arrowSchema, callerAllocator)) {
+            VarCharVector host = (VarCharVector) source.getVector(0);
+            TimeStampMilliVector ts = (TimeStampMilliVector) source.getVector(1);
+            Float8Vector cpu = (Float8Vector) source.getVector(2);
+            for (int i = 0; i < 3; i++) {
+                host.setSafe(i, ("host" + i).getBytes(StandardCharsets.UTF_8));
+                ts.setSafe(i, 1000L + i);
+                cpu.setSafe(i, 0.5 * i);
+            }
+            source.setRowCount(3);
+
+            BulkWriteService service = Mockito.mock(BulkWriteService.class);
+            Mockito.when(service.nextRoot()).thenReturn(streamRoot);
+            Mockito.when(service.getDictionaryEncoders()).thenReturn(new ArrowDictionaryEncoder[3]);
+            Mockito.when(service.putNext(streamRoot)).thenAnswer(invocation -> {
+                // The values were moved, not copied
+                Assert.assertEquals(3, streamRoot.getRowCount());
+                Assert.assertEquals("host2", streamRoot.getVector(0).getObject(2).toString());
+                Assert.assertEquals(1.0, ((Float8Vector) streamRoot.getVector(2)).get(2), 0.0);
+                Assert.assertEquals(0, callerAllocator.getAllocatedMemory());
+                return new BulkWriteService.PutStage(Util.completedCf(3), 1);
+            });
+
+            BulkWriteClient.DefaultBulkStreamWriter writer =
+                    new BulkWriteClient.DefaultBulkStreamWriter(service, schema, 4);
+            Assert.assertEquals(3, (int) writer.writeNext(source).get());
+            Assert.assertEquals(0, source.getRowCount());
+            Mockito.verify(service).putNext(streamRoot);
+            streamRoot.clear();
+        }
+    }
+
+    @Test
+    public void writeNextRootCopiesFromOtherAllocatorTest() throws Exception {
+        TableSchema plain = TableSchema.newBuilder("copy_root")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("cpu", DataType.Float64)
+                .build();
+        TableSchema schema = TableSchema.newBuilder("copy_root")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("cpu", DataType.Float64)
+                .dictionaryEncoded("host", 16)
+                .build();
+        try (BufferAllocator streamAllocator =
+                        BulkWriteManager.getRootAllocator().newChildAllocator("stream", 0, Long.MAX_VALUE);
+                BufferAllocator callerAllocator = new RootAllocator();
+                VectorSchemaRoot streamRoot =
+                        VectorSchemaRoot.create(ArrowHelper.createSchema(schema), streamAllocator);
+                ArrowDictionaryEncoder encoder =
+                        new ArrowDictionaryEncoder(streamRoot.getSchema().getFields().get(0), streamAllocator);
+                VectorSchemaRoot source = VectorSchemaRoot.create(ArrowHelper.createSchema(plain), callerAllocator)) {
+            VarCharVector host = (VarCharVector) source.getVector(0);
+            TimeStampMilliVector ts = (TimeStampMilliVector) source.getVector(1);
+            Float8Vector cpu = (Float8Vector) source.getVector(2);
+            String[] hosts = {"host0", "host1", null, "host0"};
+            for (int i = 0; i < hosts.length; i++) {
+                if (hosts[i] != null) {
+                    host.setSafe(i, hosts[i].getBytes(StandardCharsets.UTF_8));
+                }
+                ts.setSafe(i, 1000L + i);
+                if (i != 1) {
+                    cpu.setSafe(i, 0.5 * i);
+                }
+            }
+            source.setRowCount(hosts.length);
+
+            BulkWriteService service = Mockito.mock(BulkWriteService.class);
+            Mockito.when(service.nextRoot()).thenReturn(streamRoot);
+            Mockito.when(service.getDictionaryEncoders())
+                    .thenReturn(new ArrowDictionaryEncoder[] {encoder, null, null});
+            Mockito.when(service.putNext(streamRoot)).thenAnswer(invocation -> {
+                // The values were copied into the allocator of the stream
+                Assert.assertEquals(4, streamRoot.getRowCount());
+                IntVector codes = (IntVector) streamRoot.getVector(0);
+                Assert.assertEquals(0, codes.get(0));
+                Assert.assertEquals(1, codes.get(1));
+                Assert.assertTrue(codes.isNull(2));
+                Assert.assertEquals(0, codes.get(3));
+                Assert.assertEquals(2, encoder.size());
+                Assert.assertEquals(1003L, ((TimeStampMilliVector) streamRoot.getVector(1)).get(3));
+                Float8Vector copied = (Float8Vector) streamRoot.getVector(2);
+                Assert.assertTrue(copied.isNull(1));
+                Assert.assertEquals(1.5, copied.get(3), 0.0);
+                Assert.assertEquals(0, callerAllocator.getAllocatedMemory());
+                return new BulkWriteService.PutStage(Util.completedCf(4), 1);
+            });
+
+            BulkWriteClient.DefaultBulkStreamWriter writer =
+                    new BulkWriteClient.DefaultBulkStreamWriter(service, schema, 4);
+            Assert.assertEquals(4, (int) writer.writeNext(source).get());
+            Mockito.verify(service).putNext(streamRoot);
+            streamRoot.clear();
+
+            // The values encoded from bytes and from strings share the indexes, over a few resizes
+            for (int i = 0; i < 200; i++) {
+                host.setSafe(i, ("value" + i).getBytes(StandardCharsets.UTF_8));
+            }
+            host.setValueCount(200);
+            for (int i = 0; i < 200; i++) {
+                Assert.assertEquals(i + 2, encoder.encode("value" + i));
+                Assert.assertEquals(
+                        i + 2, encoder.encode(host.getDataBuffer(), host.getStartOffset(i), host.getValueLength(i)));
+            }
+            Assert.assertEquals(1, encoder.encode("host1"));
+            host.clear();
+        }
+    }
+
+    @Test
+    public void writeNextRootReleasesUnsentRootTest() throws Exception {
+        TableSchema schema = TableSchema.newBuilder("move_root")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .build();
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot streamRoot = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator);
+                VectorSchemaRoot source = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator)) {
+            BulkWriteService service = Mockito.mock(BulkWriteService.class);
+            Mockito.when(service.nextRoot()).thenReturn(streamRoot);
+            Mockito.when(service.getDictionaryEncoders()).thenReturn(new ArrowDictionaryEncoder[2]);
+            Mockito.when(service.whenStreamReady()).thenReturn(new CompletableFuture<>());
+
+            BulkWriteClient.DefaultBulkStreamWriter writer =
+                    new BulkWriteClient.DefaultBulkStreamWriter(service, schema, 4);
+            writer.tableBufferRoot(16).addRow("host0", 1000L);
+            writer.writeNextAsync();
+            try {
+                // The root is still queued
+                writer.writeNext(source);
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertTrue(e.getMessage().contains("still queued"));
+            }
+            Mockito.verify(service).releaseRoot(streamRoot);
+            Mockito.verify(service, Mockito.never()).putNext(streamRoot);
+            Mockito.verify(service, Mockito.never())
+                    .putNext(Mockito.eq(streamRoot), Mockito.anyListOf(ArrowDictionaryEncoder.Batch.class));
+        }
+    }
+
+    @Test
+    public void writeNextRootRejectsSchemaMismatchTest() throws Exception {
+        TableSchema schema = TableSchema.newBuilder("move_root")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .build();
+        TableSchema other = TableSchema.newBuilder("move_root")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampSecond)
+                .build();
+        BulkWriteService service = Mockito.mock(BulkWriteService.class);
+        BulkWriteClient.DefaultBulkStreamWriter writer =
+                new BulkWriteClient.DefaultBulkStreamWriter(service, schema, 4);
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot source = VectorSchemaRoot.create(ArrowHelper.createSchema(other), allocator)) {
+            writer.writeNext(source);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("Schema mismatch"));
+        }
+        Mockito.verify(service, Mockito.never()).nextRoot();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime;
+
+import io.greptime.errors.ServerException;
+import io.greptime.models.DataType;
+import io.greptime.models.Err;
+import io.greptime.models.Result;
+import io.greptime.models.Table;
+import io.greptime.models.TableSchema;
+import io.greptime.models.WriteOk;
+import io.greptime.rpc.Compression;
+import io.greptime.rpc.Context;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class WriteBatcherTest {
+
+    private static final TableSchema SCHEMA_1 = TableSchema.newBuilder("table_1")
+            .addTag("host", DataType.String)
+            .addTimestamp("ts", DataType.TimestampMillisecond)
+            .build();
+    private static final TableSchema SCHEMA_2 = TableSchema.newBuilder("table_2")
+            .addTag("host", DataType.String)
+            .addTimestamp("ts", DataType.TimestampMillisecond)
+            .build();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService flushExecutor;
+    private List<List<Table>> flushed;
+    private List<Context> flushedCtx;
+    private List<String> flushThreads;
+    private Result<WriteOk, Err> flushResult;
+
+    @Before
+    public void before() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "test_linger"));
+        this.flushExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test_flush"));
+        this.flushed = new CopyOnWriteArrayList<>();
+        this.flushedCtx = new CopyOnWriteArrayList<>();
+        this.flushThreads = new CopyOnWriteArrayList<>();
+        this.flushResult = null;
+    }
+
+    @After
+    public void after() {
+        this.scheduler.shutdownNow();
+        this.flushExecutor.shutdownNow();
+    }
+
+    private WriteBatcher newBatcher(int maxPoints, long lingerMs) {
+        return new WriteBatcher(maxPoints, Long.MAX_VALUE, lingerMs, this.scheduler, this.flushExecutor, this::flush);
+    }
+
+    private CompletableFuture<Result<WriteOk, Err>> flush(Collection<Table> tables, WriteOp writeOp, Context ctx) {
+        this.flushed.add(new ArrayList<>(tables));
+        this.flushedCtx.add(ctx);
+        this.flushThreads.add(Thread.currentThread().getName());
+        int rows = tables.stream().mapToInt(Table::rowCount).sum();
+        Result<WriteOk, Err> result = this.flushResult;
+        return Util.completedCf(result != null ? result : WriteOk.ok(rows, 0).mapToResult());
+    }
+
+    // 2 rows * 2 columns = 4 points
+    private static Collection<Table> newTables(TableSchema schema) {
+        Table table = Table.from(schema);
+        table.addRow("host1", 1L).addRow("host2", 2L).complete();
+        return Collections.singletonList(table);
+    }
+
+    @Test
+    public void testFlushOnMaxPoints() throws Exception {
+        WriteBatcher batcher = newBatcher(10, 60_000);
+
+        CompletableFuture<Result<WriteOk, Err>> f1 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        CompletableFuture<Result<WriteOk, Err>> f2 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        Assert.assertTrue(this.flushed.isEmpty());
+        Assert.assertFalse(f1.isDone());
+
+        // No room for another 4 points, the first batch is sent
+        CompletableFuture<Result<WriteOk, Err>> f3 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        Assert.assertEquals(1, this.flushed.size());
+        Assert.assertEquals(2, this.flushed.get(0).size());
+        Assert.assertEquals(2, f1.get().getOk().getSuccess());
+        Assert.assertEquals(2, f2.get().getOk().getSuccess());
+        Assert.assertFalse(f3.isDone());
+
+        batcher.shutdown();
+        Assert.assertEquals(2, this.flushed.size());
+        Assert.assertTrue(f3.get().isOk());
+    }
+
+    @Test
+    public void testFlushOnLinger() throws Exception {
+        WriteBatcher batcher = newBatcher(10_000, 10);
+
+        CompletableFuture<Result<WriteOk, Err>> f1 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        CompletableFuture<Result<WriteOk, Err>> f2 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Delete, Context.newDefault());
+
+        Assert.assertTrue(f1.get(5, TimeUnit.SECONDS).isOk());
+        Assert.assertTrue(f2.get(5, TimeUnit.SECONDS).isOk());
+        // One batch per write operation
+        Assert.assertEquals(2, this.flushed.size());
+        // The linger timer hands the send off
+        Assert.assertEquals(Arrays.asList("test_flush", "test_flush"), this.flushThreads);
+    }
+
+    @Test
+    public void testBatchByContext() throws Exception {
+        WriteBatcher batcher = newBatcher(10_000, 60_000);
+
+        CompletableFuture<Result<WriteOk, Err>> f1 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        CompletableFuture<Result<WriteOk, Err>> f2 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault().withHint("ttl", "7d"));
+        CompletableFuture<Result<WriteOk, Err>> f3 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault().withHint("ttl", "7d"));
+        CompletableFuture<Result<WriteOk, Err>> f4 = batcher.add(
+                newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault().withCompression(Compression.Gzip));
+        batcher.shutdown();
+
+        Assert.assertTrue(f1.get().isOk());
+        Assert.assertTrue(f2.get().isOk());
+        Assert.assertTrue(f3.get().isOk());
+        Assert.assertTrue(f4.get().isOk());
+        // Equal contexts share a batch, the others are sent with their own context
+        Assert.assertEquals(3, this.flushed.size());
+        Assert.assertEquals(1, this.flushed.get(0).size());
+        Assert.assertEquals(2, this.flushed.get(1).size());
+        Assert.assertEquals(1, this.flushed.get(2).size());
+        Assert.assertEquals("ttl=7d", this.flushedCtx.get(1).getHints());
+        Assert.assertEquals(Compression.Gzip, this.flushedCtx.get(2).getCompression());
+    }
+
+    @Test
+    public void testGroupTablesByName() throws Exception {
+        WriteBatcher batcher = newBatcher(10_000, 60_000);
+
+        batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        batcher.add(newTables(SCHEMA_2), WriteOp.Insert, Context.newDefault());
+        CompletableFuture<Result<WriteOk, Err>> f3 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        batcher.shutdown();
+
+        Assert.assertTrue(f3.get().isOk());
+        Assert.assertEquals(1, this.flushed.size());
+        List<Table> tables = this.flushed.get(0);
+        Assert.assertEquals(
+                Arrays.asList("table_1", "table_1", "table_2"),
+                Arrays.asList(
+                        tables.get(0).tableName(),
+                        tables.get(1).tableName(),
+                        tables.get(2).tableName()));
+    }
+
+    @Test
+    public void testBatchError() throws Exception {
+        this.flushResult = Err.writeErr(500, new ServerException("test"), null).mapToResult();
+        WriteBatcher batcher = newBatcher(10_000, 60_000);
+
+        CompletableFuture<Result<WriteOk, Err>> f1 =
+                batcher.add(newTables(SCHEMA_1), WriteOp.Insert, Context.newDefault());
+        CompletableFuture<Result<WriteOk, Err>> f2 =
+                batcher.add(newTables(SCHEMA_2), WriteOp.Insert, Context.newDefault());
+        batcher.shutdown();
+
+        Assert.assertFalse(f1.get().isOk());
+        Assert.assertEquals(500, f2.get().getErr().getCode());
+    }
+}
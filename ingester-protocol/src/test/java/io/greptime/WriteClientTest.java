@@ -17,6 +17,7 @@
 package io.greptime;
 
 import io.greptime.common.Endpoint;
+import io.greptime.common.MemoryGovernor;
 import io.greptime.models.DataType;
 import io.greptime.models.Err;
 import io.greptime.models.Result;
@@ -27,10 +28,14 @@ import io.greptime.options.WriteOptions;
 import io.greptime.v1.Common;
 import io.greptime.v1.Database;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -127,4 +132,165 @@ public class WriteClientTest {
         Assert.assertTrue(res.isOk());
         Assert.assertEquals(3, res.getOk().getSuccess());
     }
+
+    @Test
+    public void testWriteBatching() throws ExecutionException, InterruptedException {
+        WriteOptions writeOpts = new WriteOptions();
+        writeOpts.setAsyncPool(ForkJoinPool.commonPool());
+        writeOpts.setRouterClient(this.routerClient);
+        writeOpts.setBatchingEnabled(true);
+        writeOpts.setBatchLingerMs(60_000);
+        WriteClient batchingClient = new WriteClient();
+        batchingClient.init(writeOpts);
+
+        TableSchema schema = TableSchema.newBuilder("test_table")
+                .addTag("test_tag", DataType.String)
+                .addTimestamp("test_ts", DataType.TimestampMillisecond)
+                .build();
+        Table t1 = Table.from(schema).addRow("tag1", 1L);
+        Table t2 = Table.from(schema).addRow("tag2", 2L).addRow("tag3", 3L);
+
+        Endpoint addr = Endpoint.parse("127.0.0.1:8081");
+        Database.GreptimeResponse response = Database.GreptimeResponse.newBuilder()
+                .setAffectedRows(Common.AffectedRows.newBuilder().setValue(3))
+                .build();
+        Mockito.when(this.routerClient.route()).thenReturn(Util.completedCf(addr));
+        Mockito.when(this.routerClient.invoke(Mockito.eq(addr), Mockito.any(), Mockito.any()))
+                .thenReturn(Util.completedCf(response));
+
+        CompletableFuture<Result<WriteOk, Err>> f1 = batchingClient.write(t1);
+        CompletableFuture<Result<WriteOk, Err>> f2 = batchingClient.write(t2);
+        // Flushes the pending batch
+        batchingClient.shutdownGracefully();
+
+        Assert.assertEquals(1, f1.get().getOk().getSuccess());
+        Assert.assertEquals(2, f2.get().getOk().getSuccess());
+        Mockito.verify(this.routerClient, Mockito.times(1)).invoke(Mockito.eq(addr), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testSplitBySize() {
+        TableSchema schema = TableSchema.newBuilder("test_table")
+                .addTag("test_tag", DataType.String)
+                .addTimestamp("test_ts", DataType.TimestampMillisecond)
+                .build();
+        Table small1 = Table.from(schema).addRow("tag1", 1L);
+        Table small2 = Table.from(schema).addRow("tag2", 2L);
+        Table large = Table.from(schema);
+        for (int i = 0; i < 100; i++) {
+            large.addRow("tag" + i, (long) i);
+        }
+        long maxBytes = small1.bytesUsed() + small2.bytesUsed();
+
+        List<List<Table>> splits = WriteClient.splitBySize(Arrays.asList(small1, small2), maxBytes);
+        Assert.assertEquals(1, splits.size());
+
+        splits = WriteClient.splitBySize(Arrays.asList(small1, large, small2), large.bytesUsed() / 4);
+        int rows = 0;
+        for (List<Table> split : splits) {
+            long bytes = 0;
+            for (Table t : split) {
+                bytes += t.bytesUsed();
+                rows += t.rowCount();
+            }
+            Assert.assertTrue(bytes <= large.bytesUsed() / 4 + small1.bytesUsed());
+        }
+        Assert.assertEquals(102, rows);
+        Assert.assertTrue(splits.size() >= 4);
+        Assert.assertSame(small1, splits.get(0).get(0));
+    }
+
+    @Test
+    public void testWriteSplits() throws ExecutionException, InterruptedException {
+        WriteOptions writeOpts = new WriteOptions();
+        writeOpts.setAsyncPool(ForkJoinPool.commonPool());
+        writeOpts.setRouterClient(this.routerClient);
+        writeOpts.setMaxRequestBytes(1);
+        WriteClient splittingClient = new WriteClient();
+        splittingClient.init(writeOpts);
+
+        TableSchema schema = TableSchema.newBuilder("test_table")
+                .addTag("test_tag", DataType.String)
+                .addTimestamp("test_ts", DataType.TimestampMillisecond)
+                .build();
+        Table table = Table.from(schema).addRow("tag1", 1L).addRow("tag2", 2L).addRow("tag3", 3L);
+
+        Endpoint addr = Endpoint.parse("127.0.0.1:8081");
+        Database.GreptimeResponse response = Database.GreptimeResponse.newBuilder()
+                .setAffectedRows(Common.AffectedRows.newBuilder().setValue(1))
+                .build();
+        Mockito.when(this.routerClient.route()).thenReturn(Util.completedCf(addr));
+        Mockito.when(this.routerClient.invoke(Mockito.eq(addr), Mockito.any(), Mockito.any()))
+                .thenReturn(Util.completedCf(response));
+
+        Result<WriteOk, Err> res = splittingClient.write(table).get();
+
+        // One request per row
+        Assert.assertTrue(res.isOk());
+        Assert.assertEquals(3, res.getOk().getSuccess());
+        Mockito.verify(this.routerClient, Mockito.times(3)).invoke(Mockito.eq(addr), Mockito.any(), Mockito.any());
+        splittingClient.shutdownGracefully();
+    }
+
+    @Test
+    public void testWriteWaitsForMemoryWithoutBlocking() throws Exception {
+        MemoryGovernor memoryGovernor = new MemoryGovernor(1);
+        WriteOptions writeOpts = new WriteOptions();
+        writeOpts.setAsyncPool(ForkJoinPool.commonPool());
+        writeOpts.setRouterClient(this.routerClient);
+        writeOpts.setMemoryGovernor(memoryGovernor);
+        writeOpts.setMemoryBlockTimeoutMs(60_000);
+        WriteClient governedClient = new WriteClient();
+        governedClient.init(writeOpts);
+
+        TableSchema schema = TableSchema.newBuilder("test_table")
+                .addTag("test_tag", DataType.String)
+                .addTimestamp("test_ts", DataType.TimestampMillisecond)
+                .build();
+        Table table = Table.from(schema).addRow("tag1", 1L);
+
+        Endpoint addr = Endpoint.parse("127.0.0.1:8081");
+        Database.GreptimeResponse response = Database.GreptimeResponse.newBuilder()
+                .setAffectedRows(Common.AffectedRows.newBuilder().setValue(1))
+                .build();
+        Mockito.when(this.routerClient.route()).thenReturn(Util.completedCf(addr));
+        Mockito.when(this.routerClient.invoke(Mockito.eq(addr), Mockito.any(), Mockito.any()))
+                .thenReturn(Util.completedCf(response));
+
+        // The budget is used up by another writer, the write returns at once
+        memoryGovernor.forceReserve(1);
+        CompletableFuture<Result<WriteOk, Err>> future = governedClient.write(table);
+        Assert.assertFalse(future.isDone());
+
+        memoryGovernor.release(1);
+        Assert.assertEquals(1, future.get(5, TimeUnit.SECONDS).getOk().getSuccess());
+        Assert.assertEquals(0, memoryGovernor.used());
+        governedClient.shutdownGracefully();
+    }
+
+    @Test
+    public void testWriteLimitedByMemoryTimeout() throws Exception {
+        MemoryGovernor memoryGovernor = new MemoryGovernor(1);
+        WriteOptions writeOpts = new WriteOptions();
+        writeOpts.setAsyncPool(ForkJoinPool.commonPool());
+        writeOpts.setRouterClient(this.routerClient);
+        writeOpts.setMemoryGovernor(memoryGovernor);
+        writeOpts.setMemoryBlockTimeoutMs(10);
+        WriteClient governedClient = new WriteClient();
+        governedClient.init(writeOpts);
+
+        TableSchema schema = TableSchema.newBuilder("test_table")
+                .addTag("test_tag", DataType.String)
+                .addTimestamp("test_ts", DataType.TimestampMillisecond)
+                .build();
+        memoryGovernor.forceReserve(1);
+        Result<WriteOk, Err> res = governedClient
+                .write(Table.from(schema).addRow("tag1", 1L))
+                .get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(res.isOk());
+        Assert.assertEquals(Result.FLOW_CONTROL, res.getErr().getCode());
+        Mockito.verify(this.routerClient, Mockito.never()).invoke(Mockito.any(), Mockito.any(), Mockito.any());
+        governedClient.shutdownGracefully();
+    }
 }
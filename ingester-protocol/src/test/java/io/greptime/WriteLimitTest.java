@@ -61,6 +61,36 @@ public class WriteLimitTest {
         Assert.assertEquals(Result.FLOW_CONTROL, ret.getErr().getCode());
     }
 
+    @Test
+    public void discardWriteBytesLimitTest() throws ExecutionException, InterruptedException {
+        Collection<Table> rows = TestUtil.testTable("test1", 1);
+        int bytes = (int) rows.iterator().next().bytesUsed();
+        WriteLimiter limiter = new WriteClient.DefaultWriteBytesLimiter(bytes, new LimitedPolicy.DiscardPolicy());
+
+        Assert.assertEquals(bytes, limiter.calculatePermits(rows));
+
+        // consume the permits
+        limiter.acquireAndDo(rows, CompletableFuture::new);
+
+        Result<WriteOk, Err> ret = limiter.acquireAndDo(rows, this::emptyOk).get();
+
+        Assert.assertFalse(ret.isOk());
+        Assert.assertEquals(Result.FLOW_CONTROL, ret.getErr().getCode());
+        Assert.assertTrue(ret.getErr().getError().getMessage().contains("acquireBytes=" + bytes));
+    }
+
+    @Test
+    public void releaseWriteBytesLimitTest() throws ExecutionException, InterruptedException {
+        Collection<Table> rows = TestUtil.testTable("test1", 10);
+        int bytes = (int) rows.iterator().next().bytesUsed();
+        WriteLimiter limiter = new WriteClient.DefaultWriteBytesLimiter(bytes, new LimitedPolicy.AbortPolicy());
+
+        // the permits are released once the write completes
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.acquireAndDo(rows, this::emptyOk).get().isOk());
+        }
+    }
+
     @Test
     public void blockingWriteLimitTest() throws InterruptedException {
         WriteLimiter limiter = new WriteClient.DefaultWriteLimiter(1, new LimitedPolicy.BlockingPolicy());
@@ -126,6 +156,27 @@ public class WriteLimitTest {
         }
     }
 
+    @Test
+    public void abortNestedWriteBytesLimitReleasesPointsTest() {
+        Collection<Table> rows = TestUtil.testTable("test1", 1);
+        int bytes = (int) rows.iterator().next().bytesUsed();
+        WriteLimiter pointsLimiter = new WriteClient.DefaultWriteLimiter(100, new LimitedPolicy.AbortPolicy());
+        WriteLimiter bytesLimiter = new WriteClient.DefaultWriteBytesLimiter(bytes, new LimitedPolicy.AbortPolicy());
+
+        // consume the bytes permits
+        bytesLimiter.acquireAndDo(rows, CompletableFuture::new);
+
+        try {
+            pointsLimiter.acquireAndDo(rows, () -> bytesLimiter.acquireAndDo(rows, this::emptyOk));
+            Assert.fail("the bytes limit should abort");
+        } catch (LimitedException ignored) {
+            // expected
+        }
+
+        // the points permits are released when the nested limiter aborts
+        Assert.assertEquals(100, pointsLimiter.availablePermits());
+    }
+
     private CompletableFuture<Result<WriteOk, Err>> emptyOk() {
         return Util.completedCf(Result.ok(WriteOk.emptyOk()));
     }
@@ -150,4 +150,37 @@ public class ArrowHelperTest {
                 new ArrowType.Binary().getTypeID(),
                 schema.getFields().get(22).getType().getTypeID());
     }
+
+    @Test
+    public void testCheckSchema() {
+        TableSchema tableSchema = TableSchema.newBuilder("my_table")
+                .addTag("tag1", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("field1", DataType.Float64)
+                .build();
+        ArrowHelper.checkSchema(tableSchema, ArrowHelper.createSchema(tableSchema));
+
+        TableSchema otherType = TableSchema.newBuilder("my_table")
+                .addTag("tag1", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("field1", DataType.Int64)
+                .build();
+        try {
+            ArrowHelper.checkSchema(tableSchema, ArrowHelper.createSchema(otherType));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("column 2"));
+        }
+
+        TableSchema fewerColumns = TableSchema.newBuilder("my_table")
+                .addTag("tag1", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .build();
+        try {
+            ArrowHelper.checkSchema(tableSchema, ArrowHelper.createSchema(fewerColumns));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("expected 3 columns"));
+        }
+    }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.models;
+
+import io.greptime.WriteOp;
+import io.greptime.v1.Database;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class GreptimeRequestEncoderTest {
+
+    private static final AuthInfo AUTH_INFO = new AuthInfo("user", "password");
+
+    private static void fill(Table table, int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            table.addRow(
+                    i % 4 == 0 ? null : "host-你好-" + i,
+                    1700000000000L + i,
+                    i % 5 == 0 ? null : i * -1.5,
+                    (long) -i,
+                    i % 3 == 0 ? -i : i,
+                    i % 2 == 0,
+                    i % 3 == 0 ? null : new BigDecimal(i + ".5").negate(),
+                    new byte[] {(byte) i},
+                    Collections.singletonMap("k", i),
+                    i * 1.5f,
+                    i * 7);
+        }
+        table.complete();
+    }
+
+    private static TableSchema schema(String tableName) {
+        return TableSchema.newBuilder(tableName)
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("cpu", DataType.Float64)
+                .addField("count", DataType.Int64)
+                .addField("small", DataType.Int8)
+                .addField("ok", DataType.Bool)
+                .addField("price", DataType.Decimal128)
+                .addField("bin", DataType.Binary)
+                .addField("json", DataType.Json)
+                .addField("f32", DataType.Float32)
+                .addField("u32", DataType.UInt32)
+                .build();
+    }
+
+    private static void assertSameEncoding(WriteTables writeTables, String database, AuthInfo authInfo)
+            throws Exception {
+        Database.GreptimeRequest expected = TableHelper.toGreptimeRequest(writeTables, database, authInfo);
+        GreptimeRequestEncoder encoder = TableHelper.toGreptimeRequestEncoder(writeTables, database, authInfo);
+
+        Assert.assertEquals(expected.getSerializedSize(), encoder.serializedSize());
+        Assert.assertArrayEquals(expected.toByteArray(), encoder.toByteArray());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        Assert.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        Assert.assertEquals(expected, Database.GreptimeRequest.parseFrom(out.toByteArray()));
+    }
+
+    @Test
+    public void testEncodeRowBasedTables() throws Exception {
+        Table t1 = Table.from(schema("t1"));
+        fill(t1, 100);
+        Table t2 = Table.from(schema("t2"));
+        fill(t2, 1);
+
+        assertSameEncoding(new WriteTables(Arrays.asList(t1, t2), WriteOp.Insert), "public", AUTH_INFO);
+        assertSameEncoding(new WriteTables(Arrays.asList(t1, t2.subRange(0, 1)), WriteOp.Delete), null, null);
+    }
+
+    @Test
+    public void testEncodeColumnarTables() throws Exception {
+        Table t1 = Table.columnar(schema("t1"));
+        fill(t1, 1000);
+        Table t2 = Table.columnar(schema("t2"));
+        fill(t2, 3);
+
+        assertSameEncoding(new WriteTables(Arrays.asList(t1, t2), WriteOp.Insert), "public", AUTH_INFO);
+        assertSameEncoding(new WriteTables(Arrays.asList(t1.subRange(10, 20), t2), WriteOp.Delete), "db", null);
+    }
+
+    @Test
+    public void testEncodeLargerThanStreamBuffer() throws Exception {
+        Table t1 = Table.columnar(schema("t1"));
+        fill(t1, 10000);
+        WriteTables writeTables = new WriteTables(Collections.singletonList(t1), WriteOp.Insert);
+        // Spans many flushes of the stream buffer
+        Assert.assertTrue(TableHelper.toGreptimeRequestEncoder(writeTables, "public", null).serializedSize()
+                > 4 * 64 * 1024);
+
+        assertSameEncoding(writeTables, "public", AUTH_INFO);
+    }
+
+    @Test
+    public void testEncodeMixedTables() throws Exception {
+        Table t1 = Table.from(schema("t1"));
+        fill(t1, 10);
+        Table t2 = Table.columnar(schema("t2"));
+        fill(t2, 10);
+
+        assertSameEncoding(new WriteTables(Arrays.asList(t1, t2), WriteOp.Insert), "public", null);
+    }
+
+    @Test
+    public void testEncodeTagDictionaryTables() throws Exception {
+        Table t1 = new Table.Builder(schema("t1")).tagDictionary(true).build();
+        fill(t1, 100);
+        Table t2 = new Table.Builder(schema("t2")).tagDictionary(true).buildColumnar(16);
+        fill(t2, 100);
+        Table expected = Table.from(schema("t2"));
+        fill(expected, 100);
+
+        assertSameEncoding(new WriteTables(Arrays.asList(t1, t2), WriteOp.Insert), "public", AUTH_INFO);
+        assertSameEncoding(new WriteTables(Collections.singletonList(t2.subRange(5, 50)), WriteOp.Delete), null, null);
+        Assert.assertEquals(expected.intoRowInsertRequest(), t2.intoRowInsertRequest());
+    }
+
+    @Test
+    public void testMergeSameNameTables() throws Exception {
+        TableSchema schema = schema("t1");
+        Table t1 = Table.from(schema);
+        fill(t1, 10);
+        Table t2 = Table.columnar(schema);
+        fill(t2, 20);
+        Table t3 = Table.columnar(schema("t2"));
+        fill(t3, 5);
+        // Same name but a different schema, can not be merged
+        Table t4 = Table.from(TableSchema.newBuilder("t1")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .build());
+        t4.addRow("host", 1L).complete();
+        Table t5 = Table.from(schema);
+        fill(t5, 1);
+
+        WriteTables writeTables = new WriteTables(Arrays.asList(t1, t2, t3, t4, t5), WriteOp.Insert);
+        assertSameEncoding(writeTables, "public", AUTH_INFO);
+        assertSameEncoding(new WriteTables(writeTables.getTables(), WriteOp.Delete), "public", AUTH_INFO);
+
+        Database.GreptimeRequest req =
+                Database.GreptimeRequest.parseFrom(TableHelper.toGreptimeRequestEncoder(writeTables, "public", null)
+                        .toByteArray());
+        Database.RowInsertRequests inserts = req.getRowInserts();
+        Assert.assertEquals(3, inserts.getInsertsCount());
+
+        Database.RowInsertRequest merged = inserts.getInserts(0);
+        Assert.assertEquals("t1", merged.getTableName());
+        Assert.assertEquals(11, merged.getRows().getSchemaCount());
+        Assert.assertEquals(31, merged.getRows().getRowsCount());
+        // The rows keep the order of the tables
+        Assert.assertEquals(
+                ((Table.RowBasedTable) t1).into().getRows(9), merged.getRows().getRows(9));
+        Assert.assertEquals(
+                ((Table.RowBasedTable) t5).into().getRows(0), merged.getRows().getRows(30));
+
+        Assert.assertEquals("t2", inserts.getInserts(1).getTableName());
+        Assert.assertEquals("t1", inserts.getInserts(2).getTableName());
+        Assert.assertEquals(2, inserts.getInserts(2).getRows().getSchemaCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeEmptyTable() {
+        Table t1 = Table.columnar(schema("t1"));
+        t1.complete();
+        TableHelper.toGreptimeRequestEncoder(
+                new WriteTables(Collections.singleton(t1), WriteOp.Insert), "public", null);
+    }
+}
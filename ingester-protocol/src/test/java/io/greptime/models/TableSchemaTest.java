@@ -19,6 +19,7 @@ package io.greptime.models;
 import io.greptime.TestUtil;
 import io.greptime.v1.RowData;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -105,4 +106,41 @@ public class TableSchemaTest {
             Assert.assertTrue(e.getMessage().contains("Only decimal type can have decimal type extension"));
         }
     }
+
+    @Test
+    public void testCompiledSchema() {
+        TableSchema.Builder builder = TableSchema.newBuilder("test_table")
+                .addTag("col1", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("col3", DataType.Decimal128);
+        TableSchema schema = builder.build();
+        // Should not affect the built schema
+        builder.addField("col4", DataType.Int32);
+
+        Assert.assertEquals(3, schema.getColumnCount());
+        Assert.assertEquals(Arrays.asList("col1", "ts", "col3"), schema.getColumnNames());
+        Assert.assertEquals(0, schema.getColumnIndex("col1"));
+        Assert.assertEquals(2, schema.getColumnIndex("col3"));
+        Assert.assertEquals(-1, schema.getColumnIndex("col4"));
+
+        RowData.ColumnSchema col3 = schema.getColumnSchemas().get(2);
+        Assert.assertEquals("col3", col3.getColumnName());
+        Assert.assertTrue(col3.hasDatatypeExtension());
+
+        try {
+            schema.getColumnNames().add("col5");
+            Assert.fail();
+        } catch (UnsupportedOperationException ignored) {
+            // expected
+        }
+
+        // The tables share the prebuilt column schemas
+        Table.RowBasedTable t1 = (Table.RowBasedTable) Table.from(schema);
+        Table.RowBasedTable t2 = (Table.RowBasedTable) Table.from(schema);
+        Assert.assertSame(schema.getColumnSchemas(), t1.columnSchemas());
+        Assert.assertSame(t1.columnSchemas(), t2.columnSchemas());
+
+        Assert.assertSame(ArrowHelper.createSchema(schema), ArrowHelper.createSchema(schema));
+        Assert.assertEquals(3, ArrowHelper.createSchema(schema).getFields().size());
+    }
 }
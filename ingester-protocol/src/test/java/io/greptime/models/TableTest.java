@@ -16,19 +16,32 @@
 
 package io.greptime.models;
 
+import io.greptime.ArrowDictionaryEncoder;
+import io.greptime.v1.Database;
+import io.greptime.v1.RowData;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
 import org.junit.Assert;
 import org.junit.Test;
 
 public class TableTest {
 
-    private Table newTestTable() {
-        TableSchema schema = TableSchema.newBuilder("my_table")
+    private TableSchema newTestSchema() {
+        return TableSchema.newBuilder("my_table")
                 .addTag("tag1", DataType.String)
                 .addTimestamp("ts", DataType.TimestampMillisecond)
                 .addField("field1", DataType.Float64)
                 .build();
+    }
 
-        return Table.from(schema);
+    private Table newTestTable() {
+        return Table.from(newTestSchema());
     }
 
     @Test
@@ -67,4 +80,589 @@ public class TableTest {
             Assert.assertTrue(e.getMessage().contains("Table data construction has been completed"));
         }
     }
+
+    private TableSchema newAllTypesSchema() {
+        return TableSchema.newBuilder("all_types")
+                .addTag("tag", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMicrosecond)
+                .addField("i8", DataType.Int8)
+                .addField("i32", DataType.Int32)
+                .addField("i64", DataType.Int64)
+                .addField("u32", DataType.UInt32)
+                .addField("f32", DataType.Float32)
+                .addField("f64", DataType.Float64)
+                .addField("bool", DataType.Bool)
+                .addField("bin", DataType.Binary)
+                .addField("date", DataType.Date)
+                .addField("decimal", DataType.Decimal128)
+                .addField("json", DataType.Json)
+                .build();
+    }
+
+    @Test
+    public void testColumnarTableEqualsRowBasedTable() {
+        TableSchema schema = newAllTypesSchema();
+        Table rowBased = Table.from(schema);
+        Table columnar = Table.columnar(schema, 1);
+
+        for (int i = 0; i < 100; i++) {
+            Object[] values = new Object[] {
+                i % 3 == 0 ? "\u4f60\u597d-\uD83D\uDE00-" + i : "tag" + i,
+                System.currentTimeMillis() * 1000 + i,
+                i % 128,
+                i,
+                i % 7 == 0 ? null : (long) i * 1000,
+                i,
+                i / 3.0f,
+                i / 7.0,
+                i % 2 == 0,
+                new byte[] {(byte) i, 1, 2},
+                i,
+                i % 5 == 0 ? null : new BigDecimal(i + ".25"),
+                Collections.singletonMap("k", i)
+            };
+            rowBased.addRow(values);
+            columnar.addRow(values);
+        }
+        rowBased.complete();
+        columnar.complete();
+
+        Assert.assertEquals(100, columnar.rowCount());
+        Assert.assertEquals(13, columnar.columnCount());
+        Assert.assertTrue(columnar.bytesUsed() > 0);
+
+        Database.RowInsertRequest expected = rowBased.intoRowInsertRequest();
+        Database.RowInsertRequest actual = columnar.intoRowInsertRequest();
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(rowBased.intoRowDeleteRequest(), columnar.intoRowDeleteRequest());
+
+        Assert.assertEquals(
+                rowBased.subRange(10, 20).intoRowInsertRequest(),
+                columnar.subRange(10, 20).intoRowInsertRequest());
+        Assert.assertEquals(
+                rowBased.subRange(10, 20).subRange(2, 5).intoRowInsertRequest(),
+                columnar.subRange(10, 20).subRange(2, 5).intoRowInsertRequest());
+    }
+
+    @Test
+    public void testColumnarTableRollbackOnBadValue() {
+        Table table = Table.columnar(newTestSchema());
+        table.addRow("tag1", 1L, 1.0);
+        try {
+            table.addRow("tag2", 2L, "not a number");
+            Assert.fail();
+        } catch (ClassCastException e) {
+            // expected
+        }
+        table.addRow("tag3", 3L, 3.0);
+        table.complete();
+
+        Table expected = Table.from(newTestSchema());
+        expected.addRow("tag1", 1L, 1.0);
+        expected.addRow("tag3", 3L, 3.0);
+        expected.complete();
+
+        Assert.assertEquals(2, table.rowCount());
+        Assert.assertEquals(expected.intoRowInsertRequest(), table.intoRowInsertRequest());
+    }
+
+    private TableSchema newRowWriterSchema() {
+        return TableSchema.newBuilder("row_writer")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMicrosecond)
+                .addField("cpu", DataType.Float64)
+                .addField("count", DataType.Int64)
+                .addField("small", DataType.Int16)
+                .addField("ok", DataType.Bool)
+                .addField("price", DataType.Decimal128)
+                .addField("bin", DataType.Binary)
+                .build();
+    }
+
+    private void writeRows(Table table, boolean typed) {
+        for (int i = 0; i < 10; i++) {
+            long ts = 1700000000000L + i;
+            if (typed) {
+                Table.RowWriter writer = table.row()
+                        .setString(0, new StringBuilder("host-").append(i))
+                        .setTimestampMillis(1, ts)
+                        .setDouble(2, i * 0.5)
+                        .setInt(3, i)
+                        .setInt(4, i)
+                        .setBoolean(5, i % 2 == 0)
+                        .setBytes(7, new byte[] {(byte) i});
+                if (i % 3 != 0) {
+                    writer.setDecimal(6, new BigDecimal(i + ".5"));
+                }
+                // The last value wins
+                writer.setDouble(2, i * 1.5).endRow();
+            } else {
+                table.addRow(
+                        "host-" + i,
+                        ts * 1000,
+                        i * 1.5,
+                        (long) i,
+                        i,
+                        i % 2 == 0,
+                        i % 3 != 0 ? new BigDecimal(i + ".5") : null,
+                        new byte[] {(byte) i});
+            }
+        }
+        table.complete();
+    }
+
+    @Test
+    public void testRowWriter() {
+        TableSchema schema = newRowWriterSchema();
+        Table expected = Table.from(schema);
+        writeRows(expected, false);
+
+        Table rowBased = Table.from(schema);
+        writeRows(rowBased, true);
+        Assert.assertEquals(expected.intoRowInsertRequest(), rowBased.intoRowInsertRequest());
+
+        Table columnar = Table.columnar(schema, 2);
+        writeRows(columnar, true);
+        Assert.assertEquals(expected.intoRowInsertRequest(), columnar.intoRowInsertRequest());
+    }
+
+    @Test
+    public void testRowBasedTableBytesUsed() {
+        TableSchema schema = newRowWriterSchema();
+        Table.RowBasedTable addRows = (Table.RowBasedTable) Table.from(schema);
+        writeRows(addRows, false);
+        Table.RowBasedTable typed = (Table.RowBasedTable) Table.from(schema);
+        writeRows(typed, true);
+
+        long expected = 0;
+        for (RowData.Row row : addRows.into().getRowsList()) {
+            expected += row.toByteArray().length;
+        }
+        Assert.assertEquals(expected, addRows.bytesUsed());
+        Assert.assertEquals(expected, typed.bytesUsed());
+
+        Table subRange = addRows.subRange(2, 5);
+        long expectedSubRange = 0;
+        for (int i = 2; i < 5; i++) {
+            expectedSubRange += addRows.into().getRows(i).toByteArray().length;
+        }
+        Assert.assertEquals(expectedSubRange, subRange.bytesUsed());
+    }
+
+    @Test
+    public void testTagDictionary() {
+        TableSchema schema = newTestSchema();
+        Table expected = Table.from(schema);
+        Table rowBased = new Table.Builder(schema).tagDictionary(true).build();
+        Table columnar = new Table.Builder(schema).tagDictionary(true).buildColumnar(2);
+        for (int i = 0; i < 20; i++) {
+            String tag = i % 7 == 0 ? null : "host-" + (i % 3);
+            expected.addRow(tag, 1700000000000L + i, i * 1.5);
+            rowBased.addRow(tag, 1700000000000L + i, i * 1.5);
+            columnar.row()
+                    .setString(0, tag == null ? null : new StringBuilder(tag))
+                    .setTimestamp(1, 1700000000000L + i)
+                    .setDouble(2, i * 1.5)
+                    .endRow();
+        }
+
+        Assert.assertEquals(expected.intoRowInsertRequest(), rowBased.intoRowInsertRequest());
+        Assert.assertEquals(expected.intoRowInsertRequest(), columnar.intoRowInsertRequest());
+
+        // The rows share the value of the same tag
+        RowData.Rows rows = ((Table.RowBasedTable) rowBased).into();
+        Assert.assertSame(rows.getRows(1).getValues(0), rows.getRows(4).getValues(0));
+
+        ColumnBuffer.DictionaryColumn column =
+                (ColumnBuffer.DictionaryColumn) ((Table.ColumnarTable) columnar).columns()[0];
+        Assert.assertEquals(3, column.dictionary().size());
+        Assert.assertTrue(((Table.ColumnarTable) columnar).columns()[2] instanceof ColumnBuffer.DoubleColumn);
+    }
+
+    @Test
+    public void testTagDictionaryDroppedOverMaxSize() {
+        TagDictionary dictionary = new TagDictionary(2);
+        dictionary.intern("a");
+        dictionary.intern("b");
+        Assert.assertFalse(dictionary.clearIfOverMaxSize());
+        Assert.assertEquals(2, dictionary.size());
+        dictionary.intern("c");
+        Assert.assertTrue(dictionary.clearIfOverMaxSize());
+        Assert.assertEquals(0, dictionary.size());
+        Assert.assertEquals(0, dictionary.bytesUsed());
+        Assert.assertEquals(0, dictionary.intern("c"));
+
+        TableSchema schema = newTestSchema();
+        Table rowBased = new Table.Builder(schema).tagDictionary(true).build();
+        Table columnar = new Table.Builder(schema).tagDictionary(true).buildColumnar(2);
+        for (int i = 0; i <= TagDictionary.DEFAULT_MAX_SIZE; i++) {
+            rowBased.addRow("host-" + i, 1700000000000L + i, 0.5);
+            columnar.addRow("host-" + i, 1700000000000L + i, 0.5);
+        }
+        ColumnBuffer.DictionaryColumn column =
+                (ColumnBuffer.DictionaryColumn) ((Table.ColumnarTable) columnar).columns()[0];
+        Assert.assertEquals(TagDictionary.DEFAULT_MAX_SIZE + 1, column.dictionary().size());
+        rowBased.reset();
+        columnar.reset();
+        Assert.assertEquals(0, column.dictionary().size());
+
+        rowBased.addRow("host-1", 1700000000000L, 0.5);
+        columnar.addRow("host-1", 1700000000000L, 0.5);
+        Assert.assertEquals(rowBased.intoRowInsertRequest(), columnar.intoRowInsertRequest());
+        Assert.assertEquals(1, column.dictionary().size());
+    }
+
+    @Test
+    public void testBulkTableReuseAcrossBatches() {
+        TableSchema schema = newRowWriterSchema();
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator)) {
+            Table table = Table.tableBufferRoot(schema, root, 4);
+            for (int batch = 0; batch < 3; batch++) {
+                for (int i = 0; i < 1000; i++) {
+                    table.addRow("host-" + i, 1700000000000000L + i, i * 1.5, (long) i, i, true, null, null);
+                }
+                try {
+                    // A bad row is discarded, it's overwritten by the next row
+                    table.addRow("host", 1700000000000000L, "bad", 0L, 0, true, null, null);
+                    Assert.fail();
+                } catch (ClassCastException e) {
+                    // expected
+                }
+                table.addRow(null, 1700000000000000L, 0.5, 7L, 7, false, new BigDecimal("1.5"), new byte[] {1});
+                table.complete();
+
+                Assert.assertEquals(1001, root.getRowCount());
+                Assert.assertEquals("host-999", root.getVector(0).getObject(999).toString());
+                Assert.assertNull(root.getVector(0).getObject(1000));
+                Assert.assertEquals(0.5, root.getVector(2).getObject(1000));
+                Assert.assertEquals(7L, root.getVector(3).getObject(1000));
+                Assert.assertArrayEquals(
+                        new byte[] {1}, (byte[]) root.getVector(7).getObject(1000));
+
+                // The writer releases the vectors after writing them
+                root.clear();
+                table.reset();
+                table.row();
+                // The vectors are sized by the last batch
+                Assert.assertTrue(root.getVector(2).getValueCapacity() >= 1001);
+                Assert.assertTrue(root.getVector(0).getValueCapacity() >= 1001);
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDeprecatedBulkTableConstructor() {
+        TableSchema schema = TableSchema.newBuilder("legacy")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("cpu", DataType.Float64)
+                .build();
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator)) {
+            Table table = new Table.BulkTable(
+                    "legacy", schema.getDataTypes(), schema.getDataTypeExtensions(), root, 4);
+            table.addRow("host1", 1L, 0.5);
+            table.addRow("host2", 2L, null);
+            table.complete();
+
+            Assert.assertEquals("legacy", table.tableName());
+            Assert.assertEquals(2, root.getRowCount());
+            Assert.assertEquals("host2", root.getVector(0).getObject(1).toString());
+            Assert.assertEquals(0.5, root.getVector(2).getObject(0));
+            Assert.assertNull(root.getVector(2).getObject(1));
+        }
+    }
+
+    @Test
+    public void testBulkTableDictionaryEncodedTag() {
+        TableSchema schema = TableSchema.newBuilder("logs")
+                .addTag("level", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("message", DataType.String)
+                .dictionaryEncoded("level", 3)
+                .build();
+        Assert.assertTrue(schema.isDictionaryEncoded(0));
+        Assert.assertFalse(schema.isDictionaryEncoded(2));
+
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator);
+                ArrowDictionaryEncoder encoder =
+                        new ArrowDictionaryEncoder(root.getSchema().getFields().get(0), allocator)) {
+            encoder.setMaxSize(schema.getDictionaryMaxSize(0));
+            ArrowDictionaryEncoder[] encoders = new ArrowDictionaryEncoder[] {encoder, null, null};
+            Table table = Table.tableBufferRoot(schema, root, 4, encoders);
+            table.addRow("info", 1L, "a");
+            table.addRow("warn", 2L, "b");
+            table.addRow("info", 3L, "c");
+            table.addRow(null, 4L, "d");
+            table.complete();
+
+            IntVector levels = (IntVector) root.getVector(0);
+            Assert.assertEquals(0, levels.get(0));
+            Assert.assertEquals(1, levels.get(1));
+            Assert.assertEquals(0, levels.get(2));
+            Assert.assertTrue(levels.isNull(3));
+            Assert.assertEquals("c", root.getVector(2).getObject(2).toString());
+
+            try (ArrowDictionaryEncoder.Batch batch = encoder.takeBatch(allocator)) {
+                Assert.assertTrue(batch.isDelta());
+                Assert.assertEquals(2, batch.getEntries().getRowCount());
+                Assert.assertEquals("warn", batch.getEntries().getVector(0).getObject(1).toString());
+            }
+            // Nothing new since the last batch
+            Assert.assertNull(encoder.takeBatch(allocator));
+
+            // Over the max size, the dictionary is replaced after the batch
+            encoder.encode("error");
+            encoder.encode("debug");
+            try (ArrowDictionaryEncoder.Batch batch = encoder.takeBatch(allocator)) {
+                Assert.assertTrue(batch.isDelta());
+                Assert.assertEquals(2, batch.getEntries().getRowCount());
+            }
+            Assert.assertEquals(0, encoder.size());
+            Assert.assertEquals(0, encoder.encode("trace"));
+            try (ArrowDictionaryEncoder.Batch batch = encoder.takeBatch(allocator)) {
+                Assert.assertFalse(batch.isDelta());
+                Assert.assertEquals("trace", batch.getEntries().getVector(0).getObject(0).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testBulkTableAppendColumns() {
+        TableSchema schema = TableSchema.newBuilder("columns")
+                .addTag("host", DataType.String)
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("cpu", DataType.Float64)
+                .addField("count", DataType.Int32)
+                .addField("ok", DataType.Bool)
+                .build();
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot expectedRoot = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator);
+                VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator)) {
+            Table.TableBufferRoot expected = Table.tableBufferRoot(schema, expectedRoot, 16);
+            Table.TableBufferRoot table = Table.tableBufferRoot(schema, root, 16);
+
+            // A row before the columns, the column slices start from an unaligned index
+            expected.addRow("first", 1L, null, 1, true);
+            table.addRow("first", 1L, null, 1, true);
+
+            for (int batch = 0; batch < 3; batch++) {
+                int rows = 37 + batch * 100;
+                long[] ts = new long[rows + 2];
+                double[] cpu = new double[rows];
+                int[] count = new int[rows];
+                byte[] cpuValidity = new byte[(rows + 7) / 8];
+                StringBuilder hosts = new StringBuilder();
+                int[] offsets = new int[rows + 1];
+                for (int i = 0; i < rows; i++) {
+                    String host = i % 5 == 0 ? "" : "host-你好-" + i;
+                    ts[i + 2] = 1700000000000L + i;
+                    cpu[i] = i * 0.5;
+                    count[i] = -i;
+                    if (i % 3 != 0) {
+                        cpuValidity[i / 8] |= (byte) (1 << (i % 8));
+                    }
+                    hosts.append(host);
+                    offsets[i + 1] = hosts.toString().getBytes(StandardCharsets.UTF_8).length;
+                    expected.addRow(host, ts[i + 2], i % 3 != 0 ? cpu[i] : null, count[i], null);
+                }
+                byte[] data = hosts.toString().getBytes(StandardCharsets.UTF_8);
+
+                // Slices of one column can be appended in several parts
+                table.appendUtf8(0, data, offsets)
+                        .appendLongs(1, ts, 2, 10)
+                        .appendLongs(1, ts, 12, rows - 10)
+                        .appendDoubles(2, cpu, 0, rows)
+                        .appendValidity(2, cpuValidity)
+                        .appendInts(3, count, 0, rows)
+                        .endColumns();
+                Assert.assertEquals(expected.rowCount(), table.rowCount());
+            }
+
+            try {
+                table.appendDoubles(3, new double[1], 0, 1);
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                table.appendInts(3, new int[2], 0, 2)
+                        .appendLongs(1, new long[1], 0, 1)
+                        .endColumns();
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // expected, the column batch is discarded
+            }
+
+            expected.addRow("last", 2L, 2.0, 2, false);
+            table.addRow("last", 2L, 2.0, 2, false);
+            expected.complete();
+            table.complete();
+
+            Assert.assertEquals(expectedRoot.getRowCount(), root.getRowCount());
+            Assert.assertEquals(expectedRoot.contentToTSVString(), root.contentToTSVString());
+        }
+    }
+
+    @Test
+    public void testReset() {
+        TableSchema schema = newRowWriterSchema();
+        Table expected = Table.from(schema);
+        writeRows(expected, false);
+
+        Table rowBased = new Table.Builder(schema).tagDictionary(true).build();
+        Table columnar = Table.columnar(schema, 2);
+        for (Table table : new Table[] {rowBased, columnar}) {
+            writeRows(table, true);
+            table.complete();
+            try {
+                table.subRange(0, 2).reset();
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+
+            Assert.assertSame(table, table.reset());
+            Assert.assertFalse(table.isCompleted());
+            Assert.assertEquals(0, table.rowCount());
+            if (table == rowBased) {
+                Assert.assertEquals(0, table.bytesUsed());
+            }
+
+            writeRows(table, false);
+            Assert.assertEquals(expected.intoRowInsertRequest(), table.intoRowInsertRequest());
+        }
+    }
+
+    @Test
+    public void testTablePool() {
+        TablePool pool = TablePool.columnar(newTestSchema(), 4, 1);
+        Table t1 = pool.acquire();
+        Table t2 = pool.acquire();
+        Assert.assertNotSame(t1, t2);
+
+        t1.addRow("tag1", 1L, 1.0).complete();
+        pool.release(t1);
+        // The pool is full, t2 is dropped
+        pool.release(t2);
+        Assert.assertEquals(1, pool.idleCount());
+
+        Table t3 = pool.acquire();
+        Assert.assertSame(t1, t3);
+        Assert.assertEquals(0, t3.rowCount());
+        Assert.assertFalse(t3.isCompleted());
+        Assert.assertEquals(0, pool.idleCount());
+    }
+
+    @Test
+    public void testRowWriterDiscardUnfinishedRow() {
+        Table table = Table.columnar(newTestSchema());
+        table.row().setString(0, "unfinished").setTimestampMillis(1, 1);
+        table.addRow("tag1", 1L, 1.0);
+        table.row().setString(0, "unfinished").setDouble(2, 2.0);
+        table.row().setString(0, "tag2").setTimestamp(1, 2).endRow();
+        table.complete();
+
+        Table expected = Table.from(newTestSchema());
+        expected.addRow("tag1", 1L, 1.0);
+        expected.addRow("tag2", 2L, null);
+        expected.complete();
+
+        Assert.assertEquals(expected.intoRowInsertRequest(), table.intoRowInsertRequest());
+    }
+
+    @Test
+    public void testRowWriterTypeMismatch() {
+        Table table = Table.from(newTestSchema());
+        try {
+            table.row().setLong(2, 1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("Cannot set a long value to column 2"));
+        }
+        try {
+            table.row().setDouble(3, 1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("Column index out of range"));
+        }
+    }
+
+    @Test
+    public void testBulkTableRowWriterFillsCapacityExactly() {
+        TableSchema schema = TableSchema.newBuilder("exact_capacity")
+                .addTimestamp("ts", DataType.TimestampMillisecond)
+                .addField("v", DataType.Int64)
+                .build();
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator)) {
+            Table table = Table.tableBufferRoot(schema, root, 1024);
+            table.row().setTimestamp(0, 0L).setLong(1, 0L).endRow();
+            int capacity = root.getVector(1).getValueCapacity();
+            for (int i = 1; i < capacity; i++) {
+                table.row().setTimestamp(0, i).setLong(1, i).endRow();
+            }
+            table.complete();
+
+            // Not grown for a row after the last one
+            Assert.assertEquals(capacity, root.getRowCount());
+            Assert.assertEquals(capacity, root.getVector(1).getValueCapacity());
+            Assert.assertEquals(capacity - 1, ((BigIntVector) root.getVector(1)).get(capacity - 1));
+        }
+    }
+
+    @Test
+    public void testBulkTableRowWriter() {
+        TableSchema schema = newRowWriterSchema();
+        try (BufferAllocator allocator = new RootAllocator();
+                VectorSchemaRoot expectedRoot = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator);
+                VectorSchemaRoot root = VectorSchemaRoot.create(ArrowHelper.createSchema(schema), allocator)) {
+            Table expected = Table.tableBufferRoot(schema, expectedRoot, 3);
+            writeRows(expected, false);
+
+            Table table = Table.tableBufferRoot(schema, root, 3);
+            // Mixes the buffered rows and the typed rows
+            table.addRow("host-0", 1700000000000000L, 0.0, 0L, 0, true, null, new byte[] {0});
+            for (int i = 1; i < 10; i++) {
+                long ts = 1700000000000L + i;
+                Table.RowWriter writer = table.row()
+                        .setString(0, "host-" + i)
+                        .setTimestampMillis(1, ts)
+                        .setDouble(2, i * 1.5)
+                        .setLong(3, i)
+                        .setInt(4, i)
+                        .setBoolean(5, i % 2 == 0)
+                        .setBytes(7, new byte[] {(byte) i});
+                if (i % 3 != 0) {
+                    writer.setDecimal(6, new BigDecimal(i + ".5"));
+                }
+                writer.endRow();
+            }
+            table.complete();
+
+            Assert.assertEquals(10, table.rowCount());
+            Assert.assertEquals(expectedRoot.getRowCount(), root.getRowCount());
+
+            // The unwritten rows are dropped by reset
+            table.reset();
+            Assert.assertEquals(0, table.rowCount());
+            Assert.assertFalse(table.isCompleted());
+            writeRows(table, false);
+            table.complete();
+            for (int col = 0; col < root.getFieldVectors().size(); col++) {
+                for (int row = 0; row < root.getRowCount(); row++) {
+                    Object expectedValue = expectedRoot.getVector(col).getObject(row);
+                    Object value = root.getVector(col).getObject(row);
+                    if (expectedValue instanceof byte[]) {
+                        Assert.assertArrayEquals((byte[]) expectedValue, (byte[]) value);
+                    } else {
+                        Assert.assertEquals(expectedValue, value);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -16,6 +16,7 @@
 
 package io.greptime.rpc;
 
+import io.greptime.common.Copiable;
 import io.greptime.common.Keys;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,7 +27,7 @@ import java.util.Set;
  * database server in the form of KV.
  */
 @SuppressWarnings({"unchecked"})
-public class Context {
+public class Context implements Copiable<Context> {
 
     private final Map<String, Object> ctx = new HashMap<>();
 
@@ -179,6 +180,16 @@ public class Context {
         }
     }
 
+    @Override
+    public Context copy() {
+        Context copy = new Context();
+        synchronized (this) {
+            copy.ctx.putAll(this.ctx);
+            copy.compression = this.compression;
+        }
+        return copy;
+    }
+
     @Override
     public String toString() {
         synchronized (this) {
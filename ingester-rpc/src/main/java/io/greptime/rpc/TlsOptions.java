@@ -18,6 +18,7 @@ package io.greptime.rpc;
 
 import io.greptime.common.Copiable;
 import java.io.File;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -77,6 +78,26 @@ public class TlsOptions implements Copiable<TlsOptions> {
         this.rootCerts = rootCerts;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TlsOptions that = (TlsOptions) o;
+        return Objects.equals(clientCertChain, that.clientCertChain)
+                && Objects.equals(privateKey, that.privateKey)
+                && Objects.equals(privateKeyPassword, that.privateKeyPassword)
+                && Objects.equals(rootCerts, that.rootCerts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(clientCertChain, privateKey, privateKeyPassword, rootCerts);
+    }
+
     @Override
     public String toString() {
         return "TlsOptions{" + "clientCertChain="
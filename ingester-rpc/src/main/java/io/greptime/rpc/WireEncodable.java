@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 Greptime Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.greptime.rpc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A request that writes its own wire format.
+ *
+ * <p>
+ * It lets the RPC implementation send a request without building the request message
+ * (and its whole object graph) first, the bytes written must be exactly the same as the
+ * serialized form of a message of {@link #messageClass()}.
+ * </p>
+ */
+public interface WireEncodable {
+
+    /**
+     * Gets the class of the message that this request is encoded as, it is used to find
+     * the RPC method.
+     *
+     * @return the message class
+     */
+    Class<?> messageClass();
+
+    /**
+     * Gets the number of bytes that {@link #writeTo(OutputStream)} writes.
+     *
+     * @return the serialized size
+     */
+    int serializedSize();
+
+    /**
+     * Writes the wire format of this request to the given output stream.
+     *
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(OutputStream out) throws IOException;
+}